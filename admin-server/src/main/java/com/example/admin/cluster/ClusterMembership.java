@@ -0,0 +1,129 @@
+package com.example.admin.cluster;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 集群成员与 SIP 会话归属
+ * 按 SIP URI 做一致性哈希，决定哪个 admin-server 节点托管该用户的 SipUserAgent。
+ * 未开启集群模式时所有用户都归属本节点。
+ *
+ * 本机多 JVM 测试示例：
+ * --server.port=8081 --cluster.enabled=true --cluster.self=http://127.0.0.1:8081
+ * --cluster.nodes=http://127.0.0.1:8081,http://127.0.0.1:8082 --jwt.secret=...
+ */
+@Component
+public class ClusterMembership {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClusterMembership.class);
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Value("${cluster.enabled:false}")
+    private boolean enabled;
+
+    @Value("${cluster.self:}")
+    private String self;
+
+    @Value("${cluster.nodes:}")
+    private String configuredNodes;
+
+    @Value("${cluster.virtual-nodes:" + ConsistentHashRing.DEFAULT_VIRTUAL_NODES + "}")
+    private int virtualNodes;
+
+    private volatile ConsistentHashRing ring;
+
+    public ClusterMembership(ApplicationEventPublisher eventPublisher) {
+        this.eventPublisher = eventPublisher;
+    }
+
+    @PostConstruct
+    void init() {
+        if (!enabled) {
+            return;
+        }
+        if (self == null || self.isBlank()) {
+            throw new IllegalStateException("cluster.enabled=true 时必须配置 cluster.self");
+        }
+        self = normalizeNode(self);
+        ring = new ConsistentHashRing(withSelf(parseNodes(configuredNodes)), virtualNodes);
+        logger.info("集群模式已开启，本节点 {}，成员 {}", self, ring.nodes());
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public String self() {
+        return self;
+    }
+
+    public List<String> members() {
+        return enabled ? ring.nodes() : List.of();
+    }
+
+    /**
+     * @return 托管该用户的节点；未开启集群模式时返回 null
+     */
+    public String ownerOf(String sipUri) {
+        return enabled ? ring.ownerOf(routingKey(sipUri)) : null;
+    }
+
+    public boolean isLocal(String sipUri) {
+        return !enabled || self.equals(ownerOf(sipUri));
+    }
+
+    /**
+     * 替换成员列表（例如扩容、下线节点），并通知各组件重新平衡
+     */
+    public synchronized void updateMembers(Collection<String> nodes) {
+        if (!enabled) {
+            throw new IllegalStateException("集群模式未开启");
+        }
+        List<String> previous = ring.nodes();
+        List<String> normalized = nodes.stream().map(ClusterMembership::normalizeNode).toList();
+        ring = new ConsistentHashRing(withSelf(normalized), virtualNodes);
+        if (!previous.equals(ring.nodes())) {
+            logger.info("集群成员变化: {} -> {}", previous, ring.nodes());
+            eventPublisher.publishEvent(new MembershipChangedEvent(previous, ring.nodes()));
+        }
+    }
+
+    private List<String> withSelf(List<String> nodes) {
+        List<String> result = new ArrayList<>(nodes);
+        if (!result.contains(self)) {
+            result.add(self);
+        }
+        return result;
+    }
+
+    private static List<String> parseNodes(String value) {
+        if (value == null || value.isBlank()) {
+            return List.of();
+        }
+        return Arrays.stream(value.split(","))
+                .map(String::trim)
+                .filter(node -> !node.isEmpty())
+                .map(ClusterMembership::normalizeNode)
+                .toList();
+    }
+
+    private static String normalizeNode(String node) {
+        String trimmed = node.trim();
+        return trimmed.endsWith("/") ? trimmed.substring(0, trimmed.length() - 1) : trimmed;
+    }
+
+    private static String routingKey(String sipUri) {
+        return sipUri.trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,202 @@
+package com.example.admin.cluster;
+
+import com.example.admin.dto.ApiResponse;
+import com.example.admin.util.JwtUtil;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * 集群路由过滤器
+ * /api/auth 下的请求、经 SIP 发消息和标记已读（回送回执）依赖用户所在节点的 SipUserAgent，
+ * 归属其它节点时原样转发过去并把响应写回。
+ * 登录请求按请求体中的 sipUri 路由，其余请求按 Token 中的用户 ID 路由。
+ */
+@Component
+public class ClusterRoutingFilter extends OncePerRequestFilter {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClusterRoutingFilter.class);
+
+    /** 已转发过的请求带上该头，避免成员视图不一致时在节点间来回转发 */
+    public static final String FORWARDED_HEADER = "X-Cluster-Forwarded";
+
+    // 需要路由到用户所在节点的路径：以 / 结尾的按前缀匹配，其余精确匹配
+    private static final List<String> ROUTED_PATHS =
+            List.of("/api/auth/", "/api/messages/sip", "/api/messages/read");
+
+    private static final List<String> FORWARDED_REQUEST_HEADERS =
+            List.of(HttpHeaders.AUTHORIZATION, HttpHeaders.CONTENT_TYPE, HttpHeaders.ACCEPT);
+
+    private final ClusterMembership membership;
+    private final JwtUtil jwtUtil;
+    private final ObjectMapper objectMapper;
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(2))
+            .build();
+
+    public ClusterRoutingFilter(ClusterMembership membership, JwtUtil jwtUtil, ObjectMapper objectMapper) {
+        this.membership = membership;
+        this.jwtUtil = jwtUtil;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !membership.isEnabled()
+                || !isRouted(request.getRequestURI())
+                || request.getHeader(FORWARDED_HEADER) != null;
+    }
+
+    static boolean isRouted(String path) {
+        for (String routed : ROUTED_PATHS) {
+            if (routed.endsWith("/") ? path.startsWith(routed) : path.equals(routed)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        byte[] body = request.getInputStream().readAllBytes();
+        String sipUri = routingKey(request, body);
+        String owner = sipUri == null ? null : membership.ownerOf(sipUri);
+        if (owner == null || owner.equals(membership.self())) {
+            chain.doFilter(new CachedBodyRequest(request, body), response);
+            return;
+        }
+        forward(owner, request, body, response);
+    }
+
+    private String routingKey(HttpServletRequest request, byte[] body) {
+        if (request.getRequestURI().equals("/api/auth/login")) {
+            try {
+                JsonNode sipUri = objectMapper.readTree(body).get("sipUri");
+                return sipUri == null || sipUri.isNull() ? null : sipUri.asText();
+            } catch (IOException e) {
+                return null;
+            }
+        }
+        String authHeader = request.getHeader(HttpHeaders.AUTHORIZATION);
+        if (authHeader == null || !authHeader.startsWith("Bearer ")) {
+            return null;
+        }
+        try {
+            return jwtUtil.getUserIdFromToken(authHeader.substring(7));
+        } catch (Exception e) {
+            // 无效 Token 交给本机控制器返回错误
+            return null;
+        }
+    }
+
+    private void forward(String owner, HttpServletRequest request, byte[] body, HttpServletResponse response)
+            throws IOException {
+        String query = request.getQueryString();
+        HttpRequest.Builder builder = HttpRequest.newBuilder()
+                .uri(URI.create(owner + request.getRequestURI() + (query == null ? "" : "?" + query)))
+                .timeout(Duration.ofSeconds(15))
+                .header(FORWARDED_HEADER, membership.self())
+                .method(request.getMethod(), body.length == 0
+                        ? HttpRequest.BodyPublishers.noBody()
+                        : HttpRequest.BodyPublishers.ofByteArray(body));
+        for (String name : FORWARDED_REQUEST_HEADERS) {
+            String value = request.getHeader(name);
+            if (value != null) {
+                builder.header(name, value);
+            }
+        }
+        try {
+            HttpResponse<byte[]> forwarded = httpClient.send(builder.build(), HttpResponse.BodyHandlers.ofByteArray());
+            response.setStatus(forwarded.statusCode());
+            forwarded.headers().firstValue(HttpHeaders.CONTENT_TYPE).ifPresent(response::setContentType);
+            response.getOutputStream().write(forwarded.body());
+        } catch (IOException e) {
+            logger.warn("转发到节点 {} 失败: {}", owner, e.getMessage());
+            writeError(response, "集群节点不可用: " + owner);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            writeError(response, "转发被中断");
+        }
+    }
+
+    private void writeError(HttpServletResponse response, String message) throws IOException {
+        response.setStatus(HttpServletResponse.SC_BAD_GATEWAY);
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        objectMapper.writeValue(response.getOutputStream(), ApiResponse.error(message));
+    }
+
+    /**
+     * 过滤器已经读过请求体，重新提供给后续的消息转换器
+     */
+    private static final class CachedBodyRequest extends HttpServletRequestWrapper {
+
+        private final byte[] body;
+
+        private CachedBodyRequest(HttpServletRequest request, byte[] body) {
+            super(request);
+            this.body = body;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream in = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public boolean isFinished() {
+                    return in.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setReadListener(ReadListener readListener) {
+                    throw new UnsupportedOperationException();
+                }
+
+                @Override
+                public int read() {
+                    return in.read();
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    return in.read(b, off, len);
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            return new BufferedReader(new InputStreamReader(getInputStream(), StandardCharsets.UTF_8));
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.admin.cluster;
+
+import java.util.List;
+
+/**
+ * 集群成员变化事件，收到后各节点释放不再归属自己的 SIP 连接
+ */
+public record MembershipChangedEvent(List<String> previous, List<String> current) {
+}
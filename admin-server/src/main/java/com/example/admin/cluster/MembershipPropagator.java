@@ -0,0 +1,92 @@
+package com.example.admin.cluster;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 把成员列表的变更同步到其它节点
+ * 向新成员列表中除本机外的每个节点并行发送 PUT /api/cluster/members，带上转发头，收到的节点只更新自己不再扩散。
+ * 被移出集群的节点不会收到通知，下线前应先从负载均衡中摘除。
+ */
+@Component
+public class MembershipPropagator {
+
+    private static final Logger logger = LoggerFactory.getLogger(MembershipPropagator.class);
+
+    static final String MEMBERS_PATH = "/api/cluster/members";
+
+    private final ClusterMembership membership;
+    private final ObjectMapper objectMapper;
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(2))
+            .build();
+
+    public MembershipPropagator(ClusterMembership membership, ObjectMapper objectMapper) {
+        this.membership = membership;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * @param secret 原样带给其它节点的 X-Cluster-Secret
+     * @return 同步失败的节点
+     */
+    public List<String> propagate(List<String> members, String secret) {
+        byte[] body;
+        try {
+            body = objectMapper.writeValueAsBytes(members);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+        Map<String, CompletableFuture<Boolean>> results = new LinkedHashMap<>();
+        for (String node : members) {
+            if (node.equals(membership.self())) {
+                continue;
+            }
+            HttpRequest request = HttpRequest.newBuilder()
+                    .uri(URI.create(node + MEMBERS_PATH))
+                    .timeout(Duration.ofSeconds(5))
+                    .header(ClusterRoutingFilter.FORWARDED_HEADER, membership.self())
+                    .header("X-Cluster-Secret", secret)
+                    .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                    .PUT(HttpRequest.BodyPublishers.ofByteArray(body))
+                    .build();
+            results.put(node, httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                    .thenApply(response -> response.statusCode() == 200 && isSuccess(response.body()))
+                    .exceptionally(e -> {
+                        logger.warn("同步集群成员到 {} 失败: {}", node, e.getMessage());
+                        return false;
+                    }));
+        }
+        List<String> failed = new ArrayList<>();
+        results.forEach((node, result) -> {
+            if (!result.join()) {
+                failed.add(node);
+            }
+        });
+        return failed;
+    }
+
+    private boolean isSuccess(String body) {
+        try {
+            return objectMapper.readTree(body).path("success").asBoolean(false);
+        } catch (JsonProcessingException e) {
+            return false;
+        }
+    }
+}
@@ -1,27 +1,56 @@
 package com.example.admin.config;
 
+import com.example.admin.util.JwtUtil;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
+
+import java.security.Principal;
 
 /**
  * WebSocket 配置
- * 用于实时事件推送
+ * 用于实时事件推送：客户端在 STOMP CONNECT 帧中携带 Authorization: Bearer &lt;token&gt;，
+ * 之后订阅 /user/queue/events 接收自己的 SIP 事件（见 SipEventBridge）。
  */
 @Configuration
 @EnableWebSocketMessageBroker
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
-    
+
+    private final JwtUtil jwtUtil;
+
+    // 单个会话待发送数据的上限，超过时间或大小即视为慢消费者并断开，避免拖住其它会话
+    @Value("${events.session.send-time-limit-ms:10000}")
+    private int sendTimeLimitMillis;
+
+    @Value("${events.session.send-buffer-limit:524288}")
+    private int sendBufferSizeLimit;
+
+    public WebSocketConfig(JwtUtil jwtUtil) {
+        this.jwtUtil = jwtUtil;
+    }
+
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
         // 启用简单的消息代理，目的地前缀为 /topic 和 /queue
         config.enableSimpleBroker("/topic", "/queue");
         // 客户端发送消息的目的地前缀
         config.setApplicationDestinationPrefixes("/app");
+        // 同一会话的批次按发布顺序送达
+        config.setPreservePublishOrder(true);
     }
-    
+
     @Override
     public void registerStompEndpoints(StompEndpointRegistry registry) {
         // 注册 WebSocket 端点，允许跨域
@@ -29,4 +58,36 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
                 .setAllowedOriginPatterns("*")
                 .withSockJS();  // 启用 SockJS fallback
     }
+
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        registration.setSendTimeLimit(sendTimeLimitMillis)
+                .setSendBufferSizeLimit(sendBufferSizeLimit);
+    }
+
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        registration.interceptors(new ChannelInterceptor() {
+            @Override
+            public Message<?> preSend(Message<?> message, MessageChannel channel) {
+                StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+                if (accessor != null && StompCommand.CONNECT.equals(accessor.getCommand())) {
+                    accessor.setUser(authenticate(accessor.getFirstNativeHeader("Authorization")));
+                }
+                return message;
+            }
+        });
+    }
+
+    private Principal authenticate(String authHeader) {
+        if (authHeader == null || !authHeader.startsWith("Bearer ")) {
+            throw new MessageDeliveryException("缺少 Authorization 头");
+        }
+        String token = authHeader.substring(7);
+        if (!jwtUtil.validateToken(token)) {
+            throw new MessageDeliveryException("Token 已过期或无效");
+        }
+        String userId = jwtUtil.getUserIdFromToken(token);
+        return () -> userId;
+    }
 }
@@ -3,8 +3,11 @@ package com.example.admin.controller;
 import com.example.admin.dto.ApiResponse;
 import com.example.admin.dto.LoginRequest;
 import com.example.admin.dto.LoginResponse;
+import com.example.admin.service.PresenceService;
 import com.example.admin.service.SipService;
+import com.example.admin.util.JwtPrincipal;
 import com.example.admin.util.JwtUtil;
+import com.example.sipclient.presence.PresenceStatus;
 import com.example.sipclient.sip.SipUserAgent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -27,6 +30,9 @@ public class AuthController {
     
     @Autowired
     private JwtUtil jwtUtil;
+
+    @Autowired
+    private PresenceService presenceService;
     
     /**
      * 用户登录（SIP 注册）
@@ -59,6 +65,8 @@ public class AuthController {
                     request.getLocalPort()
             );
             
+            presenceService.updateStatus(request.getSipUri(), PresenceStatus.ONLINE, null);
+
             // 提取显示名（从 SIP URI 中提取用户名部分）
             String displayName = extractDisplayName(request.getSipUri());
             
@@ -95,6 +103,8 @@ public class AuthController {
             }
             
             String userId = jwtUtil.getUserIdFromToken(token);
+            // 先通知订阅者离线，再释放 SIP 连接
+            presenceService.updateStatus(userId, PresenceStatus.OFFLINE, null);
             sipService.unregister(userId);
             
             logger.info("用户注销成功: {}", userId);
@@ -118,18 +128,20 @@ public class AuthController {
                 return ApiResponse.error("无效的 Authorization 头");
             }
             
-            if (!jwtUtil.validateToken(token)) {
+            // 只解析一次 Token
+            JwtPrincipal principal = jwtUtil.authenticate(token).orElse(null);
+            if (principal == null) {
                 return ApiResponse.error("Token 已过期或无效");
             }
             
-            String userId = jwtUtil.getUserIdFromToken(token);
-            String displayName = jwtUtil.getDisplayNameFromToken(token);
+            String userId = principal.userId();
+            String displayName = principal.displayName();
             boolean registered = sipService.isRegistered(userId);
             
             UserProfile profile = new UserProfile();
             profile.setUserId(userId);
             profile.setDisplayName(displayName);
-            profile.setStatus(registered ? "ONLINE" : "OFFLINE");
+            profile.setStatus(registered ? presenceService.getStatus(userId).name() : PresenceStatus.OFFLINE.name());
             
             return ApiResponse.success(profile);
             
@@ -154,9 +166,19 @@ public class AuthController {
             }
             
             String userId = jwtUtil.getUserIdFromToken(token);
-            
-            logger.info("用户 {} 更新状态为: {}", userId, request.getStatus());
-            // TODO: 实现状态更新逻辑（需要扩展 SipUserAgent）
+            if (!sipService.isRegistered(userId)) {
+                return ApiResponse.error("用户未登录: " + userId);
+            }
+
+            PresenceStatus status;
+            try {
+                status = PresenceStatus.parse(request.getStatus());
+            } catch (IllegalArgumentException e) {
+                return ApiResponse.error("不支持的状态: " + request.getStatus());
+            }
+
+            logger.info("用户 {} 更新状态为: {}", userId, status);
+            presenceService.updateStatus(userId, status, request.getNote());
             
             return ApiResponse.success(null, "状态更新成功");
             
@@ -225,6 +247,7 @@ public class AuthController {
     // 内部类：更新状态请求
     public static class UpdateStatusRequest {
         private String status;
+        private String note;
         
         public String getStatus() {
             return status;
@@ -233,5 +256,13 @@ public class AuthController {
         public void setStatus(String status) {
             this.status = status;
         }
+
+        public String getNote() {
+            return note;
+        }
+
+        public void setNote(String note) {
+            this.note = note;
+        }
     }
 }
@@ -0,0 +1,54 @@
+package com.example.admin.controller;
+
+import com.example.admin.entity.CallRollup;
+import com.example.admin.entity.CallVolumePoint;
+import com.example.admin.entity.CallerRanking;
+import com.example.admin.service.CallAnalyticsService;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/analytics")
+public class CallAnalyticsController {
+
+    private static final int MAX_TOP_CALLERS = 100;
+
+    private final CallAnalyticsService analyticsService;
+
+    public CallAnalyticsController(CallAnalyticsService analyticsService) {
+        this.analyticsService = analyticsService;
+    }
+
+    // 通话量: GET /api/analytics/calls?granularity=HOUR&from=2024-01-01T00:00:00&to=...&type=AUDIO
+    // to 默认当前时间，from 默认 to 之前 24 小时；type 省略时返回所有类型
+    @GetMapping("/calls")
+    public ResponseEntity<?> volume(
+            @RequestParam(defaultValue = "HOUR") CallRollup.Granularity granularity,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) String type) {
+        LocalDateTime end = to == null ? LocalDateTime.now().plusMinutes(1) : to;
+        try {
+            List<CallVolumePoint> points = analyticsService.volume(granularity,
+                    from == null ? end.minusDays(1) : from, end, type);
+            return ResponseEntity.ok(points);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    // 主叫排行: GET /api/analytics/top-callers?from=...&to=...&limit=10，默认最近 7 天
+    @GetMapping("/top-callers")
+    public List<CallerRanking> topCallers(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(defaultValue = "10") int limit) {
+        LocalDateTime end = to == null ? LocalDateTime.now().plusMinutes(1) : to;
+        return analyticsService.topCallers(from == null ? end.minusDays(7) : from, end,
+                Math.min(Math.max(limit, 1), MAX_TOP_CALLERS));
+    }
+}
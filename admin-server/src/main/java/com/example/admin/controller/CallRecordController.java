@@ -1,18 +1,23 @@
 package com.example.admin.controller;
 
+import com.example.admin.dto.PageResponse;
 import com.example.admin.entity.CallRecord;
+import com.example.admin.entity.CallSummary;
 import com.example.admin.service.CallRecordService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.List;
+import java.time.LocalDateTime;
 import java.util.Map;
 
 @RestController
 @RequestMapping("/api/calls")
 public class CallRecordController {
 
+    static final int MAX_PAGE_SIZE = 200;
+
     @Autowired
     private CallRecordService callRecordService;
 
@@ -32,9 +37,22 @@ public class CallRecordController {
         }
     }
 
-    // 查询历史: GET /api/calls/history?username=xxx
+    // 查询历史: GET /api/calls/history?username=xxx&from=2024-01-01T00:00:00&to=...&page=0&size=50
+    // from/to 可省略（默认全部时间），按开始时间倒序分页
     @GetMapping("/history")
-    public ResponseEntity<List<CallRecord>> getHistory(@RequestParam String username) {
-        return ResponseEntity.ok(callRecordService.getUserHistory(username));
+    public ResponseEntity<PageResponse<CallSummary>> getHistory(
+            @RequestParam String username,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "50") int size) {
+        return ResponseEntity.ok(PageResponse.of(callRecordService.getUserHistory(username,
+                from == null ? CallRecordService.EARLIEST : from,
+                to == null ? LocalDateTime.now().plusMinutes(1) : to,
+                Math.max(page, 0), clampPageSize(size))));
+    }
+
+    static int clampPageSize(int size) {
+        return Math.min(Math.max(size, 1), MAX_PAGE_SIZE);
     }
 }
\ No newline at end of file
@@ -0,0 +1,87 @@
+package com.example.admin.controller;
+
+import com.example.admin.cluster.ClusterMembership;
+import com.example.admin.cluster.ClusterRoutingFilter;
+import com.example.admin.cluster.MembershipPropagator;
+import com.example.admin.dto.ApiResponse;
+import com.example.admin.service.SipService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 集群管理
+ * 查看成员和会话归属；更新成员列表需要 X-Cluster-Secret 与 cluster.secret 一致，
+ * 在任一节点更新后同步到列表中的其它节点
+ */
+@RestController
+@RequestMapping("/api/cluster")
+public class ClusterController {
+
+    private final ClusterMembership membership;
+    private final SipService sipService;
+    private final MembershipPropagator propagator;
+    private final String secret;
+
+    public ClusterController(ClusterMembership membership, SipService sipService, MembershipPropagator propagator,
+                             @Value("${cluster.secret:}") String secret) {
+        this.membership = membership;
+        this.sipService = sipService;
+        this.propagator = propagator;
+        this.secret = secret;
+    }
+
+    @GetMapping
+    public ApiResponse<Map<String, Object>> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("enabled", membership.isEnabled());
+        status.put("self", membership.self());
+        status.put("members", membership.members());
+        status.put("localAgents", sipService.getAgentCount());
+        return ApiResponse.success(status);
+    }
+
+    @GetMapping("/owner")
+    public ApiResponse<String> owner(@RequestParam String sipUri) {
+        return ApiResponse.success(membership.isEnabled() ? membership.ownerOf(sipUri) : membership.self());
+    }
+
+    @PutMapping("/members")
+    public ApiResponse<List<String>> updateMembers(
+            @RequestHeader(value = "X-Cluster-Secret", required = false) String providedSecret,
+            @RequestHeader(value = ClusterRoutingFilter.FORWARDED_HEADER, required = false) String propagatedFrom,
+            @RequestBody List<String> nodes) {
+        if (!membership.isEnabled()) {
+            return ApiResponse.error("集群模式未开启");
+        }
+        if (secret.isBlank() || providedSecret == null
+                || !MessageDigest.isEqual(secret.getBytes(StandardCharsets.UTF_8),
+                providedSecret.getBytes(StandardCharsets.UTF_8))) {
+            return ApiResponse.error("无权修改集群成员");
+        }
+        if (nodes == null || nodes.isEmpty()) {
+            return ApiResponse.error("成员列表不能为空");
+        }
+        membership.updateMembers(nodes);
+        if (propagatedFrom != null) {
+            // 其它节点同步过来的变更，不再扩散
+            return ApiResponse.success(membership.members(), "集群成员已更新");
+        }
+        List<String> failed = propagator.propagate(membership.members(), providedSecret);
+        if (!failed.isEmpty()) {
+            return ApiResponse.success(membership.members(), "集群成员已更新，以下节点同步失败，需要重试: " + failed);
+        }
+        return ApiResponse.success(membership.members(), "集群成员已更新");
+    }
+}
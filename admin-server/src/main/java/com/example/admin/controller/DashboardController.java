@@ -1,23 +1,58 @@
 package com.example.admin.controller;
 
+import com.example.admin.dto.PageResponse;
+import com.example.admin.entity.CallSummary;
 import com.example.admin.entity.DashboardSnapshot;
+import com.example.admin.entity.UserSummary;
+import com.example.admin.service.CallRecordService;
 import com.example.admin.service.DashboardSnapshotService;
+import com.example.admin.service.UserService;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.time.LocalDateTime;
+
 @RestController
 @RequestMapping("/api/dashboard")
 public class DashboardController {
 
     private final DashboardSnapshotService snapshotService;
+    private final UserService userService;
+    private final CallRecordService callRecordService;
 
-    public DashboardController(DashboardSnapshotService snapshotService) {
+    public DashboardController(DashboardSnapshotService snapshotService,
+                               UserService userService,
+                               CallRecordService callRecordService) {
         this.snapshotService = snapshotService;
+        this.userService = userService;
+        this.callRecordService = callRecordService;
     }
 
     @GetMapping
     public DashboardSnapshot snapshot() {
         return snapshotService.capture();
     }
+
+    // 用户列表分页: GET /api/dashboard/users?page=0&size=50
+    @GetMapping("/users")
+    public PageResponse<UserSummary> users(@RequestParam(defaultValue = "0") int page,
+                                           @RequestParam(defaultValue = "50") int size) {
+        return PageResponse.of(userService.listUserSummaries(Math.max(page, 0), CallRecordController.clampPageSize(size)));
+    }
+
+    // 通话分页: GET /api/dashboard/calls?from=...&to=...&page=0&size=50，from/to 可省略
+    @GetMapping("/calls")
+    public PageResponse<CallSummary> calls(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "50") int size) {
+        return PageResponse.of(callRecordService.listCalls(
+                from == null ? CallRecordService.EARLIEST : from,
+                to == null ? LocalDateTime.now().plusMinutes(1) : to,
+                Math.max(page, 0), CallRecordController.clampPageSize(size)));
+    }
 }
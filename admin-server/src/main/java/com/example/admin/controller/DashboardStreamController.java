@@ -2,19 +2,23 @@ package com.example.admin.controller;
 
 import com.example.admin.entity.DashboardSnapshot;
 import com.example.admin.service.DashboardSnapshotService;
+import com.example.admin.service.SseBroadcaster;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
-import java.io.IOException;
+import jakarta.annotation.PreDestroy;
 import java.time.Duration;
-import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
 
 @RestController
 @RequestMapping("/api/stream")
@@ -22,49 +26,74 @@ public class DashboardStreamController {
 
     private static final Logger log = LoggerFactory.getLogger(DashboardStreamController.class);
     private static final long SSE_TIMEOUT_MS = Duration.ofMinutes(15).toMillis();
+    private static final long PUSH_INTERVAL_MS = 5000;
+
+    /** 最近一次序列化好的快照及其生成时间 */
+    private record CachedFrame(SseBroadcaster.Frame frame, long capturedAtNanos) {
+    }
 
     private final DashboardSnapshotService snapshotService;
-    private final List<SseEmitter> emitters = new CopyOnWriteArrayList<>();
+    private final ObjectMapper objectMapper;
+    private final SseBroadcaster broadcaster;
+    private volatile CachedFrame latest;
 
-    public DashboardStreamController(DashboardSnapshotService snapshotService) {
+    public DashboardStreamController(DashboardSnapshotService snapshotService,
+                                     ObjectMapper objectMapper,
+                                     @Value("${dashboard.stream.max-subscribers:500}") int maxSubscribers,
+                                     @Value("${dashboard.stream.writer-threads:4}") int writerThreads,
+                                     @Value("${dashboard.stream.queue-capacity:2}") int queueCapacity,
+                                     @Value("${dashboard.stream.max-consecutive-drops:6}") int maxConsecutiveDrops) {
         this.snapshotService = snapshotService;
+        this.objectMapper = objectMapper;
+        this.broadcaster = new SseBroadcaster(maxSubscribers, writerThreads, queueCapacity, maxConsecutiveDrops);
     }
 
     @GetMapping(produces = MediaType.TEXT_EVENT_STREAM_VALUE)
     public SseEmitter stream() {
         SseEmitter emitter = new SseEmitter(SSE_TIMEOUT_MS);
-        emitters.add(emitter);
-
-        emitter.onCompletion(() -> emitters.remove(emitter));
-        emitter.onTimeout(() -> emitters.remove(emitter));
-        emitter.onError(error -> {
-            emitters.remove(emitter);
-            log.debug("SSE connection closed because of error: {}", error.getMessage());
-        });
+        if (!broadcaster.subscribe(emitter)) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "订阅数已达上限");
+        }
 
-        sendSnapshot(emitter);
+        // 新连接直接复用本周期已序列化的快照
+        CachedFrame cached = latest;
+        SseBroadcaster.Frame frame = cached != null
+                && System.nanoTime() - cached.capturedAtNanos() < Duration.ofMillis(PUSH_INTERVAL_MS).toNanos()
+                ? cached.frame() : captureFrame();
+        if (frame != null) {
+            broadcaster.send(emitter, frame);
+        }
         return emitter;
     }
 
-    @Scheduled(fixedDelay = 5000)
+    @Scheduled(fixedDelay = PUSH_INTERVAL_MS)
     public void scheduledPush() {
-        DashboardSnapshot snapshot = snapshotService.capture();
-        emitters.forEach(emitter -> sendSnapshot(emitter, snapshot));
+        if (broadcaster.getSubscriberCount() == 0) {
+            return;
+        }
+        SseBroadcaster.Frame frame = captureFrame();
+        if (frame != null) {
+            broadcaster.broadcast(frame);
+        }
     }
 
-    private void sendSnapshot(SseEmitter emitter) {
-        sendSnapshot(emitter, snapshotService.capture());
+    @PreDestroy
+    public void shutdown() {
+        broadcaster.close();
     }
 
-    private void sendSnapshot(SseEmitter emitter, DashboardSnapshot snapshot) {
+    /**
+     * 每个周期只采集并序列化一次，所有订阅者共享同一份字节
+     */
+    private SseBroadcaster.Frame captureFrame() {
+        DashboardSnapshot snapshot = snapshotService.capture();
         try {
-            emitter.send(SseEmitter.event()
-                    .name("dashboard")
-                    .data(snapshot));
-        } catch (IOException e) {
-            emitters.remove(emitter);
-            emitter.completeWithError(e);
-            log.debug("Removed SSE emitter after failure: {}", e.getMessage());
+            SseBroadcaster.Frame frame = SseBroadcaster.Frame.of("dashboard", objectMapper.writeValueAsBytes(snapshot));
+            latest = new CachedFrame(frame, System.nanoTime());
+            return frame;
+        } catch (JsonProcessingException e) {
+            log.warn("Failed to serialize dashboard snapshot: {}", e.getMessage());
+            return null;
         }
     }
 }
@@ -1,13 +1,19 @@
 package com.example.admin.controller;
 
+import com.example.admin.dto.ApiResponse;
 import com.example.admin.entity.Message;
 import com.example.admin.service.MessageService;
+import com.example.admin.service.OfflineMessageQueue;
+import com.example.admin.util.JwtPrincipal;
+import com.example.admin.util.JwtUtil;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/api/messages")
@@ -16,6 +22,12 @@ public class MessageController {
     @Autowired
     private MessageService messageService;
 
+    @Autowired
+    private OfflineMessageQueue offlineMessageQueue;
+
+    @Autowired
+    private JwtUtil jwtUtil;
+
     // 发消息接口: POST http://localhost:8080/api/messages/send
     @PostMapping("/send")
     public ResponseEntity<?> sendMessage(@RequestBody Map<String, String> params) {
@@ -31,6 +43,30 @@ public class MessageController {
         }
     }
 
+    // 经 SIP 发消息: POST /api/messages/sip {"to": "sip:bob@host", "content": "..."}，需要 Authorization: Bearer <token>
+    // 对端不在线时存入离线队列，对端注册后按顺序投递；data 为 SENT / QUEUED / REJECTED
+    @PostMapping("/sip")
+    public CompletableFuture<ApiResponse<OfflineMessageQueue.Delivery>> sendSipMessage(
+            @RequestHeader("Authorization") String authHeader,
+            @RequestBody Map<String, String> params) {
+        JwtPrincipal principal = authenticate(authHeader);
+        if (principal == null) {
+            return CompletableFuture.completedFuture(ApiResponse.error("Token 已过期或无效"));
+        }
+        String to = params.get("to");
+        String content = params.get("content");
+        if (to == null || to.isEmpty() || content == null) {
+            return CompletableFuture.completedFuture(ApiResponse.error("to 和 content 不能为空"));
+        }
+        try {
+            return offlineMessageQueue.send(principal.userId(), to, content)
+                    .thenApply(ApiResponse::success)
+                    .exceptionally(e -> ApiResponse.error("发送失败: " + e.getMessage()));
+        } catch (Exception e) {
+            return CompletableFuture.completedFuture(ApiResponse.error("发送失败: " + e.getMessage()));
+        }
+    }
+
     // 查历史接口: GET http://localhost:8080/api/messages/history?user1=A&user2=B
     @GetMapping("/history")
     public ResponseEntity<List<Message>> getHistory(
@@ -38,4 +74,38 @@ public class MessageController {
             @RequestParam String user2) {
         return ResponseEntity.ok(messageService.getChatHistory(user1, user2));
     }
+
+    // 未读数: GET /api/messages/unread?user=A，返回 {"total": n, "byPeer": {"B": 3, ...}}，用于角标
+    @GetMapping("/unread")
+    public ResponseEntity<Map<String, Object>> getUnread(@RequestParam String user) {
+        Map<String, Long> byPeer = messageService.getUnreadCounts(user);
+        long total = byPeer.values().stream().mapToLong(Long::longValue).sum();
+        return ResponseEntity.ok(Map.of("total", total, "byPeer", byPeer));
+    }
+
+    // 标记已读: POST /api/messages/read {"peer": "B", "upToId": 123}，需要 Authorization: Bearer <token>
+    // 把 B 发给当前用户的、ID 不超过 upToId 的消息全部标记为已读，并向 B 回送已读回执
+    @PostMapping("/read")
+    public ResponseEntity<?> markRead(@RequestHeader("Authorization") String authHeader,
+                                      @RequestBody Map<String, Object> params) {
+        JwtPrincipal principal = authenticate(authHeader);
+        if (principal == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body("Token 已过期或无效");
+        }
+        try {
+            int updated = messageService.markRead(
+                    principal.userId(),
+                    (String) params.get("peer"),
+                    Long.valueOf(params.get("upToId").toString())
+            );
+            return ResponseEntity.ok(Map.of("updated", updated));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body("标记失败: " + e.getMessage());
+        }
+    }
+
+    private JwtPrincipal authenticate(String authHeader) {
+        String token = authHeader != null && authHeader.startsWith("Bearer ") ? authHeader.substring(7) : null;
+        return token == null ? null : jwtUtil.authenticate(token).orElse(null);
+    }
 }
\ No newline at end of file
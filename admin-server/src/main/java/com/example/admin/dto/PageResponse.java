@@ -0,0 +1,16 @@
+package com.example.admin.dto;
+
+import org.springframework.data.domain.Slice;
+
+import java.util.List;
+
+/**
+ * 分页结果
+ * 基于 Slice，只多取一行判断是否还有下一页，不执行 COUNT 查询
+ */
+public record PageResponse<T>(List<T> items, int page, int size, boolean hasNext) {
+
+    public static <T> PageResponse<T> of(Slice<T> slice) {
+        return new PageResponse<>(slice.getContent(), slice.getNumber(), slice.getSize(), slice.hasNext());
+    }
+}
@@ -4,7 +4,13 @@ import jakarta.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "call_records") // 数据库里叫 call_records 表
+@Table(name = "call_records", indexes = { // 数据库里叫 call_records 表
+        // 按用户查历史：caller = ? 或 callee = ?，再按时间倒序
+        @Index(name = "idx_call_records_caller_start", columnList = "caller, start_time"),
+        @Index(name = "idx_call_records_callee_start", columnList = "callee, start_time"),
+        // 仪表盘最近通话
+        @Index(name = "idx_call_records_start", columnList = "start_time")
+})
 public class CallRecord {
 
     @Id
@@ -17,13 +23,22 @@ public class CallRecord {
     @Column(nullable = false)
     private String callee; // 打给谁
 
-    @Column(nullable = false)
+    @Column(name = "start_time", nullable = false)
     private LocalDateTime startTime; // 开始时间
 
     private Long duration; // 通话时长（秒）
 
     private String type; // AUDIO 或 VIDEO
 
+    @Column(name = "end_time")
+    private LocalDateTime endTime; // 结束时间，客户端上报的记录为空
+
+    @Column(length = 16)
+    private String status; // 结束原因，如 LOCAL_HANGUP、REJECTED、FAILED
+
+    @Column(name = "call_id")
+    private String callId; // SIP Call-ID，话单去重用
+
     // --- Getter 和 Setter ---
     public Long getId() { return id; }
     public void setId(Long id) { this.id = id; }
@@ -37,4 +52,10 @@ public class CallRecord {
     public void setDuration(Long duration) { this.duration = duration; }
     public String getType() { return type; }
     public void setType(String type) { this.type = type; }
+    public LocalDateTime getEndTime() { return endTime; }
+    public void setEndTime(LocalDateTime endTime) { this.endTime = endTime; }
+    public String getStatus() { return status; }
+    public void setStatus(String status) { this.status = status; }
+    public String getCallId() { return callId; }
+    public void setCallId(String callId) { this.callId = callId; }
 }
\ No newline at end of file
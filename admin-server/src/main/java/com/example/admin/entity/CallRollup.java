@@ -0,0 +1,56 @@
+package com.example.admin.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * 通话统计汇总：某个时间桶内、某个维度取值下的通话数和总时长
+ * 例如 (HOUR, 2024-05-01T10:00, type, AUDIO) 或 (DAY, 2024-05-01T00:00, caller, alice)
+ */
+@Entity
+@Table(name = "call_rollups", uniqueConstraints = @UniqueConstraint(
+        name = "uk_call_rollups_bucket",
+        columnNames = {"granularity", "bucket_start", "dimension", "dimension_value"}))
+public class CallRollup {
+
+    public enum Granularity { MINUTE, HOUR, DAY }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 8)
+    private Granularity granularity;
+
+    @Column(name = "bucket_start", nullable = false)
+    private LocalDateTime bucketStart;
+
+    @Column(nullable = false, length = 16)
+    private String dimension; // type 或 caller
+
+    @Column(name = "dimension_value", nullable = false)
+    private String dimensionValue;
+
+    @Column(nullable = false)
+    private long callCount;
+
+    @Column(nullable = false)
+    private long totalDuration; // 秒
+
+    // --- Getter 和 Setter ---
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+    public Granularity getGranularity() { return granularity; }
+    public void setGranularity(Granularity granularity) { this.granularity = granularity; }
+    public LocalDateTime getBucketStart() { return bucketStart; }
+    public void setBucketStart(LocalDateTime bucketStart) { this.bucketStart = bucketStart; }
+    public String getDimension() { return dimension; }
+    public void setDimension(String dimension) { this.dimension = dimension; }
+    public String getDimensionValue() { return dimensionValue; }
+    public void setDimensionValue(String dimensionValue) { this.dimensionValue = dimensionValue; }
+    public long getCallCount() { return callCount; }
+    public void setCallCount(long callCount) { this.callCount = callCount; }
+    public long getTotalDuration() { return totalDuration; }
+    public void setTotalDuration(long totalDuration) { this.totalDuration = totalDuration; }
+}
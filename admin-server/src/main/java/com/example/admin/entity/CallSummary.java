@@ -0,0 +1,6 @@
+package com.example.admin.entity;
+
+import java.time.LocalDateTime;
+
+public record CallSummary(Long id, String caller, String callee, String type, Long duration, String status,
+                          LocalDateTime startedAt) {}
@@ -0,0 +1,6 @@
+package com.example.admin.entity;
+
+import java.time.LocalDateTime;
+
+public record CallVolumePoint(LocalDateTime bucketStart, String type, long callCount, long totalDuration,
+                              double averageDuration) {}
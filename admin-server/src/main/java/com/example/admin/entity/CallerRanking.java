@@ -0,0 +1,3 @@
+package com.example.admin.entity;
+
+public record CallerRanking(String caller, long callCount, long totalDuration) {}
@@ -5,12 +5,12 @@ import java.util.List;
 
 public class DashboardSnapshot {
     private StatsSummary stats;
-    private List<User> users; // 🔴 改动：这里接受 List<User>
-    private List<CallRecord> calls;
+    private List<UserSummary> users;
+    private List<CallSummary> calls;
     private Instant timestamp;
 
     // 构造方法
-    public DashboardSnapshot(StatsSummary stats, List<User> users, List<CallRecord> calls, Instant timestamp) {
+    public DashboardSnapshot(StatsSummary stats, List<UserSummary> users, List<CallSummary> calls, Instant timestamp) {
         this.stats = stats;
         this.users = users;
         this.calls = calls;
@@ -21,11 +21,11 @@ public class DashboardSnapshot {
     public StatsSummary getStats() { return stats; }
     public void setStats(StatsSummary stats) { this.stats = stats; }
 
-    public List<User> getUsers() { return users; } // 🔴 改动：返回 User
-    public void setUsers(List<User> users) { this.users = users; }
+    public List<UserSummary> getUsers() { return users; }
+    public void setUsers(List<UserSummary> users) { this.users = users; }
 
-    public List<CallRecord> getCalls() { return calls; }
-    public void setCalls(List<CallRecord> calls) { this.calls = calls; }
+    public List<CallSummary> getCalls() { return calls; }
+    public void setCalls(List<CallSummary> calls) { this.calls = calls; }
 
     public Instant getTimestamp() { return timestamp; }
     public void setTimestamp(Instant timestamp) { this.timestamp = timestamp; }
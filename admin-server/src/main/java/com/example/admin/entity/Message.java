@@ -4,7 +4,10 @@ import jakarta.persistence.*;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "messages") // 告诉数据库建一张叫 messages 的表
+@Table(name = "messages", indexes = { // 告诉数据库建一张叫 messages 的表
+        // 未读计数与已读标记：receiver = ? and is_read = false，按 sender 分组或过滤
+        @Index(name = "idx_messages_receiver_read_sender", columnList = "receiver, is_read, sender")
+})
 public class Message {
 
     @Id
@@ -24,6 +27,10 @@ public class Message {
 
     private boolean isRead; // 是否已读
 
+    private String senderUri; // 经 SIP 收到时发送者的完整 SIP URI，回执按它路由
+
+    private String sipMessageId; // 经 SIP 收到时 MESSAGE 的 Call-ID，IMDN 回执引用它
+
     // --- Getter 和 Setter ---
     public Long getId() { return id; }
     public void setId(Long id) { this.id = id; }
@@ -37,4 +44,8 @@ public class Message {
     public void setTimestamp(LocalDateTime timestamp) { this.timestamp = timestamp; }
     public boolean isRead() { return isRead; }
     public void setRead(boolean read) { isRead = read; }
+    public String getSenderUri() { return senderUri; }
+    public void setSenderUri(String senderUri) { this.senderUri = senderUri; }
+    public String getSipMessageId() { return sipMessageId; }
+    public void setSipMessageId(String sipMessageId) { this.sipMessageId = sipMessageId; }
 }
\ No newline at end of file
@@ -0,0 +1,50 @@
+package com.example.admin.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * 待投递的离线消息：接收者不在线时暂存，接收者注册后按 ID 顺序投递
+ */
+@Entity
+@Table(name = "offline_messages", indexes = {
+        // 按接收者顺序取出
+        @Index(name = "idx_offline_messages_recipient_id", columnList = "recipient, id"),
+        // 清理过期消息
+        @Index(name = "idx_offline_messages_expires", columnList = "expires_at")
+})
+public class OfflineMessage {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private String sender; // 发送者 SIP URI
+
+    @Column(nullable = false)
+    private String recipient; // 接收者 SIP URI
+
+    @Column(nullable = false, length = 1000)
+    private String content;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt; // 过期后不再投递
+
+    // --- Getter 和 Setter ---
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+    public String getSender() { return sender; }
+    public void setSender(String sender) { this.sender = sender; }
+    public String getRecipient() { return recipient; }
+    public void setRecipient(String recipient) { this.recipient = recipient; }
+    public String getContent() { return content; }
+    public void setContent(String content) { this.content = content; }
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+    public LocalDateTime getExpiresAt() { return expiresAt; }
+    public void setExpiresAt(LocalDateTime expiresAt) { this.expiresAt = expiresAt; }
+}
@@ -0,0 +1,3 @@
+package com.example.admin.entity;
+
+public record UnreadCount(String peer, long count) {}
@@ -0,0 +1,7 @@
+package com.example.admin.event;
+
+/**
+ * 托管的 SipUserAgent 注册成功事件，收到后投递该用户的离线消息
+ */
+public record AgentRegisteredEvent(String sipUri) {
+}
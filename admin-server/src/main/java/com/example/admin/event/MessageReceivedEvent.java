@@ -0,0 +1,10 @@
+package com.example.admin.event;
+
+/**
+ * 托管的 SipUserAgent 收到一条消息，收到后落库并回送送达回执
+ * @param localUri 接收者（托管用户）SIP URI
+ * @param fromUri 发送者 SIP URI
+ * @param messageId MESSAGE 的 Call-ID；离线队列转交的消息为 null，不回送回执
+ */
+public record MessageReceivedEvent(String localUri, String fromUri, String body, String messageId) {
+}
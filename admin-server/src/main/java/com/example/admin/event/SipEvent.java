@@ -0,0 +1,27 @@
+package com.example.admin.event;
+
+/**
+ * 推送给 Web 客户端的 SIP 事件
+ * @param type 事件类型
+ * @param peer 对端 SIP URI，注册事件为 null
+ * @param detail 消息正文、呼叫状态、注册状态、回执（DELIVERED:消息ID / DISPLAYED:消息ID）等
+ * @param timestamp 事件产生时间（毫秒）
+ */
+public record SipEvent(Type type, String peer, String detail, long timestamp) {
+
+    public enum Type {
+        MESSAGE,
+        INCOMING_CALL,
+        CALL_STATE,
+        REGISTRATION,
+        PRESENCE,
+        /** 对端的送达/已读回执 */
+        RECEIPT,
+        /** 队列溢出，部分事件已丢弃，detail 为丢弃数量；客户端应通过 REST 接口重新同步 */
+        OVERFLOW
+    }
+
+    public static SipEvent of(Type type, String peer, String detail) {
+        return new SipEvent(type, peer, detail, System.currentTimeMillis());
+    }
+}
@@ -0,0 +1,198 @@
+package com.example.admin.event;
+
+import com.example.sipclient.call.CallManager;
+import com.example.sipclient.chat.AsyncDisplaySink;
+import com.example.sipclient.chat.ChatSessionStore;
+import com.example.sipclient.chat.Imdn;
+import com.example.sipclient.chat.MessageHandler;
+import com.example.sipclient.sip.SipUserAgent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.user.SimpUserRegistry;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * SIP 事件桥
+ * 把托管 SipUserAgent 的来信、来电、呼叫状态、注册状态等事件推送到用户的 STOMP 目的地 /user/queue/events。
+ * 每个用户一个有界队列，批量窗口内的事件合成一帧发送；SIP 线程只做入队。
+ * 队列满时丢弃最旧的事件，并在下一批开头补一条 OVERFLOW 事件，提示客户端通过 REST 重新同步。
+ * 没有 WebSocket 会话的用户不缓存事件。
+ * 所有托管用户的 MessageHandler 共用一个异步日志输出端，来信日志同样不在 SIP 线程中写出。
+ */
+@Component
+public class SipEventBridge {
+
+    private static final Logger logger = LoggerFactory.getLogger(SipEventBridge.class);
+
+    static final String DESTINATION = "/queue/events";
+
+    private final SimpMessagingTemplate messagingTemplate;
+    private final SimpUserRegistry userRegistry;
+    private final ApplicationEventPublisher eventPublisher;
+    private final long batchWindowMillis;
+    private final int maxBatchSize;
+    private final int queueCapacity;
+    private final Map<String, UserQueue> queues = new ConcurrentHashMap<>();
+    private final AtomicLong droppedEvents = new AtomicLong();
+    private final AsyncDisplaySink messageLog = AsyncDisplaySink.forLines(logger::info,
+            MessageHandler.DEFAULT_QUEUE_CAPACITY, AsyncDisplaySink.OverflowPolicy.COALESCE);
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "sip-event-bridge");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public SipEventBridge(SimpMessagingTemplate messagingTemplate,
+                          SimpUserRegistry userRegistry,
+                          ApplicationEventPublisher eventPublisher,
+                          @Value("${events.batch-window:50ms}") Duration batchWindow,
+                          @Value("${events.max-batch-size:100}") int maxBatchSize,
+                          @Value("${events.queue-capacity:1000}") int queueCapacity) {
+        if (maxBatchSize <= 0 || queueCapacity <= 0) {
+            throw new IllegalArgumentException("events.max-batch-size and events.queue-capacity must be positive");
+        }
+        this.messagingTemplate = messagingTemplate;
+        this.userRegistry = userRegistry;
+        this.eventPublisher = eventPublisher;
+        this.batchWindowMillis = batchWindow.toMillis();
+        this.maxBatchSize = maxBatchSize;
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * 为新建的 SipUserAgent 挂上事件回调，需在 register 之前调用以便推送首次注册结果
+     * @param sipUri 用户 SIP URI，同时是 STOMP 会话的用户名
+     */
+    public void attach(String sipUri, SipUserAgent userAgent) {
+        userAgent.setMessageHandler(new MessageHandler(messageLog, new ChatSessionStore()) {
+            @Override
+            public void handleIncomingMessage(String fromUri, String body, String messageId) {
+                super.handleIncomingMessage(fromUri, body, messageId);
+                publish(sipUri, SipEvent.of(SipEvent.Type.MESSAGE, fromUri, body));
+                // 落库和送达回执由 MessageService 在自己的线程中完成
+                eventPublisher.publishEvent(new MessageReceivedEvent(sipUri, fromUri, body, messageId));
+            }
+
+            @Override
+            public void handleDispositionNotification(String fromUri, Imdn.Notification notification) {
+                publish(sipUri, SipEvent.of(SipEvent.Type.RECEIPT, fromUri,
+                        notification.disposition().name() + ":" + notification.messageId()));
+            }
+        });
+        CallManager callManager = new CallManager();
+        callManager.setIncomingCallListener((fromUri, sessionId) ->
+                publish(sipUri, SipEvent.of(SipEvent.Type.INCOMING_CALL, fromUri, sessionId)));
+        callManager.setCallStateListener(session ->
+                publish(sipUri, SipEvent.of(SipEvent.Type.CALL_STATE, session.getRemoteUri(), session.getState().name())));
+        userAgent.setCallManager(callManager);
+        userAgent.setRegistrationListener((registered, statusCode) ->
+                publish(sipUri, SipEvent.of(SipEvent.Type.REGISTRATION, null, registered ? "REGISTERED" : "UNREGISTERED")));
+        userAgent.setPresenceListener(update ->
+                publish(sipUri, SipEvent.of(SipEvent.Type.PRESENCE, update.entity(), update.status().name())));
+    }
+
+    /**
+     * 事件入队，批量窗口结束后发送
+     */
+    public void publish(String userId, SipEvent event) {
+        if (userRegistry.getUser(userId) == null) {
+            return;
+        }
+        while (true) {
+            UserQueue queue = queues.computeIfAbsent(userId, UserQueue::new);
+            synchronized (queue) {
+                if (queue.retired) {
+                    continue;
+                }
+                if (queue.events.size() >= queueCapacity) {
+                    queue.events.pollFirst();
+                    queue.dropped++;
+                    droppedEvents.incrementAndGet();
+                }
+                queue.events.addLast(event);
+                if (!queue.flushScheduled) {
+                    queue.flushScheduled = true;
+                    schedule(queue, batchWindowMillis);
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * 因队列溢出累计丢弃的事件数
+     */
+    public long getDroppedEvents() {
+        return droppedEvents.get();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flusher.shutdownNow();
+        messageLog.close();
+    }
+
+    private void schedule(UserQueue queue, long delayMillis) {
+        try {
+            flusher.schedule(() -> flush(queue), delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // 应用关闭中，丢弃剩余事件
+            queue.flushScheduled = false;
+        }
+    }
+
+    private void flush(UserQueue queue) {
+        List<SipEvent> batch;
+        synchronized (queue) {
+            batch = new ArrayList<>(Math.min(queue.events.size() + 1, maxBatchSize + 1));
+            if (queue.dropped > 0) {
+                batch.add(SipEvent.of(SipEvent.Type.OVERFLOW, null, Long.toString(queue.dropped)));
+                queue.dropped = 0;
+            }
+            while (batch.size() < maxBatchSize && !queue.events.isEmpty()) {
+                batch.add(queue.events.pollFirst());
+            }
+            if (queue.events.isEmpty()) {
+                // 空队列退役，避免为不再活跃的用户常驻内存
+                queue.flushScheduled = false;
+                queue.retired = true;
+                queues.remove(queue.userId, queue);
+            } else {
+                schedule(queue, 0);
+            }
+        }
+        try {
+            messagingTemplate.convertAndSendToUser(queue.userId, DESTINATION, batch);
+        } catch (Exception e) {
+            logger.warn("推送 SIP 事件失败: {}: {}", queue.userId, e.getMessage());
+        }
+    }
+
+    private static final class UserQueue {
+        private final String userId;
+        private final ArrayDeque<SipEvent> events = new ArrayDeque<>();
+        private int dropped;
+        private boolean flushScheduled;
+        private boolean retired;
+
+        private UserQueue(String userId) {
+            this.userId = userId;
+        }
+    }
+}
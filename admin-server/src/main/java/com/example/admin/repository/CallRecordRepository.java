@@ -1,13 +1,28 @@
 package com.example.admin.repository;
 
 import com.example.admin.entity.CallRecord;
+import com.example.admin.entity.CallSummary;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
-import java.util.List;
+import java.time.LocalDateTime;
 
 @Repository
 public interface CallRecordRepository extends JpaRepository<CallRecord, Long> {
-    // 查找跟某人有关的所有通话（无论是他打的，还是接的）
-    List<CallRecord> findByCallerOrCalleeOrderByStartTimeDesc(String caller, String callee);
+    // 某人在时间窗口内的通话（无论是他打的，还是接的），分页，走 (caller, start_time) / (callee, start_time) 索引
+    @Query("select new com.example.admin.entity.CallSummary(c.id, c.caller, c.callee, c.type, c.duration, c.status, c.startTime) "
+            + "from CallRecord c where (c.caller = :user or c.callee = :user) "
+            + "and c.startTime >= :from and c.startTime < :to order by c.startTime desc")
+    Slice<CallSummary> findHistory(@Param("user") String user, @Param("from") LocalDateTime from,
+                                   @Param("to") LocalDateTime to, Pageable pageable);
+
+    // 时间窗口内的所有通话，分页
+    @Query("select new com.example.admin.entity.CallSummary(c.id, c.caller, c.callee, c.type, c.duration, c.status, c.startTime) "
+            + "from CallRecord c where c.startTime >= :from and c.startTime < :to order by c.startTime desc")
+    Slice<CallSummary> findInWindow(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to,
+                                    Pageable pageable);
 }
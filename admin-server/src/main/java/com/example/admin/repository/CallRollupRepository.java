@@ -0,0 +1,53 @@
+package com.example.admin.repository;
+
+import com.example.admin.entity.CallRollup;
+import com.example.admin.entity.CallerRanking;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface CallRollupRepository extends JpaRepository<CallRollup, Long> {
+
+    Optional<CallRollup> findByGranularityAndBucketStartAndDimensionAndDimensionValue(
+            CallRollup.Granularity granularity, LocalDateTime bucketStart, String dimension, String dimensionValue);
+
+    // 原子累加一个桶，桶不存在时返回 0 由调用方插入；多个节点同时落库时增量不会互相覆盖
+    @Transactional
+    @Modifying
+    @Query("update CallRollup r set r.callCount = r.callCount + :count, r.totalDuration = r.totalDuration + :duration "
+            + "where r.granularity = :granularity and r.bucketStart = :bucketStart and r.dimension = :dimension "
+            + "and r.dimensionValue = :value")
+    int increment(@Param("granularity") CallRollup.Granularity granularity,
+                  @Param("bucketStart") LocalDateTime bucketStart, @Param("dimension") String dimension,
+                  @Param("value") String value, @Param("count") long count, @Param("duration") long duration);
+
+    // 时间窗口 [from, to) 内某个维度的所有桶，走唯一索引的前缀
+    @Query("select r from CallRollup r where r.granularity = :granularity and r.bucketStart >= :from "
+            + "and r.bucketStart < :to and r.dimension = :dimension order by r.bucketStart")
+    List<CallRollup> findRange(@Param("granularity") CallRollup.Granularity granularity,
+                               @Param("from") LocalDateTime from, @Param("to") LocalDateTime to,
+                               @Param("dimension") String dimension);
+
+    // 按天汇总的主叫排行
+    @Query("select new com.example.admin.entity.CallerRanking(r.dimensionValue, sum(r.callCount), sum(r.totalDuration)) "
+            + "from CallRollup r where r.granularity = com.example.admin.entity.CallRollup.Granularity.DAY "
+            + "and r.dimension = 'caller' and r.bucketStart >= :from and r.bucketStart < :to "
+            + "group by r.dimensionValue order by sum(r.callCount) desc")
+    List<CallerRanking> findTopCallers(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to,
+                                       Pageable pageable);
+
+    @Transactional
+    @Modifying
+    @Query("delete from CallRollup r where r.granularity = :granularity and r.bucketStart < :before")
+    int deleteOlderThan(@Param("granularity") CallRollup.Granularity granularity,
+                        @Param("before") LocalDateTime before);
+}
@@ -1,11 +1,16 @@
 package com.example.admin.repository;
 
 import com.example.admin.entity.Message;
+import com.example.admin.entity.UnreadCount;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface MessageRepository extends JpaRepository<Message, Long> {
@@ -16,4 +21,20 @@ public interface MessageRepository extends JpaRepository<Message, Long> {
 
     // 查找发给某个人的所有未读消息
     List<Message> findByReceiverAndIsReadFalse(String receiver);
-}
\ No newline at end of file
+
+    // 按发送者统计某人的未读数，只返回计数不加载消息
+    @Query("select new com.example.admin.entity.UnreadCount(m.sender, count(m)) from Message m "
+            + "where m.receiver = :receiver and m.isRead = false group by m.sender")
+    List<UnreadCount> countUnreadBySender(@Param("receiver") String receiver);
+
+    // 已读水位：把 peer 发给 reader 的、ID 不超过 upToId 的未读消息一次性标记已读
+    @Transactional
+    @Modifying
+    @Query("update Message m set m.isRead = true where m.receiver = :reader and m.sender = :peer "
+            + "and m.isRead = false and m.id <= :upToId")
+    int markReadUpTo(@Param("reader") String reader, @Param("peer") String peer, @Param("upToId") Long upToId);
+
+    // 已读回执引用的消息：peer 发给 reader 的、ID 不超过 upToId 的最新一条经 SIP 收到的消息
+    Optional<Message> findTopByReceiverAndSenderAndSipMessageIdNotNullAndIdLessThanEqualOrderByIdDesc(
+            String receiver, String sender, Long id);
+}
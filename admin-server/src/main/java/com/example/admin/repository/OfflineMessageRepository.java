@@ -0,0 +1,34 @@
+package com.example.admin.repository;
+
+import com.example.admin.entity.OfflineMessage;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface OfflineMessageRepository extends JpaRepository<OfflineMessage, Long> {
+
+    // 某个接收者未过期的离线消息，按入队顺序分批取出
+    List<OfflineMessage> findByRecipientAndExpiresAtAfterOrderByIdAsc(String recipient, LocalDateTime now,
+                                                                       Pageable pageable);
+
+    long countByRecipient(String recipient);
+
+    boolean existsByRecipient(String recipient);
+
+    // 有待投递消息的接收者，用于定时重试
+    @Query("select distinct o.recipient from OfflineMessage o order by o.recipient")
+    List<String> findRecipients(Pageable pageable);
+
+    @Transactional
+    @Modifying
+    @Query("delete from OfflineMessage o where o.expiresAt <= :now")
+    int deleteExpired(@Param("now") LocalDateTime now);
+}
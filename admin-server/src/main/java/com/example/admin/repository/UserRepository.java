@@ -1,9 +1,17 @@
 package com.example.admin.repository;
 
 import com.example.admin.entity.User;
+import com.example.admin.entity.UserSummary;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.Optional;
 
 @Repository
@@ -13,4 +21,20 @@ public interface UserRepository extends JpaRepository<User, Long> {
 
     // 查重：看看用户名是不是被注册过了
     boolean existsByUsername(String username);
+
+    // 仪表盘列表：只查需要的三列，不加载密码等字段，分页
+    @Query("select new com.example.admin.entity.UserSummary(u.username, coalesce(u.nickname, u.username), u.isOnline) "
+            + "from User u order by u.id")
+    Slice<UserSummary> findSummaries(Pageable pageable);
+
+    // 在线人数：库中的在线标记集群内共享，只做计数不加载用户行
+    @Query("select count(u) from User u where u.isOnline = true")
+    long countOnline();
+
+    // 登录时只更新在线状态和活跃时间，不再整行 UPDATE
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("update User u set u.isOnline = :online, u.lastActiveTime = :lastActiveTime where u.id = :id")
+    int updatePresence(@Param("id") Long id, @Param("online") boolean online,
+                       @Param("lastActiveTime") LocalDateTime lastActiveTime);
 }
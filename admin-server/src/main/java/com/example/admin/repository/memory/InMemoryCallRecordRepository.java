@@ -0,0 +1,114 @@
+package com.example.admin.repository.memory;
+
+import com.example.admin.entity.CallRecord;
+import com.example.admin.entity.CallSummary;
+import com.example.admin.repository.CallRecordRepository;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+@Repository
+@Profile("memory")
+public class InMemoryCallRecordRepository extends InMemoryRepository<CallRecord> implements CallRecordRepository {
+
+    // 按开始时间排序的键，ID 区分同一时刻的多条记录
+    private record TimeKey(LocalDateTime startTime, long id) {
+        static final Comparator<TimeKey> ORDER = Comparator.comparing(TimeKey::startTime)
+                .thenComparingLong(TimeKey::id);
+    }
+
+    // 全部通话，按时间排序
+    private final NavigableSet<TimeKey> byTime = new ConcurrentSkipListSet<>(TimeKey.ORDER);
+    // 用户（主叫或被叫）-> 该用户的通话，按时间排序
+    private final Map<String, NavigableSet<TimeKey>> byUser = new ConcurrentHashMap<>();
+
+    public InMemoryCallRecordRepository(MemoryJournals journals) {
+        super("call_records", CallRecord.class, journals);
+    }
+
+    @Override
+    public Slice<CallSummary> findHistory(String user, LocalDateTime from, LocalDateTime to, Pageable pageable) {
+        NavigableSet<TimeKey> keys = byUser.get(user);
+        return keys == null ? slice(Collections.emptyIterator(), pageable) : window(keys, from, to, pageable);
+    }
+
+    @Override
+    public Slice<CallSummary> findInWindow(LocalDateTime from, LocalDateTime to, Pageable pageable) {
+        return window(byTime, from, to, pageable);
+    }
+
+    // [from, to) 内按时间倒序
+    private Slice<CallSummary> window(NavigableSet<TimeKey> keys, LocalDateTime from, LocalDateTime to,
+                                      Pageable pageable) {
+        return slice(keys.subSet(new TimeKey(from, Long.MIN_VALUE), true, new TimeKey(to, Long.MIN_VALUE), false)
+                .descendingSet().stream()
+                .map(key -> row(key.id()))
+                .filter(Objects::nonNull)
+                .map(record -> new CallSummary(record.getId(), record.getCaller(), record.getCallee(),
+                        record.getType(), record.getDuration(), record.getStatus(), record.getStartTime()))
+                .iterator(), pageable);
+    }
+
+    @Override
+    protected void checkConstraints(CallRecord row, CallRecord previous) {
+        if (row.getCaller() == null || row.getCallee() == null || row.getStartTime() == null) {
+            throw new DataIntegrityViolationException("caller、callee、startTime 不能为空");
+        }
+    }
+
+    @Override
+    protected void indexAdded(CallRecord row) {
+        TimeKey key = new TimeKey(row.getStartTime(), row.getId());
+        byTime.add(key);
+        byUser.computeIfAbsent(row.getCaller(), user -> new ConcurrentSkipListSet<>(TimeKey.ORDER)).add(key);
+        byUser.computeIfAbsent(row.getCallee(), user -> new ConcurrentSkipListSet<>(TimeKey.ORDER)).add(key);
+    }
+
+    @Override
+    protected void indexRemoved(CallRecord row) {
+        TimeKey key = new TimeKey(row.getStartTime(), row.getId());
+        byTime.remove(key);
+        for (String user : new String[]{row.getCaller(), row.getCallee()}) {
+            NavigableSet<TimeKey> keys = byUser.get(user);
+            if (keys != null) {
+                keys.remove(key);
+            }
+        }
+    }
+
+    @Override
+    protected Long idOf(CallRecord entity) {
+        return entity.getId();
+    }
+
+    @Override
+    protected void assignId(CallRecord entity, Long id) {
+        entity.setId(id);
+    }
+
+    @Override
+    protected CallRecord copy(CallRecord entity) {
+        CallRecord copy = new CallRecord();
+        copy.setId(entity.getId());
+        copy.setCaller(entity.getCaller());
+        copy.setCallee(entity.getCallee());
+        copy.setStartTime(entity.getStartTime());
+        copy.setEndTime(entity.getEndTime());
+        copy.setDuration(entity.getDuration());
+        copy.setType(entity.getType());
+        copy.setStatus(entity.getStatus());
+        copy.setCallId(entity.getCallId());
+        return copy;
+    }
+}
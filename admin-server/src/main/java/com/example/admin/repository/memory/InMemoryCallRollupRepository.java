@@ -0,0 +1,167 @@
+package com.example.admin.repository.memory;
+
+import com.example.admin.entity.CallRollup;
+import com.example.admin.entity.CallerRanking;
+import com.example.admin.repository.CallRollupRepository;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+@Repository
+@Profile("memory")
+public class InMemoryCallRollupRepository extends InMemoryRepository<CallRollup> implements CallRollupRepository {
+
+    // 唯一键，按 (粒度, 维度, 桶开始时间, 维度取值) 排序，时间范围查询是一段连续区间
+    private record BucketKey(CallRollup.Granularity granularity, String dimension, LocalDateTime bucketStart,
+                             String value) {
+        static final Comparator<BucketKey> ORDER = Comparator.comparing(BucketKey::granularity)
+                .thenComparing(BucketKey::dimension)
+                .thenComparing(BucketKey::bucketStart)
+                .thenComparing(BucketKey::value);
+
+        static BucketKey of(CallRollup rollup) {
+            return new BucketKey(rollup.getGranularity(), rollup.getDimension(), rollup.getBucketStart(),
+                    rollup.getDimensionValue());
+        }
+
+        static BucketKey lowest(CallRollup.Granularity granularity, String dimension, LocalDateTime at) {
+            return new BucketKey(granularity, dimension, at, "");
+        }
+    }
+
+    private final ConcurrentSkipListMap<BucketKey, Long> idsByKey = new ConcurrentSkipListMap<>(BucketKey.ORDER);
+
+    public InMemoryCallRollupRepository(MemoryJournals journals) {
+        super("call_rollups", CallRollup.class, journals);
+    }
+
+    @Override
+    public Optional<CallRollup> findByGranularityAndBucketStartAndDimensionAndDimensionValue(
+            CallRollup.Granularity granularity, LocalDateTime bucketStart, String dimension, String dimensionValue) {
+        return Optional.ofNullable(row(idsByKey.get(new BucketKey(granularity, dimension, bucketStart, dimensionValue))))
+                .map(this::copy);
+    }
+
+    @Override
+    public int increment(CallRollup.Granularity granularity, LocalDateTime bucketStart, String dimension,
+                         String value, long count, long duration) {
+        Long id = idsByKey.get(new BucketKey(granularity, dimension, bucketStart, value));
+        return id != null && update(id, rollup -> {
+            rollup.setCallCount(rollup.getCallCount() + count);
+            rollup.setTotalDuration(rollup.getTotalDuration() + duration);
+        }) ? 1 : 0;
+    }
+
+    @Override
+    public List<CallRollup> findRange(CallRollup.Granularity granularity, LocalDateTime from, LocalDateTime to,
+                                      String dimension) {
+        List<CallRollup> result = new ArrayList<>();
+        range(granularity, dimension, from, to).values().forEach(id -> {
+            CallRollup rollup = row(id);
+            if (rollup != null) {
+                result.add(copy(rollup));
+            }
+        });
+        return result;
+    }
+
+    @Override
+    public List<CallerRanking> findTopCallers(LocalDateTime from, LocalDateTime to, Pageable pageable) {
+        Map<String, long[]> totals = new HashMap<>();
+        range(CallRollup.Granularity.DAY, "caller", from, to).values().forEach(id -> {
+            CallRollup rollup = row(id);
+            if (rollup != null) {
+                long[] sum = totals.computeIfAbsent(rollup.getDimensionValue(), key -> new long[2]);
+                sum[0] += rollup.getCallCount();
+                sum[1] += rollup.getTotalDuration();
+            }
+        });
+        return totals.entrySet().stream()
+                .map(entry -> new CallerRanking(entry.getKey(), entry.getValue()[0], entry.getValue()[1]))
+                .sorted(Comparator.comparingLong(CallerRanking::callCount).reversed())
+                .skip(pageable.isPaged() ? pageable.getOffset() : 0)
+                .limit(pageable.isPaged() ? pageable.getPageSize() : Long.MAX_VALUE)
+                .toList();
+    }
+
+    @Override
+    public int deleteOlderThan(CallRollup.Granularity granularity, LocalDateTime before) {
+        List<Long> expired = new ArrayList<>();
+        for (String dimension : dimensions(granularity)) {
+            expired.addAll(range(granularity, dimension, LocalDateTime.MIN, before).values());
+        }
+        deleteAllById(expired);
+        return expired.size();
+    }
+
+    private ConcurrentNavigableMap<BucketKey, Long> range(CallRollup.Granularity granularity, String dimension,
+                                                          LocalDateTime from, LocalDateTime to) {
+        return idsByKey.subMap(BucketKey.lowest(granularity, dimension, from), true,
+                BucketKey.lowest(granularity, dimension, to), false);
+    }
+
+    // 某个粒度下出现过的维度（只有 type、caller 几种，逐个跳到下一个维度）
+    private List<String> dimensions(CallRollup.Granularity granularity) {
+        List<String> dimensions = new ArrayList<>();
+        BucketKey cursor = BucketKey.lowest(granularity, "", LocalDateTime.MIN);
+        Map.Entry<BucketKey, Long> entry;
+        while ((entry = idsByKey.ceilingEntry(cursor)) != null && entry.getKey().granularity() == granularity) {
+            String dimension = entry.getKey().dimension();
+            dimensions.add(dimension);
+            cursor = BucketKey.lowest(granularity, dimension + '\u0000', LocalDateTime.MIN);
+        }
+        return dimensions;
+    }
+
+    @Override
+    protected void checkConstraints(CallRollup row, CallRollup previous) {
+        Long owner = idsByKey.get(BucketKey.of(row));
+        if (owner != null && !owner.equals(row.getId())) {
+            throw new DataIntegrityViolationException("统计桶已存在: " + BucketKey.of(row));
+        }
+    }
+
+    @Override
+    protected void indexAdded(CallRollup row) {
+        idsByKey.put(BucketKey.of(row), row.getId());
+    }
+
+    @Override
+    protected void indexRemoved(CallRollup row) {
+        idsByKey.remove(BucketKey.of(row), row.getId());
+    }
+
+    @Override
+    protected Long idOf(CallRollup entity) {
+        return entity.getId();
+    }
+
+    @Override
+    protected void assignId(CallRollup entity, Long id) {
+        entity.setId(id);
+    }
+
+    @Override
+    protected CallRollup copy(CallRollup entity) {
+        CallRollup copy = new CallRollup();
+        copy.setId(entity.getId());
+        copy.setGranularity(entity.getGranularity());
+        copy.setBucketStart(entity.getBucketStart());
+        copy.setDimension(entity.getDimension());
+        copy.setDimensionValue(entity.getDimensionValue());
+        copy.setCallCount(entity.getCallCount());
+        copy.setTotalDuration(entity.getTotalDuration());
+        return copy;
+    }
+}
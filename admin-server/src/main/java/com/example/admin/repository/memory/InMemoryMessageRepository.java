@@ -0,0 +1,165 @@
+package com.example.admin.repository.memory;
+
+import com.example.admin.entity.Message;
+import com.example.admin.entity.UnreadCount;
+import com.example.admin.repository.MessageRepository;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+@Repository
+@Profile("memory")
+public class InMemoryMessageRepository extends InMemoryRepository<Message> implements MessageRepository {
+
+    private static final Comparator<Message> BY_TIMESTAMP = Comparator
+            .comparing(Message::getTimestamp, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparing(Message::getId);
+
+    // 会话（两人无序）-> 消息 ID
+    private final Map<String, NavigableSet<Long>> byConversation = new ConcurrentHashMap<>();
+    // 接收者 -> 发送者 -> 未读消息 ID
+    private final Map<String, Map<String, NavigableSet<Long>>> unread = new ConcurrentHashMap<>();
+
+    public InMemoryMessageRepository(MemoryJournals journals) {
+        super("messages", Message.class, journals);
+    }
+
+    @Override
+    public List<Message> findChatHistory(String user1, String user2) {
+        NavigableSet<Long> ids = byConversation.get(conversation(user1, user2));
+        if (ids == null) {
+            return List.of();
+        }
+        List<Message> history = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            Message message = row(id);
+            if (message != null) {
+                history.add(copy(message));
+            }
+        }
+        history.sort(BY_TIMESTAMP);
+        return history;
+    }
+
+    @Override
+    public List<Message> findByReceiverAndIsReadFalse(String receiver) {
+        List<Message> messages = new ArrayList<>();
+        unread.getOrDefault(receiver, Map.of()).values().forEach(ids -> ids.forEach(id -> {
+            Message message = row(id);
+            if (message != null) {
+                messages.add(copy(message));
+            }
+        }));
+        messages.sort(Comparator.comparing(Message::getId));
+        return messages;
+    }
+
+    @Override
+    public List<UnreadCount> countUnreadBySender(String receiver) {
+        List<UnreadCount> counts = new ArrayList<>();
+        unread.getOrDefault(receiver, Map.of()).forEach((sender, ids) -> {
+            if (!ids.isEmpty()) {
+                counts.add(new UnreadCount(sender, ids.size()));
+            }
+        });
+        return counts;
+    }
+
+    @Override
+    public int markReadUpTo(String reader, String peer, Long upToId) {
+        NavigableSet<Long> ids = unread.getOrDefault(reader, Map.of()).get(peer);
+        if (ids == null) {
+            return 0;
+        }
+        int updated = 0;
+        for (Long id : new ArrayList<>(ids.headSet(upToId, true))) {
+            if (update(id, message -> message.setRead(true))) {
+                updated++;
+            }
+        }
+        return updated;
+    }
+
+    @Override
+    public Optional<Message> findTopByReceiverAndSenderAndSipMessageIdNotNullAndIdLessThanEqualOrderByIdDesc(
+            String receiver, String sender, Long id) {
+        NavigableSet<Long> ids = byConversation.get(conversation(receiver, sender));
+        if (ids == null) {
+            return Optional.empty();
+        }
+        for (Long candidate : ids.headSet(id, true).descendingSet()) {
+            Message message = row(candidate);
+            if (message != null && message.getReceiver().equals(receiver) && message.getSender().equals(sender)
+                    && message.getSipMessageId() != null) {
+                return Optional.of(copy(message));
+            }
+        }
+        return Optional.empty();
+    }
+
+    @Override
+    protected void checkConstraints(Message row, Message previous) {
+        if (row.getSender() == null || row.getReceiver() == null || row.getContent() == null) {
+            throw new DataIntegrityViolationException("sender、receiver、content 不能为空");
+        }
+    }
+
+    @Override
+    protected void indexAdded(Message row) {
+        byConversation.computeIfAbsent(conversation(row.getSender(), row.getReceiver()),
+                key -> new ConcurrentSkipListSet<>()).add(row.getId());
+        if (!row.isRead()) {
+            unread.computeIfAbsent(row.getReceiver(), key -> new ConcurrentHashMap<>())
+                    .computeIfAbsent(row.getSender(), key -> new ConcurrentSkipListSet<>()).add(row.getId());
+        }
+    }
+
+    @Override
+    protected void indexRemoved(Message row) {
+        NavigableSet<Long> ids = byConversation.get(conversation(row.getSender(), row.getReceiver()));
+        if (ids != null) {
+            ids.remove(row.getId());
+        }
+        Map<String, NavigableSet<Long>> bySender = unread.get(row.getReceiver());
+        if (bySender != null && bySender.get(row.getSender()) != null) {
+            bySender.get(row.getSender()).remove(row.getId());
+        }
+    }
+
+    private static String conversation(String a, String b) {
+        return a.compareTo(b) <= 0 ? a + '\u0000' + b : b + '\u0000' + a;
+    }
+
+    @Override
+    protected Long idOf(Message entity) {
+        return entity.getId();
+    }
+
+    @Override
+    protected void assignId(Message entity, Long id) {
+        entity.setId(id);
+    }
+
+    @Override
+    protected Message copy(Message entity) {
+        Message copy = new Message();
+        copy.setId(entity.getId());
+        copy.setSender(entity.getSender());
+        copy.setReceiver(entity.getReceiver());
+        copy.setContent(entity.getContent());
+        copy.setTimestamp(entity.getTimestamp());
+        copy.setRead(entity.isRead());
+        copy.setSenderUri(entity.getSenderUri());
+        copy.setSipMessageId(entity.getSipMessageId());
+        return copy;
+    }
+}
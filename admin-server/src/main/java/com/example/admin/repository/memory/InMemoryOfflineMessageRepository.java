@@ -0,0 +1,122 @@
+package com.example.admin.repository.memory;
+
+import com.example.admin.entity.OfflineMessage;
+import com.example.admin.repository.OfflineMessageRepository;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+@Repository
+@Profile("memory")
+public class InMemoryOfflineMessageRepository extends InMemoryRepository<OfflineMessage>
+        implements OfflineMessageRepository {
+
+    private record ExpiryKey(LocalDateTime expiresAt, long id) {
+        static final Comparator<ExpiryKey> ORDER = Comparator.comparing(ExpiryKey::expiresAt)
+                .thenComparingLong(ExpiryKey::id);
+    }
+
+    // 接收者 -> 消息 ID（即入队顺序）
+    private final Map<String, NavigableSet<Long>> byRecipient = new ConcurrentHashMap<>();
+    private final NavigableSet<ExpiryKey> byExpiry = new ConcurrentSkipListSet<>(ExpiryKey.ORDER);
+
+    public InMemoryOfflineMessageRepository(MemoryJournals journals) {
+        super("offline_messages", OfflineMessage.class, journals);
+    }
+
+    @Override
+    public List<OfflineMessage> findByRecipientAndExpiresAtAfterOrderByIdAsc(String recipient, LocalDateTime now,
+                                                                              Pageable pageable) {
+        NavigableSet<Long> ids = byRecipient.getOrDefault(recipient, new ConcurrentSkipListSet<>());
+        return slice(ids.stream()
+                .map(this::row)
+                .filter(Objects::nonNull)
+                .filter(message -> message.getExpiresAt().isAfter(now))
+                .map(this::copy)
+                .iterator(), pageable).getContent();
+    }
+
+    @Override
+    public long countByRecipient(String recipient) {
+        NavigableSet<Long> ids = byRecipient.get(recipient);
+        return ids == null ? 0 : ids.size();
+    }
+
+    @Override
+    public boolean existsByRecipient(String recipient) {
+        return countByRecipient(recipient) > 0;
+    }
+
+    @Override
+    public List<String> findRecipients(Pageable pageable) {
+        return slice(byRecipient.entrySet().stream()
+                .filter(entry -> !entry.getValue().isEmpty())
+                .map(Map.Entry::getKey)
+                .sorted()
+                .iterator(), pageable).getContent();
+    }
+
+    @Override
+    public int deleteExpired(LocalDateTime now) {
+        List<Long> expired = new ArrayList<>();
+        byExpiry.headSet(new ExpiryKey(now, Long.MAX_VALUE), true).forEach(key -> expired.add(key.id()));
+        deleteAllById(expired);
+        return expired.size();
+    }
+
+    @Override
+    protected void checkConstraints(OfflineMessage row, OfflineMessage previous) {
+        if (row.getSender() == null || row.getRecipient() == null || row.getContent() == null
+                || row.getCreatedAt() == null || row.getExpiresAt() == null) {
+            throw new DataIntegrityViolationException("离线消息字段不能为空");
+        }
+    }
+
+    @Override
+    protected void indexAdded(OfflineMessage row) {
+        byRecipient.computeIfAbsent(row.getRecipient(), key -> new ConcurrentSkipListSet<>()).add(row.getId());
+        byExpiry.add(new ExpiryKey(row.getExpiresAt(), row.getId()));
+    }
+
+    @Override
+    protected void indexRemoved(OfflineMessage row) {
+        NavigableSet<Long> ids = byRecipient.get(row.getRecipient());
+        if (ids != null) {
+            ids.remove(row.getId());
+        }
+        byExpiry.remove(new ExpiryKey(row.getExpiresAt(), row.getId()));
+    }
+
+    @Override
+    protected Long idOf(OfflineMessage entity) {
+        return entity.getId();
+    }
+
+    @Override
+    protected void assignId(OfflineMessage entity, Long id) {
+        entity.setId(id);
+    }
+
+    @Override
+    protected OfflineMessage copy(OfflineMessage entity) {
+        OfflineMessage copy = new OfflineMessage();
+        copy.setId(entity.getId());
+        copy.setSender(entity.getSender());
+        copy.setRecipient(entity.getRecipient());
+        copy.setContent(entity.getContent());
+        copy.setCreatedAt(entity.getCreatedAt());
+        copy.setExpiresAt(entity.getExpiresAt());
+        return copy;
+    }
+}
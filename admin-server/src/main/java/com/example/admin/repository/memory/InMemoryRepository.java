@@ -0,0 +1,363 @@
+package com.example.admin.repository.memory;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityNotFoundException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.domain.Example;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.repository.query.FluentQuery;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * 内存存储后端的公共部分（memory profile）
+ * 业务层只依赖 UserRepository 等 Spring Data 接口，这些接口就是存储 SPI：默认由 JPA 实现，
+ * memory profile 下由本类的子类实现。行按 ID 有序保存在跳表里，读取无锁；写入在仓库级锁内完成，
+ * 子类在 {@link #indexAdded}/{@link #indexRemoved} 中维护自己的并发二级索引。
+ * 保存和读取都复制实体，调用方修改返回的对象不会影响存储，和 JPA 事务外的行为一致。
+ * 配置了 storage.memory.data-dir 时每次写入追加到日志文件，启动时重放。
+ */
+public abstract class InMemoryRepository<T> implements JpaRepository<T, Long> {
+
+    private static final Logger logger = LoggerFactory.getLogger(InMemoryRepository.class);
+
+    private final ConcurrentSkipListMap<Long, T> rows = new ConcurrentSkipListMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final Object writeLock = new Object();
+    private final String name;
+    private final MemoryJournal<T> journal;
+
+    protected InMemoryRepository(String name, Class<T> type, MemoryJournals journals) {
+        this.name = name;
+        this.journal = journals.open(name, type).orElse(null);
+    }
+
+    protected abstract Long idOf(T entity);
+
+    protected abstract void assignId(T entity, Long id);
+
+    protected abstract T copy(T entity);
+
+    /** 新行写入后调用（持有写锁） */
+    protected void indexAdded(T row) {
+    }
+
+    /** 旧行被替换或删除后调用（持有写锁） */
+    protected void indexRemoved(T row) {
+    }
+
+    /** 写入前校验唯一约束等，违反时抛出 DataIntegrityViolationException（持有写锁） */
+    protected void checkConstraints(T row, T previous) {
+    }
+
+    @PostConstruct
+    void load() throws IOException {
+        if (journal == null) {
+            return;
+        }
+        synchronized (writeLock) {
+            journal.replay(this::putRow, id -> removeRow(id));
+            journal.compact(rows.values());
+        }
+        logger.info("内存存储 {} 已从日志恢复 {} 行", name, rows.size());
+    }
+
+    @PreDestroy
+    void close() throws IOException {
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    // ---- 供子类使用 ----
+
+    /** 存储中的行（不要修改，返回给调用方前先复制） */
+    protected T row(Long id) {
+        return id == null ? null : rows.get(id);
+    }
+
+    protected Collection<T> rows() {
+        return rows.values();
+    }
+
+    /**
+     * 原地更新一行：复制后修改、替换并记录日志
+     * @return 行不存在时返回 false
+     */
+    protected boolean update(Long id, Consumer<T> change) {
+        synchronized (writeLock) {
+            T current = rows.get(id);
+            if (current == null) {
+                return false;
+            }
+            T changed = copy(current);
+            change.accept(changed);
+            checkConstraints(changed, current);
+            putRow(changed);
+            if (journal != null) {
+                journal.put(changed);
+            }
+            return true;
+        }
+    }
+
+    /** 把按顺序排列的结果按 Pageable 切成 Slice，只多取一条判断是否有下一页 */
+    protected static <R> Slice<R> slice(Iterator<R> ordered, Pageable pageable) {
+        if (pageable.isUnpaged()) {
+            List<R> all = new ArrayList<>();
+            ordered.forEachRemaining(all::add);
+            return new SliceImpl<>(all, pageable, false);
+        }
+        long skip = pageable.getOffset();
+        while (skip-- > 0 && ordered.hasNext()) {
+            ordered.next();
+        }
+        List<R> content = new ArrayList<>(pageable.getPageSize());
+        while (content.size() < pageable.getPageSize() && ordered.hasNext()) {
+            content.add(ordered.next());
+        }
+        return new SliceImpl<>(content, pageable, ordered.hasNext());
+    }
+
+    private void putRow(T row) {
+        Long id = idOf(row);
+        sequence.accumulateAndGet(id, Math::max);
+        T previous = rows.put(id, row);
+        if (previous != null) {
+            indexRemoved(previous);
+        }
+        indexAdded(row);
+    }
+
+    private T removeRow(Long id) {
+        T previous = rows.remove(id);
+        if (previous != null) {
+            indexRemoved(previous);
+        }
+        return previous;
+    }
+
+    // ---- CrudRepository ----
+
+    @Override
+    public <S extends T> S save(S entity) {
+        synchronized (writeLock) {
+            Long id = idOf(entity);
+            boolean generated = id == null;
+            if (generated) {
+                id = sequence.get() + 1;
+                assignId(entity, id);
+            }
+            T stored = copy(entity);
+            try {
+                checkConstraints(stored, rows.get(id));
+            } catch (RuntimeException e) {
+                if (generated) {
+                    assignId(entity, null);
+                }
+                throw e;
+            }
+            putRow(stored);
+            if (journal != null) {
+                journal.put(stored);
+            }
+        }
+        return entity;
+    }
+
+    @Override
+    public <S extends T> List<S> saveAll(Iterable<S> entities) {
+        List<S> saved = new ArrayList<>();
+        for (S entity : entities) {
+            saved.add(save(entity));
+        }
+        return saved;
+    }
+
+    @Override
+    public Optional<T> findById(Long id) {
+        return Optional.ofNullable(row(id)).map(this::copy);
+    }
+
+    @Override
+    public boolean existsById(Long id) {
+        return row(id) != null;
+    }
+
+    @Override
+    public List<T> findAll() {
+        return rows.values().stream().map(this::copy).toList();
+    }
+
+    @Override
+    public List<T> findAllById(Iterable<Long> ids) {
+        List<T> found = new ArrayList<>();
+        for (Long id : ids) {
+            findById(id).ifPresent(found::add);
+        }
+        return found;
+    }
+
+    @Override
+    public long count() {
+        return rows.size();
+    }
+
+    @Override
+    public void deleteById(Long id) {
+        synchronized (writeLock) {
+            if (removeRow(id) != null && journal != null) {
+                journal.delete(id);
+            }
+        }
+    }
+
+    @Override
+    public void delete(T entity) {
+        deleteById(idOf(entity));
+    }
+
+    @Override
+    public void deleteAllById(Iterable<? extends Long> ids) {
+        for (Long id : ids) {
+            deleteById(id);
+        }
+    }
+
+    @Override
+    public void deleteAll(Iterable<? extends T> entities) {
+        for (T entity : entities) {
+            delete(entity);
+        }
+    }
+
+    @Override
+    public void deleteAll() {
+        deleteAllById(new ArrayList<>(rows.keySet()));
+    }
+
+    // ---- PagingAndSortingRepository ----
+
+    @Override
+    public List<T> findAll(Sort sort) {
+        if (sort.isUnsorted()) {
+            return findAll();
+        }
+        throw new UnsupportedOperationException("内存存储不支持动态排序: " + sort);
+    }
+
+    @Override
+    public Page<T> findAll(Pageable pageable) {
+        if (pageable.getSort().isSorted()) {
+            throw new UnsupportedOperationException("内存存储不支持动态排序: " + pageable.getSort());
+        }
+        List<T> content = slice(rows.values().stream().map(this::copy).iterator(), pageable).getContent();
+        return new PageImpl<>(content, pageable, rows.size());
+    }
+
+    // ---- JpaRepository ----
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public <S extends T> S saveAndFlush(S entity) {
+        return save(entity);
+    }
+
+    @Override
+    public <S extends T> List<S> saveAllAndFlush(Iterable<S> entities) {
+        return saveAll(entities);
+    }
+
+    @Override
+    public void deleteAllInBatch(Iterable<T> entities) {
+        deleteAll(entities);
+    }
+
+    @Override
+    public void deleteAllByIdInBatch(Iterable<Long> ids) {
+        deleteAllById(ids);
+    }
+
+    @Override
+    public void deleteAllInBatch() {
+        deleteAll();
+    }
+
+    @Override
+    @Deprecated
+    public T getOne(Long id) {
+        return getReferenceById(id);
+    }
+
+    @Override
+    @Deprecated
+    public T getById(Long id) {
+        return getReferenceById(id);
+    }
+
+    @Override
+    public T getReferenceById(Long id) {
+        return findById(id).orElseThrow(() -> new EntityNotFoundException(name + " " + id));
+    }
+
+    // ---- QueryByExampleExecutor：内存存储不支持按样例查询 ----
+
+    @Override
+    public <S extends T> Optional<S> findOne(Example<S> example) {
+        throw unsupportedExample();
+    }
+
+    @Override
+    public <S extends T> List<S> findAll(Example<S> example) {
+        throw unsupportedExample();
+    }
+
+    @Override
+    public <S extends T> List<S> findAll(Example<S> example, Sort sort) {
+        throw unsupportedExample();
+    }
+
+    @Override
+    public <S extends T> Page<S> findAll(Example<S> example, Pageable pageable) {
+        throw unsupportedExample();
+    }
+
+    @Override
+    public <S extends T> long count(Example<S> example) {
+        throw unsupportedExample();
+    }
+
+    @Override
+    public <S extends T> boolean exists(Example<S> example) {
+        throw unsupportedExample();
+    }
+
+    @Override
+    public <S extends T, R> R findBy(Example<S> example, Function<FluentQuery.FetchableFluentQuery<S>, R> queryFunction) {
+        throw unsupportedExample();
+    }
+
+    private static UnsupportedOperationException unsupportedExample() {
+        return new UnsupportedOperationException("内存存储不支持按样例查询");
+    }
+}
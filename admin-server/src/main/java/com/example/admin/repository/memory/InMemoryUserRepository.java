@@ -0,0 +1,98 @@
+package com.example.admin.repository.memory;
+
+import com.example.admin.entity.User;
+import com.example.admin.entity.UserSummary;
+import com.example.admin.repository.UserRepository;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Repository
+@Profile("memory")
+public class InMemoryUserRepository extends InMemoryRepository<User> implements UserRepository {
+
+    // 用户名 -> ID（唯一）
+    private final Map<String, Long> idsByUsername = new ConcurrentHashMap<>();
+
+    public InMemoryUserRepository(MemoryJournals journals) {
+        super("users", User.class, journals);
+    }
+
+    @Override
+    public Optional<User> findByUsername(String username) {
+        return Optional.ofNullable(row(idsByUsername.get(username))).map(this::copy);
+    }
+
+    @Override
+    public boolean existsByUsername(String username) {
+        return idsByUsername.containsKey(username);
+    }
+
+    @Override
+    public Slice<UserSummary> findSummaries(Pageable pageable) {
+        return slice(rows().stream().map(user -> new UserSummary(user.getUsername(),
+                user.getNickname() != null ? user.getNickname() : user.getUsername(), user.isOnline())).iterator(),
+                pageable);
+    }
+
+    @Override
+    public long countOnline() {
+        return rows().stream().filter(User::isOnline).count();
+    }
+
+    @Override
+    public int updatePresence(Long id, boolean online, LocalDateTime lastActiveTime) {
+        return update(id, user -> {
+            user.setOnline(online);
+            user.setLastActiveTime(lastActiveTime);
+        }) ? 1 : 0;
+    }
+
+    @Override
+    protected void checkConstraints(User row, User previous) {
+        Long owner = idsByUsername.get(row.getUsername());
+        if (owner != null && !owner.equals(row.getId())) {
+            throw new DataIntegrityViolationException("用户名已存在: " + row.getUsername());
+        }
+    }
+
+    @Override
+    protected void indexAdded(User row) {
+        idsByUsername.put(row.getUsername(), row.getId());
+    }
+
+    @Override
+    protected void indexRemoved(User row) {
+        idsByUsername.remove(row.getUsername(), row.getId());
+    }
+
+    @Override
+    protected Long idOf(User entity) {
+        return entity.getId();
+    }
+
+    @Override
+    protected void assignId(User entity, Long id) {
+        entity.setId(id);
+    }
+
+    @Override
+    protected User copy(User entity) {
+        User copy = new User();
+        copy.setId(entity.getId());
+        copy.setUsername(Objects.requireNonNull(entity.getUsername(), "username"));
+        copy.setPassword(entity.getPassword());
+        copy.setNickname(entity.getNickname());
+        copy.setOnline(entity.isOnline());
+        copy.setLastActiveTime(entity.getLastActiveTime());
+        return copy;
+    }
+}
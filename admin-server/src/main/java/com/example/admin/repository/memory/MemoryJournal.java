@@ -0,0 +1,112 @@
+package com.example.admin.repository.memory;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
+/**
+ * 内存存储的追加式日志：每次写入追加一行（"P {json}" 写入整行，"D id" 删除），
+ * 启动时重放后压缩成当前快照，再继续追加。崩溃时最后一行可能不完整，重放时忽略。
+ */
+final class MemoryJournal<T> implements Closeable {
+
+    private static final Logger logger = LoggerFactory.getLogger(MemoryJournal.class);
+
+    private final Path file;
+    private final Class<T> type;
+    private final ObjectMapper objectMapper;
+    private BufferedWriter writer;
+
+    MemoryJournal(Path file, Class<T> type, ObjectMapper objectMapper) {
+        this.file = file;
+        this.type = type;
+        this.objectMapper = objectMapper;
+    }
+
+    void replay(Consumer<T> onPut, LongConsumer onDelete) throws IOException {
+        if (!Files.exists(file)) {
+            return;
+        }
+        int lineNumber = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.length() < 2) {
+                    continue;
+                }
+                try {
+                    if (line.charAt(0) == 'P') {
+                        onPut.accept(objectMapper.readValue(line.substring(2), type));
+                    } else if (line.charAt(0) == 'D') {
+                        onDelete.accept(Long.parseLong(line.substring(2).trim()));
+                    }
+                } catch (IOException | NumberFormatException e) {
+                    logger.warn("跳过无法解析的日志行 {}:{}: {}", file, lineNumber, e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * 用当前全部数据重写日志（先写临时文件再原子替换），之后的写入追加到新文件
+     */
+    synchronized void compact(Collection<T> rows) throws IOException {
+        close();
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (BufferedWriter out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            for (T row : rows) {
+                out.write("P ");
+                out.write(objectMapper.writeValueAsString(row));
+                out.newLine();
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+    }
+
+    synchronized void put(T row) {
+        try {
+            append("P " + objectMapper.writeValueAsString(row));
+        } catch (IOException e) {
+            throw new UncheckedIOException("写入存储日志失败: " + file, e);
+        }
+    }
+
+    synchronized void delete(Long id) {
+        append("D " + id);
+    }
+
+    private void append(String line) {
+        try {
+            writer.write(line);
+            writer.newLine();
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException("写入存储日志失败: " + file, e);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (writer != null) {
+            writer.close();
+            writer = null;
+        }
+    }
+}
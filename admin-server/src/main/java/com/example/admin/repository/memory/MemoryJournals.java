@@ -0,0 +1,32 @@
+package com.example.admin.repository.memory;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+import java.util.Optional;
+
+/**
+ * 内存存储的日志文件位置；storage.memory.data-dir 为空时不落盘，重启后数据清空
+ */
+@Component
+@Profile("memory")
+public class MemoryJournals {
+
+    private final String dataDir;
+    private final ObjectMapper objectMapper;
+
+    public MemoryJournals(@Value("${storage.memory.data-dir:}") String dataDir, ObjectMapper objectMapper) {
+        this.dataDir = dataDir;
+        this.objectMapper = objectMapper;
+    }
+
+    <T> Optional<MemoryJournal<T>> open(String name, Class<T> type) {
+        if (dataDir == null || dataDir.isBlank()) {
+            return Optional.empty();
+        }
+        return Optional.of(new MemoryJournal<>(Path.of(dataDir, name + ".log"), type, objectMapper));
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.admin.repository.memory;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+
+/**
+ * 内存存储配置
+ * 数据源和 JPA 自动配置在 application-memory.properties 中排除，
+ * 这里补一个空的事务管理器，让 @Transactional 和 TransactionTemplate 照常工作。
+ * 每次写入在仓库内部是原子的，但不支持跨仓库回滚。
+ */
+@Configuration
+@Profile("memory")
+public class MemoryStorageConfig {
+
+    @Bean
+    public PlatformTransactionManager transactionManager() {
+        return new AbstractPlatformTransactionManager() {
+            @Override
+            protected Object doGetTransaction() {
+                return new Object();
+            }
+
+            @Override
+            protected void doBegin(Object transaction, TransactionDefinition definition) {
+            }
+
+            @Override
+            protected void doCommit(DefaultTransactionStatus status) {
+            }
+
+            @Override
+            protected void doRollback(DefaultTransactionStatus status) {
+            }
+        };
+    }
+}
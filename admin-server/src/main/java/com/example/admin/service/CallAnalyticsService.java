@@ -0,0 +1,223 @@
+package com.example.admin.service;
+
+import com.example.admin.entity.CallRecord;
+import com.example.admin.entity.CallRollup;
+import com.example.admin.entity.CallRollup.Granularity;
+import com.example.admin.entity.CallVolumePoint;
+import com.example.admin.entity.CallerRanking;
+import com.example.admin.repository.CallRollupRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 通话统计汇总
+ * 每条通话记录写入时增量累加到分钟/小时/天三个粒度的桶（按通话类型），以及按天的主叫桶；
+ * 增量先放在内存里，定时合并到 call_rollups 表。查询只读汇总表并叠加尚未落库的增量，
+ * 不再扫描 call_records 原始表。
+ * 集群中各节点各自落库，合并用原子累加（UPDATE ... + :delta），桶不存在时插入，
+ * 与其它节点同时插入撞上唯一键时改为累加，不会丢失计数。
+ */
+@Service
+public class CallAnalyticsService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CallAnalyticsService.class);
+
+    static final String DIMENSION_TYPE = "type";
+    static final String DIMENSION_CALLER = "caller";
+    private static final String UNKNOWN = "UNKNOWN";
+
+    private record BucketKey(Granularity granularity, LocalDateTime bucketStart, String dimension, String value) {}
+
+    private final CallRollupRepository rollupRepository;
+    private final TransactionTemplate transactionTemplate;
+    // 尚未落库的增量：[通话数, 总时长]
+    private final Map<BucketKey, long[]> pending = new ConcurrentHashMap<>();
+
+    @Value("${analytics.max-points:5000}")
+    private int maxPoints;
+
+    @Value("${analytics.retention.minute:3d}")
+    private Duration minuteRetention;
+
+    @Value("${analytics.retention.hour:90d}")
+    private Duration hourRetention;
+
+    public CallAnalyticsService(CallRollupRepository rollupRepository, PlatformTransactionManager transactionManager) {
+        this.rollupRepository = rollupRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    // 记录一次通话（由 CallRecordService 在保存后调用）
+    public void record(CallRecord record) {
+        LocalDateTime start = record.getStartTime() == null ? LocalDateTime.now() : record.getStartTime();
+        long duration = record.getDuration() == null ? 0L : Math.max(record.getDuration(), 0L);
+        String type = record.getType() == null || record.getType().isBlank() ? UNKNOWN : record.getType();
+        for (Granularity granularity : Granularity.values()) {
+            add(new BucketKey(granularity, truncate(start, granularity), DIMENSION_TYPE, type), 1, duration);
+        }
+        if (record.getCaller() != null) {
+            add(new BucketKey(Granularity.DAY, truncate(start, Granularity.DAY), DIMENSION_CALLER, record.getCaller()),
+                    1, duration);
+        }
+    }
+
+    // 时间窗口 [from, to) 内按粒度、类型汇总的通话量；type 为空表示所有类型
+    public List<CallVolumePoint> volume(Granularity granularity, LocalDateTime from, LocalDateTime to, String type) {
+        LocalDateTime start = truncate(from, granularity);
+        long buckets = unit(granularity).between(start, to) + 1;
+        if (!to.isAfter(from) || buckets > maxPoints) {
+            throw new IllegalArgumentException("时间范围无效或过大，请使用更粗的粒度");
+        }
+
+        Map<BucketKey, long[]> merged = new TreeMap<>(Comparator.comparing(BucketKey::bucketStart)
+                .thenComparing(BucketKey::value));
+        for (CallRollup row : rollupRepository.findRange(granularity, start, to, DIMENSION_TYPE)) {
+            merge(merged, new BucketKey(granularity, row.getBucketStart(), DIMENSION_TYPE, row.getDimensionValue()),
+                    row.getCallCount(), row.getTotalDuration());
+        }
+        pending.forEach((key, delta) -> {
+            if (key.granularity() == granularity && DIMENSION_TYPE.equals(key.dimension())
+                    && !key.bucketStart().isBefore(start) && key.bucketStart().isBefore(to)) {
+                synchronized (delta) {
+                    merge(merged, key, delta[0], delta[1]);
+                }
+            }
+        });
+
+        List<CallVolumePoint> points = new ArrayList<>();
+        merged.forEach((key, totals) -> {
+            if (type == null || type.equalsIgnoreCase(key.value())) {
+                points.add(new CallVolumePoint(key.bucketStart(), key.value(), totals[0], totals[1],
+                        totals[0] == 0 ? 0 : (double) totals[1] / totals[0]));
+            }
+        });
+        return points;
+    }
+
+    // 时间窗口内通话最多的主叫（按天粒度汇总，from/to 向下取整到天）
+    public List<CallerRanking> topCallers(LocalDateTime from, LocalDateTime to, int limit) {
+        flush();
+        return rollupRepository.findTopCallers(truncate(from, Granularity.DAY), to, PageRequest.of(0, limit));
+    }
+
+    // 把内存中的增量合并到汇总表
+    @Scheduled(fixedDelayString = "${analytics.flush-interval:PT10S}")
+    public synchronized void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        Map<BucketKey, long[]> batch = new HashMap<>();
+        for (BucketKey key : pending.keySet()) {
+            long[] delta = pending.remove(key);
+            if (delta != null) {
+                synchronized (delta) {
+                    batch.put(key, delta.clone());
+                }
+            }
+        }
+        int failed = 0;
+        RuntimeException lastError = null;
+        for (Map.Entry<BucketKey, long[]> entry : batch.entrySet()) {
+            try {
+                persist(entry.getKey(), entry.getValue());
+            } catch (RuntimeException e) {
+                // 写入失败时把增量放回，下次重试，避免统计丢失
+                add(entry.getKey(), entry.getValue()[0], entry.getValue()[1]);
+                failed++;
+                lastError = e;
+            }
+        }
+        if (failed > 0) {
+            logger.warn("通话统计落库失败，{} 个桶将在下次重试: {}", failed, lastError.getMessage());
+        }
+    }
+
+    // 清理过期的细粒度桶，天粒度永久保留
+    @Scheduled(cron = "${analytics.purge-cron:0 15 * * * *}")
+    public void purge() {
+        LocalDateTime now = LocalDateTime.now();
+        int minutes = rollupRepository.deleteOlderThan(Granularity.MINUTE, now.minus(minuteRetention));
+        int hours = rollupRepository.deleteOlderThan(Granularity.HOUR, now.minus(hourRetention));
+        if (minutes + hours > 0) {
+            logger.info("清理过期通话统计: 分钟桶 {} 个, 小时桶 {} 个", minutes, hours);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    // 每个桶一个事务：先原子累加，桶不存在再插入；插入撞上唯一键说明其它节点刚建好，重试一次走累加
+    private void persist(BucketKey key, long[] delta) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> upsert(key, delta));
+        } catch (DataIntegrityViolationException e) {
+            transactionTemplate.executeWithoutResult(status -> upsert(key, delta));
+        }
+    }
+
+    private void upsert(BucketKey key, long[] delta) {
+        if (rollupRepository.increment(key.granularity(), key.bucketStart(), key.dimension(), key.value(),
+                delta[0], delta[1]) > 0) {
+            return;
+        }
+        CallRollup created = new CallRollup();
+        created.setGranularity(key.granularity());
+        created.setBucketStart(key.bucketStart());
+        created.setDimension(key.dimension());
+        created.setDimensionValue(key.value());
+        created.setCallCount(delta[0]);
+        created.setTotalDuration(delta[1]);
+        rollupRepository.saveAndFlush(created);
+    }
+
+    private void add(BucketKey key, long count, long duration) {
+        // flush 可能在累加期间把桶摘走，摘走后的数组不再使用，所以在 compute 内完成累加
+        pending.compute(key, (k, delta) -> {
+            long[] target = delta == null ? new long[2] : delta;
+            synchronized (target) {
+                target[0] += count;
+                target[1] += duration;
+            }
+            return target;
+        });
+    }
+
+    private static void merge(Map<BucketKey, long[]> merged, BucketKey key, long count, long duration) {
+        long[] totals = merged.computeIfAbsent(key, k -> new long[2]);
+        totals[0] += count;
+        totals[1] += duration;
+    }
+
+    static LocalDateTime truncate(LocalDateTime time, Granularity granularity) {
+        return time.truncatedTo(unit(granularity));
+    }
+
+    private static ChronoUnit unit(Granularity granularity) {
+        return switch (granularity) {
+            case MINUTE -> ChronoUnit.MINUTES;
+            case HOUR -> ChronoUnit.HOURS;
+            case DAY -> ChronoUnit.DAYS;
+        };
+    }
+}
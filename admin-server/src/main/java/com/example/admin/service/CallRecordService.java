@@ -1,8 +1,11 @@
 package com.example.admin.service;
 
 import com.example.admin.entity.CallRecord;
+import com.example.admin.entity.CallSummary;
 import com.example.admin.repository.CallRecordRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
@@ -11,9 +14,15 @@ import java.util.List;
 @Service
 public class CallRecordService {
 
+    // 未指定起始时间时的查询下界
+    public static final LocalDateTime EARLIEST = LocalDateTime.of(1970, 1, 1, 0, 0);
+
     @Autowired
     private CallRecordRepository callRecordRepository;
 
+    @Autowired
+    private CallAnalyticsService callAnalyticsService;
+
     // 保存通话记录
     public CallRecord saveRecord(String caller, String callee, Long duration, String type) {
         CallRecord record = new CallRecord();
@@ -22,16 +31,30 @@ public class CallRecordService {
         record.setDuration(duration);
         record.setType(type);
         record.setStartTime(LocalDateTime.now());
-        return callRecordRepository.save(record);
+        CallRecord saved = callRecordRepository.save(record);
+        callAnalyticsService.record(saved);
+        return saved;
+    }
+
+    // 批量保存通话记录（话单），一个事务内写入
+    public List<CallRecord> saveAll(List<CallRecord> records) {
+        List<CallRecord> saved = callRecordRepository.saveAll(records);
+        saved.forEach(callAnalyticsService::record);
+        return saved;
+    }
+
+    // 获取某个用户在时间窗口 [from, to) 内的通话历史，按时间倒序分页
+    public Slice<CallSummary> getUserHistory(String username, LocalDateTime from, LocalDateTime to, int page, int size) {
+        return callRecordRepository.findHistory(username, from, to, PageRequest.of(page, size));
     }
 
-    // 获取某个用户的通话历史
-    public List<CallRecord> getUserHistory(String username) {
-        return callRecordRepository.findByCallerOrCalleeOrderByStartTimeDesc(username, username);
+    // 时间窗口 [from, to) 内的所有通话，按时间倒序分页
+    public Slice<CallSummary> listCalls(LocalDateTime from, LocalDateTime to, int page, int size) {
+        return callRecordRepository.findInWindow(from, to, PageRequest.of(page, size));
     }
 
-    // 获取所有通话记录（为了配合 DashboardSnapshotService）
-    public List<CallRecord> listCallRecords() {
-        return callRecordRepository.findAll();
+    // 最近的 limit 条通话（为了配合 DashboardSnapshotService）
+    public List<CallSummary> recentCalls(int limit) {
+        return listCalls(EARLIEST, LocalDateTime.now().plusMinutes(1), 0, limit).getContent();
     }
 }
\ No newline at end of file
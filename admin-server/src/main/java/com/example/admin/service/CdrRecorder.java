@@ -0,0 +1,170 @@
+package com.example.admin.service;
+
+import com.example.admin.entity.CallRecord;
+import com.example.sipclient.call.CallDetailRecord;
+import com.example.sipclient.call.CallManager;
+import com.example.sipclient.sip.SipUserAgent;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * 话单记录器
+ * 托管的 SipUserAgent 每结束一次呼叫，CallManager 产生一条话单，这里转换成 CallRecord 入队，
+ * 定时批量写库（同时进入通话统计汇总）。时长按接通到挂断计算，不再依赖客户端上报。
+ * 主叫和被叫都托管在本节点时两端各产生一条话单，按 SIP Call-ID 去重只保留先到的一条。
+ * 话单用于计费，不能丢：写库失败的批次留在内存中，下次先重试它再取新话单；
+ * 数据库故障期间队列满了放不下的话单进入溢出列表，恢复后排在队列之后写入。
+ */
+@Service
+public class CdrRecorder {
+
+    private static final Logger logger = LoggerFactory.getLogger(CdrRecorder.class);
+
+    private static final int RECENT_CALL_IDS = 10_000;
+
+    private final CallRecordService callRecordService;
+    private final BlockingQueue<CallRecord> queue;
+    private final int batchSize;
+    // 写库失败、等待重试的批次，只在 flush 中访问
+    private List<CallRecord> failedBatch = List.of();
+    // 队列满且同步写入也失败的话单
+    private final Queue<CallRecord> overflow = new ConcurrentLinkedQueue<>();
+    private final Map<String, Boolean> recentCallIds = new LinkedHashMap<>(256, 0.75f, false) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+            return size() > RECENT_CALL_IDS;
+        }
+    };
+
+    public CdrRecorder(CallRecordService callRecordService,
+                       @Value("${cdr.queue-capacity:10000}") int queueCapacity,
+                       @Value("${cdr.batch-size:200}") int batchSize) {
+        if (queueCapacity <= 0 || batchSize <= 0) {
+            throw new IllegalArgumentException("cdr.queue-capacity and cdr.batch-size must be positive");
+        }
+        this.callRecordService = callRecordService;
+        this.queue = new LinkedBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * 为托管的用户代理挂上话单回调，需在 SipEventBridge.attach 之后调用（复用其创建的 CallManager）
+     */
+    public void attach(String sipUri, SipUserAgent userAgent) {
+        CallManager callManager = userAgent.getCallManager();
+        if (callManager == null) {
+            callManager = new CallManager();
+            userAgent.setCallManager(callManager);
+        }
+        callManager.setCdrListener(cdr -> submit(sipUri, cdr));
+    }
+
+    // 话单入队，在 SIP 线程上执行，只做转换和入队
+    public void submit(String localUri, CallDetailRecord cdr) {
+        if (cdr.callId() != null && !firstSeen(cdr.callId())) {
+            return;
+        }
+        CallRecord record = toRecord(localUri, cdr);
+        if (!queue.offer(record)) {
+            // 队列满说明数据库跟不上，话单不能丢，直接在当前线程写入
+            logger.warn("话单队列已满，同步写入: {}", cdr.sessionId());
+            try {
+                callRecordService.saveAll(List.of(record));
+            } catch (RuntimeException e) {
+                overflow.add(record);
+                logger.error("话单同步写入失败，暂存 {} 条等待重试: {}", overflow.size(), e.getMessage());
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${cdr.flush-interval:PT1S}")
+    public synchronized void flush() {
+        if (!failedBatch.isEmpty() && !save(failedBatch)) {
+            return;
+        }
+        failedBatch = List.of();
+        List<CallRecord> batch = new ArrayList<>(batchSize);
+        while (queue.drainTo(batch, batchSize) > 0 || drainOverflow(batch) > 0) {
+            if (!save(batch)) {
+                failedBatch = batch;
+                return;
+            }
+            batch = new ArrayList<>(batchSize);
+        }
+    }
+
+    /**
+     * 等待写库的话单数（含失败待重试的）
+     */
+    public synchronized int pendingCount() {
+        return failedBatch.size() + queue.size() + overflow.size();
+    }
+
+    private boolean save(List<CallRecord> batch) {
+        try {
+            callRecordService.saveAll(batch);
+            return true;
+        } catch (RuntimeException e) {
+            logger.error("话单批量写入失败，{} 条将在下次重试: {}", batch.size(), e.getMessage());
+            return false;
+        }
+    }
+
+    private int drainOverflow(List<CallRecord> batch) {
+        int drained = 0;
+        CallRecord record;
+        while (drained < batchSize && (record = overflow.poll()) != null) {
+            batch.add(record);
+            drained++;
+        }
+        return drained;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+        int pending = pendingCount();
+        if (pending > 0) {
+            logger.error("关闭时仍有 {} 条话单未写入", pending);
+        }
+    }
+
+    private boolean firstSeen(String callId) {
+        synchronized (recentCallIds) {
+            return recentCallIds.putIfAbsent(callId, Boolean.TRUE) == null;
+        }
+    }
+
+    static CallRecord toRecord(String localUri, CallDetailRecord cdr) {
+        CallRecord record = new CallRecord();
+        record.setCaller(cdr.incoming() ? cdr.remoteUri() : localUri);
+        record.setCallee(cdr.incoming() ? localUri : cdr.remoteUri());
+        record.setStartTime(toLocal(cdr.setupAt()));
+        record.setEndTime(toLocal(cdr.endedAt()));
+        record.setDuration(cdr.billableDuration().toSeconds());
+        record.setType("AUDIO");
+        record.setStatus(cdr.cause().name());
+        record.setCallId(cdr.callId());
+        return record;
+    }
+
+    private static LocalDateTime toLocal(Instant instant) {
+        return LocalDateTime.ofInstant(instant, ZoneId.systemDefault());
+    }
+}
@@ -1,9 +1,10 @@
 package com.example.admin.service;
 
-import com.example.admin.entity.CallRecord;
+import com.example.admin.entity.CallSummary;
 import com.example.admin.entity.DashboardSnapshot;
 import com.example.admin.entity.StatsSummary;
-import com.example.admin.entity.User; // 🔴 改动1：引入你的 User 类
+import com.example.admin.entity.UserSummary;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.time.Instant;
@@ -15,26 +16,32 @@ public class DashboardSnapshotService {
     private final StatsService statsService;
     private final UserService userService;
     private final CallRecordService callRecordService;
+    // 快照只带第一屏的数据，更多的通过 /api/dashboard/users、/api/dashboard/calls 分页获取
+    private final int userLimit;
+    private final int callLimit;
 
     public DashboardSnapshotService(
             StatsService statsService,
             UserService userService,
-            CallRecordService callRecordService
+            CallRecordService callRecordService,
+            @Value("${dashboard.snapshot.user-limit:100}") int userLimit,
+            @Value("${dashboard.snapshot.call-limit:20}") int callLimit
     ) {
         this.statsService = statsService;
         this.userService = userService;
         this.callRecordService = callRecordService;
+        this.userLimit = userLimit;
+        this.callLimit = callLimit;
     }
 
     public DashboardSnapshot capture() {
         StatsSummary stats = statsService.snapshot();
 
-        // 🔴 改动2：这里改成 List<User>，完美匹配你的 UserService
-        List<User> users = userService.listUsers();
+        // 只取仪表盘需要的字段（不含密码），带短时缓存
+        List<UserSummary> users = userService.listUserSummaries(0, userLimit).getContent();
 
-        List<CallRecord> calls = callRecordService.listCallRecords();
+        List<CallSummary> calls = callRecordService.recentCalls(callLimit);
 
-        // ⚠️ 注意：如果这里报错，说明 DashboardSnapshot 这个图纸也要改（见下一步）
         return new DashboardSnapshot(stats, users, calls, Instant.now());
     }
 }
\ No newline at end of file
@@ -1,19 +1,62 @@
 package com.example.admin.service;
 
 import com.example.admin.entity.Message;
+import com.example.admin.entity.UnreadCount;
+import com.example.admin.event.MessageReceivedEvent;
 import com.example.admin.repository.MessageRepository;
+import com.example.sipclient.chat.Imdn;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Service
 public class MessageService {
 
+    private static final Logger logger = LoggerFactory.getLogger(MessageService.class);
+
     @Autowired
     private MessageRepository messageRepository;
 
+    @Autowired
+    private SipService sipService;
+
+    // 未读计数：接收者 -> (发送者 -> 未读数)，首次查询时从数据库分组统计加载，之后随发消息/标记已读增量维护；
+    // 并发加载与发消息交错时可能差一两条，TTL 到期后重新统计
+    @Value("${messages.unread.ttl:10m}")
+    private Duration unreadTtl;
+
+    @Value("${messages.unread.max-users:10000}")
+    private int unreadMaxUsers;
+
+    private record UnreadCounters(Map<String, AtomicLong> byPeer, long expiresAtNanos) {
+    }
+
+    private final Map<String, UnreadCounters> unreadByReceiver = new ConcurrentHashMap<>();
+
+    // 托管用户收到的消息按到达顺序在这个线程中落库并回送送达回执，SIP 线程只发布事件
+    private final ExecutorService incomingWriter = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "incoming-messages");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     // 发送消息
     public Message sendMessage(String sender, String receiver, String content) {
         Message message = new Message();
@@ -23,11 +66,150 @@ public class MessageService {
         message.setTimestamp(LocalDateTime.now());
         message.setRead(false); // 刚发出去，默认未读
 
-        return messageRepository.save(message);
+        return saveUnread(message);
+    }
+
+    @EventListener
+    public void onMessageReceived(MessageReceivedEvent event) {
+        try {
+            incomingWriter.execute(() -> recordIncoming(event));
+        } catch (RejectedExecutionException e) {
+            // 应用关闭中
+            logger.warn("丢弃收到的消息: {} -> {}", event.fromUri(), event.localUri());
+        }
+    }
+
+    /**
+     * 托管用户经 SIP 收到的消息落库（记下发送者 URI 和 Call-ID），再以接收者身份回送送达回执
+     */
+    private void recordIncoming(MessageReceivedEvent event) {
+        Message message = new Message();
+        message.setSender(username(event.fromUri()));
+        message.setReceiver(username(event.localUri()));
+        message.setContent(event.body());
+        message.setTimestamp(LocalDateTime.now());
+        message.setRead(false);
+        message.setSenderUri(event.fromUri());
+        message.setSipMessageId(event.messageId());
+        try {
+            saveUnread(message);
+        } catch (RuntimeException e) {
+            logger.warn("保存收到的消息失败: {} -> {}: {}", event.fromUri(), event.localUri(), e.getMessage());
+            return;
+        }
+        if (event.messageId() == null) {
+            return;
+        }
+        try {
+            sipService.sendDispositionNotification(event.localUri(), event.fromUri(),
+                    new Imdn.Notification(event.messageId(), Imdn.Disposition.DELIVERED, Instant.now()));
+        } catch (Exception e) {
+            logger.warn("发送送达回执失败: {} -> {}: {}", event.localUri(), event.fromUri(), e.getMessage());
+        }
     }
 
     // 获取两个人的聊天历史
     public List<Message> getChatHistory(String user1, String user2) {
         return messageRepository.findChatHistory(user1, user2);
     }
+
+    // 某人的未读数，按发送者分组（只含未读数大于 0 的会话）
+    public Map<String, Long> getUnreadCounts(String receiver) {
+        Map<String, Long> counts = new TreeMap<>();
+        countersFor(receiver).byPeer().forEach((peer, count) -> {
+            if (count.get() > 0) {
+                counts.put(peer, count.get());
+            }
+        });
+        return counts;
+    }
+
+    /**
+     * 标记已读：reader 已看到 peer 发来的、ID 不超过 upToId 的所有消息。
+     * 一条 UPDATE 完成标记，然后以 reader 的身份回送已读回执（reader 托管在本节点时），
+     * 回执引用其中最新一条经 SIP 收到的消息的 Call-ID，发往它记录的发送者 URI。
+     * @param readerUri 读者 SIP URI
+     * @return 本次标记的消息数
+     */
+    public int markRead(String readerUri, String peer, Long upToId) {
+        String reader = username(readerUri);
+        int updated = messageRepository.markReadUpTo(reader, peer, upToId);
+        if (updated == 0) {
+            return 0;
+        }
+        unreadByReceiver.computeIfPresent(reader, (key, counters) -> {
+            AtomicLong count = counters.byPeer().get(peer);
+            if (count != null) {
+                count.updateAndGet(value -> Math.max(0, value - updated));
+            }
+            return counters;
+        });
+        Message latest = messageRepository
+                .findTopByReceiverAndSenderAndSipMessageIdNotNullAndIdLessThanEqualOrderByIdDesc(reader, peer, upToId)
+                .orElse(null);
+        if (latest == null) {
+            // 都是经 REST 发送的消息，没有可以引用的 SIP 消息
+            return updated;
+        }
+        try {
+            sipService.sendDispositionNotification(readerUri, latest.getSenderUri(),
+                    new Imdn.Notification(latest.getSipMessageId(), Imdn.Disposition.DISPLAYED, Instant.now()));
+        } catch (Exception e) {
+            // 回执是尽力而为，已读状态已经落库
+            logger.warn("发送已读回执失败: {} -> {}: {}", reader, peer, e.getMessage());
+        }
+        return updated;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        incomingWriter.shutdown();
+    }
+
+    private Message saveUnread(Message message) {
+        Message saved = messageRepository.save(message);
+        // 只更新已加载的计数，未加载的下次查询时从数据库统计
+        unreadByReceiver.computeIfPresent(message.getReceiver(), (key, counters) -> {
+            counters.byPeer().computeIfAbsent(message.getSender(), peer -> new AtomicLong()).incrementAndGet();
+            return counters;
+        });
+        return saved;
+    }
+
+    private UnreadCounters countersFor(String receiver) {
+        UnreadCounters counters = unreadByReceiver.get(receiver);
+        if (counters != null && counters.expiresAtNanos() - System.nanoTime() > 0) {
+            return counters;
+        }
+        if (unreadByReceiver.size() >= unreadMaxUsers) {
+            evictUnreadCounters();
+        }
+        return unreadByReceiver.compute(receiver, (key, current) ->
+                current != null && current.expiresAtNanos() - System.nanoTime() > 0 ? current : loadCounters(key));
+    }
+
+    private UnreadCounters loadCounters(String receiver) {
+        Map<String, AtomicLong> byPeer = new ConcurrentHashMap<>();
+        for (UnreadCount count : messageRepository.countUnreadBySender(receiver)) {
+            byPeer.put(count.peer(), new AtomicLong(count.count()));
+        }
+        return new UnreadCounters(byPeer, System.nanoTime() + unreadTtl.toNanos());
+    }
+
+    private void evictUnreadCounters() {
+        long now = System.nanoTime();
+        unreadByReceiver.values().removeIf(counters -> counters.expiresAtNanos() - now <= 0);
+        Iterator<String> it = unreadByReceiver.keySet().iterator();
+        while (unreadByReceiver.size() >= unreadMaxUsers && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+    }
+
+    // sip:alice@192.168.1.100:5060 -> alice
+    private static String username(String sipUri) {
+        String value = sipUri.startsWith("sip:") ? sipUri.substring(4) : sipUri;
+        int at = value.indexOf('@');
+        return at > 0 ? value.substring(0, at) : value;
+    }
 }
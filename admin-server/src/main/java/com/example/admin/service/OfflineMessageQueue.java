@@ -0,0 +1,268 @@
+package com.example.admin.service;
+
+import com.example.admin.cluster.ClusterMembership;
+import com.example.admin.entity.OfflineMessage;
+import com.example.admin.event.AgentRegisteredEvent;
+import com.example.admin.repository.OfflineMessageRepository;
+import com.example.sipclient.chat.MessageHandler;
+import com.example.sipclient.sip.SipUserAgent;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 离线消息队列（存储转发）
+ * 接收者不在线（480/404/408/503）或发送者未登录时，消息落库到 offline_messages；
+ * 接收者在本节点注册后按入队顺序分批投递，每个接收者同一时间只有一个投递任务，并按速率上限限速；
+ * 已有积压的接收者，新消息直接排在队尾，保证顺序。过期消息定时清理。
+ * 集群模式下只有接收者的托管节点投递其积压，避免多个节点重复、乱序投递。
+ */
+@Service
+public class OfflineMessageQueue {
+
+    private static final Logger logger = LoggerFactory.getLogger(OfflineMessageQueue.class);
+
+    private static final int RETRY_PAGE_SIZE = 500;
+
+    public enum Delivery {
+        /** 对端已接收 */
+        SENT,
+        /** 对端不在线，已存入离线队列 */
+        QUEUED,
+        /** 对端明确拒绝（例如 403、415），不会重试 */
+        REJECTED
+    }
+
+    private final OfflineMessageRepository repository;
+    private final SipService sipService;
+    private final ClusterMembership clusterMembership;
+    private final Duration ttl;
+    private final int maxPerRecipient;
+    private final int batchSize;
+    private final long intervalNanos;
+    private final Duration deliveryTimeout;
+    private final ExecutorService deliveryPool;
+    // 正在投递的接收者
+    private final Set<String> flushing = ConcurrentHashMap.newKeySet();
+
+    public OfflineMessageQueue(OfflineMessageRepository repository,
+                               SipService sipService,
+                               ClusterMembership clusterMembership,
+                               @Value("${offline.ttl:7d}") Duration ttl,
+                               @Value("${offline.max-per-recipient:1000}") int maxPerRecipient,
+                               @Value("${offline.batch-size:50}") int batchSize,
+                               @Value("${offline.rate-per-second:20}") int ratePerSecond,
+                               @Value("${offline.delivery-threads:4}") int deliveryThreads,
+                               @Value("${offline.delivery-timeout:40s}") Duration deliveryTimeout) {
+        if (maxPerRecipient <= 0 || batchSize <= 0 || ratePerSecond <= 0 || deliveryThreads <= 0) {
+            throw new IllegalArgumentException("offline.* limits must be positive");
+        }
+        this.repository = repository;
+        this.sipService = sipService;
+        this.clusterMembership = clusterMembership;
+        this.ttl = ttl;
+        this.maxPerRecipient = maxPerRecipient;
+        this.batchSize = batchSize;
+        this.intervalNanos = TimeUnit.SECONDS.toNanos(1) / ratePerSecond;
+        this.deliveryTimeout = deliveryTimeout;
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.deliveryPool = Executors.newFixedThreadPool(deliveryThreads, runnable -> {
+            Thread thread = new Thread(runnable, "offline-delivery-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 发送消息，对端不在线时转入离线队列
+     * @param fromSipUri 发送者 SIP URI（不要求在线）
+     * @param toSipUri 接收者 SIP URI
+     */
+    public CompletableFuture<Delivery> send(String fromSipUri, String toSipUri, String content) throws Exception {
+        SipUserAgent sender = sipService.getUserAgent(fromSipUri);
+        if (sender == null || !sender.isRegistered() || repository.existsByRecipient(toSipUri)) {
+            enqueue(fromSipUri, toSipUri, content);
+            flush(toSipUri);
+            return CompletableFuture.completedFuture(Delivery.QUEUED);
+        }
+        return sender.sendMessage(toSipUri, content).thenApply(status -> {
+            if (status >= 200 && status < 300) {
+                return Delivery.SENT;
+            }
+            if (!isUndeliverable(status)) {
+                logger.warn("消息被拒绝 (status={}): {} -> {}", status, fromSipUri, toSipUri);
+                return Delivery.REJECTED;
+            }
+            enqueue(fromSipUri, toSipUri, content);
+            return Delivery.QUEUED;
+        });
+    }
+
+    /**
+     * 存入离线队列
+     * @throws IllegalStateException 该接收者的积压已达上限
+     */
+    public OfflineMessage enqueue(String fromSipUri, String toSipUri, String content) {
+        if (repository.countByRecipient(toSipUri) >= maxPerRecipient) {
+            throw new IllegalStateException("接收者离线消息已达上限: " + toSipUri);
+        }
+        OfflineMessage message = new OfflineMessage();
+        message.setSender(fromSipUri);
+        message.setRecipient(toSipUri);
+        message.setContent(content);
+        LocalDateTime now = LocalDateTime.now();
+        message.setCreatedAt(now);
+        message.setExpiresAt(now.plus(ttl));
+        return repository.save(message);
+    }
+
+    @EventListener
+    public void onAgentRegistered(AgentRegisteredEvent event) {
+        flush(event.sipUri());
+    }
+
+    // 定时重试有积压的接收者（例如离线后未再注册、由发送者经 SIP 投递的情况）；其他节点托管的接收者由该节点重试
+    @Scheduled(fixedDelayString = "${offline.retry-interval:PT60S}")
+    public void retryPending() {
+        for (int page = 0; ; page++) {
+            List<String> recipients = repository.findRecipients(PageRequest.of(page, RETRY_PAGE_SIZE));
+            recipients.stream().filter(clusterMembership::isLocal).forEach(this::flush);
+            if (recipients.size() < RETRY_PAGE_SIZE) {
+                break;
+            }
+        }
+    }
+
+    @Scheduled(cron = "${offline.purge-cron:0 30 * * * *}")
+    public void purgeExpired() {
+        int removed = repository.deleteExpired(LocalDateTime.now());
+        if (removed > 0) {
+            logger.info("清理过期离线消息 {} 条", removed);
+        }
+    }
+
+    /**
+     * 异步投递某个接收者的积压消息；已有投递任务或接收者不由本节点托管时忽略
+     */
+    public void flush(String recipient) {
+        if (!clusterMembership.isLocal(recipient) || !flushing.add(recipient)) {
+            return;
+        }
+        try {
+            deliveryPool.execute(() -> {
+                try {
+                    drain(recipient);
+                } catch (RuntimeException e) {
+                    logger.warn("投递离线消息失败: {}: {}", recipient, e.getMessage());
+                } finally {
+                    flushing.remove(recipient);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            flushing.remove(recipient);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        deliveryPool.shutdownNow();
+    }
+
+    private void drain(String recipient) {
+        int total = 0;
+        while (!Thread.currentThread().isInterrupted()) {
+            List<OfflineMessage> batch = repository.findByRecipientAndExpiresAtAfterOrderByIdAsc(
+                    recipient, LocalDateTime.now(), PageRequest.of(0, batchSize));
+            if (batch.isEmpty()) {
+                break;
+            }
+            List<Long> delivered = new ArrayList<>(batch.size());
+            boolean stalled = false;
+            for (OfflineMessage message : batch) {
+                long started = System.nanoTime();
+                if (!deliver(message)) {
+                    stalled = true;
+                    break;
+                }
+                delivered.add(message.getId());
+                if (!pace(started)) {
+                    stalled = true;
+                    break;
+                }
+            }
+            repository.deleteAllByIdInBatch(delivered);
+            total += delivered.size();
+            if (stalled || batch.size() < batchSize) {
+                break;
+            }
+        }
+        if (total > 0) {
+            logger.info("已投递 {} 条离线消息给 {}", total, recipient);
+        }
+    }
+
+    private boolean deliver(OfflineMessage message) {
+        // 接收者在本节点托管：直接交给它的消息处理器（同时推送到 WebSocket）
+        SipUserAgent recipient = sipService.getUserAgent(message.getRecipient());
+        if (recipient != null && recipient.isRegistered()) {
+            MessageHandler handler = recipient.getMessageHandler();
+            if (handler != null) {
+                handler.handleIncomingMessage(message.getSender(), message.getContent(), null);
+                return true;
+            }
+        }
+        // 否则由在线的发送者经 SIP 投递，等最终响应以保证顺序
+        SipUserAgent sender = sipService.getUserAgent(message.getSender());
+        if (sender == null || !sender.isRegistered()) {
+            return false;
+        }
+        try {
+            int status = sender.sendMessage(message.getRecipient(), message.getContent())
+                    .get(deliveryTimeout.toMillis(), TimeUnit.MILLISECONDS);
+            return status >= 200 && status < 300;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    // 单个接收者的速率上限
+    private boolean pace(long startedNanos) {
+        long remaining = intervalNanos - (System.nanoTime() - startedNanos);
+        if (remaining <= 0) {
+            return true;
+        }
+        try {
+            TimeUnit.NANOSECONDS.sleep(remaining);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static boolean isUndeliverable(int status) {
+        // 404 未注册、408 超时、480 暂时不可用、503 服务不可用/本端关闭
+        return status == 404 || status == 408 || status == 480 || status == 503;
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.admin.service;
+
+import com.example.admin.cluster.ClusterMembership;
+import com.example.admin.cluster.MembershipChangedEvent;
+import com.example.sipclient.presence.PresenceStatus;
+import com.example.sipclient.presence.PresenceUpdate;
+import com.example.sipclient.sip.SipUserAgent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 在线状态服务
+ * 在内存中记录本节点用户的在线状态，并通过用户的 SipUserAgent 发布（PUBLISH + 向订阅者 NOTIFY）。
+ * 只保存本节点托管的用户，集群模式下不代表全局在线人数（仪表盘按数据库计数）。
+ */
+@Service
+public class PresenceService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PresenceService.class);
+
+    private final Map<String, PresenceUpdate> statuses = new ConcurrentHashMap<>();
+
+    @Autowired
+    private SipService sipService;
+
+    @Autowired
+    private ClusterMembership clusterMembership;
+
+    /**
+     * 更新用户状态；OFFLINE 会从表中移除
+     * @param sipUri SIP URI
+     * @param status 新状态
+     * @param note 可选的状态说明
+     */
+    public void updateStatus(String sipUri, PresenceStatus status, String note) {
+        if (status == PresenceStatus.OFFLINE) {
+            statuses.remove(sipUri);
+        } else {
+            statuses.put(sipUri, new PresenceUpdate(sipUri, status, note));
+        }
+        SipUserAgent userAgent = sipService.getUserAgent(sipUri);
+        if (userAgent == null) {
+            return;
+        }
+        try {
+            userAgent.publishPresence(status, note);
+        } catch (Exception e) {
+            // 发布失败不影响本地状态，订阅者在下次变化时得到最新状态
+            logger.warn("发布在线状态失败: {} -> {}: {}", sipUri, status, e.getMessage());
+        }
+    }
+
+    /**
+     * 获取用户状态，未记录时为 OFFLINE
+     */
+    public PresenceStatus getStatus(String sipUri) {
+        PresenceUpdate update = statuses.get(sipUri);
+        return update == null ? PresenceStatus.OFFLINE : update.status();
+    }
+
+    /**
+     * 迁出的用户由新的归属节点记录状态
+     */
+    @EventListener
+    public void onMembershipChanged(MembershipChangedEvent event) {
+        statuses.keySet().removeIf(sipUri -> !clusterMembership.isLocal(sipUri));
+    }
+}
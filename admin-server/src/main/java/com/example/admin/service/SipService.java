@@ -1,12 +1,22 @@
 package com.example.admin.service;
 
+import com.example.admin.cluster.ClusterMembership;
+import com.example.admin.cluster.MembershipChangedEvent;
+import com.example.admin.event.AgentRegisteredEvent;
+import com.example.admin.event.SipEventBridge;
+import com.example.sipclient.chat.Imdn;
 import com.example.sipclient.sip.SipUserAgent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
 import jakarta.annotation.PreDestroy;
 import java.time.Duration;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -21,6 +31,25 @@ public class SipService {
     
     // 存储每个用户的 SipUserAgent 实例
     private final Map<String, SipUserAgent> userAgents = new ConcurrentHashMap<>();
+
+    // 关闭时所有注销请求共享的截止时间
+    @Value("${sip.shutdown.deadline:5s}")
+    private Duration shutdownDeadline;
+
+    @Value("${sip.shutdown.parallelism:64}")
+    private int shutdownParallelism;
+
+    @Autowired
+    private ClusterMembership clusterMembership;
+
+    @Autowired
+    private SipEventBridge sipEventBridge;
+
+    @Autowired
+    private CdrRecorder cdrRecorder;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
     
     /**
      * 注册 SIP 用户
@@ -34,6 +63,11 @@ public class SipService {
     public SipUserAgent register(String sipUri, String password, String localIp, int localPort) throws Exception {
         logger.info("开始注册 SIP 用户: {}", sipUri);
         
+        if (!clusterMembership.isLocal(sipUri)) {
+            // 正常情况下 ClusterRoutingFilter 已经转发，这里只在成员视图变化的瞬间出现
+            logger.warn("用户 {} 归属节点 {}，仍在本节点注册", sipUri, clusterMembership.ownerOf(sipUri));
+        }
+
         // 检查是否已经注册
         if (userAgents.containsKey(sipUri)) {
             logger.info("用户已经注册，返回现有连接: {}", sipUri);
@@ -42,6 +76,10 @@ public class SipService {
         
         // 创建并初始化 SipUserAgent
         SipUserAgent userAgent = new SipUserAgent(sipUri, password, localIp, localPort);
+        // 来信、来电、呼叫和注册状态推送到用户的 WebSocket 会话
+        sipEventBridge.attach(sipUri, userAgent);
+        // 呼叫结束后自动生成话单
+        cdrRecorder.attach(sipUri, userAgent);
         
         // 执行注册
         userAgent.register(Duration.ofSeconds(5));
@@ -53,6 +91,8 @@ public class SipService {
         // 保存到映射表
         userAgents.put(sipUri, userAgent);
         logger.info("SIP 用户注册成功: {}", sipUri);
+        // 投递注册前积压的离线消息
+        eventPublisher.publishEvent(new AgentRegisteredEvent(sipUri));
         
         return userAgent;
     }
@@ -65,7 +105,8 @@ public class SipService {
         SipUserAgent userAgent = userAgents.remove(sipUri);
         if (userAgent != null) {
             try {
-                userAgent.unregister(Duration.ofSeconds(3));
+                // shutdown 会先注销，再释放协议栈、端口和定时器
+                userAgent.shutdown(Duration.ofSeconds(3));
                 logger.info("SIP 用户注销成功: {}", sipUri);
             } catch (Exception e) {
                 logger.error("注销 SIP 用户失败: {}", sipUri, e);
@@ -109,6 +150,23 @@ public class SipService {
         logger.info("消息发送成功: {} -> {}", fromSipUri, toSipUri);
     }
     
+    /**
+     * 以 reader 的身份向消息发送者回送 IMDN 处置通知
+     * @param readerUri 确认消息的用户 SIP URI
+     * @param senderUri 消息发送者 SIP URI（收到消息时的 From）
+     * @return reader 未在本节点托管时返回 false
+     * @throws Exception 发送失败
+     */
+    public boolean sendDispositionNotification(String readerUri, String senderUri, Imdn.Notification notification)
+            throws Exception {
+        SipUserAgent userAgent = userAgents.get(readerUri);
+        if (userAgent == null) {
+            return false;
+        }
+        userAgent.sendDispositionNotification(senderUri, notification);
+        return true;
+    }
+
     /**
      * 发起呼叫
      * @param fromSipUri 发起者 SIP URI
@@ -142,18 +200,45 @@ public class SipService {
     }
     
     /**
-     * 应用关闭时清理所有连接
+     * 集群成员变化后释放不再归属本节点的连接，用户下次登录会被路由到新的归属节点
      */
-    @PreDestroy
-    public void cleanup() {
-        logger.info("清理所有 SIP 连接...");
+    @EventListener
+    public void onMembershipChanged(MembershipChangedEvent event) {
+        Map<String, SipUserAgent> moved = new HashMap<>();
         userAgents.forEach((sipUri, userAgent) -> {
-            try {
-                userAgent.unregister(Duration.ofSeconds(3));
-            } catch (Exception e) {
-                logger.error("清理 SIP 连接失败: {}", sipUri, e);
+            if (!clusterMembership.isLocal(sipUri) && userAgents.remove(sipUri, userAgent)) {
+                moved.put(sipUri, userAgent);
             }
         });
+        if (moved.isEmpty()) {
+            return;
+        }
+        logger.info("集群重新平衡: 释放 {} 个已迁出的 SIP 连接", moved.size());
+        SipShutdownCoordinator.ShutdownReport report =
+                new SipShutdownCoordinator(shutdownDeadline, shutdownParallelism).shutdownAll(moved);
+        logger.info("迁出完成: 注销成功 {}，失败 {}，超时 {}", report.unregistered(),
+                report.unregisterFailed(), report.unregisterTimedOut());
+    }
+
+    /**
+     * 当前托管的 SIP 连接数
+     */
+    public int getAgentCount() {
+        return userAgents.size();
+    }
+
+    /**
+     * 应用关闭时清理所有连接
+     */
+    @PreDestroy
+    public void cleanup() {
+        Map<String, SipUserAgent> agents = new HashMap<>(userAgents);
         userAgents.clear();
+        logger.info("清理所有 SIP 连接: {} 个", agents.size());
+        SipShutdownCoordinator.ShutdownReport report =
+                new SipShutdownCoordinator(shutdownDeadline, shutdownParallelism).shutdownAll(agents);
+        logger.info("SIP 连接清理完成: 共 {}，注销成功 {}，失败 {}，超时 {}，已释放 {}，注销耗时 {} ms，释放耗时 {} ms",
+                report.total(), report.unregistered(), report.unregisterFailed(), report.unregisterTimedOut(),
+                report.stopped(), report.unregisterMillis(), report.teardownMillis());
     }
 }
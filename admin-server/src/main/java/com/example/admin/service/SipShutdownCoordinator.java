@@ -0,0 +1,157 @@
+package com.example.admin.service;
+
+import com.example.sipclient.sip.SipUserAgent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 批量关闭托管的 SipUserAgent
+ * 第一阶段并发发送所有注销请求，共享一个全局截止时间；第二阶段并发释放协议栈、端口和定时器。
+ * 关闭耗时不再随用户数线性增长。
+ */
+public class SipShutdownCoordinator {
+
+    private static final Logger logger = LoggerFactory.getLogger(SipShutdownCoordinator.class);
+
+    /** 释放资源阶段的额外时间，SipUserAgent.shutdown 最多等待调度器 2 秒 */
+    private static final Duration TEARDOWN_GRACE = Duration.ofSeconds(3);
+
+    /**
+     * 关闭结果统计
+     * @param timedOutUris 截止时间内没有完成注销的用户
+     */
+    public record ShutdownReport(int total, int unregistered, int unregisterFailed, int unregisterTimedOut,
+                                 int stopped, long unregisterMillis, long teardownMillis,
+                                 List<String> timedOutUris) {
+    }
+
+    private final Duration deadline;
+    private final int parallelism;
+
+    public SipShutdownCoordinator(Duration deadline, int parallelism) {
+        if (deadline == null || deadline.isNegative() || deadline.isZero()) {
+            throw new IllegalArgumentException("deadline must be positive");
+        }
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("parallelism must be positive");
+        }
+        this.deadline = deadline;
+        this.parallelism = parallelism;
+    }
+
+    public ShutdownReport shutdownAll(Map<String, SipUserAgent> agents) {
+        int total = agents.size();
+        if (total == 0) {
+            return new ShutdownReport(0, 0, 0, 0, 0, 0, 0, List.of());
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, total), daemonThreads());
+        try {
+            long deadlineNanos = System.nanoTime() + deadline.toNanos();
+
+            // 第一阶段：并发注销
+            long unregisterStart = System.nanoTime();
+            AtomicInteger progress = new AtomicInteger();
+            List<String> sipUris = new ArrayList<>(total);
+            List<Callable<Boolean>> unregisters = new ArrayList<>(total);
+            agents.forEach((sipUri, agent) -> {
+                sipUris.add(sipUri);
+                unregisters.add(() -> {
+                    try {
+                        long remaining = deadlineNanos - System.nanoTime();
+                        return agent.isRegistered() && remaining > 0
+                                ? agent.unregister(Duration.ofNanos(remaining))
+                                : !agent.isRegistered();
+                    } finally {
+                        logProgress("注销", progress.incrementAndGet(), total);
+                    }
+                });
+            });
+            List<Future<Boolean>> results = invokeAll(executor, unregisters, deadlineNanos - System.nanoTime());
+            int unregistered = 0;
+            int failed = 0;
+            List<String> timedOut = new ArrayList<>();
+            for (int i = 0; i < results.size(); i++) {
+                Future<Boolean> result = results.get(i);
+                try {
+                    if (result.get()) {
+                        unregistered++;
+                    } else {
+                        failed++;
+                    }
+                } catch (CancellationException e) {
+                    timedOut.add(sipUris.get(i));
+                } catch (ExecutionException e) {
+                    failed++;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    timedOut.add(sipUris.get(i));
+                }
+            }
+            if (!timedOut.isEmpty()) {
+                logger.warn("注销超时: {}", timedOut);
+            }
+            long unregisterMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - unregisterStart);
+
+            // 第二阶段：并发释放资源，不再等待注销
+            long teardownStart = System.nanoTime();
+            AtomicInteger stopped = new AtomicInteger();
+            List<Callable<Void>> teardowns = new ArrayList<>(total);
+            agents.forEach((sipUri, agent) -> teardowns.add(() -> {
+                try {
+                    agent.shutdown(Duration.ZERO);
+                    stopped.incrementAndGet();
+                } catch (Exception e) {
+                    logger.error("释放 SIP 连接失败: {}", sipUri, e);
+                }
+                return null;
+            }));
+            long teardownBudget = Math.max(deadlineNanos - System.nanoTime(), 0) + TEARDOWN_GRACE.toNanos();
+            invokeAll(executor, teardowns, teardownBudget);
+            long teardownMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - teardownStart);
+
+            return new ShutdownReport(total, unregistered, failed, timedOut.size(), stopped.get(),
+                    unregisterMillis, teardownMillis, List.copyOf(timedOut));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static <T> List<Future<T>> invokeAll(ExecutorService executor, List<Callable<T>> tasks, long timeoutNanos) {
+        try {
+            return executor.invokeAll(tasks, Math.max(timeoutNanos, 0), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return List.of();
+        }
+    }
+
+    private static void logProgress(String phase, int done, int total) {
+        int step = Math.max(total / 10, 1);
+        if (done % step == 0 || done == total) {
+            logger.info("{}进度: {}/{}", phase, done, total);
+        }
+    }
+
+    private static ThreadFactory daemonThreads() {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "sip-shutdown-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,183 @@
+package com.example.admin.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * SSE 广播器
+ * 每条事件只构造一次（正文为预先序列化好的 JSON 字节，所有订阅者共享），再由独立线程池异步写给各个订阅者。
+ * 每个订阅者有一个很小的待发送队列：快照类数据只需要最新的一条，队列满时丢弃最旧的；
+ * 连续丢弃过多说明客户端读得太慢，直接断开，避免占用写线程。
+ */
+public class SseBroadcaster implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(SseBroadcaster.class);
+
+    /** 预先构造好的一条 SSE 事件，可以同时写给多个订阅者 */
+    public record Frame(Set<SseEmitter.DataWithMediaType> items) {
+
+        public static Frame of(String eventName, byte[] json) {
+            return new Frame(SseEmitter.event()
+                    .name(eventName)
+                    .data(json, MediaType.APPLICATION_JSON)
+                    .build());
+        }
+    }
+
+    private final int maxSubscribers;
+    private final int queueCapacity;
+    private final int maxConsecutiveDrops;
+    private final ExecutorService writers;
+    private final CopyOnWriteArrayList<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private final AtomicLong droppedFrames = new AtomicLong();
+
+    public SseBroadcaster(int maxSubscribers, int writerThreads, int queueCapacity, int maxConsecutiveDrops) {
+        if (maxSubscribers <= 0 || writerThreads <= 0 || queueCapacity <= 0 || maxConsecutiveDrops <= 0) {
+            throw new IllegalArgumentException("broadcaster limits must be positive");
+        }
+        this.maxSubscribers = maxSubscribers;
+        this.queueCapacity = queueCapacity;
+        this.maxConsecutiveDrops = maxConsecutiveDrops;
+        AtomicInteger counter = new AtomicInteger();
+        this.writers = Executors.newFixedThreadPool(writerThreads, runnable -> {
+            Thread thread = new Thread(runnable, "sse-writer-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 登记新的订阅者
+     * @return 达到订阅上限时返回 false，调用方应拒绝连接
+     */
+    public boolean subscribe(SseEmitter emitter) {
+        Subscriber subscriber = new Subscriber(emitter);
+        synchronized (subscribers) {
+            if (subscribers.size() >= maxSubscribers) {
+                return false;
+            }
+            subscribers.add(subscriber);
+        }
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(error -> {
+            subscribers.remove(subscriber);
+            logger.debug("SSE connection closed because of error: {}", error.getMessage());
+        });
+        return true;
+    }
+
+    /**
+     * 只发给某一个订阅者，例如新连接的首个快照
+     */
+    public void send(SseEmitter emitter, Frame frame) {
+        for (Subscriber subscriber : subscribers) {
+            if (subscriber.emitter == emitter) {
+                subscriber.offer(frame);
+                return;
+            }
+        }
+    }
+
+    public void broadcast(Frame frame) {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.offer(frame);
+        }
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    public long getDroppedFrames() {
+        return droppedFrames.get();
+    }
+
+    @Override
+    public void close() {
+        writers.shutdownNow();
+        for (Subscriber subscriber : subscribers) {
+            subscriber.emitter.complete();
+        }
+        subscribers.clear();
+    }
+
+    private final class Subscriber {
+        private final SseEmitter emitter;
+        private final ArrayDeque<Frame> pending = new ArrayDeque<>();
+        private boolean draining;
+        private int consecutiveDrops;
+
+        private Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        private void offer(Frame frame) {
+            synchronized (this) {
+                if (pending.size() >= queueCapacity) {
+                    pending.pollFirst();
+                    droppedFrames.incrementAndGet();
+                    if (++consecutiveDrops >= maxConsecutiveDrops) {
+                        evict(new IOException("slow SSE consumer"));
+                        return;
+                    }
+                }
+                pending.addLast(frame);
+                if (draining) {
+                    return;
+                }
+                draining = true;
+            }
+            try {
+                writers.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                synchronized (this) {
+                    draining = false;
+                }
+            }
+        }
+
+        private void drain() {
+            while (true) {
+                Frame frame;
+                synchronized (this) {
+                    frame = pending.pollFirst();
+                    if (frame == null) {
+                        draining = false;
+                        return;
+                    }
+                }
+                try {
+                    emitter.send(frame.items());
+                    synchronized (this) {
+                        consecutiveDrops = 0;
+                    }
+                } catch (IOException | IllegalStateException e) {
+                    evict(e);
+                    return;
+                }
+            }
+        }
+
+        private void evict(Exception cause) {
+            subscribers.remove(this);
+            synchronized (this) {
+                pending.clear();
+            }
+            emitter.completeWithError(cause);
+            logger.debug("Removed SSE emitter after failure: {}", cause.getMessage());
+        }
+    }
+}
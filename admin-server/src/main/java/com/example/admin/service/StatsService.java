@@ -2,7 +2,6 @@ package com.example.admin.service;
 
 import com.example.admin.entity.StatsSummary;
 import com.example.admin.repository.CallRecordRepository;
-import com.example.admin.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
@@ -10,22 +9,17 @@ import org.springframework.stereotype.Service;
 public class StatsService {
 
     @Autowired
-    private UserRepository userRepository;
+    private UserService userService;
 
     @Autowired
     private CallRecordRepository callRecordRepository;
 
-    // 以前这里依赖 InMemoryStore，现在不需要了，直接查数据库！
-
     public StatsSummary snapshot() {
-        // 1. 从你的数据库查用户总数
-        int total = (int) userRepository.count();
-
-        // 2. 从你的数据库查在线人数
-        // 这里的 .isOnline() 调用的就是你自己写的 User.java 里的方法
-        int online = (int) userRepository.findAll().stream()
-                .filter(user -> user.isOnline())
-                .count();
+        // 1. 用户总数（带短时缓存）
+        int total = (int) userService.countUsers();
+
+        // 2. 在线人数按库中的在线标记计数（各节点共享），不再每次加载全部用户
+        int online = (int) userService.countOnlineUsers();
 
         // 3. 从你的数据库查通话记录总数
         // (队友原本想查"进行中"的电话，但你的表结构里暂时没有状态字段，我们先查总数，保证不报错)
@@ -2,13 +2,21 @@ package com.example.admin.service;
 
 
 import com.example.admin.entity.User;
+import com.example.admin.entity.UserSummary;
 import com.example.admin.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Service
 public class UserService {
@@ -16,9 +24,36 @@ public class UserService {
     @Autowired
     private UserRepository userRepository;
 
+    // 读穿透缓存：用户名 -> 用户，写操作经过本服务时同步更新；TTL 兜底其它途径的修改
+    @Value("${user.cache.ttl:10m}")
+    private Duration cacheTtl;
+
+    @Value("${user.cache.max-size:10000}")
+    private int cacheMaxSize;
+
+    // 仪表盘用户列表每 5 秒读取一次，缓存较短时间即可
+    @Value("${user.cache.summary-ttl:30s}")
+    private Duration summaryTtl;
+
+    private record CachedUser(User user, long expiresAtNanos) {
+    }
+
+    private record CachedPage(Slice<UserSummary> page, long expiresAtNanos) {
+    }
+
+    private record CachedCount(long count, long expiresAtNanos) {
+    }
+
+    private static final int MAX_CACHED_PAGES = 64;
+
+    private final Map<String, CachedUser> usersByName = new ConcurrentHashMap<>();
+    private final Map<String, CachedPage> summaryPages = new ConcurrentHashMap<>();
+    private volatile CachedCount userCount;
+    private volatile CachedCount onlineCount;
+
     // 技能1：用户注册
     public User register(String username, String password, String nickname) {
-        if (userRepository.existsByUsername(username)) {
+        if (findByUsername(username).isPresent()) {
             throw new RuntimeException("用户名已存在！");
         }
 
@@ -29,26 +64,138 @@ public class UserService {
         user.setOnline(false);
         user.setLastActiveTime(LocalDateTime.now());
 
-        return userRepository.save(user);
+        // 用户名有唯一约束，并发注册时由数据库拒绝重复
+        User saved = userRepository.save(user);
+        cache(saved);
+        invalidateListings();
+        return copyOf(saved);
     }
 
     // 技能2：用户登录
     public User login(String username, String password) {
-        Optional<User> userOpt = userRepository.findByUsername(username);
+        Optional<User> userOpt = findByUsername(username);
 
         if (userOpt.isPresent()) {
             User user = userOpt.get();
             if (user.getPassword().equals(password)) {
+                LocalDateTime now = LocalDateTime.now();
+                if (userRepository.updatePresence(user.getId(), true, now) == 0) {
+                    // 用户已被其它途径删除
+                    evict(username);
+                    return null;
+                }
                 user.setOnline(true);
-                user.setLastActiveTime(LocalDateTime.now());
-                return userRepository.save(user);
+                user.setLastActiveTime(now);
+                cache(user);
+                invalidateListings();
+                return copyOf(user);
             }
         }
         return null;
     }
 
+    /**
+     * 按用户名查找，优先读缓存
+     * @return 用户副本，调用方修改不会影响缓存
+     */
+    public Optional<User> findByUsername(String username) {
+        if (username == null) {
+            return Optional.empty();
+        }
+        CachedUser cached = usersByName.get(username);
+        if (cached != null && cached.expiresAtNanos() - System.nanoTime() > 0) {
+            return Optional.of(copyOf(cached.user()));
+        }
+        Optional<User> loaded = userRepository.findByUsername(username);
+        loaded.ifPresentOrElse(this::cache, () -> usersByName.remove(username));
+        return loaded.map(UserService::copyOf);
+    }
+
+    /**
+     * 分页的用户列表（投影查询，不含密码）
+     * 仪表盘每 5 秒读取同一页，按页缓存，写操作经过本服务时清空
+     */
+    public Slice<UserSummary> listUserSummaries(int page, int size) {
+        String key = page + ":" + size;
+        CachedPage cached = summaryPages.get(key);
+        if (cached != null && cached.expiresAtNanos() - System.nanoTime() > 0) {
+            return cached.page();
+        }
+        Slice<UserSummary> loaded = userRepository.findSummaries(PageRequest.of(page, size));
+        if (summaryPages.size() >= MAX_CACHED_PAGES) {
+            summaryPages.clear();
+        }
+        summaryPages.put(key, new CachedPage(loaded, System.nanoTime() + summaryTtl.toNanos()));
+        return loaded;
+    }
+
+    /**
+     * 用户总数，与分页列表共用缓存时间
+     */
+    public long countUsers() {
+        CachedCount cached = userCount;
+        if (cached != null && cached.expiresAtNanos() - System.nanoTime() > 0) {
+            return cached.count();
+        }
+        long count = userRepository.count();
+        userCount = new CachedCount(count, System.nanoTime() + summaryTtl.toNanos());
+        return count;
+    }
+
+    /**
+     * 在线用户数，与用户总数共用缓存时间
+     */
+    public long countOnlineUsers() {
+        CachedCount cached = onlineCount;
+        if (cached != null && cached.expiresAtNanos() - System.nanoTime() > 0) {
+            return cached.count();
+        }
+        long count = userRepository.countOnline();
+        onlineCount = new CachedCount(count, System.nanoTime() + summaryTtl.toNanos());
+        return count;
+    }
+
     // 🆕 新增技能3：获取所有用户列表 (这就是报错缺少的方法)
     public List<User> listUsers() {
         return userRepository.findAll();
     }
+
+    /**
+     * 清除某个用户的缓存，供绕过本服务修改用户表的代码调用
+     */
+    public void evict(String username) {
+        usersByName.remove(username);
+        invalidateListings();
+    }
+
+    private void invalidateListings() {
+        summaryPages.clear();
+        userCount = null;
+        onlineCount = null;
+    }
+
+    private void cache(User user) {
+        if (usersByName.size() >= cacheMaxSize) {
+            long now = System.nanoTime();
+            usersByName.values().removeIf(entry -> entry.expiresAtNanos() - now <= 0);
+            // 仍然已满时淘汰一部分，保持缓存有界
+            Iterator<String> iterator = usersByName.keySet().iterator();
+            while (usersByName.size() >= cacheMaxSize && iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+            }
+        }
+        usersByName.put(user.getUsername(), new CachedUser(copyOf(user), System.nanoTime() + cacheTtl.toNanos()));
+    }
+
+    private static User copyOf(User source) {
+        User copy = new User();
+        copy.setId(source.getId());
+        copy.setUsername(source.getUsername());
+        copy.setPassword(source.getPassword());
+        copy.setNickname(source.getNickname());
+        copy.setOnline(source.isOnline());
+        copy.setLastActiveTime(source.getLastActiveTime());
+        return copy;
+    }
 }
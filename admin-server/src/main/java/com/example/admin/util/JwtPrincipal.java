@@ -0,0 +1,16 @@
+package com.example.admin.util;
+
+import java.time.Instant;
+
+/**
+ * 验证通过的 Token 中的用户信息
+ * @param userId 用户ID（SIP URI）
+ * @param displayName 用户显示名
+ * @param expiresAt Token 过期时间
+ */
+public record JwtPrincipal(String userId, String displayName, Instant expiresAt) {
+
+    public boolean isExpired(Instant now) {
+        return !now.isBefore(expiresAt);
+    }
+}
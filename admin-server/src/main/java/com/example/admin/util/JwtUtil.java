@@ -1,28 +1,53 @@
 package com.example.admin.util;
 
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * JWT 工具类
  * 用于生成和验证 JWT Token
+ * 解析器只构建一次；验签通过的 Token 缓存到其 exp 为止，同一 Token 的后续请求不再重复计算 HMAC。
  */
 @Component
 public class JwtUtil {
     
-    // JWT 密钥（生产环境应该从配置文件读取）
-    private static final SecretKey SECRET_KEY = Keys.secretKeyFor(SignatureAlgorithm.HS256);
+    // JWT 密钥：配置了 jwt.secret（至少 32 字节）时使用它，集群中所有节点必须一致；否则每次启动随机生成
+    private final SecretKey secretKey;
     
     // Token 有效期：1小时
     private static final long EXPIRATION_TIME = 3600000;
+
+    // 解析器不可变且线程安全，所有请求共享
+    private final JwtParser parser;
+
+    // 已验证的 Token -> 用户信息，条目在 Token 过期后失效
+    private final Map<String, JwtPrincipal> verifiedTokens = new ConcurrentHashMap<>();
+    private final int cacheMaxSize;
+
+    public JwtUtil(@Value("${jwt.secret:}") String secret,
+                   @Value("${jwt.cache.max-size:10000}") int cacheMaxSize) {
+        this.secretKey = secret.isBlank()
+                ? Keys.secretKeyFor(SignatureAlgorithm.HS256)
+                : Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
+        this.parser = Jwts.parser().verifyWith(secretKey).build();
+        this.cacheMaxSize = cacheMaxSize;
+    }
     
     /**
      * 生成 JWT Token
@@ -43,7 +68,7 @@ public class JwtUtil {
                 .setSubject(userId)
                 .setIssuedAt(now)
                 .setExpiration(expiration)
-                .signWith(SECRET_KEY)
+                .signWith(secretKey)
                 .compact();
     }
     
@@ -53,8 +78,7 @@ public class JwtUtil {
      * @return 用户ID
      */
     public String getUserIdFromToken(String token) {
-        Claims claims = parseToken(token);
-        return claims.getSubject();
+        return parsePrincipal(token).userId();
     }
     
     /**
@@ -63,8 +87,7 @@ public class JwtUtil {
      * @return 用户显示名
      */
     public String getDisplayNameFromToken(String token) {
-        Claims claims = parseToken(token);
-        return (String) claims.get("displayName");
+        return parsePrincipal(token).displayName();
     }
     
     /**
@@ -73,25 +96,56 @@ public class JwtUtil {
      * @return true 如果有效
      */
     public boolean validateToken(String token) {
+        return authenticate(token).isPresent();
+    }
+
+    /**
+     * 验证 Token 并一次性取出用户信息
+     * @param token JWT Token
+     * @return 用户信息；Token 无效或已过期时为空
+     */
+    public Optional<JwtPrincipal> authenticate(String token) {
         try {
-            Claims claims = parseToken(token);
-            return !claims.getExpiration().before(new Date());
-        } catch (Exception e) {
-            return false;
+            return Optional.of(parsePrincipal(token));
+        } catch (JwtException | IllegalArgumentException e) {
+            return Optional.empty();
         }
     }
-    
+
     /**
-     * 解析 Token
-     * @param token JWT Token
-     * @return Claims
+     * 解析 Token，优先使用缓存
+     * @throws JwtException Token 无效或已过期
      */
-    private Claims parseToken(String token) {
-        return Jwts.parser()
-                .setSigningKey(SECRET_KEY)
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+    private JwtPrincipal parsePrincipal(String token) {
+        Instant now = Instant.now();
+        JwtPrincipal cached = verifiedTokens.get(token);
+        if (cached != null) {
+            if (!cached.isExpired(now)) {
+                return cached;
+            }
+            verifiedTokens.remove(token, cached);
+        }
+        Claims claims = parser.parseSignedClaims(token).getPayload();
+        JwtPrincipal principal = new JwtPrincipal(claims.getSubject(), claims.get("displayName", String.class),
+                claims.getExpiration().toInstant());
+        cache(token, principal, now);
+        return principal;
+    }
+
+    private void cache(String token, JwtPrincipal principal, Instant now) {
+        if (cacheMaxSize <= 0) {
+            return;
+        }
+        if (verifiedTokens.size() >= cacheMaxSize) {
+            verifiedTokens.values().removeIf(entry -> entry.isExpired(now));
+            // 仍然已满时随机淘汰一部分，缓存大小保持有界
+            Iterator<String> iterator = verifiedTokens.keySet().iterator();
+            for (int i = 0; i < cacheMaxSize / 10 + 1 && verifiedTokens.size() >= cacheMaxSize && iterator.hasNext(); i++) {
+                iterator.next();
+                iterator.remove();
+            }
+        }
+        verifiedTokens.put(token, principal);
     }
     
     /**
@@ -0,0 +1,65 @@
+-- V1 基线表结构（MySQL 8）
+-- 生产环境（prod profile）不再由 Hibernate 自动建表/改表，启动时执行本脚本后以 ddl-auto=validate 校验实体映射。
+-- 文件名沿用 Flyway 约定（db/migration/V<版本>__<说明>.sql），之后的结构变更新增 V2、V3 脚本。
+
+CREATE TABLE IF NOT EXISTS users (
+    id               BIGINT       NOT NULL AUTO_INCREMENT,
+    username         VARCHAR(255) NOT NULL,
+    password         VARCHAR(255) NOT NULL,
+    nickname         VARCHAR(255),
+    is_online        BIT(1)       NOT NULL,
+    last_active_time DATETIME(6),
+    PRIMARY KEY (id),
+    CONSTRAINT uk_users_username UNIQUE (username)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4;
+
+CREATE TABLE IF NOT EXISTS messages (
+    id        BIGINT        NOT NULL AUTO_INCREMENT,
+    sender    VARCHAR(255)  NOT NULL,
+    receiver  VARCHAR(255)  NOT NULL,
+    content   VARCHAR(1000) NOT NULL,
+    timestamp DATETIME(6),
+    is_read   BIT(1)        NOT NULL,
+    PRIMARY KEY (id),
+    INDEX idx_messages_receiver_read_sender (receiver, is_read, sender)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4;
+
+CREATE TABLE IF NOT EXISTS call_records (
+    id         BIGINT       NOT NULL AUTO_INCREMENT,
+    caller     VARCHAR(255) NOT NULL,
+    callee     VARCHAR(255) NOT NULL,
+    start_time DATETIME(6)  NOT NULL,
+    duration   BIGINT,
+    type       VARCHAR(255),
+    end_time   DATETIME(6),
+    status     VARCHAR(16),
+    call_id    VARCHAR(255),
+    PRIMARY KEY (id),
+    INDEX idx_call_records_caller_start (caller, start_time),
+    INDEX idx_call_records_callee_start (callee, start_time),
+    INDEX idx_call_records_start (start_time)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4;
+
+CREATE TABLE IF NOT EXISTS call_rollups (
+    id              BIGINT                        NOT NULL AUTO_INCREMENT,
+    granularity     ENUM ('MINUTE', 'HOUR', 'DAY') NOT NULL,
+    bucket_start    DATETIME(6)                   NOT NULL,
+    dimension       VARCHAR(16)                   NOT NULL,
+    dimension_value VARCHAR(255)                  NOT NULL,
+    call_count      BIGINT                        NOT NULL,
+    total_duration  BIGINT                        NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT uk_call_rollups_bucket UNIQUE (granularity, bucket_start, dimension, dimension_value)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4;
+
+CREATE TABLE IF NOT EXISTS offline_messages (
+    id         BIGINT        NOT NULL AUTO_INCREMENT,
+    sender     VARCHAR(255)  NOT NULL,
+    recipient  VARCHAR(255)  NOT NULL,
+    content    VARCHAR(1000) NOT NULL,
+    created_at DATETIME(6)   NOT NULL,
+    expires_at DATETIME(6)   NOT NULL,
+    PRIMARY KEY (id),
+    INDEX idx_offline_messages_recipient_id (recipient, id),
+    INDEX idx_offline_messages_expires (expires_at)
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4;
@@ -0,0 +1,11 @@
+-- V2 经 SIP 收到的消息记录发送者 SIP URI 与 MESSAGE 的 Call-ID，送达/已读回执按它们路由和引用
+-- 与 V1 一样每次启动执行：列已存在时跳过，保证可以重复执行
+
+SET @ddl = (SELECT IF(COUNT(*) = 0,
+        'ALTER TABLE messages ADD COLUMN sender_uri VARCHAR(255), ADD COLUMN sip_message_id VARCHAR(255)',
+        'DO 0')
+    FROM information_schema.columns
+    WHERE table_schema = DATABASE() AND table_name = 'messages' AND column_name = 'sip_message_id');
+PREPARE stmt FROM @ddl;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
@@ -0,0 +1,27 @@
+package com.example.admin;
+
+import com.example.admin.repository.CallRecordRepository;
+import com.example.admin.repository.memory.InMemoryCallRecordRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+
+/**
+ * 在内存存储下加载完整的应用上下文，
+ * 配置项、@Scheduled 表达式或 Bean 依赖写错时启动就会失败
+ */
+@SpringBootTest
+@ActiveProfiles("memory")
+class AdminServerApplicationTests {
+
+    @Autowired
+    private CallRecordRepository callRecordRepository;
+
+    @Test
+    void contextLoads() {
+        assertInstanceOf(InMemoryCallRecordRepository.class, callRecordRepository);
+    }
+}
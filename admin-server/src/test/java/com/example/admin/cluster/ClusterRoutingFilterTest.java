@@ -0,0 +1,143 @@
+package com.example.admin.cluster;
+
+import com.example.admin.util.JwtUtil;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ClusterRoutingFilterTest {
+
+    private static final String SELF = "http://127.0.0.1:1";
+    private static final String USER = "sip:alice@example.com";
+
+    private final ClusterMembership membership = mock(ClusterMembership.class);
+    private final JwtUtil jwtUtil = mock(JwtUtil.class);
+    private final Map<String, String> received = new ConcurrentHashMap<>();
+    private HttpServer owner;
+    private String ownerUrl;
+    private ClusterRoutingFilter filter;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        owner = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        owner.createContext("/", exchange -> {
+            received.put("method", exchange.getRequestMethod());
+            received.put("uri", exchange.getRequestURI().toString());
+            received.put("forwardedBy", String.valueOf(
+                    exchange.getRequestHeaders().getFirst(ClusterRoutingFilter.FORWARDED_HEADER)));
+            received.put("body", new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+            byte[] response = "{\"success\":true}".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, response.length);
+            exchange.getResponseBody().write(response);
+            exchange.close();
+        });
+        owner.start();
+        ownerUrl = "http://127.0.0.1:" + owner.getAddress().getPort();
+
+        when(membership.isEnabled()).thenReturn(true);
+        when(membership.self()).thenReturn(SELF);
+        when(jwtUtil.getUserIdFromToken("token")).thenReturn(USER);
+        filter = new ClusterRoutingFilter(membership, jwtUtil, new ObjectMapper());
+    }
+
+    @AfterEach
+    void tearDown() {
+        owner.stop(0);
+    }
+
+    @Test
+    void routesAgentBoundPathsOnly() {
+        assertTrue(ClusterRoutingFilter.isRouted("/api/auth/login"));
+        assertTrue(ClusterRoutingFilter.isRouted("/api/auth/status"));
+        assertTrue(ClusterRoutingFilter.isRouted("/api/messages/sip"));
+        assertTrue(ClusterRoutingFilter.isRouted("/api/messages/read"));
+        assertFalse(ClusterRoutingFilter.isRouted("/api/messages/history"));
+        assertFalse(ClusterRoutingFilter.isRouted("/api/messages/sipx"));
+        assertFalse(ClusterRoutingFilter.isRouted("/api/cluster/members"));
+    }
+
+    @Test
+    void forwardsMessageToOwningNode() throws Exception {
+        when(membership.ownerOf(USER)).thenReturn(ownerUrl);
+        MockHttpServletRequest request = jsonRequest("/api/messages/sip", "{\"to\":\"sip:bob@example.com\"}");
+        request.setQueryString("trace=1");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain chain = new MockFilterChain();
+
+        filter.doFilter(request, response, chain);
+
+        assertNull(chain.getRequest(), "request must not be handled locally");
+        assertEquals(200, response.getStatus());
+        assertEquals("{\"success\":true}", response.getContentAsString());
+        assertEquals("POST", received.get("method"));
+        assertEquals("/api/messages/sip?trace=1", received.get("uri"));
+        assertEquals(SELF, received.get("forwardedBy"));
+        assertEquals("{\"to\":\"sip:bob@example.com\"}", received.get("body"));
+    }
+
+    @Test
+    void handlesLocallyOwnedRequestWithBodyIntact() throws Exception {
+        when(membership.ownerOf(USER)).thenReturn(SELF);
+        MockHttpServletRequest request = jsonRequest("/api/messages/read", "{\"peer\":\"bob\",\"upToId\":3}");
+        MockFilterChain chain = new MockFilterChain();
+
+        filter.doFilter(request, new MockHttpServletResponse(), chain);
+
+        assertNotNull(chain.getRequest());
+        assertEquals("{\"peer\":\"bob\",\"upToId\":3}",
+                new String(chain.getRequest().getInputStream().readAllBytes(), StandardCharsets.UTF_8));
+        assertTrue(received.isEmpty());
+    }
+
+    @Test
+    void doesNotForwardAlreadyForwardedRequest() throws Exception {
+        when(membership.ownerOf(USER)).thenReturn(ownerUrl);
+        MockHttpServletRequest request = jsonRequest("/api/messages/sip", "{}");
+        request.addHeader(ClusterRoutingFilter.FORWARDED_HEADER, "http://other:8080");
+        MockFilterChain chain = new MockFilterChain();
+
+        filter.doFilter(request, new MockHttpServletResponse(), chain);
+
+        assertNotNull(chain.getRequest());
+        assertTrue(received.isEmpty());
+    }
+
+    @Test
+    void reportsBadGatewayWhenOwnerIsDown() throws Exception {
+        owner.stop(0);
+        when(membership.ownerOf(USER)).thenReturn(ownerUrl);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(jsonRequest("/api/auth/profile", ""), response, new MockFilterChain());
+
+        assertEquals(502, response.getStatus());
+        assertTrue(response.getContentAsString().contains("集群节点不可用"), response.getContentAsString());
+    }
+
+    private static MockHttpServletRequest jsonRequest(String path, String body) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", path);
+        request.addHeader("Authorization", "Bearer token");
+        request.setContentType("application/json");
+        request.setContent(body.getBytes(StandardCharsets.UTF_8));
+        return request;
+    }
+}
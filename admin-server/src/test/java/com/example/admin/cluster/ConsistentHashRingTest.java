@@ -0,0 +1,61 @@
+package com.example.admin.cluster;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConsistentHashRingTest {
+
+    private static final List<String> NODES = List.of("http://a:8080", "http://b:8080", "http://c:8080");
+
+    @Test
+    void ownerDoesNotDependOnNodeOrder() {
+        ConsistentHashRing ring = new ConsistentHashRing(NODES, 160);
+        ConsistentHashRing reversed = new ConsistentHashRing(List.of(NODES.get(2), NODES.get(1), NODES.get(0)), 160);
+        for (int i = 0; i < 1000; i++) {
+            String key = "sip:user" + i + "@example.com";
+            assertEquals(ring.ownerOf(key), reversed.ownerOf(key));
+        }
+        assertEquals(NODES, ring.nodes());
+    }
+
+    @Test
+    void keysSpreadAcrossAllNodes() {
+        ConsistentHashRing ring = new ConsistentHashRing(NODES, ConsistentHashRing.DEFAULT_VIRTUAL_NODES);
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < 30_000; i++) {
+            counts.merge(ring.ownerOf("sip:user" + i + "@example.com"), 1, Integer::sum);
+        }
+        assertEquals(3, counts.size());
+        counts.values().forEach(count -> assertTrue(count > 6_000 && count < 14_000, counts.toString()));
+    }
+
+    @Test
+    void addingNodeOnlyMovesKeysToTheNewNode() {
+        ConsistentHashRing before = new ConsistentHashRing(NODES, 160);
+        ConsistentHashRing after = new ConsistentHashRing(List.of(NODES.get(0), NODES.get(1), NODES.get(2),
+                "http://d:8080"), 160);
+        int moved = 0;
+        for (int i = 0; i < 10_000; i++) {
+            String key = "sip:user" + i + "@example.com";
+            String owner = after.ownerOf(key);
+            if (!owner.equals(before.ownerOf(key))) {
+                assertEquals("http://d:8080", owner);
+                moved++;
+            }
+        }
+        assertTrue(moved > 1_000 && moved < 4_000, "moved " + moved);
+    }
+
+    @Test
+    void rejectsEmptyRing() {
+        assertThrows(IllegalArgumentException.class, () -> new ConsistentHashRing(List.of(), 160));
+        assertThrows(IllegalArgumentException.class, () -> new ConsistentHashRing(NODES, 0));
+    }
+}
@@ -0,0 +1,227 @@
+package com.example.admin.repository.memory;
+
+import com.example.admin.entity.CallRecord;
+import com.example.admin.entity.CallRollup;
+import com.example.admin.entity.CallSummary;
+import com.example.admin.entity.CallerRanking;
+import com.example.admin.entity.Message;
+import com.example.admin.entity.UnreadCount;
+import com.example.admin.entity.User;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InMemoryRepositoryTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2024, 5, 1, 10, 0);
+
+    private static final ObjectMapper MAPPER = JsonMapper.builder().findAndAddModules().build();
+
+    private static MemoryJournals noJournal() {
+        return new MemoryJournals("", MAPPER);
+    }
+
+    @Test
+    void callHistoryIsNewestFirstWithinHalfOpenWindow() {
+        InMemoryCallRecordRepository repository = new InMemoryCallRecordRepository(noJournal());
+        for (int i = 0; i < 5; i++) {
+            repository.save(call("alice", "bob", T0.plusMinutes(i)));
+        }
+        repository.save(call("carol", "dave", T0.plusMinutes(2)));
+
+        Slice<CallSummary> first = repository.findHistory("bob", T0.plusMinutes(1), T0.plusMinutes(4),
+                PageRequest.of(0, 2));
+        assertEquals(List.of(T0.plusMinutes(3), T0.plusMinutes(2)), startTimes(first));
+        assertTrue(first.hasNext());
+        Slice<CallSummary> second = repository.findHistory("bob", T0.plusMinutes(1), T0.plusMinutes(4),
+                PageRequest.of(1, 2));
+        // to 不包含在窗口内
+        assertEquals(List.of(T0.plusMinutes(1)), startTimes(second));
+        assertFalse(second.hasNext());
+
+        assertEquals(4, repository.findInWindow(T0.plusMinutes(1), T0.plusMinutes(4), Pageable.unpaged())
+                .getNumberOfElements());
+        assertEquals(List.of(), repository.findHistory("nobody", T0, T0.plusDays(1), PageRequest.of(0, 10))
+                .getContent());
+        assertEquals(List.of(), repository.findInWindow(T0.plusMinutes(4), T0.plusMinutes(4), PageRequest.of(0, 10))
+                .getContent());
+    }
+
+    @Test
+    void deletedAndUpdatedCallsLeaveTheTimeIndex() {
+        InMemoryCallRecordRepository repository = new InMemoryCallRecordRepository(noJournal());
+        CallRecord moved = repository.save(call("alice", "bob", T0));
+        CallRecord removed = repository.save(call("alice", "bob", T0.plusMinutes(1)));
+
+        moved.setStartTime(T0.plusHours(1));
+        repository.save(moved);
+        repository.deleteById(removed.getId());
+
+        assertEquals(List.of(), repository.findHistory("alice", T0, T0.plusMinutes(30), Pageable.unpaged())
+                .getContent());
+        assertEquals(List.of(T0.plusHours(1)), startTimes(repository.findInWindow(T0, T0.plusDays(1),
+                Pageable.unpaged())));
+    }
+
+    @Test
+    void markReadUpToOnlyTouchesThePeersUnreadMessages() {
+        InMemoryMessageRepository repository = new InMemoryMessageRepository(noJournal());
+        Message m1 = repository.save(message("bob", "alice", T0));
+        Message m2 = repository.save(message("bob", "alice", T0.plusSeconds(1)));
+        repository.save(message("carol", "alice", T0.plusSeconds(2)));
+        Message m4 = repository.save(message("bob", "alice", T0.plusSeconds(3)));
+        repository.save(message("alice", "bob", T0.plusSeconds(4)));
+
+        assertEquals(2, repository.markReadUpTo("alice", "bob", m2.getId()));
+        assertEquals(0, repository.markReadUpTo("alice", "bob", m1.getId()));
+
+        assertTrue(repository.findById(m1.getId()).orElseThrow().isRead());
+        assertFalse(repository.findById(m4.getId()).orElseThrow().isRead());
+        assertEquals(List.of(new UnreadCount("bob", 1), new UnreadCount("carol", 1)),
+                repository.countUnreadBySender("alice").stream()
+                        .sorted((a, b) -> a.peer().compareTo(b.peer())).toList());
+        assertEquals(1, repository.findByReceiverAndIsReadFalse("bob").size());
+        assertEquals(0, repository.markReadUpTo("nobody", "bob", Long.MAX_VALUE));
+    }
+
+    @Test
+    void topCallersSumDailyBucketsInRange() {
+        InMemoryCallRollupRepository repository = new InMemoryCallRollupRepository(noJournal());
+        repository.save(rollup(CallRollup.Granularity.DAY, T0.minusDays(1), "caller", "alice", 9, 90));
+        repository.save(rollup(CallRollup.Granularity.DAY, T0, "caller", "alice", 2, 20));
+        repository.save(rollup(CallRollup.Granularity.DAY, T0.plusDays(1), "caller", "alice", 1, 10));
+        repository.save(rollup(CallRollup.Granularity.DAY, T0, "caller", "bob", 5, 50));
+        repository.save(rollup(CallRollup.Granularity.DAY, T0.plusDays(2), "caller", "carol", 1, 1));
+        repository.save(rollup(CallRollup.Granularity.HOUR, T0, "caller", "dave", 100, 100));
+        repository.save(rollup(CallRollup.Granularity.DAY, T0, "type", "AUDIO", 50, 500));
+
+        assertEquals(List.of(new CallerRanking("bob", 5, 50), new CallerRanking("alice", 3, 30)),
+                repository.findTopCallers(T0, T0.plusDays(2), PageRequest.of(0, 10)));
+        assertEquals(List.of(new CallerRanking("bob", 5, 50)),
+                repository.findTopCallers(T0, T0.plusDays(2), PageRequest.of(0, 1)));
+        assertEquals(List.of(), repository.findTopCallers(T0.plusDays(5), T0.plusDays(6), PageRequest.of(0, 10)));
+    }
+
+    @Test
+    void constraintViolationsAreRejectedWithoutSideEffects() {
+        InMemoryUserRepository users = new InMemoryUserRepository(noJournal());
+        users.save(user("alice"));
+        User duplicate = user("alice");
+        assertThrows(DataIntegrityViolationException.class, () -> users.save(duplicate));
+        // 失败的插入不占用 ID，也不改变已有行
+        assertNull(duplicate.getId());
+        assertEquals(1, users.count());
+        User bob = users.save(user("bob"));
+        assertEquals(2L, bob.getId());
+        bob.setUsername("alice");
+        assertThrows(DataIntegrityViolationException.class, () -> users.save(bob));
+        assertEquals("bob", users.findById(2L).orElseThrow().getUsername());
+        assertTrue(users.findByUsername("bob").isPresent());
+
+        InMemoryCallRollupRepository rollups = new InMemoryCallRollupRepository(noJournal());
+        rollups.save(rollup(CallRollup.Granularity.HOUR, T0, "type", "AUDIO", 1, 1));
+        assertThrows(DataIntegrityViolationException.class,
+                () -> rollups.save(rollup(CallRollup.Granularity.HOUR, T0, "type", "AUDIO", 1, 1)));
+        assertEquals(1, rollups.count());
+
+        InMemoryCallRecordRepository calls = new InMemoryCallRecordRepository(noJournal());
+        assertThrows(DataIntegrityViolationException.class, () -> calls.save(call("alice", null, T0)));
+        InMemoryMessageRepository messages = new InMemoryMessageRepository(noJournal());
+        Message empty = message("bob", "alice", T0);
+        empty.setContent(null);
+        assertThrows(DataIntegrityViolationException.class, () -> messages.save(empty));
+        assertEquals(0, calls.count() + messages.count());
+    }
+
+    @Test
+    void journalRestoresRowsIndexesAndSequenceAfterRestart(@TempDir Path dataDir) throws Exception {
+        MemoryJournals journals = new MemoryJournals(dataDir.toString(), MAPPER);
+        InMemoryMessageRepository messages = new InMemoryMessageRepository(journals);
+        InMemoryCallRecordRepository calls = new InMemoryCallRecordRepository(journals);
+        messages.load();
+        calls.load();
+        Message first = messages.save(message("bob", "alice", T0));
+        Message second = messages.save(message("bob", "alice", T0.plusSeconds(1)));
+        Message deleted = messages.save(message("bob", "alice", T0.plusSeconds(2)));
+        messages.markReadUpTo("alice", "bob", first.getId());
+        messages.deleteById(deleted.getId());
+        calls.save(call("alice", "bob", T0));
+        messages.close();
+        calls.close();
+
+        InMemoryMessageRepository reopened = new InMemoryMessageRepository(journals);
+        InMemoryCallRecordRepository reopenedCalls = new InMemoryCallRecordRepository(journals);
+        reopened.load();
+        reopenedCalls.load();
+        try {
+            assertEquals(2, reopened.count());
+            assertTrue(reopened.findById(first.getId()).orElseThrow().isRead());
+            assertEquals(T0.plusSeconds(1), reopened.findById(second.getId()).orElseThrow().getTimestamp());
+            assertEquals(List.of(new UnreadCount("bob", 1)), reopened.countUnreadBySender("alice"));
+            // 重启后 ID 继续递增，不复用已删除的 ID
+            assertEquals(deleted.getId() + 1, reopened.save(message("bob", "alice", T0)).getId());
+            assertEquals(List.of(T0), startTimes(reopenedCalls.findHistory("bob", T0, T0.plusDays(1),
+                    Pageable.unpaged())));
+        } finally {
+            reopened.close();
+            reopenedCalls.close();
+        }
+    }
+
+    private static List<LocalDateTime> startTimes(Slice<CallSummary> slice) {
+        return slice.getContent().stream().map(CallSummary::startedAt).toList();
+    }
+
+    private static CallRecord call(String caller, String callee, LocalDateTime start) {
+        CallRecord record = new CallRecord();
+        record.setCaller(caller);
+        record.setCallee(callee);
+        record.setStartTime(start);
+        record.setDuration(10L);
+        record.setType("AUDIO");
+        return record;
+    }
+
+    private static Message message(String sender, String receiver, LocalDateTime timestamp) {
+        Message message = new Message();
+        message.setSender(sender);
+        message.setReceiver(receiver);
+        message.setContent("hi " + receiver);
+        message.setTimestamp(timestamp);
+        return message;
+    }
+
+    private static CallRollup rollup(CallRollup.Granularity granularity, LocalDateTime bucketStart, String dimension,
+                                     String value, long count, long duration) {
+        CallRollup rollup = new CallRollup();
+        rollup.setGranularity(granularity);
+        rollup.setBucketStart(bucketStart);
+        rollup.setDimension(dimension);
+        rollup.setDimensionValue(value);
+        rollup.setCallCount(count);
+        rollup.setTotalDuration(duration);
+        return rollup;
+    }
+
+    private static User user(String username) {
+        User user = new User();
+        user.setUsername(username);
+        user.setPassword("secret");
+        return user;
+    }
+}
@@ -0,0 +1,149 @@
+package com.example.admin.service;
+
+import com.example.admin.entity.CallRecord;
+import com.example.admin.entity.CallRollup;
+import com.example.admin.entity.CallRollup.Granularity;
+import com.example.admin.entity.CallVolumePoint;
+import com.example.admin.entity.CallerRanking;
+import com.example.admin.repository.memory.InMemoryCallRollupRepository;
+import com.example.admin.repository.memory.MemoryJournals;
+import com.example.admin.repository.memory.MemoryStorageConfig;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doCallRealMethod;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.spy;
+
+class CallAnalyticsServiceTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2024, 5, 1, 10, 17, 30);
+
+    private final InMemoryCallRollupRepository repository =
+            new InMemoryCallRollupRepository(new MemoryJournals("", new ObjectMapper()));
+
+    @Test
+    void recordsEachCallIntoMinuteHourAndDayBuckets() {
+        CallAnalyticsService service = service(repository);
+        service.record(call("alice", T0, 60));
+        service.record(call("alice", T0.plusMinutes(50), 30));
+        service.flush();
+
+        assertEquals(List.of(point(T0.withSecond(0), 1, 60), point(T0.plusMinutes(50).withSecond(0), 1, 30)),
+                service.volume(Granularity.MINUTE, T0.withMinute(0), T0.plusHours(2), null));
+        assertEquals(List.of(point(T0.withMinute(0).withSecond(0), 1, 60),
+                        point(T0.withMinute(0).withSecond(0).plusHours(1), 1, 30)),
+                service.volume(Granularity.HOUR, T0.minusHours(1), T0.plusHours(2), "audio"));
+        assertEquals(List.of(point(T0.toLocalDate().atStartOfDay(), 2, 90)),
+                service.volume(Granularity.DAY, T0.toLocalDate().atStartOfDay(), T0.plusDays(1), null));
+        assertEquals(List.of(), service.volume(Granularity.HOUR, T0.minusHours(1), T0.plusHours(2), "VIDEO"));
+    }
+
+    @Test
+    void queryMergesPendingDeltasWithPersistedRows() {
+        CallAnalyticsService service = service(repository);
+        service.record(call("alice", T0, 60));
+        service.flush();
+        service.record(call("bob", T0.plusMinutes(1), 20));
+        service.record(call("alice", T0.plusMinutes(2), 40));
+
+        assertEquals(1, hourRow().getCallCount());
+        assertEquals(List.of(point(T0.withMinute(0).withSecond(0), 3, 120)),
+                service.volume(Granularity.HOUR, T0.withMinute(0), T0.plusMinutes(30), null));
+
+        // 主叫排行先落库再查询
+        assertEquals(List.of(new CallerRanking("alice", 2, 100), new CallerRanking("bob", 1, 20)),
+                service.topCallers(T0, T0.plusDays(1), 10));
+        assertEquals(3, hourRow().getCallCount());
+        assertEquals(120, hourRow().getTotalDuration());
+    }
+
+    @Test
+    void nodesFlushingTheSameBucketDoNotLoseCounts() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> nodes = new ArrayList<>();
+            for (int node = 0; node < 4; node++) {
+                CallAnalyticsService service = service(repository);
+                nodes.add(pool.submit(() -> {
+                    for (int i = 0; i < 250; i++) {
+                        service.record(call("alice", T0, 1));
+                        if (i % 10 == 0) {
+                            service.flush();
+                        }
+                    }
+                    service.flush();
+                }));
+            }
+            for (Future<?> node : nodes) {
+                node.get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(1000, hourRow().getCallCount());
+        assertEquals(1000, hourRow().getTotalDuration());
+    }
+
+    @Test
+    void insertRaceWithAnotherNodeFallsBackToIncrement() {
+        service(repository).record(call("alice", T0, 60));
+        service(repository).flush();
+        CallAnalyticsService other = service(repository);
+        other.record(call("alice", T0, 60));
+        other.flush();
+        assertEquals(1, hourRow().getCallCount());
+
+        // 本节点查询时桶还不存在，插入前另一个节点抢先建好了
+        InMemoryCallRollupRepository racing = spy(repository);
+        doReturn(0).doCallRealMethod().when(racing)
+                .increment(any(), any(), anyString(), anyString(), anyLong(), anyLong());
+        CallAnalyticsService service = service(racing);
+        service.record(call("alice", T0, 40));
+        service.flush();
+
+        assertEquals(2, hourRow().getCallCount());
+        assertEquals(100, hourRow().getTotalDuration());
+    }
+
+    private CallRollup hourRow() {
+        return repository.findByGranularityAndBucketStartAndDimensionAndDimensionValue(Granularity.HOUR,
+                T0.withMinute(0).withSecond(0), CallAnalyticsService.DIMENSION_TYPE, "AUDIO").orElseThrow();
+    }
+
+    private static CallAnalyticsService service(InMemoryCallRollupRepository repository) {
+        CallAnalyticsService service = new CallAnalyticsService(repository,
+                new MemoryStorageConfig().transactionManager());
+        ReflectionTestUtils.setField(service, "maxPoints", 5000);
+        ReflectionTestUtils.setField(service, "minuteRetention", Duration.ofDays(3));
+        ReflectionTestUtils.setField(service, "hourRetention", Duration.ofDays(90));
+        return service;
+    }
+
+    private static CallRecord call(String caller, LocalDateTime start, long duration) {
+        CallRecord record = new CallRecord();
+        record.setCaller(caller);
+        record.setCallee("carol");
+        record.setStartTime(start);
+        record.setDuration(duration);
+        record.setType("AUDIO");
+        return record;
+    }
+
+    private static CallVolumePoint point(LocalDateTime bucket, long count, long duration) {
+        return new CallVolumePoint(bucket, "AUDIO", count, duration, (double) duration / count);
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.admin.service;
+
+import com.example.admin.entity.CallRecord;
+import com.example.sipclient.call.CallDetailRecord;
+import com.example.sipclient.call.CallSession;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+class CdrRecorderTest {
+
+    private static final Instant T0 = Instant.parse("2024-05-01T12:00:00Z");
+
+    private final CallRecordService callRecordService = mock(CallRecordService.class);
+    // 每次 saveAll 成功写入的话单（按 Call-ID）
+    private final List<List<String>> saved = new ArrayList<>();
+    private boolean databaseDown;
+
+    CdrRecorderTest() {
+        doAnswer(invocation -> {
+            if (databaseDown) {
+                throw new IllegalStateException("database down");
+            }
+            List<CallRecord> records = invocation.getArgument(0);
+            saved.add(records.stream().map(CallRecord::getCallId).toList());
+            return records;
+        }).when(callRecordService).saveAll(anyList());
+    }
+
+    @Test
+    void failedBatchIsRetriedBeforeNewerRecords() {
+        CdrRecorder recorder = new CdrRecorder(callRecordService, 10, 2);
+        submit(recorder, "c1", "c2", "c3");
+
+        databaseDown = true;
+        recorder.flush();
+        assertEquals(List.of(), saved);
+        assertEquals(3, recorder.pendingCount());
+
+        submit(recorder, "c4");
+        recorder.flush();
+        assertEquals(4, recorder.pendingCount());
+
+        databaseDown = false;
+        recorder.flush();
+        assertEquals(List.of(List.of("c1", "c2"), List.of("c3", "c4")), saved);
+        assertEquals(0, recorder.pendingCount());
+    }
+
+    @Test
+    void recordsThatDoNotFitWhileDatabaseIsDownAreKept() {
+        CdrRecorder recorder = new CdrRecorder(callRecordService, 2, 10);
+        databaseDown = true;
+        submit(recorder, "c1", "c2", "c3", "c4", "c5");
+        recorder.flush();
+        assertEquals(5, recorder.pendingCount());
+
+        databaseDown = false;
+        recorder.flush();
+        assertEquals(List.of("c1", "c2", "c3", "c4", "c5"), saved.stream().flatMap(List::stream).toList());
+        assertEquals(0, recorder.pendingCount());
+    }
+
+    @Test
+    void duplicateCallIdIsRecordedOnce() {
+        CdrRecorder recorder = new CdrRecorder(callRecordService, 10, 10);
+        submit(recorder, "c1", "c1");
+        recorder.flush();
+        assertEquals(List.of(List.of("c1")), saved);
+    }
+
+    private static void submit(CdrRecorder recorder, String... callIds) {
+        for (String callId : callIds) {
+            recorder.submit("sip:alice@example.com", new CallDetailRecord("session-" + callId, callId,
+                    "sip:bob@example.com", false, T0, T0.plusSeconds(1), T0.plusSeconds(61),
+                    CallSession.EndCause.LOCAL_HANGUP, 0));
+        }
+    }
+}
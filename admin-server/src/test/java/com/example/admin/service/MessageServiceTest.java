@@ -0,0 +1,88 @@
+package com.example.admin.service;
+
+import com.example.admin.entity.Message;
+import com.example.admin.event.MessageReceivedEvent;
+import com.example.admin.repository.MessageRepository;
+import com.example.sipclient.chat.Imdn;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class MessageServiceTest {
+
+    @Mock
+    private MessageRepository messageRepository;
+
+    @Mock
+    private SipService sipService;
+
+    @InjectMocks
+    private MessageService messageService;
+
+    @AfterEach
+    void tearDown() {
+        messageService.shutdown();
+    }
+
+    @Test
+    void incomingSipMessageIsStoredAndAcknowledgedToItsSender() throws Exception {
+        when(messageRepository.save(any(Message.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        messageService.onMessageReceived(new MessageReceivedEvent(
+                "sip:alice@a.example", "sip:bob@b.example", "hello", "call-1@b.example"));
+
+        verify(sipService, timeout(2000)).sendDispositionNotification(eq("sip:alice@a.example"),
+                eq("sip:bob@b.example"), argThat(notification ->
+                        notification.disposition() == Imdn.Disposition.DELIVERED
+                                && notification.messageId().equals("call-1@b.example")));
+        ArgumentCaptor<Message> saved = ArgumentCaptor.forClass(Message.class);
+        verify(messageRepository).save(saved.capture());
+        assertEquals("bob", saved.getValue().getSender());
+        assertEquals("alice", saved.getValue().getReceiver());
+        assertEquals("sip:bob@b.example", saved.getValue().getSenderUri());
+        assertEquals("call-1@b.example", saved.getValue().getSipMessageId());
+    }
+
+    @Test
+    void readReceiptReferencesLatestSipMessageAndItsSenderUri() throws Exception {
+        Message latest = new Message();
+        latest.setSenderUri("sip:bob@b.example");
+        latest.setSipMessageId("call-7@b.example");
+        when(messageRepository.markReadUpTo("alice", "bob", 42L)).thenReturn(3);
+        when(messageRepository.findTopByReceiverAndSenderAndSipMessageIdNotNullAndIdLessThanEqualOrderByIdDesc(
+                "alice", "bob", 42L)).thenReturn(Optional.of(latest));
+
+        assertEquals(3, messageService.markRead("sip:alice@a.example", "bob", 42L));
+
+        verify(sipService).sendDispositionNotification(eq("sip:alice@a.example"), eq("sip:bob@b.example"),
+                argThat(notification -> notification.disposition() == Imdn.Disposition.DISPLAYED
+                        && notification.messageId().equals("call-7@b.example")));
+    }
+
+    @Test
+    void noReceiptWhenOnlyRestMessagesWereRead() throws Exception {
+        when(messageRepository.markReadUpTo("alice", "bob", 42L)).thenReturn(1);
+        when(messageRepository.findTopByReceiverAndSenderAndSipMessageIdNotNullAndIdLessThanEqualOrderByIdDesc(
+                "alice", "bob", 42L)).thenReturn(Optional.empty());
+
+        messageService.markRead("sip:alice@a.example", "bob", 42L);
+
+        verify(sipService, never()).sendDispositionNotification(any(), any(), any());
+    }
+}
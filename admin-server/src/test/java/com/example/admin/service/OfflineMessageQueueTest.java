@@ -0,0 +1,173 @@
+package com.example.admin.service;
+
+import com.example.admin.cluster.ClusterMembership;
+import com.example.admin.event.AgentRegisteredEvent;
+import com.example.admin.repository.memory.InMemoryOfflineMessageRepository;
+import com.example.admin.repository.memory.MemoryJournals;
+import com.example.sipclient.chat.MessageHandler;
+import com.example.sipclient.sip.SipUserAgent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class OfflineMessageQueueTest {
+
+    private static final String ALICE = "sip:alice@example.com";
+    private static final String BOB = "sip:bob@example.com";
+
+    @Mock
+    private SipService sipService;
+
+    @Mock
+    private ClusterMembership clusterMembership;
+
+    @Mock
+    private SipUserAgent bobAgent;
+
+    @Mock
+    private MessageHandler bobHandler;
+
+    private final InMemoryOfflineMessageRepository repository =
+            new InMemoryOfflineMessageRepository(new MemoryJournals("", new ObjectMapper()));
+
+    private OfflineMessageQueue queue;
+
+    @BeforeEach
+    void setUp() {
+        when(clusterMembership.isLocal(anyString())).thenReturn(true);
+        when(bobAgent.isRegistered()).thenReturn(true);
+        when(bobAgent.getMessageHandler()).thenReturn(bobHandler);
+        queue = queue(Duration.ofDays(7));
+    }
+
+    @AfterEach
+    void tearDown() {
+        queue.shutdown();
+    }
+
+    @Test
+    void backlogIsDeliveredInEnqueueOrderOnceRecipientRegisters() {
+        queue.enqueue(ALICE, BOB, "one");
+        queue.enqueue(ALICE, BOB, "two");
+        queue.enqueue(ALICE, BOB, "three");
+
+        when(sipService.getUserAgent(BOB)).thenReturn(bobAgent);
+        queue.onAgentRegistered(new AgentRegisteredEvent(BOB));
+
+        InOrder order = inOrder(bobHandler);
+        order.verify(bobHandler, timeout(2000)).handleIncomingMessage(ALICE, "one", null);
+        order.verify(bobHandler, timeout(2000)).handleIncomingMessage(ALICE, "two", null);
+        order.verify(bobHandler, timeout(2000)).handleIncomingMessage(ALICE, "three", null);
+        awaitEmpty(BOB);
+    }
+
+    @Test
+    void eachRecipientHasASingleDrainer() throws Exception {
+        CountDownLatch firstDelivery = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger active = new AtomicInteger();
+        AtomicInteger maxActive = new AtomicInteger();
+        doAnswer(invocation -> {
+            maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+            firstDelivery.countDown();
+            release.await(2, TimeUnit.SECONDS);
+            active.decrementAndGet();
+            return null;
+        }).when(bobHandler).handleIncomingMessage(anyString(), anyString(), isNull());
+        for (int i = 0; i < 5; i++) {
+            queue.enqueue(ALICE, BOB, "m" + i);
+        }
+        when(sipService.getUserAgent(BOB)).thenReturn(bobAgent);
+
+        queue.flush(BOB);
+        assertTrue(firstDelivery.await(2, TimeUnit.SECONDS));
+        // 投递进行中再次触发，不应启动第二个投递任务
+        queue.flush(BOB);
+        queue.retryPending();
+        queue.onAgentRegistered(new AgentRegisteredEvent(BOB));
+        release.countDown();
+
+        for (int i = 0; i < 5; i++) {
+            verify(bobHandler, timeout(2000)).handleIncomingMessage(ALICE, "m" + i, null);
+        }
+        awaitEmpty(BOB);
+        assertEquals(1, maxActive.get());
+    }
+
+    @Test
+    void expiredMessagesAreSkippedAndPurged() {
+        OfflineMessageQueue expiring = queue(Duration.ZERO);
+        try {
+            expiring.enqueue(ALICE, BOB, "stale");
+        } finally {
+            expiring.shutdown();
+        }
+        queue.enqueue(ALICE, BOB, "fresh");
+        when(sipService.getUserAgent(BOB)).thenReturn(bobAgent);
+
+        queue.flush(BOB);
+
+        verify(bobHandler, timeout(2000)).handleIncomingMessage(ALICE, "fresh", null);
+        verify(bobHandler, never()).handleIncomingMessage(ALICE, "stale", null);
+        queue.purgeExpired();
+        awaitEmpty(BOB);
+    }
+
+    @Test
+    void recipientsOwnedByAnotherNodeAreLeftToThatNode() {
+        when(clusterMembership.isLocal(BOB)).thenReturn(false);
+        queue.enqueue(ALICE, BOB, "hello");
+        when(sipService.getUserAgent(BOB)).thenReturn(bobAgent);
+
+        queue.retryPending();
+        queue.flush(BOB);
+
+        verify(bobHandler, after(300).never()).handleIncomingMessage(any(), any(), any());
+        assertEquals(1, repository.countByRecipient(BOB));
+
+        when(clusterMembership.isLocal(BOB)).thenReturn(true);
+        queue.retryPending();
+        verify(bobHandler, timeout(2000)).handleIncomingMessage(eq(ALICE), eq("hello"), isNull());
+    }
+
+    private OfflineMessageQueue queue(Duration ttl) {
+        return new OfflineMessageQueue(repository, sipService, clusterMembership, ttl, 100, 2, 1000, 2,
+                Duration.ofSeconds(5));
+    }
+
+    private void awaitEmpty(String recipient) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while (repository.countByRecipient(recipient) > 0 && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+        assertEquals(0, repository.countByRecipient(recipient));
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.admin.service;
+
+import com.example.sipclient.sip.SipUserAgent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SipShutdownCoordinatorTest {
+
+    private static final Duration DEADLINE = Duration.ofMillis(300);
+
+    // 挂起的 agent 忽略中断，测试结束时才放行
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+    }
+
+    @Test
+    void agentHangingPastTheDeadlineIsReportedAndOthersAreReleased() throws Exception {
+        Map<String, SipUserAgent> agents = new LinkedHashMap<>();
+        for (int i = 0; i < 6; i++) {
+            agents.put("sip:user" + i + "@example.com", respondingAgent());
+        }
+        SipUserAgent hanging = registeredAgent();
+        when(hanging.unregister(any())).thenAnswer(invocation -> {
+            awaitUninterruptibly();
+            return true;
+        });
+        agents.put("sip:hang@example.com", hanging);
+        SipUserAgent failing = registeredAgent();
+        when(failing.unregister(any())).thenReturn(false);
+        agents.put("sip:fail@example.com", failing);
+
+        long started = System.nanoTime();
+        SipShutdownCoordinator.ShutdownReport report = new SipShutdownCoordinator(DEADLINE, 4).shutdownAll(agents);
+        long elapsedMillis = (System.nanoTime() - started) / 1_000_000;
+
+        assertEquals(8, report.total());
+        assertEquals(6, report.unregistered());
+        assertEquals(1, report.unregisterFailed());
+        assertEquals(1, report.unregisterTimedOut());
+        assertEquals(List.of("sip:hang@example.com"), report.timedOutUris());
+        // 挂起的 agent 同样被释放，占着的线程不影响其余 agent
+        assertEquals(8, report.stopped());
+        for (SipUserAgent agent : agents.values()) {
+            verify(agent).shutdown(Duration.ZERO);
+        }
+        assertTrue(elapsedMillis < DEADLINE.toMillis() + 1000, "shutdown took " + elapsedMillis + " ms");
+    }
+
+    @Test
+    void hangingTeardownDoesNotBlockPastTheBudget() throws Exception {
+        Map<String, SipUserAgent> agents = new LinkedHashMap<>();
+        agents.put("sip:a@example.com", respondingAgent());
+        SipUserAgent stuck = respondingAgent();
+        doAnswer(invocation -> {
+            awaitUninterruptibly();
+            return null;
+        }).when(stuck).shutdown(Duration.ZERO);
+        agents.put("sip:stuck@example.com", stuck);
+
+        long started = System.nanoTime();
+        SipShutdownCoordinator.ShutdownReport report = new SipShutdownCoordinator(DEADLINE, 2).shutdownAll(agents);
+        long elapsedMillis = (System.nanoTime() - started) / 1_000_000;
+
+        assertEquals(2, report.unregistered());
+        assertEquals(List.of(), report.timedOutUris());
+        assertEquals(1, report.stopped());
+        // 截止时间加上释放阶段的 3 秒宽限
+        assertTrue(elapsedMillis < DEADLINE.toMillis() + 4000, "shutdown took " + elapsedMillis + " ms");
+    }
+
+    private static SipUserAgent registeredAgent() {
+        SipUserAgent agent = mock(SipUserAgent.class);
+        when(agent.isRegistered()).thenReturn(true);
+        return agent;
+    }
+
+    private static SipUserAgent respondingAgent() throws Exception {
+        SipUserAgent agent = registeredAgent();
+        when(agent.unregister(any())).thenReturn(true);
+        return agent;
+    }
+
+    private void awaitUninterruptibly() {
+        while (true) {
+            try {
+                release.await();
+                return;
+            } catch (InterruptedException e) {
+                // 模拟不响应中断的网络调用
+            }
+        }
+    }
+}
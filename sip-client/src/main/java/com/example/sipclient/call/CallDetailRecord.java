@@ -0,0 +1,54 @@
+package com.example.sipclient.call;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Objects;
+
+/**
+ * 话单：一次呼叫结束后的不可变记录，由 CallManager 在会话移除时生成。
+ *
+ * @param sessionId  CallSession 的本地 ID
+ * @param callId     SIP Call-ID，未建立 dialog 的呼叫为 null
+ * @param remoteUri  对端 URI
+ * @param incoming   是否为来电
+ * @param setupAt    发起（或收到 INVITE）的时间
+ * @param answeredAt 接通时间，未接通为 null
+ * @param endedAt    结束时间
+ * @param cause      结束原因
+ * @param status     导致结束的 SIP 状态码，正常挂断为 0
+ */
+public record CallDetailRecord(String sessionId,
+                               String callId,
+                               String remoteUri,
+                               boolean incoming,
+                               Instant setupAt,
+                               Instant answeredAt,
+                               Instant endedAt,
+                               CallSession.EndCause cause,
+                               int status) {
+
+    public CallDetailRecord {
+        Objects.requireNonNull(sessionId, "sessionId");
+        Objects.requireNonNull(remoteUri, "remoteUri");
+        Objects.requireNonNull(setupAt, "setupAt");
+        Objects.requireNonNull(endedAt, "endedAt");
+        Objects.requireNonNull(cause, "cause");
+    }
+
+    static CallDetailRecord of(CallSession session) {
+        return new CallDetailRecord(session.getId(), session.getCallId(), session.getRemoteUri(),
+                session.isIncoming(), session.getCreatedAt(), session.getAnsweredAt(), session.getEndedAt(),
+                session.getEndCause(), session.getEndStatus());
+    }
+
+    public boolean answered() {
+        return answeredAt != null;
+    }
+
+    /**
+     * 计费时长：接通到结束，未接通为零。
+     */
+    public Duration billableDuration() {
+        return answeredAt == null ? Duration.ZERO : Duration.between(answeredAt, endedAt);
+    }
+}
@@ -2,6 +2,7 @@ package com.example.sipclient.call;
 
 import com.example.sipclient.media.AudioSession;
 import com.example.sipclient.media.MediaSession;
+import com.example.sipclient.sip.SipUriKey;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -23,12 +24,28 @@ public class CallManager {
         void onIncomingCall(String fromUri, String sessionId);
     }
 
+    /**
+     * 呼叫状态变化（振铃、建立、结束）时回调，在触发变化的线程上执行。
+     */
+    public interface CallStateListener {
+        void onCallStateChanged(CallSession session);
+    }
+
+    /**
+     * 呼叫结束时回调一次，附带完整话单，在触发结束的线程上执行。
+     */
+    public interface CdrListener {
+        void onCallCompleted(CallDetailRecord record);
+    }
+
     private static final Logger log = LoggerFactory.getLogger(CallManager.class);
 
     private final Map<String, CallSession> sessionsById = new ConcurrentHashMap<>();
-    private final Map<String, String> remoteIndex = new ConcurrentHashMap<>();
+    private final Map<SipUriKey, String> remoteIndex = new ConcurrentHashMap<>();
     private final Supplier<MediaSession> mediaSupplier;
     private IncomingCallListener incomingCallListener;
+    private volatile CallStateListener callStateListener;
+    private volatile CdrListener cdrListener;
 
     public CallManager() {
         this(AudioSession::new);
@@ -42,7 +59,19 @@ public class CallManager {
         this.incomingCallListener = listener;
     }
 
+    public void setCallStateListener(CallStateListener listener) {
+        this.callStateListener = listener;
+    }
+
+    public void setCdrListener(CdrListener listener) {
+        this.cdrListener = listener;
+    }
+
     public CallSession startOutgoing(String targetUri) {
+        return startOutgoing(SipUriKey.of(targetUri));
+    }
+
+    public CallSession startOutgoing(SipUriKey targetUri) {
         CallSession session = new CallSession(targetUri, false);
         session.markRinging();
         registerSession(session);
@@ -51,36 +80,71 @@ public class CallManager {
     }
 
     public CallSession acceptIncoming(String fromUri) {
+        return acceptIncoming(SipUriKey.of(fromUri));
+    }
+
+    public CallSession acceptIncoming(SipUriKey fromUri) {
         CallSession session = new CallSession(fromUri, true);
         session.markRinging();
         registerSession(session);
         log.info("收到来自 {} 的来电，sessionId={}", fromUri, session.getId());
         if (incomingCallListener != null) {
-            incomingCallListener.onIncomingCall(fromUri, session.getId());
+            incomingCallListener.onIncomingCall(fromUri.value(), session.getId());
         }
         return session;
     }
 
     public void markActive(String remoteUri) {
+        markActive(SipUriKey.of(remoteUri));
+    }
+
+    public void markActive(SipUriKey remoteUri) {
         findByRemote(remoteUri).ifPresent(session -> {
             if (session.getState() != CallSession.State.ACTIVE) {
                 session.markActive();
                 // 音频已由 SipUserAgent 直接管理，不再在这里启动
                 // session.startMedia(mediaSupplier.get());
                 log.info("呼叫 {} 已建立", session.getId());
+                fireStateChanged(session);
             }
         });
     }
 
     public void terminateByRemote(String remoteUri) {
-        findByRemote(remoteUri).ifPresent(this::removeSession);
+        terminateByRemote(SipUriKey.of(remoteUri));
+    }
+
+    public void terminateByRemote(SipUriKey remoteUri) {
+        findByRemote(remoteUri).ifPresent(session -> removeSession(session,
+                session.getAnsweredAt() != null ? CallSession.EndCause.REMOTE_HANGUP : CallSession.EndCause.CANCELLED, 0));
     }
 
     public void terminateLocal(String remoteUri) {
-        findByRemote(remoteUri).ifPresent(this::removeSession);
+        terminateLocal(SipUriKey.of(remoteUri));
+    }
+
+    public void terminateLocal(SipUriKey remoteUri) {
+        findByRemote(remoteUri).ifPresent(session -> removeSession(session,
+                session.getAnsweredAt() != null ? CallSession.EndCause.LOCAL_HANGUP : CallSession.EndCause.CANCELLED, 0));
+    }
+
+    /**
+     * 呼叫因最终错误响应而失败。
+     */
+    public void terminateFailed(String remoteUri, int statusCode) {
+        terminateFailed(SipUriKey.of(remoteUri), statusCode);
+    }
+
+    public void terminateFailed(SipUriKey remoteUri, int statusCode) {
+        findByRemote(remoteUri).ifPresent(session -> removeSession(session, CallSession.EndCause.FAILED, statusCode));
     }
 
     public void attachDialog(String remoteUri, Dialog dialog) {
+        Objects.requireNonNull(remoteUri, "remoteUri");
+        attachDialog(SipUriKey.of(remoteUri), dialog);
+    }
+
+    public void attachDialog(SipUriKey remoteUri, Dialog dialog) {
         Objects.requireNonNull(remoteUri, "remoteUri");
         Objects.requireNonNull(dialog, "dialog");
         findByRemote(remoteUri).ifPresent(session -> {
@@ -94,35 +158,78 @@ public class CallManager {
     }
 
     public Optional<CallSession> findByRemote(String remoteUri) {
+        return remoteUri == null ? Optional.empty() : findByRemote(SipUriKey.of(remoteUri));
+    }
+
+    public Optional<CallSession> findByRemote(SipUriKey remoteUri) {
         String sessionId = remoteIndex.get(remoteUri);
         return sessionId == null ? Optional.empty() : Optional.ofNullable(sessionsById.get(sessionId));
     }
 
     public void answerCall(String remoteUri) {
+        answerCall(SipUriKey.of(remoteUri));
+    }
+
+    public void answerCall(SipUriKey remoteUri) {
         findByRemote(remoteUri).ifPresent(session -> {
             session.markActive();
             // 音频已由 SipUserAgent 直接管理，不再在这里启动
             // session.startMedia(mediaSupplier.get());
             log.info("已接听来自 {} 的呼叫", remoteUri);
+            fireStateChanged(session);
         });
     }
 
     public void rejectCall(String remoteUri) {
+        rejectCall(SipUriKey.of(remoteUri));
+    }
+
+    public void rejectCall(SipUriKey remoteUri) {
         findByRemote(remoteUri).ifPresent(session -> {
-            removeSession(session);
+            removeSession(session, CallSession.EndCause.REJECTED, 486);
             log.info("已拒接来自 {} 的呼叫", remoteUri);
         });
     }
 
     private void registerSession(CallSession session) {
         sessionsById.put(session.getId(), session);
-        remoteIndex.put(session.getRemoteUri(), session.getId());
+        remoteIndex.put(session.getRemoteKey(), session.getId());
+        fireStateChanged(session);
     }
 
-    private void removeSession(CallSession session) {
-        session.terminate();
-        sessionsById.remove(session.getId());
-        remoteIndex.remove(session.getRemoteUri());
+    private void removeSession(CallSession session, CallSession.EndCause cause, int status) {
+        session.terminate(cause, status);
+        // 并发结束（例如本端挂断与对端 BYE 同时到达）时只有一方生成话单
+        boolean removed = sessionsById.remove(session.getId()) != null;
+        remoteIndex.remove(session.getRemoteKey(), session.getId());
         log.info("呼叫 {} 已结束", session.getId());
+        fireStateChanged(session);
+        if (removed) {
+            emitCdr(session);
+        }
+    }
+
+    private void emitCdr(CallSession session) {
+        CdrListener listener = cdrListener;
+        if (listener == null) {
+            return;
+        }
+        try {
+            listener.onCallCompleted(CallDetailRecord.of(session));
+        } catch (RuntimeException ex) {
+            log.warn("话单回调失败: {}", ex.getMessage());
+        }
+    }
+
+    private void fireStateChanged(CallSession session) {
+        CallStateListener listener = callStateListener;
+        if (listener == null) {
+            return;
+        }
+        try {
+            listener.onCallStateChanged(session);
+        } catch (RuntimeException ex) {
+            log.warn("呼叫状态回调失败: {}", ex.getMessage());
+        }
     }
 }
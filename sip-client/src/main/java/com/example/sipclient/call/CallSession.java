@@ -1,6 +1,7 @@
 package com.example.sipclient.call;
 
 import com.example.sipclient.media.MediaSession;
+import com.example.sipclient.sip.SipUriKey;
 
 import javax.sip.Dialog;
 import java.time.Instant;
@@ -19,17 +20,42 @@ public final class CallSession {
         TERMINATED
     }
 
+    /**
+     * 呼叫结束原因，用于生成话单。
+     */
+    public enum EndCause {
+        /** 接通后本端挂断 */
+        LOCAL_HANGUP,
+        /** 接通后对端挂断 */
+        REMOTE_HANGUP,
+        /** 接通前任一方放弃 */
+        CANCELLED,
+        /** 被叫拒接 */
+        REJECTED,
+        /** 呼叫失败（4xx/5xx/6xx） */
+        FAILED
+    }
+
     private final String id;
-    private final String remoteUri;
+    private final SipUriKey remoteKey;
     private final Instant createdAt;
     private final boolean incoming;
     private State state;
     private MediaSession mediaSession;
     private Dialog dialog;
+    private String callId;
+    private volatile Instant answeredAt;
+    private volatile Instant endedAt;
+    private volatile EndCause endCause;
+    private volatile int endStatus;
 
     public CallSession(String remoteUri, boolean incoming) {
+        this(SipUriKey.of(Objects.requireNonNull(remoteUri, "remoteUri")), incoming);
+    }
+
+    public CallSession(SipUriKey remoteKey, boolean incoming) {
         this.id = UUID.randomUUID().toString();
-        this.remoteUri = Objects.requireNonNull(remoteUri, "remoteUri");
+        this.remoteKey = Objects.requireNonNull(remoteKey, "remoteKey");
         this.createdAt = Instant.now();
         this.incoming = incoming;
         this.state = State.IDLE;
@@ -40,7 +66,11 @@ public final class CallSession {
     }
 
     public String getRemoteUri() {
-        return remoteUri;
+        return remoteKey.value();
+    }
+
+    public SipUriKey getRemoteKey() {
+        return remoteKey;
     }
 
     public Instant getCreatedAt() {
@@ -59,11 +89,51 @@ public final class CallSession {
         this.state = State.RINGING;
     }
 
+    public Instant getAnsweredAt() {
+        return answeredAt;
+    }
+
+    public Instant getEndedAt() {
+        return endedAt;
+    }
+
+    public EndCause getEndCause() {
+        return endCause;
+    }
+
+    /**
+     * 导致结束的 SIP 状态码，正常挂断时为 0。
+     */
+    public int getEndStatus() {
+        return endStatus;
+    }
+
+    public synchronized String getCallId() {
+        return callId;
+    }
+
     public void markActive() {
         this.state = State.ACTIVE;
+        if (answeredAt == null) {
+            answeredAt = Instant.now();
+        }
     }
 
     public void terminate() {
+        terminate(answeredAt != null ? EndCause.LOCAL_HANGUP : EndCause.CANCELLED, 0);
+    }
+
+    /**
+     * 结束会话并记录结束时间与原因，只有第一次调用的原因生效。
+     */
+    public void terminate(EndCause cause, int status) {
+        synchronized (this) {
+            if (endedAt == null) {
+                endCause = Objects.requireNonNull(cause, "cause");
+                endStatus = status;
+                endedAt = Instant.now();
+            }
+        }
         this.state = State.TERMINATED;
         stopMedia();
         releaseDialog();
@@ -88,6 +158,10 @@ public final class CallSession {
 
     public synchronized void bindDialog(Dialog dialog) {
         this.dialog = dialog;
+        // 释放 dialog 后话单仍需要 Call-ID 来关联两端的记录
+        if (dialog != null && dialog.getCallId() != null) {
+            this.callId = dialog.getCallId().getCallId();
+        }
     }
 
     public synchronized Dialog getDialog() {
@@ -0,0 +1,177 @@
+package com.example.sipclient.chat;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * 异步输出端：SIP 线程只负责把消息行放入有界队列，由单独的投递线程批量交给真正的输出端。
+ * <p>
+ * 多个 SIP 线程并发写入，单个投递线程读取（MPSC）。队列满时按 {@link OverflowPolicy} 处理，
+ * 因此 UI 或日志再慢也不会拖住 SIP 监听回调。
+ */
+public final class AsyncDisplaySink implements Consumer<String>, AutoCloseable {
+
+    public static final int DEFAULT_MAX_BATCH = 64;
+
+    public enum OverflowPolicy {
+        /** 队列满时阻塞生产者，直到有空位 */
+        BLOCK,
+        /** 丢弃最早的一条，为新消息腾位置 */
+        DROP_OLDEST,
+        /** 队列满后的消息合并为最新的一条，排在队列中已有消息之后投递，并附带被合并的条数 */
+        COALESCE
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(AsyncDisplaySink.class);
+    private static final long POLL_INTERVAL_MS = 200;
+
+    private final BlockingQueue<String> queue;
+    private final Consumer<? super List<String>> batchSink;
+    private final OverflowPolicy policy;
+    private final int maxBatch;
+    private final Thread worker;
+    private final AtomicLong dropped = new AtomicLong();
+    private final Object coalesceLock = new Object();
+    private String coalescedLatest;
+    private int coalescedCount;
+    private volatile boolean running = true;
+
+    public AsyncDisplaySink(Consumer<? super List<String>> batchSink, int capacity, int maxBatch, OverflowPolicy policy) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        if (maxBatch <= 0) {
+            throw new IllegalArgumentException("maxBatch must be positive");
+        }
+        this.batchSink = Objects.requireNonNull(batchSink, "batchSink");
+        this.policy = Objects.requireNonNull(policy, "policy");
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.maxBatch = maxBatch;
+        this.worker = new Thread(this::drainLoop, "display-sink");
+        this.worker.setDaemon(true);
+        this.worker.start();
+    }
+
+    /**
+     * 逐行投递给 {@code lineSink}，但仍然按批从队列取出。
+     */
+    public static AsyncDisplaySink forLines(Consumer<String> lineSink, int capacity, OverflowPolicy policy) {
+        Objects.requireNonNull(lineSink, "lineSink");
+        return new AsyncDisplaySink(batch -> batch.forEach(lineSink), capacity, DEFAULT_MAX_BATCH, policy);
+    }
+
+    @Override
+    public void accept(String line) {
+        if (!running) {
+            dropped.incrementAndGet();
+            return;
+        }
+        switch (policy) {
+            case BLOCK -> {
+                try {
+                    queue.put(line);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    dropped.incrementAndGet();
+                }
+            }
+            case DROP_OLDEST -> {
+                while (!queue.offer(line)) {
+                    if (queue.poll() != null) {
+                        dropped.incrementAndGet();
+                    }
+                }
+            }
+            case COALESCE -> {
+                synchronized (coalesceLock) {
+                    // 已有合并中的消息时不再入队，否则新消息会排到合并消息前面
+                    if (coalescedCount == 0 && queue.offer(line)) {
+                        return;
+                    }
+                    coalescedLatest = line;
+                    coalescedCount++;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return 因队列溢出或关闭而丢弃的消息数
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    public int pendingCount() {
+        return queue.size();
+    }
+
+    /**
+     * 停止接收新消息，投递完队列中剩余的消息后结束投递线程。
+     */
+    @Override
+    public void close() {
+        running = false;
+        try {
+            worker.join(TimeUnit.SECONDS.toMillis(2));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void drainLoop() {
+        List<String> batch = new ArrayList<>(maxBatch);
+        while (running || !queue.isEmpty() || hasCoalesced()) {
+            try {
+                String first = hasCoalesced() ? queue.poll() : queue.poll(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, maxBatch - 1);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            }
+            takeCoalesced(batch);
+            if (batch.isEmpty()) {
+                continue;
+            }
+            try {
+                batchSink.accept(List.copyOf(batch));
+            } catch (RuntimeException ex) {
+                log.warn("Display sink failed for {} line(s): {}", batch.size(), ex.getMessage());
+            }
+            batch.clear();
+        }
+    }
+
+    private boolean hasCoalesced() {
+        synchronized (coalesceLock) {
+            return coalescedCount > 0;
+        }
+    }
+
+    private void takeCoalesced(List<String> batch) {
+        synchronized (coalesceLock) {
+            // 合并消息晚于队列中的所有消息，队列取空后才能投递
+            if (coalescedCount == 0 || !queue.isEmpty()) {
+                return;
+            }
+            batch.add(coalescedCount == 1
+                    ? coalescedLatest
+                    : "（已合并 %d 条消息）%s".formatted(coalescedCount, coalescedLatest));
+            dropped.addAndGet(coalescedCount - 1L);
+            coalescedLatest = null;
+            coalescedCount = 0;
+        }
+    }
+}
@@ -1,26 +1,42 @@
 package com.example.sipclient.chat;
 
 import java.time.Instant;
-import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Deque;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * Keeps an in-memory transcript for一个聊天会话，方便 CLI 展示最近消息。
+ * <p>
+ * 消息保存在固定容量的无锁环形缓冲区中，只记录时间戳/发送者/正文，
+ * 真正的字符串格式化推迟到 {@link #dumpRecentMessages()} 调用时进行。
  */
 public final class ChatSession {
 
+    public static final int DEFAULT_CAPACITY = 20;
+
     private final String sessionId;
     private final boolean groupSession;
     private final List<String> participants;
-    private final Deque<String> lastMessages = new ArrayDeque<>();
+    private final int capacity;
+    private final AtomicReferenceArray<Entry> ring;
+    private final AtomicLong writeSequence = new AtomicLong();
 
     public ChatSession(String sessionId, boolean groupSession, List<String> participants) {
+        this(sessionId, groupSession, participants, DEFAULT_CAPACITY);
+    }
+
+    public ChatSession(String sessionId, boolean groupSession, List<String> participants, int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
         this.sessionId = Objects.requireNonNull(sessionId, "sessionId");
         this.groupSession = groupSession;
         this.participants = participants == null ? new ArrayList<>() : new ArrayList<>(participants);
+        this.capacity = capacity;
+        this.ring = new AtomicReferenceArray<>(capacity);
     }
 
     public String getSessionId() {
@@ -35,15 +51,71 @@ public final class ChatSession {
         return List.copyOf(participants);
     }
 
+    public int getCapacity() {
+        return capacity;
+    }
+
     public void appendMessage(String from, String text) {
-        String line = String.format("[%s] %s: %s", Instant.now(), from, text);
-        lastMessages.addLast(line);
-        while (lastMessages.size() > 20) {
-            lastMessages.removeFirst();
-        }
+        publish(writeSequence.getAndIncrement(), from, text);
+    }
+
+    // 把已分配序号的消息写入槽位；测试直接调用以模拟分配序号后迟迟才写入的线程
+    void publish(long sequence, String from, String text) {
+        String sender = from == null ? null : from.intern();
+        Entry entry = new Entry(sequence, System.currentTimeMillis(), sender, text);
+        int slot = slot(sequence);
+        Entry current;
+        do {
+            current = ring.get(slot);
+            // 写得慢的线程绕圈后不能覆盖同一槽位里更新的消息
+            if (current != null && current.sequence() > sequence) {
+                return;
+            }
+        } while (!ring.compareAndSet(slot, current, entry));
     }
 
+    /**
+     * 按时间顺序返回最近的消息（最多 {@link #getCapacity()} 条）。
+     * 与并发写入同时发生时，已被覆盖或尚未写完的槽位会被跳过。
+     */
     public List<String> dumpRecentMessages() {
-        return List.copyOf(lastMessages);
+        List<String> lines = new ArrayList<>(capacity);
+        for (Entry entry : recentEntries()) {
+            lines.add(entry.format());
+        }
+        return List.copyOf(lines);
+    }
+
+    // 与 dumpRecentMessages 相同的选取规则，只返回序号，供测试核对保留的是哪些消息
+    List<Long> recentSequences() {
+        List<Long> sequences = new ArrayList<>(capacity);
+        for (Entry entry : recentEntries()) {
+            sequences.add(entry.sequence());
+        }
+        return sequences;
+    }
+
+    private List<Entry> recentEntries() {
+        long end = writeSequence.get();
+        long start = Math.max(0, end - capacity);
+        List<Entry> entries = new ArrayList<>((int) (end - start));
+        for (long sequence = start; sequence < end; sequence++) {
+            Entry entry = ring.get(slot(sequence));
+            if (entry != null && entry.sequence() == sequence) {
+                entries.add(entry);
+            }
+        }
+        return entries;
+    }
+
+    private int slot(long sequence) {
+        return (int) (sequence % capacity);
+    }
+
+    private record Entry(long sequence, long timestampMillis, String from, String text) {
+
+        String format() {
+            return String.format("[%s] %s: %s", Instant.ofEpochMilli(timestampMillis), from, text);
+        }
     }
 }
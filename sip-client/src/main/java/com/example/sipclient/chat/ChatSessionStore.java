@@ -0,0 +1,166 @@
+package com.example.sipclient.chat;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * 有界的聊天会话存储：按访问顺序（LRU）淘汰超出容量或空闲超时的会话。
+ * <p>
+ * 空闲淘汰在每次访问时顺带完成（访问顺序链表的头部就是最久未访问的会话），
+ * 因此不需要额外的清理线程；宿主也可以定期调用 {@link #evictIdle()}。
+ * 被淘汰的会话会在锁外交给 {@link EvictionListener}，便于持久化其聊天记录。
+ */
+public final class ChatSessionStore {
+
+    public static final int DEFAULT_MAX_SESSIONS = 1024;
+    public static final Duration DEFAULT_IDLE_TIMEOUT = Duration.ofMinutes(30);
+
+    public enum EvictionCause {
+        SIZE,
+        IDLE
+    }
+
+    @FunctionalInterface
+    public interface EvictionListener {
+        void onEvicted(ChatSession session, EvictionCause cause);
+    }
+
+    private final int maxSessions;
+    private final long idleTimeoutNanos;
+    private final LongSupplier nanoClock;
+    private final LinkedHashMap<String, Node> nodes = new LinkedHashMap<>(16, 0.75f, true);
+    private volatile EvictionListener evictionListener = (session, cause) -> { };
+
+    public ChatSessionStore() {
+        this(DEFAULT_MAX_SESSIONS, DEFAULT_IDLE_TIMEOUT);
+    }
+
+    public ChatSessionStore(int maxSessions, Duration idleTimeout) {
+        this(maxSessions, idleTimeout, System::nanoTime);
+    }
+
+    ChatSessionStore(int maxSessions, Duration idleTimeout, LongSupplier nanoClock) {
+        if (maxSessions <= 0) {
+            throw new IllegalArgumentException("maxSessions must be positive");
+        }
+        Objects.requireNonNull(idleTimeout, "idleTimeout");
+        if (idleTimeout.isNegative() || idleTimeout.isZero()) {
+            throw new IllegalArgumentException("idleTimeout must be positive");
+        }
+        this.maxSessions = maxSessions;
+        this.idleTimeoutNanos = idleTimeout.toNanos();
+        this.nanoClock = Objects.requireNonNull(nanoClock, "nanoClock");
+    }
+
+    public void setEvictionListener(EvictionListener listener) {
+        this.evictionListener = listener == null ? (session, cause) -> { } : listener;
+    }
+
+    /**
+     * 返回 key 对应的会话，不存在时用 factory 创建；同时刷新其访问时间。
+     */
+    public ChatSession getOrCreate(String key, Function<String, ChatSession> factory) {
+        Objects.requireNonNull(key, "key");
+        List<Node> evicted = new ArrayList<>();
+        List<EvictionCause> causes = new ArrayList<>();
+        ChatSession session;
+        synchronized (nodes) {
+            long now = nanoClock.getAsLong();
+            collectIdle(now, evicted, causes);
+            Node node = nodes.get(key);
+            if (node == null) {
+                node = new Node(factory.apply(key));
+                nodes.put(key, node);
+                collectOverflow(evicted, causes);
+            }
+            node.lastAccessNanos = now;
+            session = node.session;
+        }
+        notifyEvicted(evicted, causes);
+        return session;
+    }
+
+    /**
+     * 主动淘汰所有空闲超时的会话。
+     *
+     * @return 被淘汰的会话数量
+     */
+    public int evictIdle() {
+        List<Node> evicted = new ArrayList<>();
+        List<EvictionCause> causes = new ArrayList<>();
+        synchronized (nodes) {
+            collectIdle(nanoClock.getAsLong(), evicted, causes);
+        }
+        notifyEvicted(evicted, causes);
+        return evicted.size();
+    }
+
+    public List<ChatSession> snapshot() {
+        synchronized (nodes) {
+            List<ChatSession> sessions = new ArrayList<>(nodes.size());
+            for (Node node : nodes.values()) {
+                sessions.add(node.session);
+            }
+            return List.copyOf(sessions);
+        }
+    }
+
+    public int size() {
+        synchronized (nodes) {
+            return nodes.size();
+        }
+    }
+
+    public int getMaxSessions() {
+        return maxSessions;
+    }
+
+    private void collectIdle(long now, List<Node> evicted, List<EvictionCause> causes) {
+        Iterator<Map.Entry<String, Node>> it = nodes.entrySet().iterator();
+        while (it.hasNext()) {
+            Node eldest = it.next().getValue();
+            if (now - eldest.lastAccessNanos < idleTimeoutNanos) {
+                break;
+            }
+            it.remove();
+            evicted.add(eldest);
+            causes.add(EvictionCause.IDLE);
+        }
+    }
+
+    private void collectOverflow(List<Node> evicted, List<EvictionCause> causes) {
+        Iterator<Map.Entry<String, Node>> it = nodes.entrySet().iterator();
+        while (nodes.size() > maxSessions && it.hasNext()) {
+            Node eldest = it.next().getValue();
+            it.remove();
+            evicted.add(eldest);
+            causes.add(EvictionCause.SIZE);
+        }
+    }
+
+    private void notifyEvicted(List<Node> evicted, List<EvictionCause> causes) {
+        if (evicted.isEmpty()) {
+            return;
+        }
+        EvictionListener listener = evictionListener;
+        for (int i = 0; i < evicted.size(); i++) {
+            listener.onEvicted(evicted.get(i).session, causes.get(i));
+        }
+    }
+
+    private static final class Node {
+        private final ChatSession session;
+        private long lastAccessNanos;
+
+        private Node(ChatSession session) {
+            this.session = Objects.requireNonNull(session, "session");
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.sipclient.chat;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.NodeList;
+import org.xml.sax.InputSource;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.StringReader;
+import java.time.Instant;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * 最小化的 IMDN（RFC 5438）消息处置通知编解码：送达（delivered）与已读（displayed）。
+ * 通知作为 MESSAGE 正文发送，Content-Type 为 message/imdn+xml。
+ */
+public final class Imdn {
+
+    public static final String CONTENT_TYPE = "message";
+    public static final String CONTENT_SUBTYPE = "imdn+xml";
+
+    public enum Disposition {
+        DELIVERED("delivery-notification", "delivered"),
+        DISPLAYED("display-notification", "displayed");
+
+        private final String element;
+        private final String status;
+
+        Disposition(String element, String status) {
+            this.element = element;
+            this.status = status;
+        }
+    }
+
+    /**
+     * @param messageId 被确认的消息 ID，即那条 MESSAGE 的 Call-ID；对于已读通知，表示该会话中此 ID 及之前的消息都已读
+     */
+    public record Notification(String messageId, Disposition disposition, Instant datetime) {
+        public Notification {
+            Objects.requireNonNull(messageId, "messageId");
+            Objects.requireNonNull(disposition, "disposition");
+            Objects.requireNonNull(datetime, "datetime");
+        }
+    }
+
+    private Imdn() {
+    }
+
+    public static String build(Notification notification) {
+        Disposition disposition = notification.disposition();
+        return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<imdn xmlns=\"urn:ietf:params:xml:ns:imdn\">\n"
+                + "  <message-id>" + escape(notification.messageId()) + "</message-id>\n"
+                + "  <datetime>" + notification.datetime() + "</datetime>\n"
+                + "  <" + disposition.element + "><status><" + disposition.status + "/></status></"
+                + disposition.element + ">\n"
+                + "</imdn>\n";
+    }
+
+    public static Optional<Notification> parse(String xml) {
+        if (xml == null || xml.isBlank()) {
+            return Optional.empty();
+        }
+        try {
+            Document document = newBuilder().parse(new InputSource(new StringReader(xml)));
+            String messageId = firstText(document, "message-id");
+            if (messageId == null || messageId.isEmpty()) {
+                return Optional.empty();
+            }
+            String datetime = firstText(document, "datetime");
+            Instant at = datetime == null || datetime.isEmpty() ? Instant.now() : Instant.parse(datetime);
+            for (Disposition disposition : Disposition.values()) {
+                if (document.getElementsByTagNameNS("*", disposition.status).getLength() > 0) {
+                    return Optional.of(new Notification(messageId, disposition, at));
+                }
+            }
+            return Optional.empty();
+        } catch (Exception ex) {
+            return Optional.empty();
+        }
+    }
+
+    private static DocumentBuilder newBuilder() throws ParserConfigurationException {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        // MESSAGE 正文来自网络，禁止 DTD 和外部实体
+        factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+        factory.setAttribute(XMLConstants.ACCESS_EXTERNAL_DTD, "");
+        factory.setAttribute(XMLConstants.ACCESS_EXTERNAL_SCHEMA, "");
+        factory.setExpandEntityReferences(false);
+        return factory.newDocumentBuilder();
+    }
+
+    private static String firstText(Document document, String localName) {
+        NodeList nodes = document.getElementsByTagNameNS("*", localName);
+        return nodes.getLength() == 0 ? null : nodes.item(0).getTextContent().trim();
+    }
+
+    private static String escape(String value) {
+        return value.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+}
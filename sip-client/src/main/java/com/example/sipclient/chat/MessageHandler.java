@@ -4,8 +4,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Objects;
 import java.util.function.Consumer;
 
 /**
@@ -13,36 +12,138 @@ import java.util.function.Consumer;
  */
 public class MessageHandler {
 
+    /** 异步投递时待投递消息队列的默认容量 */
+    public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+
     private static final Logger log = LoggerFactory.getLogger(MessageHandler.class);
 
-    private final Map<String, ChatSession> sessions = new ConcurrentHashMap<>();
+    private final ChatSessionStore sessions;
     private final Consumer<String> displaySink;
+    private final AsyncDisplaySink asyncSink;
+    private final int transcriptCapacity;
 
     public MessageHandler() {
         this(System.out::println);
     }
 
     public MessageHandler(Consumer<String> displaySink) {
-        this.displaySink = displaySink == null ? s -> { } : displaySink;
+        this(displaySink, ChatSession.DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param displaySink        接收格式化后消息行的输出端
+     * @param transcriptCapacity 每个会话保留的最近消息条数
+     */
+    public MessageHandler(Consumer<String> displaySink, int transcriptCapacity) {
+        this(displaySink, transcriptCapacity, new ChatSessionStore());
+    }
+
+    /**
+     * @param displaySink        接收格式化后消息行的输出端
+     * @param transcriptCapacity 每个会话保留的最近消息条数
+     * @param sessionStore       有界会话存储，决定最多保留多少个会话以及空闲多久被淘汰
+     */
+    public MessageHandler(Consumer<String> displaySink, int transcriptCapacity, ChatSessionStore sessionStore) {
+        this(displaySink, transcriptCapacity, sessionStore, 0, null);
+    }
+
+    /**
+     * 异步投递：日志与 displaySink 都在独立线程中批量执行，SIP 回调线程只做一次入队。
+     * 子类覆盖的回调本身仍在 SIP 线程中执行，只应做轻量的转发。
+     *
+     * @param queueCapacity  待投递消息队列的容量
+     * @param overflowPolicy 队列满时的处理策略
+     */
+    public MessageHandler(Consumer<String> displaySink, int queueCapacity,
+                          AsyncDisplaySink.OverflowPolicy overflowPolicy) {
+        this(displaySink, ChatSession.DEFAULT_CAPACITY, new ChatSessionStore(), queueCapacity,
+                Objects.requireNonNull(overflowPolicy, "overflowPolicy"));
+    }
+
+    /**
+     * 多个 MessageHandler 共用一个异步输出端及其投递线程，例如服务端托管的大量 SipUserAgent。
+     * 消息行直接入队，日志由输出端的创建者负责；{@link #close()} 不会关闭共享的输出端。
+     */
+    public static MessageHandler sharedSink(AsyncDisplaySink sharedSink) {
+        return new MessageHandler(sharedSink, new ChatSessionStore());
+    }
+
+    /**
+     * 供需要覆盖回调的子类使用的共享输出端构造，语义同 {@link #sharedSink(AsyncDisplaySink)}。
+     */
+    protected MessageHandler(AsyncDisplaySink sharedSink, ChatSessionStore sessionStore) {
+        this.displaySink = Objects.requireNonNull(sharedSink, "sharedSink");
+        this.asyncSink = null;
+        this.transcriptCapacity = ChatSession.DEFAULT_CAPACITY;
+        this.sessions = Objects.requireNonNull(sessionStore, "sessionStore");
+    }
+
+    private MessageHandler(Consumer<String> displaySink, int transcriptCapacity, ChatSessionStore sessionStore,
+                           int queueCapacity, AsyncDisplaySink.OverflowPolicy overflowPolicy) {
+        if (transcriptCapacity <= 0) {
+            throw new IllegalArgumentException("transcriptCapacity must be positive");
+        }
+        Consumer<String> sink = displaySink == null ? s -> { } : displaySink;
+        Consumer<String> logged = line -> {
+            log.info(line);
+            sink.accept(line);
+        };
+        this.asyncSink = overflowPolicy == null ? null : AsyncDisplaySink.forLines(logged, queueCapacity, overflowPolicy);
+        this.displaySink = asyncSink == null ? logged : asyncSink;
+        this.transcriptCapacity = transcriptCapacity;
+        this.sessions = Objects.requireNonNull(sessionStore, "sessionStore");
+    }
+
+    /**
+     * 设置会话被淘汰时的回调，例如把淘汰的聊天记录交给持久化层。
+     */
+    public void setSessionEvictionListener(ChatSessionStore.EvictionListener listener) {
+        sessions.setEvictionListener(listener);
     }
 
     public void handleIncomingMessage(String fromUri, String body) {
-        ChatSession session = sessions.computeIfAbsent(fromUri, uri -> new ChatSession(uri, false, List.of(uri)));
+        ChatSession session = sessionFor(fromUri);
         session.appendMessage(fromUri, body);
-        String line = "收到来自 %s 的消息：%s".formatted(fromUri, body);
-        log.info(line);
-        displaySink.accept(line);
+        displaySink.accept("收到来自 %s 的消息：%s".formatted(fromUri, body));
+    }
+
+    /**
+     * 收到一条带消息 ID 的 MESSAGE，默认忽略 ID 交给 {@link #handleIncomingMessage(String, String)}。
+     *
+     * @param messageId 这条 MESSAGE 的 Call-ID，即 IMDN 回执中的 message-id；本地转交的消息为 {@code null}
+     */
+    public void handleIncomingMessage(String fromUri, String body, String messageId) {
+        handleIncomingMessage(fromUri, body);
+    }
+
+    /**
+     * 收到对端的 IMDN 处置通知（送达或已读）。
+     */
+    public void handleDispositionNotification(String fromUri, Imdn.Notification notification) {
+        String action = notification.disposition() == Imdn.Disposition.DISPLAYED ? "已读" : "已送达";
+        displaySink.accept("%s %s消息 %s".formatted(fromUri, action, notification.messageId()));
     }
 
     public void handleOutgoingMessage(String targetUri, String body) {
-        ChatSession session = sessions.computeIfAbsent(targetUri, uri -> new ChatSession(uri, false, List.of(uri)));
+        ChatSession session = sessionFor(targetUri);
         session.appendMessage("me", body);
-        String line = "已向 %s 发送消息：%s".formatted(targetUri, body);
-        log.info(line);
-        displaySink.accept(line);
+        displaySink.accept("已向 %s 发送消息：%s".formatted(targetUri, body));
     }
 
     public List<ChatSession> listSessions() {
-        return List.copyOf(sessions.values());
+        return sessions.snapshot();
+    }
+
+    /**
+     * 停止异步投递线程（如有），并投递完尚在队列中的消息。
+     */
+    public void close() {
+        if (asyncSink != null) {
+            asyncSink.close();
+        }
+    }
+
+    private ChatSession sessionFor(String uri) {
+        return sessions.getOrCreate(uri, key -> new ChatSession(key, false, List.of(key), transcriptCapacity));
     }
 }
@@ -1,5 +1,7 @@
 package com.example.sipclient.config;
 
+import com.example.sipclient.sip.RegistrarSet;
+
 import java.time.Duration;
 import java.util.Objects;
 
@@ -13,6 +15,8 @@ public final class SipConfig {
     private final String localIp;
     private final int localPort;
     private final Duration registerTimeout;
+    private final TransportOptions transportOptions;
+    private final RegistrarSet registrars;
 
     private SipConfig(Builder builder) {
         this.userAddress = builder.userAddress;
@@ -20,6 +24,8 @@ public final class SipConfig {
         this.localIp = builder.localIp;
         this.localPort = builder.localPort;
         this.registerTimeout = builder.registerTimeout == null ? Duration.ofSeconds(10) : builder.registerTimeout;
+        this.transportOptions = builder.transportOptions == null ? TransportOptions.defaults() : builder.transportOptions;
+        this.registrars = builder.registrars;
         validate();
     }
 
@@ -53,6 +59,17 @@ public final class SipConfig {
         return registerTimeout;
     }
 
+    public TransportOptions getTransportOptions() {
+        return transportOptions;
+    }
+
+    /**
+     * @return 备选注册服务器集合；为 {@code null} 时只使用 userAddress 中的主机
+     */
+    public RegistrarSet getRegistrars() {
+        return registrars;
+    }
+
     public static Builder builder() {
         return new Builder();
     }
@@ -63,6 +80,8 @@ public final class SipConfig {
         private String localIp = "127.0.0.1";
         private int localPort = 5070;
         private Duration registerTimeout = Duration.ofSeconds(10);
+        private TransportOptions transportOptions;
+        private RegistrarSet registrars;
 
         private Builder() {
         }
@@ -92,6 +111,16 @@ public final class SipConfig {
             return this;
         }
 
+        public Builder transportOptions(TransportOptions transportOptions) {
+            this.transportOptions = transportOptions;
+            return this;
+        }
+
+        public Builder registrars(RegistrarSet registrars) {
+            this.registrars = registrars;
+            return this;
+        }
+
         public SipConfig build() {
             return new SipConfig(this);
         }
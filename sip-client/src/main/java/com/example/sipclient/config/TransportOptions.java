@@ -0,0 +1,136 @@
+package com.example.sipclient.config;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * Immutable transport settings for {@code SipUserAgent}：启用哪些传输层、何时从 UDP 切到 TCP、
+ * 以及面向连接的传输上多久发送一次 RFC 5626 风格的 CRLF 保活。
+ */
+public final class TransportOptions {
+
+    /** RFC 3261 §18.1.1：超过 1300 字节的请求应改走拥塞受控的传输层 */
+    public static final int DEFAULT_UDP_SIZE_THRESHOLD = 1300;
+    public static final int DEFAULT_REGISTRAR_TLS_PORT = 5061;
+
+    private final String preferredTransport;
+    private final boolean tcpEnabled;
+    private final int localTlsPort;
+    private final int registrarTlsPort;
+    private final int udpSizeThreshold;
+    private final Duration flowKeepAliveInterval;
+
+    private TransportOptions(Builder builder) {
+        this.preferredTransport = builder.preferredTransport == null
+                ? null : builder.preferredTransport.toUpperCase(Locale.ROOT);
+        this.tcpEnabled = builder.tcpEnabled;
+        this.localTlsPort = builder.localTlsPort;
+        this.registrarTlsPort = builder.registrarTlsPort;
+        this.udpSizeThreshold = builder.udpSizeThreshold;
+        this.flowKeepAliveInterval = builder.flowKeepAliveInterval;
+        validate();
+    }
+
+    private void validate() {
+        Objects.requireNonNull(flowKeepAliveInterval, "flowKeepAliveInterval");
+        if (preferredTransport != null
+                && !preferredTransport.equals("UDP") && !preferredTransport.equals("TCP")
+                && !preferredTransport.equals("TLS")) {
+            throw new IllegalArgumentException("Unsupported transport: " + preferredTransport);
+        }
+        if (localTlsPort < 0 || localTlsPort > 65535 || registrarTlsPort <= 0 || registrarTlsPort > 65535) {
+            throw new IllegalArgumentException("TLS ports must be within TCP port range");
+        }
+        if (udpSizeThreshold <= 0) {
+            throw new IllegalArgumentException("udpSizeThreshold must be positive");
+        }
+        if (flowKeepAliveInterval.isNegative() || flowKeepAliveInterval.isZero()) {
+            throw new IllegalArgumentException("flowKeepAliveInterval must be positive");
+        }
+    }
+
+    public static TransportOptions defaults() {
+        return builder().build();
+    }
+
+    /**
+     * @return 首选的传输层（大写），为 {@code null} 时沿用用户 URI 中的 transport 参数
+     */
+    public String getPreferredTransport() {
+        return preferredTransport;
+    }
+
+    public boolean isTcpEnabled() {
+        return tcpEnabled;
+    }
+
+    public boolean isTlsEnabled() {
+        return localTlsPort > 0;
+    }
+
+    public int getLocalTlsPort() {
+        return localTlsPort;
+    }
+
+    public int getRegistrarTlsPort() {
+        return registrarTlsPort;
+    }
+
+    public int getUdpSizeThreshold() {
+        return udpSizeThreshold;
+    }
+
+    public Duration getFlowKeepAliveInterval() {
+        return flowKeepAliveInterval;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static final class Builder {
+        private String preferredTransport;
+        private boolean tcpEnabled = true;
+        private int localTlsPort;
+        private int registrarTlsPort = DEFAULT_REGISTRAR_TLS_PORT;
+        private int udpSizeThreshold = DEFAULT_UDP_SIZE_THRESHOLD;
+        private Duration flowKeepAliveInterval = Duration.ofSeconds(90);
+
+        private Builder() {
+        }
+
+        public Builder preferredTransport(String transport) {
+            this.preferredTransport = transport;
+            return this;
+        }
+
+        public Builder tcpEnabled(boolean enabled) {
+            this.tcpEnabled = enabled;
+            return this;
+        }
+
+        /**
+         * 启用 TLS 并绑定到本地端口；证书通过标准的 {@code javax.net.ssl.keyStore}/{@code trustStore} 系统属性提供。
+         */
+        public Builder tls(int localTlsPort, int registrarTlsPort) {
+            this.localTlsPort = localTlsPort;
+            this.registrarTlsPort = registrarTlsPort;
+            return this;
+        }
+
+        public Builder udpSizeThreshold(int bytes) {
+            this.udpSizeThreshold = bytes;
+            return this;
+        }
+
+        public Builder flowKeepAliveInterval(Duration interval) {
+            this.flowKeepAliveInterval = interval;
+            return this;
+        }
+
+        public TransportOptions build() {
+            return new TransportOptions(this);
+        }
+    }
+}
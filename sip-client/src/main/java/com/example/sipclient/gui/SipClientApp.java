@@ -14,8 +14,15 @@ public class SipClientApp extends Application {
     private static Scene currentScene;
     private static Stage primaryStage;
 
+    @Override
+    public void init() {
+        // 通常已在 main 中启动，这里兜底其它启动方式
+        StartupTasks.start();
+    }
+
     @Override
     public void start(Stage stage) throws Exception {
+        StartupTimer.mark("JavaFX 启动");
         primaryStage = stage;
         
         FXMLLoader loader = new FXMLLoader(getClass().getResource("/fxml/login.fxml"));
@@ -31,6 +38,8 @@ public class SipClientApp extends Application {
         });
         
         primaryStage.show();
+        StartupTimer.mark("登录窗口可用");
+        StartupTimer.report("首个可用窗口");
     }
     
     /**
@@ -71,6 +80,8 @@ public class SipClientApp extends Application {
     }
 
     public static void main(String[] args) {
+        // 数据库和 SIP 预热与 JavaFX 工具包启动并行
+        StartupTasks.start();
         launch(args);
     }
 }
\ No newline at end of file
@@ -0,0 +1,64 @@
+package com.example.sipclient.gui;
+
+import com.example.sipclient.gui.storage.LocalDatabase;
+import com.example.sipclient.sip.SipUserAgent;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * 启动阶段的后台任务
+ * 在 JavaFX 启动、用户填写登录信息的同时并行完成两件耗时的事：
+ * 打开本地 SQLite（加载原生库、建表）和预热 JAIN SIP（工厂与消息解析器的类加载）。
+ * 进入主界面时直接取已经打开的数据库。
+ */
+public final class StartupTasks {
+
+    // 每个任务一个守护线程，不阻止应用退出
+    private static final Executor BACKGROUND = task -> {
+        Thread thread = new Thread(task, "startup-task");
+        thread.setDaemon(true);
+        thread.start();
+    };
+
+    private static CompletableFuture<LocalDatabase> database;
+
+    private StartupTasks() {
+    }
+
+    /**
+     * 启动后台任务，重复调用无副作用
+     */
+    public static synchronized void start() {
+        if (database != null) {
+            return;
+        }
+        database = CompletableFuture.supplyAsync(() -> {
+            LocalDatabase db = new LocalDatabase();
+            db.initialize();
+            StartupTimer.mark("本地数据库就绪");
+            return db;
+        }, BACKGROUND);
+        CompletableFuture.runAsync(() -> {
+            try {
+                SipUserAgent.warmUp();
+                StartupTimer.mark("SIP 协议栈预热完成");
+            } catch (Exception e) {
+                // 只影响首次登录的耗时，登录时仍会正常初始化
+                System.err.println("SIP 协议栈预热失败: " + e.getMessage());
+            }
+        }, BACKGROUND);
+    }
+
+    /**
+     * 取本地数据库，后台尚未打开完时等待
+     */
+    public static LocalDatabase database() {
+        CompletableFuture<LocalDatabase> pending;
+        synchronized (StartupTasks.class) {
+            start();
+            pending = database;
+        }
+        return pending.join();
+    }
+}
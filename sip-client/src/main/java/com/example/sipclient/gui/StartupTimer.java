@@ -0,0 +1,42 @@
+package com.example.sipclient.gui;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 启动耗时统计
+ * 以进程启动时刻为零点记录各阶段的完成时间，在首个可用窗口出现和进入主界面时打印报告。
+ */
+public final class StartupTimer {
+
+    private static final long PROCESS_START = ProcessHandle.current().info().startInstant()
+            .map(Instant::toEpochMilli)
+            .orElse(System.currentTimeMillis());
+
+    private static final Map<String, Long> marks = new LinkedHashMap<>();
+
+    private StartupTimer() {
+    }
+
+    /**
+     * 记录一个阶段完成，同名阶段只记第一次（重新登录时不覆盖首次启动的数据）
+     */
+    public static synchronized void mark(String phase) {
+        marks.putIfAbsent(phase, System.currentTimeMillis() - PROCESS_START);
+    }
+
+    /**
+     * 打印到目前为止的各阶段耗时
+     */
+    public static synchronized void report(String title) {
+        StringBuilder sb = new StringBuilder("[Startup] ").append(title).append('\n');
+        long previous = 0;
+        for (Map.Entry<String, Long> entry : marks.entrySet()) {
+            sb.append(String.format("  %6d ms  (+%5d ms)  %s%n",
+                    entry.getValue(), entry.getValue() - previous, entry.getKey()));
+            previous = entry.getValue();
+        }
+        System.out.print(sb);
+    }
+}
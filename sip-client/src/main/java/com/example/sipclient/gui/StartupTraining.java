@@ -0,0 +1,75 @@
+package com.example.sipclient.gui;
+
+import com.example.sipclient.gui.model.Message;
+import com.example.sipclient.gui.storage.MessageJournal;
+import com.example.sipclient.sip.SipUserAgent;
+import javafx.application.Platform;
+import javafx.fxml.FXMLLoader;
+import javafx.scene.Scene;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * AppCDS 训练入口
+ * 走一遍启动路径上会加载的类（JAIN SIP、SQLite、消息日志、登录界面），随后退出，
+ * 由 -XX:ArchiveClassesAtExit 把这些类写入共享归档，见 sip-client 的 appcds 构建配置。
+ * 不连接服务器、不修改工作目录下的数据库。
+ */
+public final class StartupTraining {
+
+    private StartupTraining() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        SipUserAgent.warmUp();
+
+        try (Connection connection = DriverManager.getConnection("jdbc:sqlite::memory:");
+             Statement stmt = connection.createStatement()) {
+            stmt.execute("CREATE TABLE messages (id INTEGER PRIMARY KEY, content TEXT NOT NULL)");
+            stmt.execute("INSERT INTO messages (content) VALUES ('warmup')");
+            stmt.executeQuery("SELECT * FROM messages").close();
+        }
+
+        Path journalDir = Files.createTempDirectory("sip-journal-training");
+        try (MessageJournal journal = MessageJournal.open(journalDir)) {
+            journal.append("training", new Message("warmup", true, LocalDateTime.now()));
+            journal.load("training");
+        } finally {
+            try (Stream<Path> files = Files.walk(journalDir)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+
+        loadLoginWindow();
+        System.out.println("AppCDS 训练完成");
+        System.exit(0);
+    }
+
+    // 没有图形环境（如 CI）时跳过，归档里只是少了 JavaFX 界面相关的类
+    private static void loadLoginWindow() {
+        try {
+            CompletableFuture<Void> loaded = new CompletableFuture<>();
+            Platform.startup(() -> {
+                try {
+                    new Scene(new FXMLLoader(StartupTraining.class.getResource("/fxml/login.fxml")).load());
+                    loaded.complete(null);
+                } catch (Exception e) {
+                    loaded.completeExceptionally(e);
+                }
+            });
+            loaded.get(30, TimeUnit.SECONDS);
+            Platform.exit();
+        } catch (Throwable e) {
+            System.err.println("跳过 JavaFX 界面预热: " + e);
+        }
+    }
+}
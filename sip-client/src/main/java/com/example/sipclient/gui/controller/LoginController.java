@@ -1,5 +1,6 @@
 package com.example.sipclient.gui.controller;
 
+import com.example.sipclient.gui.StartupTimer;
 import com.example.sipclient.sip.SipUserAgent;
 import javafx.application.Platform;
 import javafx.fxml.FXML;
@@ -88,6 +89,9 @@ public class LoginController {
                 }, "SIP-Cleanup-Hook"));
                 
                 boolean success = userAgent.register(Duration.ofSeconds(10));
+                if (success) {
+                    StartupTimer.mark("SIP 注册完成");
+                }
 
                 Platform.runLater(() -> {
                     if (success) {
@@ -137,6 +141,8 @@ public class LoginController {
             stage.setMinWidth(900);
             stage.setMinHeight(600);
             stage.centerOnScreen();
+            StartupTimer.mark("主界面可用");
+            StartupTimer.report("进入主界面");
         } catch (Exception e) {
             e.printStackTrace();
             showError("打开主界面失败: " + e.getMessage());
@@ -1,10 +1,14 @@
 package com.example.sipclient.gui.controller;
 
 import com.example.sipclient.call.CallManager;
+import com.example.sipclient.chat.AsyncDisplaySink;
 import com.example.sipclient.chat.MessageHandler;
+import com.example.sipclient.gui.StartupTasks;
 import com.example.sipclient.gui.model.Contact;
 import com.example.sipclient.gui.model.Message;
 import com.example.sipclient.gui.storage.LocalDatabase;
+import com.example.sipclient.gui.storage.JournalSync;
+import com.example.sipclient.gui.storage.MessageJournal;
 import com.example.sipclient.sip.SipUserAgent;
 import javafx.application.Platform;
 import javafx.collections.FXCollections;
@@ -21,8 +25,12 @@ import javafx.stage.Modality;
 import javafx.stage.Stage;
 
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.Comparator;
 import java.util.List;
 
 /**
@@ -43,16 +51,25 @@ public class MainController {
 
     private SipUserAgent userAgent;
     private CallManager callManager;
+    private MessageHandler messageHandler;
     private Contact currentContact;
     private ObservableList<Contact> contacts;
     private ObservableList<Contact> allContacts;
     private LocalDatabase database;
+    // 聊天记录的顺序日志，未启用或打开失败时为 null，消息仍写 SQLite
+    private MessageJournal journal;
+
+    private static final Path JOURNAL_DIR = Path.of("sip_client_journal");
 
     @FXML
     public void initialize() {
-        // 初始化数据库
-        database = new LocalDatabase();
-        database.initialize();
+        // 数据库在启动时已于后台打开
+        database = StartupTasks.database();
+        if (SettingsController.isMessageJournalEnabled()) {
+            openJournal();
+        } else if (Files.isDirectory(JOURNAL_DIR)) {
+            migrateJournalBack();
+        }
         
         // 初始化联系人列表
         allContacts = FXCollections.observableArrayList();
@@ -112,10 +129,12 @@ public class MainController {
         callManager = new CallManager();
         userAgent.setCallManager(callManager);
         
-        // 设置消息处理器
-        userAgent.setMessageHandler(new MessageHandler() {
+        // 设置消息处理器：日志在投递线程中输出，界面更新交给 FX 线程，SIP 回调线程只做转发
+        messageHandler = new MessageHandler(line -> { }, MessageHandler.DEFAULT_QUEUE_CAPACITY,
+                AsyncDisplaySink.OverflowPolicy.COALESCE) {
             @Override
             public void handleIncomingMessage(String from, String body) {
+                super.handleIncomingMessage(from, body);
                 Platform.runLater(() -> {
                     // 查找或创建联系人
                     Contact contact = findContactByUri(from);
@@ -135,7 +154,7 @@ public class MainController {
                     
                     // 保存到数据库
                     if (SettingsController.isHistorySaveEnabled()) {
-                        database.saveMessage(contact.getUserId(), msg);
+                        saveMessage(contact.getUserId(), msg);
                         database.saveContact(contact);
                     }
                     
@@ -151,7 +170,8 @@ public class MainController {
                     contactListView.refresh();
                 });
             }
-        });
+        };
+        userAgent.setMessageHandler(messageHandler);
         
         // 设置来电监听器
         callManager.setIncomingCallListener((fromUri, sessionId) -> {
@@ -176,10 +196,12 @@ public class MainController {
         // 清空聊天窗口
         chatBox.getChildren().clear();
         
-        // 从数据库加载历史消息
-        if (SettingsController.isHistorySaveEnabled()) {
-            List<Message> history = database.loadMessages(contact.getUserId());
-            contact.getMessages().addAll(history);
+        // 首次打开会话时加载历史消息；启用保存时内存中已收发的消息也都已落盘，直接整体替换
+        if (!contact.isHistoryLoaded()) {
+            contact.setHistoryLoaded(true);
+            if (SettingsController.isHistorySaveEnabled()) {
+                contact.getMessages().setAll(loadMessages(contact.getUserId()));
+            }
         }
         
         // 显示历史消息
@@ -213,7 +235,7 @@ public class MainController {
             
             // 保存到数据库
             if (SettingsController.isHistorySaveEnabled()) {
-                database.saveMessage(currentContact.getUserId(), msg);
+                saveMessage(currentContact.getUserId(), msg);
                 database.saveContact(currentContact);
             }
             
@@ -444,6 +466,11 @@ public class MainController {
                         }
                     }
                     
+                    closeJournal();
+                    if (messageHandler != null) {
+                        messageHandler.close();
+                    }
+                    
                     // 关闭当前窗口
                     Stage stage = (Stage) contactListView.getScene().getWindow();
                     
@@ -547,20 +574,70 @@ public class MainController {
     }
 
     /**
-     * 从数据库加载联系人
+     * 从数据库加载联系人（消息历史推迟到打开会话时加载，见 selectContact）
      */
     private void loadContactsFromDatabase() {
-        List<Contact> savedContacts = database.loadContacts();
-        for (Contact contact : savedContacts) {
-            allContacts.add(contact);
-            // 加载消息历史
-            if (SettingsController.isHistorySaveEnabled()) {
-                List<Message> messages = database.loadMessages(contact.getUserId());
-                contact.getMessages().addAll(messages);
-            }
+        allContacts.addAll(database.loadContacts());
+    }
+
+    /**
+     * 打开消息日志，并导入上次导入之后（例如日志关闭期间）写进 SQLite 的聊天记录
+     */
+    private void openJournal() {
+        try {
+            journal = MessageJournal.open(JOURNAL_DIR);
+            int imported = JournalSync.importFromDatabase(journal, database);
+            System.out.println("消息日志已启用: " + JOURNAL_DIR.toAbsolutePath() + "，从数据库导入 " + imported + " 条");
+        } catch (IOException | SQLException e) {
+            System.err.println("打开消息日志失败，改用数据库: " + e.getMessage());
+            closeJournal();
         }
     }
 
+    /**
+     * 关闭日志后首次启动：把只写进日志的聊天记录迁回 SQLite，失败时保留日志下次再试
+     */
+    private void migrateJournalBack() {
+        try {
+            int exported = JournalSync.exportToDatabase(JOURNAL_DIR, database);
+            System.out.println("消息日志已停用，迁回数据库 " + exported + " 条");
+        } catch (IOException | SQLException e) {
+            System.err.println("迁回消息日志失败: " + e.getMessage());
+        }
+    }
+
+    private void closeJournal() {
+        if (journal != null) {
+            journal.close();
+            journal = null;
+        }
+    }
+
+    /**
+     * 保存一条消息：启用日志时顺序追加，否则写 SQLite
+     */
+    private void saveMessage(String contactUserId, Message msg) {
+        if (journal == null) {
+            database.saveMessage(contactUserId, msg);
+            return;
+        }
+        try {
+            journal.append(contactUserId, msg);
+        } catch (IOException e) {
+            System.err.println("写入消息日志失败: " + e.getMessage());
+        }
+    }
+
+    private List<Message> loadMessages(String contactUserId) {
+        if (journal == null) {
+            return database.loadMessages(contactUserId);
+        }
+        // 后导入的消息追加在日志末尾，按时间排好（稳定排序，同一时间保持追加顺序）
+        List<Message> messages = journal.load(contactUserId);
+        messages.sort(Comparator.comparing(Message::getTimestamp));
+        return messages;
+    }
+
     /**
      * 设置联系人列表右键菜单
      */
@@ -634,6 +711,13 @@ public class MainController {
             if (response == ButtonType.OK) {
                 // 从数据库删除
                 database.deleteContact(contact.getUserId());
+                if (journal != null) {
+                    try {
+                        journal.delete(contact.getUserId());
+                    } catch (IOException e) {
+                        System.err.println("删除消息日志失败: " + e.getMessage());
+                    }
+                }
                 
                 // 从列表删除
                 allContacts.remove(contact);
@@ -22,6 +22,7 @@ public class SettingsController {
     @FXML private ComboBox<String> outputDeviceComboBox;  // 输出设备（扬声器）
     @FXML private CheckBox autoStartCheckBox;
     @FXML private CheckBox saveHistoryCheckBox;
+    @FXML private CheckBox messageJournalCheckBox;
     @FXML private Button saveButton;
     @FXML private Button cancelButton;
 
@@ -87,6 +88,7 @@ public class SettingsController {
         
         autoStartCheckBox.setSelected(preferences.getBoolean("autoStart", false));
         saveHistoryCheckBox.setSelected(preferences.getBoolean("saveHistory", true));
+        messageJournalCheckBox.setSelected(preferences.getBoolean("messageJournal", false));
     }
 
     /**
@@ -108,6 +110,7 @@ public class SettingsController {
         
         preferences.putBoolean("autoStart", autoStartCheckBox.isSelected());
         preferences.putBoolean("saveHistory", saveHistoryCheckBox.isSelected());
+        preferences.putBoolean("messageJournal", messageJournalCheckBox.isSelected());
         
         // 触发设置变更回调
         if (onSettingsChanged != null) {
@@ -264,6 +267,7 @@ public class SettingsController {
                 
                 autoStartCheckBox.setSelected(false);
                 saveHistoryCheckBox.setSelected(true);
+                messageJournalCheckBox.setSelected(false);
             }
         });
     }
@@ -328,6 +332,14 @@ public class SettingsController {
         return prefs.getBoolean("saveHistory", true);
     }
 
+    /**
+     * 是否用顺序日志（MessageJournal）保存聊天记录，下次登录生效
+     */
+    public static boolean isMessageJournalEnabled() {
+        Preferences prefs = Preferences.userNodeForPackage(SettingsController.class);
+        return prefs.getBoolean("messageJournal", false);
+    }
+
     private void closeWindow() {
         if (stage != null) {
             stage.close();
@@ -16,6 +16,8 @@ public class Contact {
     private LocalDateTime lastMessageTime;
     private int unreadCount;
     private ObservableList<Message> messages;
+    // 历史消息在首次打开会话时才从本地存储加载
+    private boolean historyLoaded;
 
     public Contact(String userId, String sipUri, String displayName) {
         this.userId = userId;
@@ -73,6 +75,14 @@ public class Contact {
         return messages;
     }
 
+    public boolean isHistoryLoaded() {
+        return historyLoaded;
+    }
+
+    public void setHistoryLoaded(boolean historyLoaded) {
+        this.historyLoaded = historyLoaded;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -0,0 +1,103 @@
+package com.example.sipclient.gui.storage;
+
+import com.example.sipclient.gui.model.Message;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+
+/**
+ * 消息日志与 SQLite 之间的同步
+ * 启用日志时只写日志；关闭日志后只写 SQLite。切换设置时两边按下面的方式对齐：
+ * <ul>
+ *   <li>打开日志：把 SQLite 中 ID 大于 IMPORTED 水位的消息导入日志，再前移水位。
+ *       没有水位的旧日志按内容去重后全量导入。</li>
+ *   <li>关闭日志：把日志中 SQLite 没有的消息写回 SQLite，成功后删除日志，下次启用时重新全量导入。</li>
+ * </ul>
+ * 两个方向都按（内容、方向、时间）去重，中途失败后重试不会重复写入。
+ */
+public final class JournalSync {
+
+    private record Key(String content, boolean fromMe, LocalDateTime timestamp) {
+        static Key of(Message message) {
+            return new Key(message.getContent(), message.isFromMe(), message.getTimestamp());
+        }
+    }
+
+    private JournalSync() {
+    }
+
+    /**
+     * 把 SQLite 中水位之后的消息导入日志
+     * @return 导入的消息条数
+     */
+    public static int importFromDatabase(MessageJournal journal, LocalDatabase database)
+            throws IOException, SQLException {
+        OptionalLong watermark = journal.importedUpTo();
+        List<LocalDatabase.StoredMessage> pending = database.loadMessagesAfter(watermark.orElse(0));
+        Map<String, List<Message>> byContact = new LinkedHashMap<>();
+        for (LocalDatabase.StoredMessage stored : pending) {
+            byContact.computeIfAbsent(stored.contactUserId(), key -> new ArrayList<>()).add(stored.message());
+        }
+        int imported = 0;
+        for (Map.Entry<String, List<Message>> entry : byContact.entrySet()) {
+            for (Message message : missing(entry.getValue(), journal.load(entry.getKey()))) {
+                journal.append(entry.getKey(), message);
+                imported++;
+            }
+        }
+        if (!pending.isEmpty()) {
+            journal.markImported(pending.get(pending.size() - 1).id());
+        } else if (watermark.isEmpty()) {
+            journal.markImported(0);
+        }
+        return imported;
+    }
+
+    /**
+     * 把日志中 SQLite 没有的消息写回 SQLite，然后删除日志
+     * @return 写回的消息条数
+     */
+    public static int exportToDatabase(Path directory, LocalDatabase database) throws IOException, SQLException {
+        int exported = 0;
+        try (MessageJournal journal = MessageJournal.open(directory)) {
+            for (String contactUserId : journal.contacts()) {
+                List<Message> missing = missing(journal.load(contactUserId), database.loadMessages(contactUserId));
+                if (!missing.isEmpty()) {
+                    database.saveMessages(contactUserId, missing);
+                    exported += missing.size();
+                }
+            }
+        }
+        MessageJournal.destroy(directory);
+        return exported;
+    }
+
+    // source 中 target 没有的消息，按 source 的顺序；相同的消息按出现次数抵消
+    private static List<Message> missing(List<Message> source, List<Message> target) {
+        Map<Key, Integer> present = new HashMap<>();
+        for (Message message : target) {
+            present.merge(Key.of(message), 1, Integer::sum);
+        }
+        List<Message> missing = new ArrayList<>();
+        for (Message message : source) {
+            Key key = Key.of(message);
+            Integer count = present.get(key);
+            if (count == null) {
+                missing.add(message);
+            } else if (count == 1) {
+                present.remove(key);
+            } else {
+                present.put(key, count - 1);
+            }
+        }
+        return missing;
+    }
+}
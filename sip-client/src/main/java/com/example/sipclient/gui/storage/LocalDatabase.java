@@ -14,8 +14,23 @@ import java.util.List;
 public class LocalDatabase {
 
     private static final String DB_URL = "jdbc:sqlite:sip_client.db";
+    private final String url;
     private Connection connection;
 
+    /**
+     * 带 ID 的消息，供消息日志按 ID 增量同步
+     */
+    public record StoredMessage(long id, String contactUserId, Message message) {
+    }
+
+    public LocalDatabase() {
+        this(DB_URL);
+    }
+
+    LocalDatabase(String url) {
+        this.url = url;
+    }
+
     /**
      * 初始化数据库
      */
@@ -23,7 +38,7 @@ public class LocalDatabase {
         try {
             // 加载 SQLite JDBC 驱动
             Class.forName("org.sqlite.JDBC");
-            connection = DriverManager.getConnection(DB_URL);
+            connection = DriverManager.getConnection(url);
             
             // 创建表
             createTables();
@@ -168,6 +183,58 @@ public class LocalDatabase {
         return messages;
     }
 
+    /**
+     * 按 ID 顺序加载 ID 大于 afterId 的消息
+     */
+    public List<StoredMessage> loadMessagesAfter(long afterId) throws SQLException {
+        List<StoredMessage> messages = new ArrayList<>();
+        String sql = "SELECT * FROM messages WHERE id > ? ORDER BY id ASC";
+
+        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+            pstmt.setLong(1, afterId);
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    Message msg = new Message(
+                        rs.getString("content"),
+                        rs.getInt("is_from_me") == 1,
+                        LocalDateTime.parse(rs.getString("timestamp"))
+                    );
+                    messages.add(new StoredMessage(rs.getLong("id"), rs.getString("contact_user_id"), msg));
+                }
+            }
+        }
+        return messages;
+    }
+
+    /**
+     * 在一个事务里批量保存消息，失败时整体回滚并抛出异常
+     */
+    public void saveMessages(String contactUserId, List<Message> messages) throws SQLException {
+        String sql = """
+            INSERT INTO messages (contact_user_id, content, is_from_me, timestamp)
+            VALUES (?, ?, ?, ?)
+        """;
+
+        connection.setAutoCommit(false);
+        try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+            for (Message message : messages) {
+                pstmt.setString(1, contactUserId);
+                pstmt.setString(2, message.getContent());
+                pstmt.setInt(3, message.isFromMe() ? 1 : 0);
+                pstmt.setString(4, message.getTimestamp().toString());
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+            connection.commit();
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+
     /**
      * 删除联系人及其消息
      */
@@ -0,0 +1,528 @@
+package com.example.sipclient.gui.storage;
+
+import com.example.sipclient.gui.model.Message;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * 聊天消息顺序日志（内存映射分段文件）
+ * 消息以固定布局的记录追加到 segment-XXXXXXXX.seg 中，每个段预分配后整体映射，
+ * 写入只是一次内存拷贝，不逐条 fsync；脏页由操作系统回写，进程退出不会丢数据，只有掉电可能丢最近的写入。
+ * 每个联系人在内存中维护一份记录偏移索引，读取历史时直接从映射区解码。
+ * 删除联系人追加一条墓碑记录；失效数据超过存活数据时压缩：存活记录重写到新段，再通过 HEAD 文件切换。
+ * HEAD 记录有效段的序号范围（首段 末段），换段时更新；打开时范围外的段一律删除，
+ * 所以压缩中途崩溃留下的新段不会和旧段一起回放。
+ * IMPORTED 文件记录已从 SQLite 导入到哪条消息（messages.id），见 {@link JournalSync}。
+ *
+ * 记录布局（8 字节对齐）：
+ * <pre>
+ *   int   magic       MAGIC，0 表示段内尚未写入
+ *   int   length      整条记录字节数（含头部和对齐填充）
+ *   int   crc         CRC32(type .. 内容末尾)
+ *   byte  type        1 = 消息，2 = 删除联系人
+ *   byte  fromMe
+ *   short contactLen
+ *   long  epochSecond 消息时间（按 UTC 换算的 LocalDateTime）
+ *   int   nano
+ *   int   contentLen
+ *   byte[contactLen]  联系人 ID (UTF-8)
+ *   byte[contentLen]  消息内容 (UTF-8)
+ * </pre>
+ * 所有公开方法都在实例锁内执行，可以跨线程调用。
+ */
+public final class MessageJournal implements AutoCloseable {
+
+    public static final int DEFAULT_SEGMENT_SIZE = 8 * 1024 * 1024;
+
+    private static final int MAGIC = 0x4D4A524E;
+    private static final int HEADER_SIZE = 32;
+    private static final int CRC_FROM = 12;
+    private static final byte TYPE_MESSAGE = 1;
+    private static final byte TYPE_DELETE = 2;
+    // 失效数据少于这个量时不值得压缩
+    private static final long MIN_COMPACT_BYTES = 1024 * 1024;
+
+    private static final String HEAD_FILE = "HEAD";
+    private static final String IMPORTED_FILE = "IMPORTED";
+    private static final Pattern SEGMENT_NAME = Pattern.compile("segment-(\\d{8})\\.seg");
+
+    private final Path directory;
+    private final int segmentSize;
+    private final long minCompactBytes;
+    private final TreeMap<Integer, Segment> segments = new TreeMap<>();
+    // 联系人 -> 记录位置（段序号 << 32 | 段内偏移），按追加顺序
+    private final Map<String, List<Long>> index = new HashMap<>();
+    private Segment active;
+    // HEAD 中的首段序号
+    private int firstSeq;
+    private long totalBytes;
+    private long liveBytes;
+    private boolean closed;
+
+    private MessageJournal(Path directory, int segmentSize, long minCompactBytes) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.minCompactBytes = minCompactBytes;
+    }
+
+    /**
+     * 打开（或创建）目录下的日志，回放全部段重建索引
+     */
+    public static MessageJournal open(Path directory) throws IOException {
+        return open(directory, DEFAULT_SEGMENT_SIZE, MIN_COMPACT_BYTES);
+    }
+
+    static MessageJournal open(Path directory, int segmentSize, long minCompactBytes) throws IOException {
+        Files.createDirectories(directory);
+        MessageJournal journal = new MessageJournal(directory, segmentSize, minCompactBytes);
+        try {
+            journal.recover();
+            journal.compactIfNeeded();
+        } catch (IOException | RuntimeException e) {
+            journal.close();
+            throw e;
+        }
+        return journal;
+    }
+
+    /**
+     * 追加一条消息
+     */
+    public synchronized void append(String contactUserId, Message message) throws IOException {
+        ensureOpen();
+        long position = write(TYPE_MESSAGE, contactUserId, message.getContent(), message.isFromMe(),
+                message.getTimestamp());
+        index.computeIfAbsent(contactUserId, key -> new ArrayList<>()).add(position);
+        liveBytes += recordLength(position);
+    }
+
+    /**
+     * 按追加顺序读取联系人的消息历史
+     */
+    public synchronized List<Message> load(String contactUserId) {
+        ensureOpen();
+        List<Long> positions = index.get(contactUserId);
+        if (positions == null) {
+            return new ArrayList<>();
+        }
+        List<Message> messages = new ArrayList<>(positions.size());
+        for (long position : positions) {
+            messages.add(decode(position));
+        }
+        return messages;
+    }
+
+    /**
+     * 删除联系人的全部消息（写墓碑，空间在压缩时回收）
+     */
+    public synchronized void delete(String contactUserId) throws IOException {
+        ensureOpen();
+        List<Long> positions = index.remove(contactUserId);
+        if (positions == null) {
+            return;
+        }
+        for (long position : positions) {
+            liveBytes -= recordLength(position);
+        }
+        write(TYPE_DELETE, contactUserId, "", false, LocalDateTime.now());
+        compactIfNeeded();
+    }
+
+    /**
+     * 是否没有任何消息
+     */
+    public synchronized boolean isEmpty() {
+        return index.isEmpty();
+    }
+
+    /**
+     * 有消息的联系人
+     */
+    public synchronized Set<String> contacts() {
+        ensureOpen();
+        return new HashSet<>(index.keySet());
+    }
+
+    /**
+     * 已从 SQLite 导入到的消息 ID；从未记录过时为空
+     */
+    public synchronized OptionalLong importedUpTo() throws IOException {
+        Path imported = directory.resolve(IMPORTED_FILE);
+        if (!Files.exists(imported)) {
+            return OptionalLong.empty();
+        }
+        return OptionalLong.of(Long.parseLong(Files.readString(imported, StandardCharsets.UTF_8).trim()));
+    }
+
+    /**
+     * 记录已导入到的消息 ID；先把已追加的记录刷盘，掉电后不会出现记录丢失而水位已前移
+     */
+    public synchronized void markImported(long messageId) throws IOException {
+        ensureOpen();
+        for (Segment segment : segments.values()) {
+            segment.buffer.force();
+        }
+        writeAtomically(IMPORTED_FILE, Long.toString(messageId));
+    }
+
+    /**
+     * 删除目录下的日志（须先关闭），例如聊天记录已迁回 SQLite 之后
+     */
+    public static void destroy(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        try (Stream<Path> listing = Files.list(directory)) {
+            for (Path path : listing.toList()) {
+                String name = path.getFileName().toString();
+                if (SEGMENT_NAME.matcher(name).matches() || name.startsWith(HEAD_FILE)
+                        || name.startsWith(IMPORTED_FILE)) {
+                    Files.delete(path);
+                }
+            }
+        }
+        try (Stream<Path> listing = Files.list(directory)) {
+            if (listing.findAny().isEmpty()) {
+                Files.delete(directory);
+            }
+        }
+    }
+
+    /**
+     * 失效数据超过阈值且多于存活数据时压缩
+     */
+    public synchronized void compactIfNeeded() throws IOException {
+        ensureOpen();
+        long garbage = totalBytes - liveBytes;
+        if (garbage >= minCompactBytes && garbage > liveBytes) {
+            compact();
+        }
+    }
+
+    /**
+     * 把存活记录按原顺序复制到新段，切换 HEAD 后删除旧段
+     */
+    public synchronized void compact() throws IOException {
+        ensureOpen();
+        List<Long> live = new ArrayList<>();
+        index.values().forEach(live::addAll);
+        live.sort(null);
+
+        TreeMap<Integer, Segment> old = new TreeMap<>(segments);
+        // 新段在 HEAD 范围之外，切换 HEAD 之前崩溃的话下次打开时会被丢弃
+        int compactedFirst = active.seq + 1;
+        segments.clear();
+        active = createSegment(compactedFirst, segmentSize);
+        totalBytes = 0;
+        Map<Long, Long> moved = new HashMap<>(live.size() * 2);
+        for (long position : live) {
+            Segment from = old.get(segmentOf(position));
+            int offset = offsetOf(position);
+            int length = from.buffer.getInt(offset + 4);
+            if (!fits(length)) {
+                roll(length);
+            }
+            active.buffer.put(active.writePosition, from.buffer, offset, length);
+            moved.put(position, pointer(active.seq, active.writePosition));
+            active.writePosition += length;
+            totalBytes += length;
+        }
+        index.replaceAll((contact, positions) -> {
+            List<Long> relocated = new ArrayList<>(positions.size());
+            positions.forEach(position -> relocated.add(moved.get(position)));
+            return relocated;
+        });
+        liveBytes = totalBytes;
+        for (Segment segment : segments.values()) {
+            segment.buffer.force();
+        }
+
+        firstSeq = compactedFirst;
+        writeHead(firstSeq, active.seq);
+        for (Segment segment : old.values()) {
+            segment.close();
+            try {
+                Files.deleteIfExists(segment.path);
+            } catch (IOException e) {
+                // 已被 HEAD 排除，下次打开时再删
+                System.err.println("删除旧日志段失败: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 刷盘并关闭所有段
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        for (Segment segment : segments.values()) {
+            try {
+                segment.buffer.force();
+            } catch (RuntimeException e) {
+                System.err.println("日志刷盘失败: " + e.getMessage());
+            }
+            segment.close();
+        }
+        segments.clear();
+        index.clear();
+    }
+
+    private void recover() throws IOException {
+        int[] head = readHead();
+        firstSeq = head[0];
+        int lastSeq = head[1];
+        TreeMap<Integer, Path> files = new TreeMap<>();
+        try (Stream<Path> listing = Files.list(directory)) {
+            listing.forEach(path -> {
+                Matcher matcher = SEGMENT_NAME.matcher(path.getFileName().toString());
+                if (matcher.matches()) {
+                    files.put(Integer.parseInt(matcher.group(1)), path);
+                }
+            });
+        }
+        for (Map.Entry<Integer, Path> file : files.entrySet()) {
+            if (file.getKey() < firstSeq || file.getKey() > lastSeq) {
+                // 压缩后没来得及删除的旧段，或切换 HEAD 之前崩溃留下的压缩段
+                Files.deleteIfExists(file.getValue());
+                continue;
+            }
+            Segment segment = mapSegment(file.getKey(), file.getValue(), Files.size(file.getValue()));
+            segments.put(segment.seq, segment);
+            replay(segment);
+        }
+        active = segments.isEmpty() ? createSegment(firstSeq, segmentSize) : segments.lastEntry().getValue();
+        writeHead(firstSeq, active.seq);
+    }
+
+    private void replay(Segment segment) {
+        MappedByteBuffer buffer = segment.buffer;
+        int position = 0;
+        while (position + HEADER_SIZE <= buffer.capacity() && buffer.getInt(position) == MAGIC) {
+            int length = buffer.getInt(position + 4);
+            if (length < HEADER_SIZE || position + length > buffer.capacity() || !checksumMatches(buffer, position)) {
+                // 掉电留下的半条记录：清掉尾部，后续写入从这里继续
+                System.err.println("日志段 " + segment.path.getFileName() + " 在偏移 " + position + " 处损坏，已截断");
+                for (int i = position; i < buffer.capacity(); i++) {
+                    buffer.put(i, (byte) 0);
+                }
+                break;
+            }
+            long pointer = pointer(segment.seq, position);
+            String contact = string(buffer, position + HEADER_SIZE, buffer.getShort(position + 14));
+            if (buffer.get(position + 12) == TYPE_MESSAGE) {
+                index.computeIfAbsent(contact, key -> new ArrayList<>()).add(pointer);
+                liveBytes += length;
+            } else {
+                List<Long> removed = index.remove(contact);
+                if (removed != null) {
+                    for (long removedPosition : removed) {
+                        liveBytes -= recordLength(removedPosition);
+                    }
+                }
+            }
+            totalBytes += length;
+            position += length;
+        }
+        segment.writePosition = position;
+    }
+
+    private long write(byte type, String contact, String content, boolean fromMe, LocalDateTime timestamp)
+            throws IOException {
+        byte[] contactBytes = contact.getBytes(StandardCharsets.UTF_8);
+        byte[] contentBytes = content.getBytes(StandardCharsets.UTF_8);
+        if (contactBytes.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("联系人 ID 过长");
+        }
+        int bodyLength = HEADER_SIZE + contactBytes.length + contentBytes.length;
+        int length = (bodyLength + 7) & ~7;
+        ensureCapacity(length);
+
+        MappedByteBuffer buffer = active.buffer;
+        int position = active.writePosition;
+        buffer.putInt(position + 4, length);
+        buffer.put(position + 12, type);
+        buffer.put(position + 13, fromMe ? (byte) 1 : 0);
+        buffer.putShort(position + 14, (short) contactBytes.length);
+        buffer.putLong(position + 16, timestamp.toEpochSecond(ZoneOffset.UTC));
+        buffer.putInt(position + 24, timestamp.getNano());
+        buffer.putInt(position + 28, contentBytes.length);
+        buffer.put(position + HEADER_SIZE, contactBytes);
+        buffer.put(position + HEADER_SIZE + contactBytes.length, contentBytes);
+        for (int i = bodyLength; i < length; i++) {
+            buffer.put(position + i, (byte) 0);
+        }
+        buffer.putInt(position + 8, checksum(buffer, position));
+        // magic 最后写，回放时看到 magic 就说明整条记录已写完
+        buffer.putInt(position, MAGIC);
+
+        active.writePosition += length;
+        totalBytes += length;
+        return pointer(active.seq, position);
+    }
+
+    private Message decode(long position) {
+        MappedByteBuffer buffer = segments.get(segmentOf(position)).buffer;
+        int offset = offsetOf(position);
+        int contactLength = buffer.getShort(offset + 14);
+        LocalDateTime timestamp = LocalDateTime.ofEpochSecond(buffer.getLong(offset + 16),
+                buffer.getInt(offset + 24), ZoneOffset.UTC);
+        String content = string(buffer, offset + HEADER_SIZE + contactLength, buffer.getInt(offset + 28));
+        return new Message(content, buffer.get(offset + 13) == 1, timestamp);
+    }
+
+    private void ensureCapacity(int length) throws IOException {
+        if (fits(length)) {
+            return;
+        }
+        roll(length);
+        writeHead(firstSeq, active.seq);
+    }
+
+    private boolean fits(int length) {
+        return active.writePosition + length <= active.buffer.capacity();
+    }
+
+    private void roll(int length) throws IOException {
+        // 换段时把写满的段交给操作系统异步回写
+        active.buffer.force();
+        active = createSegment(active.seq + 1, Math.max(segmentSize, length));
+    }
+
+    private Segment createSegment(int seq, int size) throws IOException {
+        Path path = directory.resolve(String.format("segment-%08d.seg", seq));
+        Segment segment = mapSegment(seq, path, size);
+        segments.put(seq, segment);
+        return segment;
+    }
+
+    private int recordLength(long position) {
+        return segments.get(segmentOf(position)).buffer.getInt(offsetOf(position) + 4);
+    }
+
+    /**
+     * @return {首段序号, 末段序号}；没有 HEAD 或只记录了首段的旧格式不限制末段
+     */
+    private int[] readHead() throws IOException {
+        Path head = directory.resolve(HEAD_FILE);
+        if (!Files.exists(head)) {
+            return new int[]{0, Integer.MAX_VALUE};
+        }
+        String[] range = Files.readString(head, StandardCharsets.UTF_8).trim().split("\\s+");
+        int first = Integer.parseInt(range[0]);
+        return new int[]{first, range.length > 1 ? Integer.parseInt(range[1]) : Integer.MAX_VALUE};
+    }
+
+    private void writeHead(int first, int last) throws IOException {
+        writeAtomically(HEAD_FILE, first + " " + last);
+    }
+
+    private void writeAtomically(String name, String content) throws IOException {
+        Path tmp = directory.resolve(name + ".tmp");
+        Files.writeString(tmp, content, StandardCharsets.UTF_8);
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(tmp, directory.resolve(name), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("消息日志已关闭");
+        }
+    }
+
+    private static Segment mapSegment(int seq, Path path, long size) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        try {
+            // 映射区大于文件时文件会被扩展，新区域全为 0
+            return new Segment(seq, path, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private static int checksum(ByteBuffer buffer, int position) {
+        int bodyLength = HEADER_SIZE + buffer.getShort(position + 14) + buffer.getInt(position + 28);
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(position + CRC_FROM, bodyLength - CRC_FROM));
+        return (int) crc.getValue();
+    }
+
+    private static boolean checksumMatches(ByteBuffer buffer, int position) {
+        int contactLength = buffer.getShort(position + 14);
+        int contentLength = buffer.getInt(position + 28);
+        int length = buffer.getInt(position + 4);
+        if (contactLength < 0 || contentLength < 0 || HEADER_SIZE + contactLength + contentLength > length) {
+            return false;
+        }
+        return checksum(buffer, position) == buffer.getInt(position + 8);
+    }
+
+    private static String string(ByteBuffer buffer, int offset, int length) {
+        return StandardCharsets.UTF_8.decode(buffer.slice(offset, length)).toString();
+    }
+
+    private static long pointer(int seq, int offset) {
+        return ((long) seq << 32) | offset;
+    }
+
+    private static int segmentOf(long pointer) {
+        return (int) (pointer >>> 32);
+    }
+
+    private static int offsetOf(long pointer) {
+        return (int) pointer;
+    }
+
+    private static final class Segment {
+        final int seq;
+        final Path path;
+        final FileChannel channel;
+        final MappedByteBuffer buffer;
+        int writePosition;
+
+        Segment(int seq, Path path, FileChannel channel, MappedByteBuffer buffer) {
+            this.seq = seq;
+            this.path = path;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+
+        void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                System.err.println("关闭日志段失败: " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.sipclient.presence;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.xml.sax.InputSource;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.StringReader;
+import java.util.Optional;
+
+/**
+ * 最小化的 PIDF（RFC 3863）编解码：只处理一个 tuple 的 basic 状态和 note。
+ */
+public final class Pidf {
+
+    public static final String CONTENT_TYPE = "application";
+    public static final String CONTENT_SUBTYPE = "pidf+xml";
+
+    private Pidf() {
+    }
+
+    public static String build(PresenceUpdate update) {
+        String note = update.note() != null ? update.note() : update.status().defaultNote();
+        StringBuilder xml = new StringBuilder(256)
+                .append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+                .append("<presence xmlns=\"urn:ietf:params:xml:ns:pidf\" entity=\"")
+                .append(escape(update.entity())).append("\">\n")
+                .append("  <tuple id=\"t1\">\n")
+                .append("    <status><basic>").append(update.status().basic()).append("</basic></status>\n")
+                .append("  </tuple>\n");
+        if (note != null) {
+            xml.append("  <note>").append(escape(note)).append("</note>\n");
+        }
+        return xml.append("</presence>\n").toString();
+    }
+
+    /**
+     * @param fallbackEntity 文档中没有 entity 属性时使用，一般是 NOTIFY 的 From
+     */
+    public static Optional<PresenceUpdate> parse(String xml, String fallbackEntity) {
+        if (xml == null || xml.isBlank()) {
+            return Optional.empty();
+        }
+        try {
+            Document document = newBuilder().parse(new InputSource(new StringReader(xml)));
+            Element root = document.getDocumentElement();
+            String entity = root.getAttribute("entity");
+            String basic = firstText(document, "basic");
+            String note = firstText(document, "note");
+            PresenceStatus status = PresenceStatus.fromPidf(basic, note);
+            return Optional.of(new PresenceUpdate(entity.isEmpty() ? fallbackEntity : entity, status, note));
+        } catch (Exception ex) {
+            return Optional.empty();
+        }
+    }
+
+    private static DocumentBuilder newBuilder() throws ParserConfigurationException {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        // NOTIFY 正文来自网络，禁止 DTD 和外部实体
+        factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+        factory.setAttribute(XMLConstants.ACCESS_EXTERNAL_DTD, "");
+        factory.setAttribute(XMLConstants.ACCESS_EXTERNAL_SCHEMA, "");
+        factory.setExpandEntityReferences(false);
+        return factory.newDocumentBuilder();
+    }
+
+    private static String firstText(Document document, String localName) {
+        NodeList nodes = document.getElementsByTagNameNS("*", localName);
+        return nodes.getLength() == 0 ? null : nodes.item(0).getTextContent().trim();
+    }
+
+    private static String escape(String value) {
+        return value.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+    }
+}
@@ -0,0 +1,164 @@
+package com.example.sipclient.presence;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 在线状态分发中心：记录每个实体的观察者，合并短时间内的连续状态变化，再按批次通知观察者。
+ * <p>
+ * 同一实体在合并窗口内多次变化时只通知最后一次；观察者很多时按 {@code batchSize} 分批交给
+ * {@link Notifier}，由它决定如何发送（SIP NOTIFY、WebSocket 等）。
+ *
+ * @param <W> 观察者类型，例如订阅对话 {@code javax.sip.Dialog}
+ */
+public final class PresenceHub<W> implements AutoCloseable {
+
+    public static final Duration DEFAULT_COALESCE_WINDOW = Duration.ofMillis(200);
+    public static final int DEFAULT_BATCH_SIZE = 256;
+
+    @FunctionalInterface
+    public interface Notifier<W> {
+        void notify(List<W> watchers, PresenceUpdate update);
+    }
+
+    private final Notifier<W> notifier;
+    private final long coalesceWindowMillis;
+    private final int batchSize;
+    private final Map<String, Set<W>> watchers = new ConcurrentHashMap<>();
+    private final Map<String, PresenceUpdate> current = new ConcurrentHashMap<>();
+    private final Map<String, PresenceUpdate> pending = new ConcurrentHashMap<>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong delivered = new AtomicLong();
+    private final ScheduledExecutorService scheduler;
+
+    public PresenceHub(Notifier<W> notifier) {
+        this(notifier, DEFAULT_COALESCE_WINDOW, DEFAULT_BATCH_SIZE);
+    }
+
+    public PresenceHub(Notifier<W> notifier, Duration coalesceWindow, int batchSize) {
+        this.notifier = Objects.requireNonNull(notifier, "notifier");
+        Objects.requireNonNull(coalesceWindow, "coalesceWindow");
+        if (coalesceWindow.isNegative() || batchSize <= 0) {
+            throw new IllegalArgumentException("coalesceWindow must not be negative and batchSize must be positive");
+        }
+        this.coalesceWindowMillis = coalesceWindow.toMillis();
+        this.batchSize = batchSize;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "presence-hub");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void watch(String entity, W watcher) {
+        watchers.computeIfAbsent(entity, key -> ConcurrentHashMap.newKeySet()).add(watcher);
+    }
+
+    public void unwatch(String entity, W watcher) {
+        watchers.computeIfPresent(entity, (key, set) -> {
+            set.remove(watcher);
+            return set.isEmpty() ? null : set;
+        });
+    }
+
+    /**
+     * 从所有实体中移除该观察者，例如订阅对话已终止。
+     */
+    public void unwatchAll(W watcher) {
+        for (String entity : List.copyOf(watchers.keySet())) {
+            unwatch(entity, watcher);
+        }
+    }
+
+    public int watcherCount(String entity) {
+        Set<W> set = watchers.get(entity);
+        return set == null ? 0 : set.size();
+    }
+
+    public Optional<PresenceUpdate> current(String entity) {
+        return Optional.ofNullable(current.get(entity));
+    }
+
+    /**
+     * 记录新状态，合并窗口结束后通知观察者。
+     */
+    public void publish(PresenceUpdate update) {
+        current.put(update.entity(), update);
+        pending.put(update.entity(), update);
+        published.incrementAndGet();
+        if (flushScheduled.compareAndSet(false, true)) {
+            try {
+                scheduler.schedule(this::scheduledFlush, coalesceWindowMillis, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException ex) {
+                flushScheduled.set(false);
+            }
+        }
+    }
+
+    /**
+     * 立即把待发送的状态分发出去。
+     */
+    public void flush() {
+        for (String entity : List.copyOf(pending.keySet())) {
+            PresenceUpdate update = pending.remove(entity);
+            if (update == null) {
+                continue;
+            }
+            delivered.incrementAndGet();
+            Set<W> set = watchers.get(entity);
+            if (set == null || set.isEmpty()) {
+                continue;
+            }
+            List<W> batch = new ArrayList<>(Math.min(batchSize, set.size()));
+            for (W watcher : set) {
+                batch.add(watcher);
+                if (batch.size() == batchSize) {
+                    deliver(batch, update);
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+            if (!batch.isEmpty()) {
+                deliver(batch, update);
+            }
+        }
+    }
+
+    /**
+     * @return 被合并掉、没有单独发送的状态变化次数
+     */
+    public long getCoalescedCount() {
+        return published.get() - delivered.get() - pending.size();
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        flush();
+    }
+
+    private void scheduledFlush() {
+        flushScheduled.set(false);
+        flush();
+    }
+
+    private void deliver(List<W> batch, PresenceUpdate update) {
+        try {
+            notifier.notify(List.copyOf(batch), update);
+        } catch (RuntimeException ex) {
+            System.err.println("[PresenceHub] 通知失败: " + ex.getMessage());
+        }
+    }
+}
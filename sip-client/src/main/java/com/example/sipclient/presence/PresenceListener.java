@@ -0,0 +1,9 @@
+package com.example.sipclient.presence;
+
+/**
+ * 收到所订阅联系人的 NOTIFY 时回调，在 SIP 线程上执行，实现应尽快返回。
+ */
+public interface PresenceListener {
+
+    void onPresence(PresenceUpdate update);
+}
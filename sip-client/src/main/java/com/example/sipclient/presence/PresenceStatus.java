@@ -0,0 +1,61 @@
+package com.example.sipclient.presence;
+
+import java.util.Locale;
+
+/**
+ * 用户在线状态及其在 PIDF 中的表示：basic 为 open/closed，忙碌和离开通过 note 区分。
+ */
+public enum PresenceStatus {
+    ONLINE("open", null),
+    AWAY("open", "away"),
+    BUSY("open", "busy"),
+    OFFLINE("closed", null);
+
+    private final String basic;
+    private final String note;
+
+    PresenceStatus(String basic, String note) {
+        this.basic = basic;
+        this.note = note;
+    }
+
+    public String basic() {
+        return basic;
+    }
+
+    /**
+     * @return 写入 PIDF note 的默认文本，没有时为 {@code null}
+     */
+    public String defaultNote() {
+        return note;
+    }
+
+    /**
+     * 从 PIDF 的 basic 和 note 推断状态。
+     */
+    public static PresenceStatus fromPidf(String basic, String note) {
+        if (basic != null && "closed".equalsIgnoreCase(basic.trim())) {
+            return OFFLINE;
+        }
+        if (note != null) {
+            String lower = note.toLowerCase(Locale.ROOT);
+            if (lower.contains("busy") || lower.contains("on the phone")) {
+                return BUSY;
+            }
+            if (lower.contains("away")) {
+                return AWAY;
+            }
+        }
+        return ONLINE;
+    }
+
+    /**
+     * 解析外部传入的状态名（如 REST 接口），不区分大小写。
+     */
+    public static PresenceStatus parse(String value) {
+        if (value == null || value.isBlank()) {
+            throw new IllegalArgumentException("status must not be blank");
+        }
+        return valueOf(value.trim().toUpperCase(Locale.ROOT));
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.sipclient.presence;
+
+import java.util.Objects;
+
+/**
+ * 某个实体（presentity）的一次状态变化。
+ *
+ * @param entity SIP URI
+ * @param note   可选的状态说明
+ */
+public record PresenceUpdate(String entity, PresenceStatus status, String note) {
+
+    public PresenceUpdate {
+        Objects.requireNonNull(entity, "entity");
+        Objects.requireNonNull(status, "status");
+    }
+}
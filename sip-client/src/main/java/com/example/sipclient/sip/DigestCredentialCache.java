@@ -0,0 +1,192 @@
+package com.example.sipclient.sip;
+
+import javax.sip.header.AuthorizationHeader;
+import javax.sip.header.HeaderFactory;
+import javax.sip.header.ProxyAuthenticateHeader;
+import javax.sip.header.ProxyAuthorizationHeader;
+import javax.sip.header.WWWAuthenticateHeader;
+import javax.sip.message.Request;
+import javax.sip.message.Response;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.ParseException;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.ListIterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 按 realm（WWW 与 Proxy 分开）缓存 Digest 质询（nonce、opaque、qop），让后续请求预先带上 Authorization / Proxy-Authorization，
+ * 省掉每次 REGISTER 续期以及 MESSAGE/INVITE 的 401/407 往返。
+ * <p>
+ * 同一个 nonce 重复使用时按 RFC 2617 递增 nonce-count；服务器返回 stale=true 时换用新 nonce 重试，
+ * 带着凭证仍被拒绝且不是 stale 时说明密码错误，不再重试。
+ */
+final class DigestCredentialCache {
+
+    private static final String[] CHALLENGE_HEADERS = {WWWAuthenticateHeader.NAME, ProxyAuthenticateHeader.NAME};
+
+    private static final class Entry {
+        private final boolean proxy;
+        private final String realm;
+        private final String nonce;
+        private final String opaque;
+        private final String algorithm;
+        private final String qop;
+        private final AtomicInteger nonceCount = new AtomicInteger();
+
+        private Entry(boolean proxy, String realm, String nonce, String opaque, String algorithm, String qop) {
+            this.proxy = proxy;
+            this.realm = realm;
+            this.nonce = nonce;
+            this.opaque = opaque;
+            this.algorithm = algorithm;
+            this.qop = qop;
+        }
+    }
+
+    private final String username;
+    private final String password;
+    private final HeaderFactory headerFactory;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    DigestCredentialCache(String username, String password, HeaderFactory headerFactory) {
+        this.username = Objects.requireNonNull(username, "username");
+        this.password = Objects.requireNonNull(password, "password");
+        this.headerFactory = Objects.requireNonNull(headerFactory, "headerFactory");
+    }
+
+    /**
+     * 为请求附上所有已缓存 realm 的凭证，ACK/CANCEL 除外。
+     *
+     * @return 是否附上了至少一个凭证头
+     */
+    boolean authorize(Request request) throws ParseException {
+        String method = request.getMethod();
+        if (entries.isEmpty() || Request.ACK.equals(method) || Request.CANCEL.equals(method)) {
+            return false;
+        }
+        String uri = request.getRequestURI().toString();
+        boolean attached = false;
+        for (Entry entry : entries.values()) {
+            AuthorizationHeader header = entry.proxy
+                    ? headerFactory.createProxyAuthorizationHeader("Digest")
+                    : headerFactory.createAuthorizationHeader("Digest");
+            header.setUsername(username);
+            header.setRealm(entry.realm);
+            header.setNonce(entry.nonce);
+            header.setURI(request.getRequestURI());
+            header.setAlgorithm(entry.algorithm);
+            if (entry.opaque != null) {
+                header.setOpaque(entry.opaque);
+            }
+            String nc = null;
+            String cnonce = null;
+            if (entry.qop != null) {
+                int count = entry.nonceCount.incrementAndGet();
+                nc = String.format("%08x", count);
+                cnonce = Long.toHexString(ThreadLocalRandom.current().nextLong());
+                header.setQop(entry.qop);
+                header.setNonceCount(count);
+                header.setCNonce(cnonce);
+            }
+            header.setResponse(computeResponse(entry.algorithm, username, entry.realm, password,
+                    entry.nonce, nc, cnonce, entry.qop, method, uri));
+            request.addHeader(header);
+            attached = true;
+        }
+        return attached;
+    }
+
+    /**
+     * 记录 401/407 中的质询。
+     *
+     * @param challenged 被质询的原始请求，用于判断凭证是否已被拒绝
+     * @return 是否值得带着新凭证重发
+     */
+    boolean onChallenge(Response response, Request challenged) {
+        boolean retry = false;
+        for (String headerName : CHALLENGE_HEADERS) {
+            ListIterator<?> headers = response.getHeaders(headerName);
+            while (headers.hasNext()) {
+                WWWAuthenticateHeader challenge = (WWWAuthenticateHeader) headers.next();
+                String algorithm = challenge.getAlgorithm() == null ? "MD5" : challenge.getAlgorithm();
+                if (!"Digest".equalsIgnoreCase(challenge.getScheme())
+                        || !algorithm.toUpperCase(Locale.ROOT).startsWith("MD5")) {
+                    continue;
+                }
+                String realm = challenge.getRealm();
+                boolean proxy = challenge instanceof ProxyAuthenticateHeader;
+                String key = (proxy ? "proxy:" : "www:") + realm;
+                if (carriedCredentials(challenged, proxy, realm) && !challenge.isStale()) {
+                    entries.remove(key);
+                    continue;
+                }
+                entries.put(key, new Entry(proxy, realm, challenge.getNonce(), challenge.getOpaque(),
+                        algorithm, pickQop(challenge.getQop())));
+                retry = true;
+            }
+        }
+        return retry;
+    }
+
+    void clear() {
+        entries.clear();
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    private static boolean carriedCredentials(Request request, boolean proxy, String realm) {
+        Iterator<?> headers = request.getHeaders(proxy ? ProxyAuthorizationHeader.NAME : AuthorizationHeader.NAME);
+        while (headers.hasNext()) {
+            if (Objects.equals(realm, ((AuthorizationHeader) headers.next()).getRealm())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String pickQop(String offered) {
+        if (offered == null) {
+            return null;
+        }
+        for (String option : offered.split(",")) {
+            if ("auth".equalsIgnoreCase(option.trim())) {
+                return "auth";
+            }
+        }
+        // 只支持 auth；auth-int 需要对正文做摘要，这里退回到不带 qop 的 RFC 2069 形式
+        return null;
+    }
+
+    static String computeResponse(String algorithm, String username, String realm, String password,
+                                  String nonce, String nc, String cnonce, String qop,
+                                  String method, String uri) {
+        String ha1 = md5(username + ":" + realm + ":" + password);
+        if ("MD5-sess".equalsIgnoreCase(algorithm)) {
+            ha1 = md5(ha1 + ":" + nonce + ":" + cnonce);
+        }
+        String ha2 = md5(method + ":" + uri);
+        if (qop == null) {
+            return md5(ha1 + ":" + nonce + ":" + ha2);
+        }
+        return md5(ha1 + ":" + nonce + ":" + nc + ":" + cnonce + ":" + qop + ":" + ha2);
+    }
+
+    private static String md5(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("MD5");
+            return HexFormat.of().formatHex(digest.digest(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("MD5 not available", ex);
+        }
+    }
+}
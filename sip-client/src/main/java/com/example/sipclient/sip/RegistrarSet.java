@@ -0,0 +1,209 @@
+package com.example.sipclient.sip;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.LongSupplier;
+
+/**
+ * 一组可互相替代的注册服务器（例如多个 Mobicents 节点）。
+ * <p>
+ * 选择规则：先取健康节点中优先级数值最小的一组，组内按权重做平滑加权轮询；
+ * 节点失败后进入冷却期，冷却期过后可以再次被选择或通过 OPTIONS 探测恢复。
+ * 同一个实例可以被多个 {@link SipUserAgent} 共享，这样健康状态在它们之间是一致的，
+ * 加权轮询也能把这些用户分散到不同节点上。
+ */
+public final class RegistrarSet {
+
+    public static final Duration DEFAULT_COOLDOWN = Duration.ofSeconds(30);
+
+    /**
+     * @param priority 数值越小越优先
+     * @param weight   同优先级内的相对权重
+     */
+    public record Node(String host, int port, int priority, int weight) {
+
+        public Node {
+            Objects.requireNonNull(host, "host");
+            if (port <= 0 || port > 65535) {
+                throw new IllegalArgumentException("port must be within TCP/UDP port range");
+            }
+            if (weight <= 0) {
+                throw new IllegalArgumentException("weight must be positive");
+            }
+        }
+
+        public Node(String host, int port) {
+            this(host, port, 0, 1);
+        }
+
+        @Override
+        public String toString() {
+            return host + ":" + port;
+        }
+    }
+
+    private static final class State {
+        private final Node node;
+        private boolean healthy = true;
+        private int consecutiveFailures;
+        private long retryAtNanos;
+        private int currentWeight;
+
+        private State(Node node) {
+            this.node = node;
+        }
+    }
+
+    private final List<State> states;
+    private final long cooldownNanos;
+    private final LongSupplier nanoClock;
+
+    public RegistrarSet(List<Node> nodes) {
+        this(nodes, DEFAULT_COOLDOWN);
+    }
+
+    public RegistrarSet(List<Node> nodes, Duration cooldown) {
+        this(nodes, cooldown, System::nanoTime);
+    }
+
+    RegistrarSet(List<Node> nodes, Duration cooldown, LongSupplier nanoClock) {
+        Objects.requireNonNull(nodes, "nodes");
+        if (nodes.isEmpty()) {
+            throw new IllegalArgumentException("nodes must not be empty");
+        }
+        Objects.requireNonNull(cooldown, "cooldown");
+        List<State> sorted = new ArrayList<>();
+        nodes.stream()
+                .sorted(Comparator.comparingInt(Node::priority))
+                .forEach(node -> sorted.add(new State(node)));
+        this.states = List.copyOf(sorted);
+        this.cooldownNanos = cooldown.toNanos();
+        this.nanoClock = Objects.requireNonNull(nanoClock, "nanoClock");
+    }
+
+    public static RegistrarSet single(String host, int port) {
+        return new RegistrarSet(List.of(new Node(host, port)));
+    }
+
+    /**
+     * @return 优先级最高的节点，作为协议栈的默认出站代理
+     */
+    public Node primary() {
+        return states.get(0).node;
+    }
+
+    public List<Node> nodes() {
+        return states.stream().map(s -> s.node).toList();
+    }
+
+    public int size() {
+        return states.size();
+    }
+
+    /**
+     * 选出下一个应当使用的节点。所有节点都不可用时返回最早结束冷却的那个，保证总有结果。
+     */
+    public synchronized Node select() {
+        long now = nanoClock.getAsLong();
+        int bestPriority = Integer.MAX_VALUE;
+        for (State state : states) {
+            if (isAvailable(state, now)) {
+                bestPriority = Math.min(bestPriority, state.node.priority());
+            }
+        }
+        if (bestPriority == Integer.MAX_VALUE) {
+            return states.stream()
+                    .min(Comparator.comparingLong(s -> s.retryAtNanos - now))
+                    .orElseThrow().node;
+        }
+        // 平滑加权轮询（nginx 算法）：每轮加上自身权重，选最大者后减去总权重
+        State chosen = null;
+        int totalWeight = 0;
+        for (State state : states) {
+            if (state.node.priority() != bestPriority || !isAvailable(state, now)) {
+                continue;
+            }
+            state.currentWeight += state.node.weight();
+            totalWeight += state.node.weight();
+            if (chosen == null || state.currentWeight > chosen.currentWeight) {
+                chosen = state;
+            }
+        }
+        chosen.currentWeight -= totalWeight;
+        return chosen.node;
+    }
+
+    /**
+     * @return 故障转移的尝试顺序：先是 {@link #select()} 的结果，然后是其余可用节点，最后是冷却中的节点
+     */
+    public synchronized List<Node> failoverOrder() {
+        Node first = select();
+        long now = nanoClock.getAsLong();
+        List<Node> order = new ArrayList<>(states.size());
+        order.add(first);
+        for (State state : states) {
+            if (!state.node.equals(first) && isAvailable(state, now)) {
+                order.add(state.node);
+            }
+        }
+        for (State state : states) {
+            if (!order.contains(state.node)) {
+                order.add(state.node);
+            }
+        }
+        return order;
+    }
+
+    public synchronized void markSuccess(Node node) {
+        State state = stateOf(node);
+        if (state != null) {
+            state.healthy = true;
+            state.consecutiveFailures = 0;
+            state.retryAtNanos = 0;
+        }
+    }
+
+    public synchronized void markFailure(Node node) {
+        State state = stateOf(node);
+        if (state != null) {
+            state.healthy = false;
+            state.consecutiveFailures++;
+            state.retryAtNanos = nanoClock.getAsLong() + cooldownNanos;
+        }
+    }
+
+    public synchronized boolean isHealthy(Node node) {
+        State state = stateOf(node);
+        return state != null && state.healthy;
+    }
+
+    /**
+     * @return 处于故障状态且冷却期已过、应当发送 OPTIONS 探测的节点
+     */
+    public synchronized List<Node> nodesDueForProbe() {
+        long now = nanoClock.getAsLong();
+        List<Node> due = new ArrayList<>();
+        for (State state : states) {
+            if (!state.healthy && state.retryAtNanos - now <= 0) {
+                due.add(state.node);
+            }
+        }
+        return due;
+    }
+
+    private boolean isAvailable(State state, long now) {
+        return state.healthy || state.retryAtNanos - now <= 0;
+    }
+
+    private State stateOf(Node node) {
+        for (State state : states) {
+            if (state.node.equals(node)) {
+                return state;
+            }
+        }
+        return null;
+    }
+}
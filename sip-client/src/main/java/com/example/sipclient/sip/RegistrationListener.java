@@ -0,0 +1,14 @@
+package com.example.sipclient.sip;
+
+/**
+ * 注册状态变化回调：注册成功、注销、续期失败或超时时触发，状态不变的续期不会触发。
+ * 在 SIP 线程上执行，实现应尽快返回。
+ */
+public interface RegistrationListener {
+
+    /**
+     * @param registered 新的注册状态
+     * @param statusCode 导致变化的最终响应码；超时或本地关闭时为 0
+     */
+    void onRegistrationChanged(boolean registered, int statusCode);
+}
@@ -0,0 +1,98 @@
+package com.example.sipclient.sip;
+
+import javax.sip.header.CSeqHeader;
+import javax.sip.header.CallIdHeader;
+import javax.sip.header.FromHeader;
+import javax.sip.message.Request;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+/**
+ * 识别 UDP 重传的入站请求：以 Call-ID / CSeq / From-tag 作为键，在有效期内只放行第一次。
+ * <p>
+ * 默认有效期 32 秒，对应 RFC 3261 非 INVITE 事务的 64*T1；过期条目在写入时顺带清理，
+ * 并且总条目数有上限，避免恶意对端把缓存撑大。
+ */
+final class RequestDeduplicator {
+
+    static final Duration DEFAULT_TTL = Duration.ofSeconds(32);
+    static final int DEFAULT_MAX_ENTRIES = 4096;
+
+    private static final int PURGE_INTERVAL = 256;
+
+    private final Map<String, Long> expiries = new ConcurrentHashMap<>();
+    private final AtomicInteger insertions = new AtomicInteger();
+    private final long ttlNanos;
+    private final int maxEntries;
+    private final LongSupplier nanoClock;
+
+    RequestDeduplicator() {
+        this(DEFAULT_TTL, DEFAULT_MAX_ENTRIES, System::nanoTime);
+    }
+
+    RequestDeduplicator(Duration ttl, int maxEntries, LongSupplier nanoClock) {
+        Objects.requireNonNull(ttl, "ttl");
+        if (ttl.isNegative() || ttl.isZero()) {
+            throw new IllegalArgumentException("ttl must be positive");
+        }
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("maxEntries must be positive");
+        }
+        this.ttlNanos = ttl.toNanos();
+        this.maxEntries = maxEntries;
+        this.nanoClock = Objects.requireNonNull(nanoClock, "nanoClock");
+    }
+
+    /**
+     * @return {@code true} 表示首次出现，应当交给上层处理；{@code false} 表示是重传
+     */
+    boolean firstSeen(Request request) {
+        String key = keyOf(request);
+        return key == null || firstSeen(key);
+    }
+
+    boolean firstSeen(String key) {
+        long now = nanoClock.getAsLong();
+        long expiry = now + ttlNanos;
+        Long previous = expiries.putIfAbsent(key, expiry);
+        if (previous != null) {
+            if (previous - now > 0) {
+                return false;
+            }
+            if (!expiries.replace(key, previous, expiry)) {
+                return false;
+            }
+        }
+        if (insertions.incrementAndGet() % PURGE_INTERVAL == 0 || expiries.size() > maxEntries) {
+            purge(now);
+        }
+        return true;
+    }
+
+    int size() {
+        return expiries.size();
+    }
+
+    private void purge(long now) {
+        expiries.values().removeIf(expiry -> expiry - now <= 0);
+        if (expiries.size() > maxEntries) {
+            // 仍然超限说明短时间内涌入了大量不同请求，宁可放过个别重传也不无限增长
+            expiries.clear();
+        }
+    }
+
+    static String keyOf(Request request) {
+        CallIdHeader callId = (CallIdHeader) request.getHeader(CallIdHeader.NAME);
+        CSeqHeader cSeq = (CSeqHeader) request.getHeader(CSeqHeader.NAME);
+        if (callId == null || cSeq == null) {
+            return null;
+        }
+        FromHeader from = (FromHeader) request.getHeader(FromHeader.NAME);
+        String fromTag = from == null ? null : from.getTag();
+        return callId.getCallId() + '|' + cSeq.getSeqNumber() + '|' + cSeq.getMethod() + '|' + fromTag;
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.sipclient.sip;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 规范化后的 SIP URI，作为 CallManager / pendingInvites 等映射表的键使用。
+ * <p>
+ * 实例通过 {@link #of(String)} 驻留（intern），同一个 URI 通常只对应一个对象，
+ * equals 可以先走引用比较；哈希值在构造时预先计算。驻留表有容量上限，
+ * 超限后会被清空重建，此时 equals 仍按值比较，语义不受影响。
+ */
+public final class SipUriKey {
+
+    static final int MAX_INTERNED = 4096;
+
+    private static final Map<String, SipUriKey> INTERNED = new ConcurrentHashMap<>();
+
+    private final String value;
+    private final int hash;
+
+    private SipUriKey(String value) {
+        this.value = value;
+        this.hash = value.hashCode();
+    }
+
+    /**
+     * 返回 {@code canonicalUri} 对应的驻留实例。调用方负责保证传入的已是规范形式。
+     */
+    public static SipUriKey of(String canonicalUri) {
+        Objects.requireNonNull(canonicalUri, "canonicalUri");
+        SipUriKey existing = INTERNED.get(canonicalUri);
+        if (existing != null) {
+            return existing;
+        }
+        if (INTERNED.size() >= MAX_INTERNED) {
+            INTERNED.clear();
+        }
+        return INTERNED.computeIfAbsent(canonicalUri, SipUriKey::new);
+    }
+
+    public String value() {
+        return value;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        return o instanceof SipUriKey other && hash == other.hash && value.equals(other.value);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return value;
+    }
+}
@@ -2,11 +2,15 @@ package com.example.sipclient.sip;
 
 import com.example.sipclient.call.CallManager;
 import com.example.sipclient.call.CallSession;
+import com.example.sipclient.chat.Imdn;
 import com.example.sipclient.chat.MessageHandler;
-import gov.nist.javax.sip.SipStackExt;
-import gov.nist.javax.sip.clientauthutils.AccountManager;
-import gov.nist.javax.sip.clientauthutils.AuthenticationHelper;
-import gov.nist.javax.sip.clientauthutils.UserCredentials;
+import com.example.sipclient.config.TransportOptions;
+import com.example.sipclient.presence.Pidf;
+import com.example.sipclient.presence.PresenceHub;
+import com.example.sipclient.presence.PresenceListener;
+import com.example.sipclient.presence.PresenceStatus;
+import com.example.sipclient.presence.PresenceUpdate;
+import gov.nist.javax.sip.ListeningPointExt;
 
 import javax.sip.ClientTransaction;
 import javax.sip.Dialog;
@@ -26,14 +30,20 @@ import javax.sip.address.Address;
 import javax.sip.address.AddressFactory;
 import javax.sip.address.SipURI;
 import javax.sip.address.URI;
+import javax.sip.header.AuthorizationHeader;
 import javax.sip.header.CSeqHeader;
 import javax.sip.header.CallIdHeader;
 import javax.sip.header.ContactHeader;
 import javax.sip.header.ContentTypeHeader;
+import javax.sip.header.EventHeader;
 import javax.sip.header.ExpiresHeader;
 import javax.sip.header.FromHeader;
 import javax.sip.header.HeaderFactory;
 import javax.sip.header.MaxForwardsHeader;
+import javax.sip.header.ProxyAuthorizationHeader;
+import javax.sip.header.RouteHeader;
+import javax.sip.header.SIPETagHeader;
+import javax.sip.header.SubscriptionStateHeader;
 import javax.sip.header.ToHeader;
 import javax.sip.header.UserAgentHeader;
 import javax.sip.header.ViaHeader;
@@ -44,12 +54,17 @@ import java.nio.charset.StandardCharsets;
 import java.text.ParseException;
 import java.time.Duration;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Properties;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
@@ -65,11 +80,15 @@ import com.example.sipclient.media.AudioSession;
 public final class SipUserAgent implements SipListener {
 
     private static final int DEFAULT_EXPIRES_SECONDS = 3600;
+    /** 多个注册服务器时，单个节点的 REGISTER 最长等待时间，超时即切换到下一个节点 */
+    private static final Duration FAILOVER_ATTEMPT_TIMEOUT = Duration.ofSeconds(4);
+    /** 在线状态订阅的有效期，订阅方在到期前刷新 */
+    private static final int PRESENCE_EXPIRES_SECONDS = 600;
+    private static final String PRESENCE_EVENT = "presence";
 
     private final String username;
     private final String registrarHost;
     private final int registrarPort;
-    private final String password;
     private final String transport;
 
     private final SipStack sipStack;
@@ -78,15 +97,39 @@ public final class SipUserAgent implements SipListener {
     private final HeaderFactory headerFactory;
     private final MessageFactory messageFactory;
     private final ListeningPoint listeningPoint;
+    private final Map<String, ListeningPoint> listeningPoints = new LinkedHashMap<>();
+    private final TransportOptions transportOptions;
+    private final TransportSelector transportSelector;
+    private final RegistrarSet registrars;
+    private final RegistrarSet.Node primaryRegistrar;
+    private volatile RegistrarSet.Node activeRegistrar;
+    private volatile int lastRegisterStatus;
+    private final Map<String, RegistrarSet.Node> optionsProbes = new ConcurrentHashMap<>();
+    // 等待最终响应的 MESSAGE：Call-ID -> 结果（认证重发沿用同一个 Call-ID）
+    private final Map<String, CompletableFuture<Integer>> pendingMessages = new ConcurrentHashMap<>();
     private final ContactHeader contactHeader;
-    private final AuthenticationHelper authenticationHelper;
+    private final DigestCredentialCache credentials;
+    private final UriNormalizer uriNormalizer;
+    private final String selfUri;
 
     private MessageHandler messageHandler;
     private CallManager callManager;
-    private final ConcurrentHashMap<String, ServerTransaction> pendingInvites = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<SipUriKey, ServerTransaction> pendingInvites = new ConcurrentHashMap<>();
+    private final RequestDeduplicator incomingDeduplicator = new RequestDeduplicator();
+    // 在线状态：本机作为自己的 presentity，向订阅对话发送 NOTIFY；同时记录自己订阅的联系人
+    private final PresenceHub<Dialog> presenceHub = new PresenceHub<>(this::notifyWatchers);
+    private final Map<Dialog, ScheduledFuture<?>> watcherExpiry = new ConcurrentHashMap<>();
+    private final Map<SipUriKey, Dialog> presenceSubscriptions = new ConcurrentHashMap<>();
+    private volatile PresenceUpdate localPresence;
+    private volatile String publishETag;
+    private PresenceListener presenceListener;
+    private volatile RegistrationListener registrationListener;
+    /** 最近一次通知给 registrationListener 的注册状态，续期过程中的短暂变化不重复通知 */
+    private final AtomicBoolean reportedRegistered = new AtomicBoolean();
     // [新增] 音频引擎与端口
     private final AudioSession audioSession = new AudioSession();
     private final int localAudioPort = 50000 + (int)(Math.random() * 1000);
+    private static final AtomicLong STACK_SEQUENCE = new AtomicLong();
     private final AtomicLong cseq = new AtomicLong(1);
 
     private volatile boolean registered;
@@ -96,6 +139,7 @@ public final class SipUserAgent implements SipListener {
     private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
     private volatile ScheduledFuture<?> reRegisterTask;
     private volatile ScheduledFuture<?> keepAliveTask;
+    private volatile ScheduledFuture<?> flowKeepAliveTask;
     private volatile int currentExpiresSeconds = DEFAULT_EXPIRES_SECONDS;
 
     /**
@@ -108,16 +152,47 @@ public final class SipUserAgent implements SipListener {
      * @throws Exception if the SIP stack cannot be initialised
      */
     public SipUserAgent(String userAddress, String password, String localIp, int localPort) throws Exception {
+        this(userAddress, password, localIp, localPort, TransportOptions.defaults());
+    }
+
+    /**
+     * Creates a SIP user agent with explicit transport settings.
+     * <p>
+     * Besides the primary transport, a TCP listening point is opened on the same port (unless disabled)
+     * so that requests too large for a single UDP datagram can be sent over a pooled TCP connection,
+     * and a TLS listening point is opened when {@link TransportOptions#isTlsEnabled()}.
+     *
+     * @param transportOptions transport selection and keep-alive settings
+     * @throws Exception if the SIP stack cannot be initialised
+     */
+    public SipUserAgent(String userAddress, String password, String localIp, int localPort,
+                        TransportOptions transportOptions) throws Exception {
+        this(userAddress, password, localIp, localPort, transportOptions, null);
+    }
+
+    /**
+     * Creates a SIP user agent that registers against one node of a {@link RegistrarSet}.
+     * <p>
+     * The SIP domain still comes from {@code userAddress}; the set only decides which server receives
+     * the requests. When a node times out or answers 5xx, the agent fails over and re-registers on the
+     * next healthy node. Passing {@code null} uses the host and port of {@code userAddress} as a single node.
+     *
+     * @param registrars candidate registrar/proxy nodes, may be shared between agents
+     * @throws Exception if the SIP stack cannot be initialised
+     */
+    public SipUserAgent(String userAddress, String password, String localIp, int localPort,
+                        TransportOptions transportOptions, RegistrarSet registrars) throws Exception {
         Objects.requireNonNull(userAddress, "userAddress");
         Objects.requireNonNull(password, "password");
         Objects.requireNonNull(localIp, "localIp");
 
-        this.password = password;
+        this.transportOptions = Objects.requireNonNull(transportOptions, "transportOptions");
 
         SipFactory sipFactory = SipFactory.getInstance();
         sipFactory.setPathName("gov.nist");
 
         this.addressFactory = sipFactory.createAddressFactory();
+        this.uriNormalizer = new UriNormalizer(addressFactory);
         this.headerFactory = sipFactory.createHeaderFactory();
         this.messageFactory = sipFactory.createMessageFactory();
 
@@ -127,15 +202,25 @@ public final class SipUserAgent implements SipListener {
         }
         this.username = parsedUri.getUser();
         this.registrarHost = parsedUri.getHost();
-        this.registrarPort = parsedUri.getPort() == -1 ? 5060 : parsedUri.getPort();
-        this.transport = parsedUri.getTransportParam() != null ? parsedUri.getTransportParam() : ListeningPoint.UDP;
+        String uriTransport = parsedUri.getTransportParam() != null
+                ? parsedUri.getTransportParam().toUpperCase(Locale.ROOT) : ListeningPoint.UDP;
+        this.transport = transportOptions.getPreferredTransport() != null
+                ? transportOptions.getPreferredTransport() : uriTransport;
+        int defaultRegistrarPort = ListeningPoint.TLS.equals(transport) ? transportOptions.getRegistrarTlsPort() : 5060;
+        this.registrarPort = parsedUri.getPort() == -1 ? defaultRegistrarPort : parsedUri.getPort();
+        this.registrars = registrars != null ? registrars : RegistrarSet.single(registrarHost, registrarPort);
+        this.primaryRegistrar = this.registrars.primary();
+        this.activeRegistrar = primaryRegistrar;
 
         Properties properties = new Properties();
-        properties.setProperty("javax.sip.STACK_NAME", "SipClientStack");
-        properties.setProperty("javax.sip.IP_ADDRESS", localIp);
+        // 不设置 javax.sip.IP_ADDRESS：SipFactory 会按该地址复用已有的协议栈，
+        // 同一进程内的多个用户代理（以及重新登录后的新实例）会拿到同一个甚至已停止的栈
+        properties.setProperty("javax.sip.STACK_NAME",
+                "SipClientStack-" + username + "-" + STACK_SEQUENCE.incrementAndGet());
         // OUTBOUND_PROXY makes sure requests are routed to MSS instead of DNS lookups.
+        // 其它节点通过 loose Route 选路，见 applyRoute
         properties.setProperty("gov.nist.javax.sip.OUTBOUND_PROXY",
-                registrarHost + ":" + registrarPort + "/" + transport);
+                primaryRegistrar.host() + ":" + primaryRegistrar.port() + "/" + transport);
         properties.setProperty("gov.nist.javax.sip.TRACE_LEVEL", "0");
         
         // [新增] 配置心跳和超时参数，防止 NAT 超时导致掉线
@@ -146,31 +231,60 @@ public final class SipUserAgent implements SipListener {
         properties.setProperty("gov.nist.javax.sip.MAX_MESSAGE_SIZE", "1048576");
         properties.setProperty("gov.nist.javax.sip.CACHE_CLIENT_CONNECTIONS", "true");
         properties.setProperty("gov.nist.javax.sip.CACHE_SERVER_CONNECTIONS", "true");
+        if (transportOptions.isTlsEnabled() || ListeningPoint.TLS.equals(transport)) {
+            // 客户端场景不要求对端出示证书，证书/信任库通过 javax.net.ssl.* 系统属性配置
+            properties.setProperty("gov.nist.javax.sip.TLS_CLIENT_AUTH_TYPE", "Disabled");
+        }
 
         this.sipStack = sipFactory.createSipStack(properties);
         this.listeningPoint = sipStack.createListeningPoint(localIp, localPort, transport);
+        this.listeningPoints.put(transport, listeningPoint);
         this.sipProvider = sipStack.createSipProvider(listeningPoint);
+        if (transportOptions.isTcpEnabled() && ListeningPoint.UDP.equals(transport)) {
+            addSecondaryListeningPoint(localIp, localPort, ListeningPoint.TCP);
+        }
+        if (transportOptions.isTlsEnabled() && !ListeningPoint.TLS.equals(transport)) {
+            addSecondaryListeningPoint(localIp, transportOptions.getLocalTlsPort(), ListeningPoint.TLS);
+        }
         this.sipProvider.addSipListener(this);
+        this.transportSelector = new TransportSelector(transport,
+                listeningPoints.containsKey(ListeningPoint.TCP), transportOptions.getUdpSizeThreshold());
 
         this.contactHeader = buildContactHeader(localIp, localPort);
 
-        AccountManager accountManager = (ClientTransaction ct, String realm) -> new UserCredentials() {
-            @Override
-            public String getUserName() {
-                return username;
-            }
-
-            @Override
-            public String getPassword() {
-                return password;
-            }
+        this.credentials = new DigestCredentialCache(username, password, headerFactory);
+        this.selfUri = "sip:" + username + "@" + registrarHost;
+        this.localPresence = new PresenceUpdate(selfUri, PresenceStatus.ONLINE, null);
+    }
 
-            @Override
-            public String getSipDomain() {
-                return registrarHost;
-            }
-        };
-        this.authenticationHelper = ((SipStackExt) sipStack).getAuthenticationHelper(accountManager, headerFactory);
+    /**
+     * Loads the JAIN SIP factories and message parsers ahead of the first agent.
+     * <p>
+     * Binds no sockets and creates no stack, so the GUI runs it in the background while the login
+     * form is shown; the constructor then skips most of the class loading and parser initialisation.
+     *
+     * @throws Exception if the JAIN SIP implementation cannot be loaded
+     */
+    public static void warmUp() throws Exception {
+        SipFactory sipFactory = SipFactory.getInstance();
+        sipFactory.setPathName("gov.nist");
+        AddressFactory addressFactory = sipFactory.createAddressFactory();
+        HeaderFactory headerFactory = sipFactory.createHeaderFactory();
+        MessageFactory messageFactory = sipFactory.createMessageFactory();
+        addressFactory.createAddress("sip:warmup@127.0.0.1:5060");
+        headerFactory.createExpiresHeader(DEFAULT_EXPIRES_SECONDS);
+        // 解析一条典型的 REGISTER，加载常用头部的解析器
+        messageFactory.createRequest("REGISTER sip:127.0.0.1 SIP/2.0\r\n"
+                + "Via: SIP/2.0/UDP 127.0.0.1:5061;branch=z9hG4bK-warmup\r\n"
+                + "Max-Forwards: 70\r\n"
+                + "From: <sip:warmup@127.0.0.1>;tag=warmup\r\n"
+                + "To: <sip:warmup@127.0.0.1>\r\n"
+                + "Call-ID: warmup@127.0.0.1\r\n"
+                + "CSeq: 1 REGISTER\r\n"
+                + "Contact: <sip:warmup@127.0.0.1:5061>\r\n"
+                + "Expires: 3600\r\n"
+                + "Content-Length: 0\r\n\r\n");
+        Class.forName("gov.nist.javax.sip.SipStackImpl");
     }
 
     public void setMessageHandler(MessageHandler messageHandler) {
@@ -185,6 +299,21 @@ public final class SipUserAgent implements SipListener {
         return this.callManager;
     }
 
+    public void setRegistrationListener(RegistrationListener registrationListener) {
+        this.registrationListener = registrationListener;
+    }
+
+    public void setPresenceListener(PresenceListener presenceListener) {
+        this.presenceListener = presenceListener;
+    }
+
+    /**
+     * @return 本机当前发布的在线状态
+     */
+    public PresenceUpdate getLocalPresence() {
+        return localPresence;
+    }
+
     /**
      * Performs SIP registration and blocks until MSS responds or the timeout expires.
      *
@@ -194,7 +323,14 @@ public final class SipUserAgent implements SipListener {
      * @throws InterruptedException if waiting for the response is interrupted
      */
     public boolean register(Duration timeout) throws SipException, InterruptedException {
-        return sendRegister(DEFAULT_EXPIRES_SECONDS, timeout);
+        return registerWithFailover(timeout);
+    }
+
+    /**
+     * @return 当前用于注册和出站请求的注册服务器节点
+     */
+    public RegistrarSet.Node getActiveRegistrar() {
+        return activeRegistrar;
     }
 
     /**
@@ -213,6 +349,17 @@ public final class SipUserAgent implements SipListener {
      * Shuts down the SIP stack and releases sockets.
      */
     public void shutdown() {
+        shutdown(Duration.ofSeconds(2));
+    }
+
+    /**
+     * Shuts down the SIP stack and releases sockets.
+     *
+     * @param unregisterTimeout 仍处于注册状态时等待注销响应的时间；为零时跳过注销，
+     *                          供已经批量注销过的调用方直接释放资源
+     */
+    public void shutdown(Duration unregisterTimeout) {
+        Objects.requireNonNull(unregisterTimeout, "unregisterTimeout");
         System.out.println("[SipUserAgent] 关闭 SIP 连接...");
         
         // [新增] 取消自动续期任务
@@ -227,6 +374,16 @@ public final class SipUserAgent implements SipListener {
             System.out.println("[SipUserAgent] 已取消心跳任务");
         }
         
+        if (flowKeepAliveTask != null && !flowKeepAliveTask.isCancelled()) {
+            flowKeepAliveTask.cancel(false);
+        }
+
+        // 先发出合并窗口内尚未发送的 NOTIFY，再停止分发线程
+        presenceHub.close();
+
+        // 不会再收到响应的消息按 503 结束，调用方可以转入离线队列
+        pendingMessages.keySet().forEach(callId -> completeMessage(callId, Response.SERVICE_UNAVAILABLE));
+
         // [新增] 关闭调度器
         scheduler.shutdown();
         try {
@@ -238,10 +395,10 @@ public final class SipUserAgent implements SipListener {
         }
         
         // 1. 先尝试注销（如果已注册）
-        if (registered) {
+        if (registered && !unregisterTimeout.isZero() && !unregisterTimeout.isNegative()) {
             try {
                 System.out.println("[SipUserAgent] 正在向服务器发送注销请求...");
-                unregister(java.time.Duration.ofSeconds(2)); // 2秒超时
+                unregister(unregisterTimeout);
                 System.out.println("[SipUserAgent] 已向服务器发送注销请求");
             } catch (Exception e) {
                 System.err.println("[SipUserAgent] 注销失败（继续关闭）: " + e.getMessage());
@@ -249,7 +406,7 @@ public final class SipUserAgent implements SipListener {
         }
         
         // 2. 标记为未注册
-        registered = false;
+        updateRegistered(false, 0);
         
         try {
             // 1. 移除监听器
@@ -261,15 +418,15 @@ public final class SipUserAgent implements SipListener {
             System.err.println("[SipUserAgent] 移除监听器失败: " + e.getMessage());
         }
         
-        try {
-            // 2. 删除 ListeningPoint (先删除ListeningPoint释放端口)
-            if (listeningPoint != null && sipStack != null) {
-                int port = listeningPoint.getPort();
-                sipStack.deleteListeningPoint(listeningPoint);
-                System.out.println("[SipUserAgent] 已删除 ListeningPoint (端口: " + port + ")");
+        // 2. 删除所有 ListeningPoint (先删除ListeningPoint释放端口)
+        for (ListeningPoint lp : listeningPoints.values()) {
+            try {
+                int port = lp.getPort();
+                sipStack.deleteListeningPoint(lp);
+                System.out.println("[SipUserAgent] 已删除 ListeningPoint (" + lp.getTransport() + " 端口: " + port + ")");
+            } catch (Exception e) {
+                System.err.println("[SipUserAgent] 删除 ListeningPoint 失败: " + e.getMessage());
             }
-        } catch (Exception e) {
-            System.err.println("[SipUserAgent] 删除 ListeningPoint 失败: " + e.getMessage());
         }
         
         try {
@@ -302,9 +459,30 @@ public final class SipUserAgent implements SipListener {
         return registered;
     }
 
-    public void sendMessage(String targetUri, String text) throws SipException {
+    /**
+     * 发送即时消息。
+     *
+     * @return 以最终响应状态码完成（2xx 表示对端已接收，超时为 408，关闭时未收到响应为 503）
+     */
+    public CompletableFuture<Integer> sendMessage(String targetUri, String text) throws SipException {
         Objects.requireNonNull(targetUri, "targetUri");
         Objects.requireNonNull(text, "text");
+        return sendMessageRequest(targetUri, text.getBytes(StandardCharsets.UTF_8), "text", "plain");
+    }
+
+    /**
+     * 向消息发送方回送 IMDN 处置通知（送达/已读）。
+     */
+    public CompletableFuture<Integer> sendDispositionNotification(String targetUri, Imdn.Notification notification)
+            throws SipException {
+        Objects.requireNonNull(targetUri, "targetUri");
+        Objects.requireNonNull(notification, "notification");
+        return sendMessageRequest(targetUri, Imdn.build(notification).getBytes(StandardCharsets.UTF_8),
+                Imdn.CONTENT_TYPE, Imdn.CONTENT_SUBTYPE);
+    }
+
+    private CompletableFuture<Integer> sendMessageRequest(String targetUri, byte[] content, String type, String subType)
+            throws SipException {
         try {
             SipURI requestUri = (SipURI) addressFactory.createURI(targetUri);
             Address fromAddress = addressFactory.createAddress(addressFactory.createSipURI(username, registrarHost));
@@ -332,16 +510,129 @@ public final class SipUserAgent implements SipListener {
             );
 
             request.addHeader(contactHeader);
-            ContentTypeHeader contentTypeHeader = headerFactory.createContentTypeHeader("text", "plain");
-            request.setContent(text, contentTypeHeader);
+            ContentTypeHeader contentTypeHeader = headerFactory.createContentTypeHeader(type, subType);
+            request.setContent(content, contentTypeHeader);
+            applyRoute(request, content.length);
+            credentials.authorize(request);
 
-            ClientTransaction transaction = sipProvider.getNewClientTransaction(request);
-            transaction.sendRequest();
+            CompletableFuture<Integer> result = new CompletableFuture<>();
+            pendingMessages.put(callIdHeader.getCallId(), result);
+            try {
+                ClientTransaction transaction = sipProvider.getNewClientTransaction(request);
+                transaction.sendRequest();
+            } catch (SipException | RuntimeException ex) {
+                pendingMessages.remove(callIdHeader.getCallId());
+                throw ex;
+            }
+            return result;
+        } catch (ParseException | javax.sip.InvalidArgumentException ex) {
+            throw new IllegalArgumentException("目标 URI 不合法", ex);
+        }
+    }
+
+    public MessageHandler getMessageHandler() {
+        return messageHandler;
+    }
+
+    /**
+     * 发布本机的在线状态：订阅了本机的联系人在合并窗口结束后收到 NOTIFY，
+     * 已注册时同时向注册服务器发送 PUBLISH（服务器不支持时只记录日志）。
+     *
+     * @param note 可选的状态说明，为 {@code null} 时使用状态的默认说明
+     */
+    public void publishPresence(PresenceStatus status, String note) throws SipException {
+        Objects.requireNonNull(status, "status");
+        PresenceUpdate update = new PresenceUpdate(selfUri, status, note);
+        localPresence = update;
+        presenceHub.publish(update);
+        if (!registered) {
+            return;
+        }
+        try {
+            SipURI aor = addressFactory.createSipURI(username, registrarHost);
+            if (registrarPort != 5060) {
+                aor.setPort(registrarPort);
+            }
+            Request request = createOutOfDialogRequest(aor, Request.PUBLISH);
+            request.addHeader(headerFactory.createEventHeader(PRESENCE_EVENT));
+            request.addHeader(headerFactory.createExpiresHeader(status == PresenceStatus.OFFLINE ? 0 : DEFAULT_EXPIRES_SECONDS));
+            String etag = publishETag;
+            if (etag != null) {
+                request.addHeader(headerFactory.createSIPIfMatchHeader(etag));
+            }
+            byte[] content = Pidf.build(update).getBytes(StandardCharsets.UTF_8);
+            request.setContent(content, headerFactory.createContentTypeHeader(Pidf.CONTENT_TYPE, Pidf.CONTENT_SUBTYPE));
+            applyRoute(request, content.length);
+            credentials.authorize(request);
+            sipProvider.getNewClientTransaction(request).sendRequest();
+        } catch (ParseException | javax.sip.InvalidArgumentException ex) {
+            throw new IllegalArgumentException("无法构造 PUBLISH 请求", ex);
+        }
+    }
+
+    /**
+     * 订阅联系人的在线状态，收到的 NOTIFY 交给 {@link #setPresenceListener(PresenceListener)}。
+     * 订阅在到期前自动刷新，直到 {@link #unsubscribePresence(String)}。
+     */
+    public void subscribePresence(String targetUri) throws SipException {
+        Objects.requireNonNull(targetUri, "targetUri");
+        try {
+            Request request = createOutOfDialogRequest(addressFactory.createURI(targetUri), Request.SUBSCRIBE);
+            request.addHeader(headerFactory.createEventHeader(PRESENCE_EVENT));
+            request.addHeader(headerFactory.createAcceptHeader(Pidf.CONTENT_TYPE, Pidf.CONTENT_SUBTYPE));
+            request.addHeader(headerFactory.createExpiresHeader(PRESENCE_EXPIRES_SECONDS));
+            applyRoute(request, 0);
+            credentials.authorize(request);
+            sipProvider.getNewClientTransaction(request).sendRequest();
         } catch (ParseException | javax.sip.InvalidArgumentException ex) {
             throw new IllegalArgumentException("目标 URI 不合法", ex);
         }
     }
 
+    /**
+     * 取消订阅：在订阅对话内发送 Expires 为 0 的 SUBSCRIBE。
+     */
+    public void unsubscribePresence(String targetUri) throws SipException {
+        Dialog dialog = presenceSubscriptions.remove(normalizeUri(targetUri));
+        if (dialog != null) {
+            sendInDialogSubscribe(dialog, 0);
+        }
+    }
+
+    private Request createOutOfDialogRequest(URI requestUri, String method)
+            throws ParseException, javax.sip.InvalidArgumentException {
+        Address fromAddress = addressFactory.createAddress(addressFactory.createSipURI(username, registrarHost));
+        FromHeader fromHeader = headerFactory.createFromHeader(fromAddress, generateTag());
+        ToHeader toHeader = headerFactory.createToHeader(addressFactory.createAddress(requestUri), null);
+        List<ViaHeader> viaHeaders = Collections.singletonList(
+                headerFactory.createViaHeader(listeningPoint.getIPAddress(), listeningPoint.getPort(), transport, null));
+        Request request = messageFactory.createRequest(
+                requestUri,
+                method,
+                sipProvider.getNewCallId(),
+                headerFactory.createCSeqHeader(cseq.getAndIncrement(), method),
+                fromHeader,
+                toHeader,
+                viaHeaders,
+                headerFactory.createMaxForwardsHeader(70)
+        );
+        request.addHeader(contactHeader);
+        return request;
+    }
+
+    private void sendInDialogSubscribe(Dialog dialog, int expires) throws SipException {
+        try {
+            Request request = dialog.createRequest(Request.SUBSCRIBE);
+            request.addHeader(headerFactory.createEventHeader(PRESENCE_EVENT));
+            request.addHeader(headerFactory.createExpiresHeader(expires));
+            request.addHeader(contactHeader);
+            credentials.authorize(request);
+            dialog.sendRequest(sipProvider.getNewClientTransaction(request));
+        } catch (ParseException | javax.sip.InvalidArgumentException ex) {
+            throw new SipException("无法构造 SUBSCRIBE 请求", ex);
+        }
+    }
+
     public void startCall(String targetUri) throws SipException {
         Objects.requireNonNull(targetUri, "targetUri");
         try {
@@ -372,7 +663,7 @@ public final class SipUserAgent implements SipListener {
         if (callManager == null) {
             throw new IllegalStateException("Call manager is not configured");
         }
-        String normalized = normalizeUri(targetUri);
+        SipUriKey normalized = normalizeUri(targetUri);
         Dialog dialog = callManager.findByRemote(normalized)
                 .map(CallSession::getDialog)
                 .orElse(null);
@@ -391,7 +682,7 @@ public final class SipUserAgent implements SipListener {
      */
     public void answerCall(String fromUri) throws SipException {
         Objects.requireNonNull(fromUri, "fromUri");
-        String normalized = normalizeUri(fromUri);
+        SipUriKey normalized = normalizeUri(fromUri);
         ServerTransaction transaction = pendingInvites.remove(normalized);
         
         if (transaction == null) {
@@ -432,7 +723,7 @@ public final class SipUserAgent implements SipListener {
      */
     public void rejectCall(String fromUri) throws SipException {
         Objects.requireNonNull(fromUri, "fromUri");
-        String normalized = normalizeUri(fromUri);
+        SipUriKey normalized = normalizeUri(fromUri);
         ServerTransaction transaction = pendingInvites.remove(normalized);
         
         if (transaction == null) {
@@ -457,6 +748,51 @@ public final class SipUserAgent implements SipListener {
         }
     }
 
+    /**
+     * 按 {@link RegistrarSet#failoverOrder()} 依次尝试注册。节点超时、网络异常或返回 408/5xx 时切换到下一个节点；
+     * 其它失败（如 403）说明服务器是好的但拒绝了我们，不再继续尝试。
+     */
+    private boolean registerWithFailover(Duration timeout) throws SipException, InterruptedException {
+        Objects.requireNonNull(timeout, "timeout");
+        if (timeout.isNegative()) {
+            throw new IllegalArgumentException("timeout must be positive");
+        }
+        long deadline = System.nanoTime() + timeout.toNanos();
+        boolean multiNode = registrars.size() > 1;
+        for (RegistrarSet.Node node : registrars.failoverOrder()) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                break;
+            }
+            Duration attempt = Duration.ofNanos(remaining);
+            if (multiNode && attempt.compareTo(FAILOVER_ATTEMPT_TIMEOUT) > 0) {
+                attempt = FAILOVER_ATTEMPT_TIMEOUT;
+            }
+            if (!node.equals(activeRegistrar)) {
+                System.out.println("[SipUserAgent] 切换注册服务器: " + activeRegistrar + " -> " + node);
+                activeRegistrar = node;
+            }
+            boolean success;
+            try {
+                success = sendRegister(DEFAULT_EXPIRES_SECONDS, attempt);
+            } catch (SipException ex) {
+                // 例如 TCP 连接失败，与超时同样处理
+                lastRegisterStatus = 0;
+                success = false;
+            }
+            if (success) {
+                registrars.markSuccess(node);
+                return true;
+            }
+            int status = lastRegisterStatus;
+            if (status != 0 && status != Response.REQUEST_TIMEOUT && status < 500) {
+                return false;
+            }
+            registrars.markFailure(node);
+        }
+        return false;
+    }
+
     private boolean sendRegister(int expires, Duration timeout) throws SipException, InterruptedException {
         Objects.requireNonNull(timeout, "timeout");
         if (timeout.isNegative()) {
@@ -464,6 +800,7 @@ public final class SipUserAgent implements SipListener {
         }
         Request registerRequest = createRegisterRequest(expires);
         ClientTransaction transaction = sipProvider.getNewClientTransaction(registerRequest);
+        lastRegisterStatus = 0;
         registrationLatch = new CountDownLatch(1);
         if (expires > 0) {
             registered = false;
@@ -511,9 +848,11 @@ public final class SipUserAgent implements SipListener {
             UserAgentHeader userAgentHeader = headerFactory.createUserAgentHeader(
                     List.of("Project-SIP-Client/1.0"));
             request.addHeader(userAgentHeader);
+            applyRoute(request, 0);
+            credentials.authorize(request);
 
             return request;
-        } catch (ParseException | javax.sip.InvalidArgumentException ex) {
+        } catch (ParseException | SipException | javax.sip.InvalidArgumentException ex) {
             throw new IllegalStateException("Failed to build REGISTER request", ex);
         }
     }
@@ -552,6 +891,8 @@ public final class SipUserAgent implements SipListener {
         ContentTypeHeader contentTypeHeader = headerFactory.createContentTypeHeader("application", "sdp");
         String sdpData = SdpTools.createAudioSdp(listeningPoint.getIPAddress(), localAudioPort);
         request.setContent(sdpData, contentTypeHeader);
+        applyRoute(request, sdpData.length());
+        credentials.authorize(request);
 
         return request;
     }
@@ -567,24 +908,143 @@ public final class SipUserAgent implements SipListener {
     }
 
     private void handleIncomingMessage(RequestEvent event) {
+        Request request = event.getRequest();
+        // 先回 200 OK，再做任何应用层处理，避免对端因为迟到的响应而重传
+        try {
+            Response ok = messageFactory.createResponse(Response.OK, request);
+            ok.addHeader(contactHeader);
+            sendResponse(event, ok);
+        } catch (Exception ex) {
+            System.err.println("Failed to respond to MESSAGE: " + ex.getMessage());
+        }
+        if (messageHandler == null || !incomingDeduplicator.firstSeen(request)) {
+            return;
+        }
+        String fromUri = extractFromUri(request).value();
+        byte[] raw = request.getRawContent();
+        String body = raw == null ? "" : new String(raw, StandardCharsets.UTF_8);
+        ContentTypeHeader contentType = (ContentTypeHeader) request.getHeader(ContentTypeHeader.NAME);
+        if (contentType != null && Imdn.CONTENT_TYPE.equalsIgnoreCase(contentType.getContentType())
+                && Imdn.CONTENT_SUBTYPE.equalsIgnoreCase(contentType.getContentSubType())) {
+            Imdn.parse(body).ifPresent(notification ->
+                    messageHandler.handleDispositionNotification(fromUri, notification));
+            return;
+        }
+        // MESSAGE 没有独立的消息 ID，每条都使用新的 Call-ID，回执以它引用这条消息
+        CallIdHeader callId = (CallIdHeader) request.getHeader(CallIdHeader.NAME);
+        messageHandler.handleIncomingMessage(fromUri, body, callId == null ? null : callId.getCallId());
+    }
+
+    /**
+     * 其他用户订阅本机在线状态：回 200 后立即发送一次当前状态，之后的变化由 {@link PresenceHub} 合并后推送。
+     */
+    private void handleIncomingSubscribe(RequestEvent event) {
+        Request request = event.getRequest();
         try {
+            EventHeader eventHeader = (EventHeader) request.getHeader(EventHeader.NAME);
+            if (eventHeader == null || !PRESENCE_EVENT.equalsIgnoreCase(eventHeader.getEventType())) {
+                sendResponse(event, messageFactory.createResponse(Response.BAD_EVENT, request));
+                return;
+            }
             ServerTransaction transaction = ensureServerTransaction(event);
-            Response ok = messageFactory.createResponse(Response.OK, event.getRequest());
+            Dialog dialog = transaction.getDialog();
+            ExpiresHeader expiresHeader = request.getExpires();
+            int expires = expiresHeader == null ? PRESENCE_EXPIRES_SECONDS
+                    : Math.min(expiresHeader.getExpires(), PRESENCE_EXPIRES_SECONDS);
+
+            Response ok = messageFactory.createResponse(Response.OK, request);
+            ToHeader to = (ToHeader) ok.getHeader(ToHeader.NAME);
+            if (to.getTag() == null) {
+                to.setTag(generateTag());
+            }
             ok.addHeader(contactHeader);
+            ok.addHeader(headerFactory.createExpiresHeader(expires));
             transaction.sendResponse(ok);
+            if (dialog == null) {
+                return;
+            }
+
+            ScheduledFuture<?> previous = watcherExpiry.remove(dialog);
+            if (previous != null) {
+                previous.cancel(false);
+            }
+            if (expires == 0) {
+                presenceHub.unwatch(selfUri, dialog);
+                sendNotify(dialog, localPresence, SubscriptionStateHeader.TERMINATED, 0);
+                return;
+            }
+            presenceHub.watch(selfUri, dialog);
+            watcherExpiry.put(dialog, scheduler.schedule(() -> expireWatcher(dialog), expires, TimeUnit.SECONDS));
+            sendNotify(dialog, localPresence, SubscriptionStateHeader.ACTIVE, expires);
         } catch (Exception ex) {
-            System.err.println("Failed to respond to MESSAGE: " + ex.getMessage());
+            System.err.println("Failed to handle SUBSCRIBE: " + ex.getMessage());
+        }
+    }
+
+    private void handleIncomingNotify(RequestEvent event) {
+        Request request = event.getRequest();
+        try {
+            sendResponse(event, messageFactory.createResponse(Response.OK, request));
+        } catch (Exception ex) {
+            System.err.println("Failed to respond to NOTIFY: " + ex.getMessage());
+        }
+        SubscriptionStateHeader state = (SubscriptionStateHeader) request.getHeader(SubscriptionStateHeader.NAME);
+        if (state != null && SubscriptionStateHeader.TERMINATED.equalsIgnoreCase(state.getState())
+                && event.getDialog() != null) {
+            presenceSubscriptions.values().remove(event.getDialog());
+        }
+        PresenceListener listener = presenceListener;
+        byte[] raw = request.getRawContent();
+        if (listener == null || raw == null) {
+            return;
+        }
+        Pidf.parse(new String(raw, StandardCharsets.UTF_8), extractFromUri(request).value())
+                .ifPresent(listener::onPresence);
+    }
+
+    /**
+     * {@link PresenceHub} 的分发回调：一批订阅对话共享同一份 PIDF 正文。
+     */
+    private void notifyWatchers(List<Dialog> dialogs, PresenceUpdate update) {
+        for (Dialog dialog : dialogs) {
+            try {
+                sendNotify(dialog, update, SubscriptionStateHeader.ACTIVE, -1);
+            } catch (Exception ex) {
+                System.err.println("Failed to send NOTIFY: " + ex.getMessage());
+            }
+        }
+    }
+
+    private void sendNotify(Dialog dialog, PresenceUpdate update, String subscriptionState, int expires)
+            throws ParseException, SipException, javax.sip.InvalidArgumentException {
+        Request notify = dialog.createRequest(Request.NOTIFY);
+        notify.addHeader(headerFactory.createEventHeader(PRESENCE_EVENT));
+        SubscriptionStateHeader state = headerFactory.createSubscriptionStateHeader(subscriptionState);
+        if (SubscriptionStateHeader.TERMINATED.equals(subscriptionState)) {
+            state.setReasonCode(expires == 0 ? "noresource" : "timeout");
+        } else if (expires > 0) {
+            state.setExpires(expires);
         }
-        if (messageHandler != null) {
-            String fromUri = extractFromUri(event.getRequest());
-            byte[] raw = event.getRequest().getRawContent();
-            String body = raw == null ? "" : new String(raw, StandardCharsets.UTF_8);
-            messageHandler.handleIncomingMessage(fromUri, body);
+        notify.addHeader(state);
+        notify.addHeader(contactHeader);
+        notify.setContent(Pidf.build(update).getBytes(StandardCharsets.UTF_8),
+                headerFactory.createContentTypeHeader(Pidf.CONTENT_TYPE, Pidf.CONTENT_SUBTYPE));
+        credentials.authorize(notify);
+        dialog.sendRequest(sipProvider.getNewClientTransaction(notify));
+    }
+
+    private void expireWatcher(Dialog dialog) {
+        watcherExpiry.remove(dialog);
+        presenceHub.unwatch(selfUri, dialog);
+        try {
+            sendNotify(dialog, localPresence, SubscriptionStateHeader.TERMINATED, -1);
+        } catch (Exception ex) {
+            System.err.println("Failed to terminate presence subscription: " + ex.getMessage());
         }
     }
 
     private void handleIncomingInvite(RequestEvent event) {
-        String remote = extractFromUri(event.getRequest());
+        SipUriKey remote = extractFromUri(event.getRequest());
         try {
             ServerTransaction transaction = ensureServerTransaction(event);
             
@@ -626,14 +1086,14 @@ public final class SipUserAgent implements SipListener {
         } catch (Exception ex) {
             System.err.println("Failed to acknowledge BYE: " + ex.getMessage());
         }
-        String remote = extractFromUri(event.getRequest());
+        SipUriKey remote = extractFromUri(event.getRequest());
         if (callManager != null) {
             callManager.terminateByRemote(remote);
         }
     }
 
     private void handleAck(RequestEvent event) {
-        String remote = extractFromUri(event.getRequest());
+        SipUriKey remote = extractFromUri(event.getRequest());
         Dialog dialog = event.getDialog();
         if (dialog != null && callManager != null) {
             callManager.attachDialog(remote, dialog);
@@ -643,6 +1103,97 @@ public final class SipUserAgent implements SipListener {
         }
     }
 
+    private void addSecondaryListeningPoint(String localIp, int port, String lpTransport) {
+        try {
+            ListeningPoint lp = sipStack.createListeningPoint(localIp, port, lpTransport);
+            sipProvider.addListeningPoint(lp);
+            listeningPoints.put(lpTransport, lp);
+        } catch (Exception ex) {
+            System.err.println("[SipUserAgent] 无法启用 " + lpTransport + " 传输 (端口 " + port + "): " + ex.getMessage());
+        }
+    }
+
+    /**
+     * 按请求大小选择传输层，并把请求导向当前注册服务器节点。
+     * 当传输层不是首选传输层、或当前节点不是 OUTBOUND_PROXY 指向的主节点时，
+     * 改写 Via 并加上 loose Route，使 NIST 路由器绕过 OUTBOUND_PROXY 的固定配置。
+     */
+    private void applyRoute(Request request, int bodyBytes) throws ParseException, SipException, javax.sip.InvalidArgumentException {
+        routeTo(request, activeRegistrar, transportSelector.select(bodyBytes));
+    }
+
+    private void routeTo(Request request, RegistrarSet.Node node, String selected)
+            throws ParseException, SipException, javax.sip.InvalidArgumentException {
+        boolean transportChanged = !selected.equals(transport);
+        if (!transportChanged && node.equals(primaryRegistrar)) {
+            return;
+        }
+        if (transportChanged) {
+            ListeningPoint lp = listeningPoints.get(selected);
+            ViaHeader via = headerFactory.createViaHeader(lp.getIPAddress(), lp.getPort(), selected, null);
+            request.setHeader(via);
+        }
+        SipURI routeUri = addressFactory.createSipURI(null, node.host());
+        routeUri.setPort(registrarPortFor(node, selected));
+        routeUri.setTransportParam(selected);
+        routeUri.setLrParam();
+        RouteHeader route = headerFactory.createRouteHeader(addressFactory.createAddress(routeUri));
+        request.addFirst(route);
+    }
+
+    private int registrarPortFor(RegistrarSet.Node node, String selected) {
+        if (ListeningPoint.TLS.equals(selected) && !ListeningPoint.TLS.equals(transport)) {
+            return transportOptions.getRegistrarTlsPort();
+        }
+        return node.port();
+    }
+
+    /**
+     * 当前注册节点不可达：切换到下一个健康节点并重新注册。在调度线程上执行，不阻塞 SIP 线程。
+     */
+    private void failoverAsync(RegistrarSet.Node failed) {
+        registrars.markFailure(failed);
+        if (scheduler.isShutdown() || !failed.equals(activeRegistrar)) {
+            return;
+        }
+        scheduler.execute(() -> {
+            try {
+                boolean ok = registerWithFailover(Duration.ofSeconds(10));
+                System.out.println("[SipUserAgent] 故障转移后重新注册" + (ok ? "成功: " + activeRegistrar : "失败"));
+            } catch (Exception e) {
+                System.err.println("[SipUserAgent] 故障转移异常: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * RFC 5626 风格的流保活：首选传输层为 TCP/TLS 时，在注册所用的连接上发送 CRLF 心跳，
+     * 维持连接池里到注册服务器的长连接以及 NAT 映射。
+     */
+    private void sendFlowKeepAlive() {
+        try {
+            RegistrarSet.Node node = activeRegistrar;
+            ((ListeningPointExt) listeningPoint).sendHeartbeat(node.host(), node.port());
+        } catch (Exception ex) {
+            System.err.println("[SipUserAgent] " + transport + " 流保活失败: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * 通过服务端事务发送响应；若重传的请求已经有事务（TransactionAlreadyExistsException），
+     * 则退化为无状态发送，保证对端仍能收到响应。
+     */
+    private void sendResponse(RequestEvent event, Response response) throws SipException, javax.sip.InvalidArgumentException {
+        ServerTransaction transaction;
+        try {
+            transaction = ensureServerTransaction(event);
+        } catch (javax.sip.TransactionAlreadyExistsException ex) {
+            sipProvider.sendResponse(response);
+            return;
+        }
+        transaction.sendResponse(response);
+    }
+
     private ServerTransaction ensureServerTransaction(RequestEvent event) throws SipException {
         ServerTransaction transaction = event.getServerTransaction();
         if (transaction == null) {
@@ -651,18 +1202,18 @@ public final class SipUserAgent implements SipListener {
         return transaction;
     }
 
-    private String extractFromUri(Request request) {
+    private SipUriKey extractFromUri(Request request) {
         FromHeader fromHeader = (FromHeader) request.getHeader(FromHeader.NAME);
         if (fromHeader == null) {
-            return "unknown";
+            return SipUriKey.of("unknown");
         }
         return normalizeUri(fromHeader.getAddress().getURI());
     }
 
-    private String extractToUri(Response response) {
+    private SipUriKey extractToUri(Response response) {
         ToHeader toHeader = (ToHeader) response.getHeader(ToHeader.NAME);
         if (toHeader == null) {
-            return "unknown";
+            return SipUriKey.of("unknown");
         }
         return normalizeUri(toHeader.getAddress().getURI());
     }
@@ -681,22 +1232,12 @@ public final class SipUserAgent implements SipListener {
         return Long.toHexString(System.currentTimeMillis());
     }
 
-    private String normalizeUri(String rawUri) {
-        try {
-            return ((SipURI) addressFactory.createURI(rawUri)).toString();
-        } catch (ParseException ex) {
-            return rawUri;
-        }
+    private SipUriKey normalizeUri(String rawUri) {
+        return uriNormalizer.normalize(rawUri);
     }
 
-    private String normalizeUri(URI uri) {
-        if (uri == null) {
-            return "unknown";
-        }
-        if (uri instanceof SipURI sipURI) {
-            return sipURI.toString();
-        }
-        return uri.toString();
+    private SipUriKey normalizeUri(URI uri) {
+        return uriNormalizer.normalize(uri);
     }
 
     @Override
@@ -711,6 +1252,10 @@ public final class SipUserAgent implements SipListener {
             handleIncomingBye(requestEvent);
         } else if (Request.ACK.equals(method)) {
             handleAck(requestEvent);
+        } else if (Request.SUBSCRIBE.equals(method)) {
+            handleIncomingSubscribe(requestEvent);
+        } else if (Request.NOTIFY.equals(method)) {
+            handleIncomingNotify(requestEvent);
         }
     }
 
@@ -723,7 +1268,146 @@ public final class SipUserAgent implements SipListener {
             handleRegisterResponse(responseEvent);
         } else if (Request.INVITE.equals(method)) {
             handleInviteResponse(responseEvent);
+        } else if (Request.MESSAGE.equals(method)) {
+            handleMessageResponse(responseEvent);
+        } else if (Request.SUBSCRIBE.equals(method)) {
+            handleSubscribeResponse(responseEvent);
+        } else if (Request.PUBLISH.equals(method)) {
+            handlePublishResponse(responseEvent);
+        } else if (Request.NOTIFY.equals(method)) {
+            if (isChallenge(response.getStatusCode())) {
+                retryWithCredentials(responseEvent);
+            }
+        } else if (Request.OPTIONS.equals(method)) {
+            // 任何最终响应（即使是 4xx）都说明节点在线
+            RegistrarSet.Node node = optionsProbes.remove(callIdOf(response));
+            if (node != null && response.getStatusCode() >= 200) {
+                registrars.markSuccess(node);
+            }
+        }
+    }
+
+    private void handleMessageResponse(ResponseEvent responseEvent) {
+        int status = responseEvent.getResponse().getStatusCode();
+        if (isChallenge(status) && retryWithCredentials(responseEvent)) {
+            return;
+        }
+        if (status >= 300) {
+            System.err.println("消息发送失败 (status=" + status + ")");
+        }
+        if (status >= 200) {
+            completeMessage(callIdOf(responseEvent.getResponse()), status);
+        }
+    }
+
+    private void completeMessage(String callId, int status) {
+        CompletableFuture<Integer> result = pendingMessages.remove(callId);
+        if (result != null) {
+            result.complete(status);
+        }
+    }
+
+    private void handleSubscribeResponse(ResponseEvent responseEvent) {
+        Response response = responseEvent.getResponse();
+        int status = response.getStatusCode();
+        if (isChallenge(status) && retryWithCredentials(responseEvent)) {
+            return;
+        }
+        if (status >= 300) {
+            System.err.println("在线状态订阅失败 (status=" + status + ")");
+            return;
+        }
+        Dialog dialog = responseEvent.getDialog();
+        if (status < 200 || dialog == null) {
+            return;
+        }
+        ExpiresHeader expiresHeader = response.getExpires();
+        int expires = expiresHeader == null ? PRESENCE_EXPIRES_SECONDS : expiresHeader.getExpires();
+        if (expires == 0) {
+            return;
+        }
+        SipUriKey target = extractToUri(response);
+        presenceSubscriptions.put(target, dialog);
+        // 到期前刷新；期间被取消订阅或对话已替换时跳过
+        long refreshDelay = Math.max(expires - Math.min(expires / 10, 30), 1);
+        scheduler.schedule(() -> {
+            if (presenceSubscriptions.get(target) == dialog) {
+                try {
+                    sendInDialogSubscribe(dialog, PRESENCE_EXPIRES_SECONDS);
+                } catch (SipException ex) {
+                    System.err.println("Failed to refresh presence subscription: " + ex.getMessage());
+                }
+            }
+        }, refreshDelay, TimeUnit.SECONDS);
+    }
+
+    private void handlePublishResponse(ResponseEvent responseEvent) {
+        Response response = responseEvent.getResponse();
+        int status = response.getStatusCode();
+        if (isChallenge(status) && retryWithCredentials(responseEvent)) {
+            return;
+        }
+        if (status >= 200 && status < 300) {
+            SIPETagHeader etag = (SIPETagHeader) response.getHeader(SIPETagHeader.NAME);
+            publishETag = etag == null ? null : etag.getETag();
+        } else if (status >= 300) {
+            // 412：服务器已丢弃旧的发布状态，下次重新发布完整状态
+            publishETag = null;
+            System.err.println("在线状态发布失败 (status=" + status + ")");
+        }
+    }
+
+    private void updateRegistered(boolean value, int statusCode) {
+        registered = value;
+        RegistrationListener listener = registrationListener;
+        if (reportedRegistered.compareAndSet(!value, value) && listener != null) {
+            try {
+                listener.onRegistrationChanged(value, statusCode);
+            } catch (RuntimeException ex) {
+                System.err.println("[SipUserAgent] 注册状态回调失败: " + ex.getMessage());
+            }
+        }
+    }
+
+    private static boolean isChallenge(int status) {
+        return status == Response.UNAUTHORIZED || status == Response.PROXY_AUTHENTICATION_REQUIRED;
+    }
+
+    /**
+     * 记录 401/407 中的 nonce 并带上凭证重发被质询的请求（新的 CSeq 和分支号）。
+     * 之后的请求会由 {@link DigestCredentialCache#authorize(Request)} 预先带上凭证，不再多一次往返。
+     *
+     * @return 已重发返回 true；凭证被拒绝或无法重发时返回 false
+     */
+    private boolean retryWithCredentials(ResponseEvent responseEvent) {
+        ClientTransaction challengedTransaction = responseEvent.getClientTransaction();
+        if (challengedTransaction == null) {
+            return false;
         }
+        Request challenged = challengedTransaction.getRequest();
+        if (!credentials.onChallenge(responseEvent.getResponse(), challenged)) {
+            System.err.println("[SipUserAgent] " + challenged.getMethod() + " 认证被拒绝");
+            return false;
+        }
+        try {
+            Request retry = (Request) challenged.clone();
+            retry.removeHeader(AuthorizationHeader.NAME);
+            retry.removeHeader(ProxyAuthorizationHeader.NAME);
+            ((CSeqHeader) retry.getHeader(CSeqHeader.NAME)).setSeqNumber(cseq.getAndIncrement());
+            ((ViaHeader) retry.getHeader(ViaHeader.NAME)).removeParameter("branch");
+            credentials.authorize(retry);
+            ClientTransaction retryTransaction = sipProvider.getNewClientTransaction(retry);
+            retryTransaction.sendRequest();
+            return true;
+        } catch (ParseException | SipException | javax.sip.InvalidArgumentException ex) {
+            System.err.println("Failed to respond to authentication challenge: " + ex.getMessage());
+            return false;
+        }
+    }
+
+    private static String callIdOf(javax.sip.message.Message message) {
+        CallIdHeader callId = (CallIdHeader) message.getHeader(CallIdHeader.NAME);
+        return callId == null ? "" : callId.getCallId();
     }
 
     private int getExpiresFromResponse(Response response) {
@@ -748,8 +1432,16 @@ public final class SipUserAgent implements SipListener {
                 System.err.println("[SipUserAgent] 超时的请求类型: " + method);
                 // 只在 REGISTER 超时时才标记为未注册
                 if (Request.REGISTER.equals(method)) {
-                    registered = false;
+                    updateRegistered(false, 0);
                     System.err.println("[SipUserAgent] REGISTER 超时，标记为未注册");
+                } else if (Request.MESSAGE.equals(method)) {
+                    completeMessage(callIdOf(request), Response.REQUEST_TIMEOUT);
+                } else if (Request.OPTIONS.equals(method)) {
+                    RegistrarSet.Node node = optionsProbes.remove(callIdOf(request));
+                    if (node != null) {
+                        System.err.println("[SipUserAgent] 注册服务器 " + node + " 无响应");
+                        failoverAsync(node);
+                    }
                 }
             }
         }
@@ -760,24 +1452,20 @@ public final class SipUserAgent implements SipListener {
         Response response = responseEvent.getResponse();
         int status = response.getStatusCode();
 
-        if (status == Response.UNAUTHORIZED || status == Response.PROXY_AUTHENTICATION_REQUIRED) {
-            try {
-                ClientTransaction retryTransaction = authenticationHelper.handleChallenge(
-                        response,
-                        responseEvent.getClientTransaction(),
-                        sipProvider,
-                        5
-                );
-                retryTransaction.sendRequest();
-                return;
-            } catch (Exception ex) {
-                registered = false;
-                registrationLatch.countDown();
-                System.err.println("Failed to respond to authentication challenge: " + ex.getMessage());
+        if (isChallenge(status)) {
+            if (retryWithCredentials(responseEvent)) {
                 return;
             }
+            // 凭证被拒绝，按普通失败处理（故障转移不会再尝试其它节点）
+            updateRegistered(false, status);
+            lastRegisterStatus = status;
+            registrationLatch.countDown();
+            return;
         }
 
+        if (status >= 200) {
+            lastRegisterStatus = status;
+        }
         if (status >= 200 && status < 300) {
             // [新增] 对方接听了，解析对方名片并启动音频
             if (response.getRawContent() != null) {
@@ -785,7 +1473,7 @@ public final class SipUserAgent implements SipListener {
                 startAudioEngine(remoteSdp);
             }
             int expires = getExpiresFromResponse(response);
-            registered = expires > 0;
+            updateRegistered(expires > 0, status);
             currentExpiresSeconds = expires;
             
             // [新增] 安排自动续期任务（在过期前80%的时间点续期）
@@ -795,7 +1483,7 @@ public final class SipUserAgent implements SipListener {
             
             registrationLatch.countDown();
         } else if (status >= 400) {
-            registered = false;
+            updateRegistered(false, status);
             registrationLatch.countDown();
         }
     }
@@ -803,8 +1491,11 @@ public final class SipUserAgent implements SipListener {
     private void handleInviteResponse(ResponseEvent responseEvent) {
         Response response = responseEvent.getResponse();
         int status = response.getStatusCode();
-        String remote = extractToUri(response);
+        SipUriKey remote = extractToUri(response);
 
+        if (isChallenge(status) && retryWithCredentials(responseEvent)) {
+            return;
+        }
         if (status >= 100 && status < 200) {
             System.out.println("对方振铃中：" + remote + "，状态码 " + status);
             return;
@@ -829,7 +1520,7 @@ public final class SipUserAgent implements SipListener {
         } else if (status >= 400) {
             System.err.println("呼叫失败 (status=" + status + ")");
             if (callManager != null) {
-                callManager.terminateLocal(remote);
+                callManager.terminateFailed(remote, status);
             }
         }
     }
@@ -853,7 +1544,13 @@ public final class SipUserAgent implements SipListener {
 
     @Override
     public void processDialogTerminated(javax.sip.DialogTerminatedEvent dialogTerminatedEvent) {
-        // No-op
+        Dialog dialog = dialogTerminatedEvent.getDialog();
+        presenceHub.unwatchAll(dialog);
+        ScheduledFuture<?> expiry = watcherExpiry.remove(dialog);
+        if (expiry != null) {
+            expiry.cancel(false);
+        }
+        presenceSubscriptions.values().remove(dialog);
     }
     // [新增] 辅助方法：启动音频引擎
     private void startAudioEngine(String remoteSdp) {
@@ -877,6 +1574,9 @@ public final class SipUserAgent implements SipListener {
         if (keepAliveTask != null && !keepAliveTask.isCancelled()) {
             keepAliveTask.cancel(false);
         }
+        if (flowKeepAliveTask != null && !flowKeepAliveTask.isCancelled()) {
+            flowKeepAliveTask.cancel(false);
+        }
         
         // 计算续期时间：在过期前20%时续期（例如3600秒的话，在2880秒后续期）
         long delaySeconds = (long) (currentExpiresSeconds * 0.8);
@@ -899,21 +1599,33 @@ public final class SipUserAgent implements SipListener {
         // [新增] 启动 OPTIONS 心跳，每30秒发送一次保持 NAT 映射
         keepAliveTask = scheduler.scheduleAtFixedRate(() -> {
             try {
-                sendOptionsKeepAlive();
+                sendOptionsKeepAlive(activeRegistrar);
+                // 顺带探测冷却期已过的故障节点，恢复后下次续期即可重新被选中
+                for (RegistrarSet.Node node : registrars.nodesDueForProbe()) {
+                    if (!node.equals(activeRegistrar)) {
+                        sendOptionsKeepAlive(node);
+                    }
+                }
             } catch (Exception e) {
                 System.err.println("[SipUserAgent] 心跳发送失败: " + e.getMessage());
             }
         }, 30, 30, TimeUnit.SECONDS);
         System.out.println("[SipUserAgent] 已启动心跳机制（每30秒发送一次 OPTIONS 请求）");
+
+        if (!ListeningPoint.UDP.equals(transport)) {
+            long flowInterval = transportOptions.getFlowKeepAliveInterval().toSeconds();
+            flowKeepAliveTask = scheduler.scheduleAtFixedRate(this::sendFlowKeepAlive,
+                    0, flowInterval, TimeUnit.SECONDS);
+        }
     }
     
     /**
-     * [新增] 发送 OPTIONS 请求作为心跳，保持 NAT 映射活跃
+     * [新增] 发送 OPTIONS 请求作为心跳，保持 NAT 映射活跃；同时作为注册服务器节点的健康检查
      */
-    private void sendOptionsKeepAlive() {
+    private void sendOptionsKeepAlive(RegistrarSet.Node node) {
         try {
-            SipURI requestUri = addressFactory.createSipURI(null, registrarHost);
-            requestUri.setPort(registrarPort);
+            SipURI requestUri = addressFactory.createSipURI(null, node.host());
+            requestUri.setPort(node.port());
             requestUri.setTransportParam(transport);
 
             SipURI fromUri = addressFactory.createSipURI(username, registrarHost);
@@ -941,11 +1653,13 @@ public final class SipUserAgent implements SipListener {
             );
 
             request.addHeader(contactHeader);
+            routeTo(request, node, transport);
 
             ClientTransaction transaction = sipProvider.getNewClientTransaction(request);
+            optionsProbes.put(callIdHeader.getCallId(), node);
             transaction.sendRequest();
             
-            System.out.println("[SipUserAgent] 发送心跳 OPTIONS 请求");
+            System.out.println("[SipUserAgent] 发送心跳 OPTIONS 请求 -> " + node);
         } catch (Exception ex) {
             System.err.println("[SipUserAgent] 构建 OPTIONS 请求失败: " + ex.getMessage());
         }
@@ -0,0 +1,36 @@
+package com.example.sipclient.sip;
+
+import javax.sip.ListeningPoint;
+import java.util.Objects;
+
+/**
+ * 按请求大小选择传输层：首选 UDP 时，估算大小超过阈值的请求改走 TCP，
+ * 避免 IP 分片导致的大消息丢失以及 UDP 重传定时器带来的延迟。
+ * 首选 TCP/TLS 时始终沿用首选传输层。
+ */
+final class TransportSelector {
+
+    /** 头部的保守估算值，加上正文长度即为请求的估算大小 */
+    static final int HEADER_ALLOWANCE = 600;
+
+    private final String primary;
+    private final boolean tcpAvailable;
+    private final int udpSizeThreshold;
+
+    TransportSelector(String primary, boolean tcpAvailable, int udpSizeThreshold) {
+        this.primary = Objects.requireNonNull(primary, "primary");
+        this.tcpAvailable = tcpAvailable;
+        this.udpSizeThreshold = udpSizeThreshold;
+    }
+
+    String primary() {
+        return primary;
+    }
+
+    String select(int bodyBytes) {
+        if (!tcpAvailable || !ListeningPoint.UDP.equalsIgnoreCase(primary)) {
+            return primary;
+        }
+        return bodyBytes + HEADER_ALLOWANCE > udpSizeThreshold ? ListeningPoint.TCP : primary;
+    }
+}
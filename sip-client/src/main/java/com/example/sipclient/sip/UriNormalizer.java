@@ -0,0 +1,80 @@
+package com.example.sipclient.sip;
+
+import javax.sip.address.AddressFactory;
+import javax.sip.address.URI;
+import java.text.ParseException;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 带缓存的 URI 规范化：同一个原始字符串只经过一次 {@link AddressFactory#createURI(String)} 解析。
+ * <p>
+ * 缓存有容量上限，超限时整体清空；规范形式本身也会被记为自身的映射，
+ * 因此已规范化的字符串再次传入时不会重新解析。
+ */
+final class UriNormalizer {
+
+    static final int DEFAULT_MAX_ENTRIES = 2048;
+
+    private final AddressFactory addressFactory;
+    private final int maxEntries;
+    private final Map<String, SipUriKey> cache = new ConcurrentHashMap<>();
+
+    UriNormalizer(AddressFactory addressFactory) {
+        this(addressFactory, DEFAULT_MAX_ENTRIES);
+    }
+
+    UriNormalizer(AddressFactory addressFactory, int maxEntries) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("maxEntries must be positive");
+        }
+        this.addressFactory = Objects.requireNonNull(addressFactory, "addressFactory");
+        this.maxEntries = maxEntries;
+    }
+
+    SipUriKey normalize(String rawUri) {
+        SipUriKey cached = cache.get(rawUri);
+        if (cached != null) {
+            return cached;
+        }
+        String canonical;
+        try {
+            canonical = addressFactory.createURI(rawUri).toString();
+        } catch (ParseException ex) {
+            canonical = rawUri;
+        }
+        SipUriKey key = SipUriKey.of(canonical);
+        remember(rawUri, key);
+        if (!canonical.equals(rawUri)) {
+            remember(canonical, key);
+        }
+        return key;
+    }
+
+    SipUriKey normalize(URI uri) {
+        if (uri == null) {
+            return SipUriKey.of("unknown");
+        }
+        // 已解析的 URI 的 toString 即规范形式，命中缓存时直接复用驻留实例
+        String canonical = uri.toString();
+        SipUriKey cached = cache.get(canonical);
+        if (cached != null) {
+            return cached;
+        }
+        SipUriKey key = SipUriKey.of(canonical);
+        remember(canonical, key);
+        return key;
+    }
+
+    int size() {
+        return cache.size();
+    }
+
+    private void remember(String raw, SipUriKey key) {
+        if (cache.size() >= maxEntries) {
+            cache.clear();
+        }
+        cache.put(raw, key);
+    }
+}
@@ -1,6 +1,7 @@
 package com.example.sipclient.ui;
 
 import com.example.sipclient.call.CallManager;
+import com.example.sipclient.chat.AsyncDisplaySink;
 import com.example.sipclient.chat.MessageHandler;
 import com.example.sipclient.sip.SipUserAgent;
 
@@ -31,13 +32,9 @@ public class ConsoleMain {
         System.out.println("Starting SIP user agent...");
         SipUserAgent ua = new SipUserAgent(uri, pwd, localIp, localPort);
 
-        // simple handlers to print incoming events
-        ua.setMessageHandler(new MessageHandler() {
-            @Override
-            public void handleIncomingMessage(String from, String body) {
-                System.out.println("[INCOMING MESSAGE] from=" + from + " body=" + body);
-            }
-        });
+        // simple handlers to print message events (incoming, outgoing and receipts)
+        ua.setMessageHandler(new MessageHandler(line -> System.out.println("[MESSAGE] " + line),
+                MessageHandler.DEFAULT_QUEUE_CAPACITY, AsyncDisplaySink.OverflowPolicy.COALESCE));
 
         ua.setCallManager(new CallManager());
 
@@ -1,6 +1,7 @@
 package com.example.sipclient.ui;
 
 import com.example.sipclient.call.CallManager;
+import com.example.sipclient.chat.AsyncDisplaySink;
 import com.example.sipclient.chat.GroupChatService;
 import com.example.sipclient.chat.MessageHandler;
 import com.example.sipclient.config.SipConfig;
@@ -21,7 +22,8 @@ public class ConsoleUI implements Runnable {
     private static final Logger log = LoggerFactory.getLogger(ConsoleUI.class);
 
     private final Scanner scanner = new Scanner(System.in);
-    private final MessageHandler messageHandler = new MessageHandler(System.out::println);
+    private final MessageHandler messageHandler = new MessageHandler(System.out::println,
+            MessageHandler.DEFAULT_QUEUE_CAPACITY, AsyncDisplaySink.OverflowPolicy.COALESCE);
     private final GroupChatService groupChatService = new GroupChatService();
     private final CallManager callManager = new CallManager();
 
@@ -100,7 +102,9 @@ public class ConsoleUI implements Runnable {
                 currentConfig.getUserAddress(),
                 currentConfig.getPassword(),
                 currentConfig.getLocalIp(),
-                currentConfig.getLocalPort());
+                currentConfig.getLocalPort(),
+                currentConfig.getTransportOptions(),
+                currentConfig.getRegistrars());
         userAgent.setMessageHandler(messageHandler);
         userAgent.setCallManager(callManager);
 
@@ -185,5 +189,7 @@ public class ConsoleUI implements Runnable {
         if (userAgent != null) {
             userAgent.shutdown();
         }
+        // 打印完还在队列中的消息
+        messageHandler.close();
     }
 }
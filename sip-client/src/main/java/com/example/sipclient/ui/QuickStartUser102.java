@@ -1,6 +1,7 @@
 package com.example.sipclient.ui;
 
 import com.example.sipclient.call.CallManager;
+import com.example.sipclient.chat.AsyncDisplaySink;
 import com.example.sipclient.chat.MessageHandler;
 import com.example.sipclient.sip.SipUserAgent;
 
@@ -34,13 +35,11 @@ public class QuickStartUser102 {
         userAgent = new SipUserAgent(uri, pwd, localIp, localPort);
 
         // 设置消息处理器
-        userAgent.setMessageHandler(new MessageHandler() {
-            @Override
-            public void handleIncomingMessage(String from, String body) {
-                System.out.println("\n📩 [收到消息] 来自=" + from + " 内容=" + body);
-                System.out.print("> ");
-            }
-        });
+        userAgent.setMessageHandler(new MessageHandler(line -> {
+            // 在投递线程中打印，控制台输出慢也不会拖住 SIP 回调
+            System.out.println("\n📩 " + line);
+            System.out.print("> ");
+        }, MessageHandler.DEFAULT_QUEUE_CAPACITY, AsyncDisplaySink.OverflowPolicy.COALESCE));
 
         CallManager callManager = new CallManager();
         
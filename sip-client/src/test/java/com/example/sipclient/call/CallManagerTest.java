@@ -5,8 +5,13 @@ import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 
 import javax.sip.Dialog;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class CallManagerTest {
@@ -67,4 +72,47 @@ class CallManagerTest {
         assertEquals(CallSession.State.TERMINATED, session.getState());
         assertTrue(manager.findByRemote(session.getRemoteUri()).isEmpty());
     }
+
+    @Test
+    void notifiesStateChanges() {
+        CallManager manager = new CallManager();
+        List<CallSession.State> states = new ArrayList<>();
+        manager.setCallStateListener(session -> states.add(session.getState()));
+
+        CallSession session = manager.acceptIncoming("sip:alice@example.com");
+        manager.markActive(session.getRemoteUri());
+        manager.markActive(session.getRemoteUri());
+        manager.terminateByRemote(session.getRemoteUri());
+
+        assertEquals(List.of(CallSession.State.RINGING, CallSession.State.ACTIVE, CallSession.State.TERMINATED), states);
+    }
+
+    @Test
+    void emitsOneCdrPerCompletedCall() {
+        CallManager manager = new CallManager();
+        List<CallDetailRecord> records = new ArrayList<>();
+        manager.setCdrListener(records::add);
+
+        CallSession answered = manager.acceptIncoming("sip:alice@example.com");
+        manager.answerCall(answered.getRemoteUri());
+        manager.terminateByRemote(answered.getRemoteUri());
+        manager.terminateLocal(answered.getRemoteUri());
+
+        CallSession failed = manager.startOutgoing("sip:bob@example.com");
+        manager.terminateFailed(failed.getRemoteUri(), 404);
+
+        assertEquals(2, records.size());
+        CallDetailRecord first = records.get(0);
+        assertTrue(first.incoming());
+        assertTrue(first.answered());
+        assertNotNull(first.endedAt());
+        assertEquals(CallSession.EndCause.REMOTE_HANGUP, first.cause());
+        assertFalse(first.billableDuration().isNegative());
+
+        CallDetailRecord second = records.get(1);
+        assertFalse(second.answered());
+        assertEquals(CallSession.EndCause.FAILED, second.cause());
+        assertEquals(404, second.status());
+        assertEquals(Duration.ZERO, second.billableDuration());
+    }
 }
@@ -0,0 +1,98 @@
+package com.example.sipclient.chat;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AsyncDisplaySinkTest {
+
+    @Test
+    void deliversAllLinesInOrderWhenNotOverflowing() {
+        List<String> delivered = new CopyOnWriteArrayList<>();
+        try (AsyncDisplaySink sink = AsyncDisplaySink.forLines(delivered::add, 64,
+                AsyncDisplaySink.OverflowPolicy.BLOCK)) {
+            for (int i = 0; i < 50; i++) {
+                sink.accept("line-" + i);
+            }
+        }
+        assertEquals(50, delivered.size());
+        assertEquals("line-0", delivered.get(0));
+        assertEquals("line-49", delivered.get(49));
+    }
+
+    @Test
+    void dropOldestKeepsProducerUnblockedBehindSlowConsumer() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> delivered = new CopyOnWriteArrayList<>();
+        AsyncDisplaySink sink = new AsyncDisplaySink(batch -> {
+            await(release);
+            delivered.addAll(batch);
+        }, 4, 16, AsyncDisplaySink.OverflowPolicy.DROP_OLDEST);
+
+        sink.accept("first");
+        Thread.sleep(100);
+        for (int i = 0; i < 20; i++) {
+            sink.accept("line-" + i);
+        }
+        release.countDown();
+        sink.close();
+
+        assertTrue(sink.getDroppedCount() >= 16);
+        assertEquals("line-19", delivered.get(delivered.size() - 1));
+    }
+
+    @Test
+    void coalesceMergesOverflowIntoSingleLine() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> delivered = new CopyOnWriteArrayList<>();
+        AsyncDisplaySink sink = new AsyncDisplaySink(batch -> {
+            await(release);
+            delivered.addAll(batch);
+        }, 2, 16, AsyncDisplaySink.OverflowPolicy.COALESCE);
+
+        sink.accept("first");
+        Thread.sleep(100);
+        for (int i = 0; i < 10; i++) {
+            sink.accept("line-" + i);
+        }
+        release.countDown();
+        sink.close();
+
+        String last = delivered.get(delivered.size() - 1);
+        assertTrue(last.contains("8") && last.endsWith("line-9"), last);
+    }
+
+    @Test
+    void coalescedLineStaysBehindQueuedLines() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> delivered = new CopyOnWriteArrayList<>();
+        AsyncDisplaySink sink = new AsyncDisplaySink(batch -> {
+            await(release);
+            delivered.addAll(batch);
+        }, 2, 1, AsyncDisplaySink.OverflowPolicy.COALESCE);
+
+        sink.accept("first");
+        Thread.sleep(100);
+        sink.accept("a");
+        sink.accept("b");
+        sink.accept("c");
+        release.countDown();
+        sink.close();
+
+        assertEquals(List.of("first", "a", "b", "c"), delivered);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.sipclient.chat;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class ChatSessionStoreTest {
+
+    private static ChatSession newSession(String uri) {
+        return new ChatSession(uri, false, List.of(uri));
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedWhenFull() {
+        ChatSessionStore store = new ChatSessionStore(2, Duration.ofMinutes(5));
+        List<String> evicted = new ArrayList<>();
+        store.setEvictionListener((session, cause) -> {
+            assertEquals(ChatSessionStore.EvictionCause.SIZE, cause);
+            evicted.add(session.getSessionId());
+        });
+
+        ChatSession alice = store.getOrCreate("sip:alice@example.com", ChatSessionStoreTest::newSession);
+        store.getOrCreate("sip:bob@example.com", ChatSessionStoreTest::newSession);
+        assertSame(alice, store.getOrCreate("sip:alice@example.com", ChatSessionStoreTest::newSession));
+        store.getOrCreate("sip:carol@example.com", ChatSessionStoreTest::newSession);
+
+        assertEquals(List.of("sip:bob@example.com"), evicted);
+        assertEquals(2, store.size());
+    }
+
+    @Test
+    void evictsIdleSessionsAndHandsOverTranscript() {
+        AtomicLong clock = new AtomicLong();
+        ChatSessionStore store = new ChatSessionStore(10, Duration.ofSeconds(30), clock::get);
+        List<String> transcript = new ArrayList<>();
+        store.setEvictionListener((session, cause) -> {
+            assertEquals(ChatSessionStore.EvictionCause.IDLE, cause);
+            transcript.addAll(session.dumpRecentMessages());
+        });
+
+        store.getOrCreate("sip:alice@example.com", ChatSessionStoreTest::newSession).appendMessage("me", "hello");
+        clock.addAndGet(Duration.ofSeconds(10).toNanos());
+        store.getOrCreate("sip:bob@example.com", ChatSessionStoreTest::newSession);
+        clock.addAndGet(Duration.ofSeconds(25).toNanos());
+
+        assertEquals(1, store.evictIdle());
+        assertEquals(1, transcript.size());
+        assertEquals(1, store.size());
+    }
+}
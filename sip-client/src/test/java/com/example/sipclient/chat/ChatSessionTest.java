@@ -0,0 +1,98 @@
+package com.example.sipclient.chat;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChatSessionTest {
+
+    @Test
+    void wrapsAroundConfiguredCapacity() {
+        ChatSession session = new ChatSession("sip:bob@example.com", false, List.of("sip:bob@example.com"), 3);
+        for (int i = 0; i < 7; i++) {
+            session.appendMessage("me", "msg-" + i);
+        }
+        List<String> transcript = session.dumpRecentMessages();
+        assertEquals(3, transcript.size());
+        assertTrue(transcript.get(0).endsWith("me: msg-4"));
+        assertTrue(transcript.get(2).endsWith("me: msg-6"));
+    }
+
+    @Test
+    void rejectsNonPositiveCapacity() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new ChatSession("sip:bob@example.com", false, List.of(), 0));
+    }
+
+    @Test
+    void concurrentWritersNeverExceedCapacity() throws InterruptedException {
+        ChatSession session = new ChatSession("sip:bob@example.com", false, List.of(), 16);
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        CountDownLatch done = new CountDownLatch(4);
+        for (int t = 0; t < 4; t++) {
+            int writer = t;
+            pool.execute(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    session.appendMessage("writer-" + writer, "msg-" + i);
+                }
+                done.countDown();
+            });
+        }
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        pool.shutdown();
+        assertEquals(16, session.dumpRecentMessages().size());
+        assertEquals(LongStream.range(4000 - 16, 4000).boxed().toList(), session.recentSequences());
+    }
+
+    @Test
+    void lateWriterDoesNotOverwriteNewerMessageInSameSlot() {
+        ChatSession session = new ChatSession("sip:bob@example.com", false, List.of(), 2);
+        session.appendMessage("alice", "m0");
+        session.appendMessage("alice", "m1");
+        session.appendMessage("alice", "m2");
+
+        // 序号 0 的写线程在序号 2 占用同一槽位之后才到达
+        session.publish(0, "alice", "m0");
+
+        assertEquals(List.of(1L, 2L), session.recentSequences());
+        assertTrue(session.dumpRecentMessages().get(1).endsWith("alice: m2"));
+    }
+
+    @Test
+    void wrappingWritersKeepLatestSequences() throws InterruptedException {
+        // 容量很小时写线程频繁绕圈，旧序号的写入最容易落在新序号之后
+        for (int round = 0; round < 50; round++) {
+            ChatSession session = new ChatSession("sip:bob@example.com", false, List.of(), 2);
+            ExecutorService pool = Executors.newFixedThreadPool(8);
+            CountDownLatch start = new CountDownLatch(1);
+            CountDownLatch done = new CountDownLatch(8);
+            for (int t = 0; t < 8; t++) {
+                pool.execute(() -> {
+                    try {
+                        start.await();
+                        for (int i = 0; i < 500; i++) {
+                            session.appendMessage("writer", "msg-" + i);
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        done.countDown();
+                    }
+                });
+            }
+            start.countDown();
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+            pool.shutdown();
+            assertEquals(List.of(3998L, 3999L), session.recentSequences());
+        }
+    }
+}
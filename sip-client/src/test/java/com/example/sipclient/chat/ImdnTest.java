@@ -0,0 +1,41 @@
+package com.example.sipclient.chat;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ImdnTest {
+
+    @Test
+    void roundTripsDisplayNotification() {
+        Imdn.Notification notification = new Imdn.Notification("42", Imdn.Disposition.DISPLAYED,
+                Instant.parse("2024-05-01T10:15:30Z"));
+
+        Imdn.Notification parsed = Imdn.parse(Imdn.build(notification)).orElseThrow();
+
+        assertEquals(notification, parsed);
+    }
+
+    @Test
+    void parsesDeliveryNotification() {
+        String xml = "<imdn xmlns=\"urn:ietf:params:xml:ns:imdn\"><message-id>abc</message-id>"
+                + "<datetime>2024-05-01T10:15:30Z</datetime>"
+                + "<delivery-notification><status><delivered/></status></delivery-notification></imdn>";
+
+        Imdn.Notification parsed = Imdn.parse(xml).orElseThrow();
+
+        assertEquals("abc", parsed.messageId());
+        assertEquals(Imdn.Disposition.DELIVERED, parsed.disposition());
+    }
+
+    @Test
+    void rejectsMissingMessageIdAndDoctype() {
+        assertTrue(Imdn.parse("<imdn><display-notification><status><displayed/></status>"
+                + "</display-notification></imdn>").isEmpty());
+        assertTrue(Imdn.parse("<?xml version=\"1.0\"?><!DOCTYPE x [<!ENTITY e SYSTEM \"file:///etc/passwd\">]>"
+                + "<imdn><message-id>&e;</message-id></imdn>").isEmpty());
+    }
+}
@@ -4,6 +4,9 @@ import org.junit.jupiter.api.Test;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -47,4 +50,66 @@ class MessageHandlerTest {
         assertTrue(transcript.get(0).contains("msg-5"));
         assertTrue(transcript.get(transcript.size() - 1).contains("msg-24"));
     }
+
+    @Test
+    void asynchronousHandlerDoesNotWaitForSlowSink() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> sink = new CopyOnWriteArrayList<>();
+        MessageHandler handler = new MessageHandler(line -> {
+            await(release);
+            sink.add(line);
+        }, 16, AsyncDisplaySink.OverflowPolicy.BLOCK);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 5; i++) {
+            handler.handleIncomingMessage("sip:bob@example.com", "msg-" + i);
+        }
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertTrue(elapsedMillis < 1000, "incoming messages waited " + elapsedMillis + "ms for the sink");
+        assertEquals(5, handler.listSessions().get(0).dumpRecentMessages().size());
+
+        release.countDown();
+        handler.close();
+        assertEquals(5, sink.size());
+        for (int i = 0; i < 5; i++) {
+            assertTrue(sink.get(i).endsWith("msg-" + i), sink.get(i));
+        }
+    }
+
+    @Test
+    void handlersShareOneAsyncSink() {
+        List<String> sink = new CopyOnWriteArrayList<>();
+        try (AsyncDisplaySink shared = AsyncDisplaySink.forLines(sink::add, 16,
+                AsyncDisplaySink.OverflowPolicy.BLOCK)) {
+            MessageHandler alice = MessageHandler.sharedSink(shared);
+            MessageHandler bob = MessageHandler.sharedSink(shared);
+            alice.handleIncomingMessage("sip:bob@example.com", "hi alice");
+            bob.handleIncomingMessage("sip:alice@example.com", "hi bob");
+            // 共享的输出端由创建者关闭
+            alice.close();
+            bob.handleOutgoingMessage("sip:alice@example.com", "bye");
+        }
+        assertEquals(3, sink.size());
+        assertTrue(sink.get(2).endsWith("bye"));
+    }
+
+    @Test
+    void nullDisplaySinkFallsBackToNoOp() {
+        MessageHandler handler = new MessageHandler(null);
+        MessageHandler withCapacity = new MessageHandler(null, 5);
+
+        handler.handleIncomingMessage("sip:bob@example.com", "hello");
+        withCapacity.handleOutgoingMessage("sip:bob@example.com", "hi");
+
+        assertEquals(1, handler.listSessions().size());
+        assertEquals(1, withCapacity.listSessions().size());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
 }
@@ -0,0 +1,107 @@
+package com.example.sipclient.gui.storage;
+
+import com.example.sipclient.gui.model.Message;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.OptionalLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class JournalSyncTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2024, 5, 1, 12, 0, 0, 123_000_000);
+
+    @TempDir
+    Path dir;
+
+    private Path journalDir;
+    private LocalDatabase database;
+
+    @BeforeEach
+    void setUp() {
+        journalDir = dir.resolve("journal");
+        database = new LocalDatabase("jdbc:sqlite:" + dir.resolve("client.db"));
+        database.initialize();
+    }
+
+    @AfterEach
+    void tearDown() {
+        database.close();
+    }
+
+    @Test
+    void messagesWrittenWhileJournalWasOffAreImportedOnReenable() throws Exception {
+        database.saveMessage("102", message("a", 0));
+        database.saveMessage("103", message("b", 1));
+        try (MessageJournal journal = MessageJournal.open(journalDir)) {
+            assertEquals(2, JournalSync.importFromDatabase(journal, database));
+            assertEquals(OptionalLong.of(2), journal.importedUpTo());
+            journal.append("102", message("journal only", 2));
+        }
+
+        // 日志关闭期间只写 SQLite
+        database.saveMessage("102", message("c", 3));
+
+        try (MessageJournal journal = MessageJournal.open(journalDir)) {
+            assertEquals(1, JournalSync.importFromDatabase(journal, database));
+            assertEquals(List.of("a", "journal only", "c"), contents(journal.load("102")));
+            assertEquals(List.of("b"), contents(journal.load("103")));
+            assertEquals(OptionalLong.of(3), journal.importedUpTo());
+            // 水位之后没有新消息，再次打开不会重复导入
+            assertEquals(0, JournalSync.importFromDatabase(journal, database));
+        }
+    }
+
+    @Test
+    void journalWithoutWatermarkIsMergedWithoutDuplicates() throws Exception {
+        database.saveMessage("102", message("a", 0));
+        database.saveMessage("102", message("b", 1));
+        try (MessageJournal journal = MessageJournal.open(journalDir)) {
+            // 旧版本只在日志为空时导入过一次，之后 SQLite 又有了新消息
+            journal.append("102", message("a", 0));
+            assertEquals(OptionalLong.empty(), journal.importedUpTo());
+
+            assertEquals(1, JournalSync.importFromDatabase(journal, database));
+            assertEquals(List.of("a", "b"), contents(journal.load("102")));
+            assertEquals(OptionalLong.of(2), journal.importedUpTo());
+        }
+    }
+
+    @Test
+    void disablingTheJournalMigratesItsMessagesBackToSqlite() throws Exception {
+        database.saveMessage("102", message("a", 0));
+        try (MessageJournal journal = MessageJournal.open(journalDir)) {
+            JournalSync.importFromDatabase(journal, database);
+            journal.append("102", message("b", 1));
+            journal.append("104", message("new contact", 2));
+        }
+
+        assertEquals(2, JournalSync.exportToDatabase(journalDir, database));
+        assertFalse(Files.exists(journalDir));
+        assertEquals(List.of("a", "b"), contents(database.loadMessages("102")));
+        assertEquals(List.of("new contact"), contents(database.loadMessages("104")));
+
+        // 再次启用时从头导入，不重复
+        try (MessageJournal journal = MessageJournal.open(journalDir)) {
+            assertEquals(3, JournalSync.importFromDatabase(journal, database));
+            assertEquals(List.of("a", "b"), contents(journal.load("102")));
+            assertEquals(T0.plusSeconds(1), journal.load("102").get(1).getTimestamp());
+        }
+    }
+
+    private static Message message(String content, int second) {
+        return new Message(content, second % 2 == 0, T0.plusSeconds(second));
+    }
+
+    private static List<String> contents(List<Message> messages) {
+        return messages.stream().map(Message::getContent).toList();
+    }
+}
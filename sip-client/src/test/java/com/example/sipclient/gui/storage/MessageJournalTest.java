@@ -0,0 +1,147 @@
+package com.example.sipclient.gui.storage;
+
+import com.example.sipclient.gui.model.Message;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MessageJournalTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2024, 5, 1, 12, 0, 0, 123_456_789);
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void replaysMessagesPerContactAcrossSegments() throws IOException {
+        try (MessageJournal journal = MessageJournal.open(dir, 256, 0)) {
+            for (int i = 0; i < 20; i++) {
+                journal.append(i % 2 == 0 ? "102" : "103", new Message("消息 " + i, i % 3 == 0, T0.plusSeconds(i)));
+            }
+        }
+        assertTrue(segmentCount() > 1);
+
+        try (MessageJournal journal = MessageJournal.open(dir, 256, Long.MAX_VALUE)) {
+            List<Message> history = journal.load("102");
+            assertEquals(10, history.size());
+            assertEquals("消息 0", history.get(0).getContent());
+            assertTrue(history.get(0).isFromMe());
+            assertEquals(T0, history.get(0).getTimestamp());
+            assertEquals("消息 18", history.get(9).getContent());
+            assertEquals(10, journal.load("103").size());
+            assertTrue(journal.load("111").isEmpty());
+        }
+    }
+
+    @Test
+    void deleteWritesTombstoneAndCompactionReclaimsSpace() throws IOException {
+        try (MessageJournal journal = MessageJournal.open(dir, 256, 0)) {
+            for (int i = 0; i < 20; i++) {
+                journal.append("102", new Message("旧消息 " + i, false, T0));
+            }
+            journal.append("103", new Message("保留", true, T0));
+            journal.delete("102");
+
+            assertTrue(journal.load("102").isEmpty());
+            assertEquals(1, segmentCount());
+            assertEquals("保留", journal.load("103").get(0).getContent());
+
+            journal.append("103", new Message("压缩后追加", false, T0));
+        }
+
+        try (MessageJournal journal = MessageJournal.open(dir, 256, 0)) {
+            assertTrue(journal.load("102").isEmpty());
+            List<Message> history = journal.load("103");
+            assertEquals(2, history.size());
+            assertEquals("压缩后追加", history.get(1).getContent());
+        }
+    }
+
+    @Test
+    void truncatesTornRecordAndKeepsAppending() throws IOException {
+        try (MessageJournal journal = MessageJournal.open(dir, 4096, Long.MAX_VALUE)) {
+            journal.append("102", new Message("完整", false, T0));
+            journal.append("102", new Message("写了一半", false, T0));
+        }
+        // 破坏第二条记录的内容，模拟掉电时只落盘了一部分
+        Path segment;
+        try (Stream<Path> files = Files.list(dir)) {
+            segment = files.filter(path -> path.toString().endsWith(".seg")).findFirst().orElseThrow();
+        }
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{0x55, 0x55}), 48 + 36);
+        }
+
+        try (MessageJournal journal = MessageJournal.open(dir, 4096, Long.MAX_VALUE)) {
+            assertEquals(List.of("完整"), journal.load("102").stream().map(Message::getContent).toList());
+            journal.append("102", new Message("恢复后", true, T0));
+        }
+        try (MessageJournal journal = MessageJournal.open(dir, 4096, Long.MAX_VALUE)) {
+            List<Message> history = journal.load("102");
+            assertEquals(2, history.size());
+            assertEquals("恢复后", history.get(1).getContent());
+            assertFalse(journal.isEmpty());
+        }
+    }
+
+    @Test
+    void crashBeforeHeadSwitchDiscardsCompactedSegments(@TempDir Path crashed) throws IOException {
+        try (MessageJournal journal = MessageJournal.open(dir, 256, Long.MAX_VALUE)) {
+            for (int i = 0; i < 10; i++) {
+                journal.append("102", new Message("删除 " + i, false, T0));
+            }
+            for (int i = 0; i < 3; i++) {
+                journal.append("103", new Message("保留 " + i, true, T0));
+            }
+            journal.delete("102");
+        }
+        copySegmentsAndHead(dir, crashed);
+
+        try (MessageJournal journal = MessageJournal.open(dir, 256, Long.MAX_VALUE)) {
+            journal.compact();
+        }
+        // 压缩写完新段、还没切换 HEAD 时崩溃：旧段和旧 HEAD 都还在，新段也已落盘
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path segment : files.filter(path -> path.toString().endsWith(".seg")).toList()) {
+                Files.copy(segment, crashed.resolve(segment.getFileName()));
+            }
+        }
+
+        try (MessageJournal journal = MessageJournal.open(crashed, 256, Long.MAX_VALUE)) {
+            assertTrue(journal.load("102").isEmpty());
+            assertEquals(List.of("保留 0", "保留 1", "保留 2"),
+                    journal.load("103").stream().map(Message::getContent).toList());
+            journal.append("103", new Message("恢复后", false, T0));
+        }
+        try (MessageJournal journal = MessageJournal.open(crashed, 256, Long.MAX_VALUE)) {
+            assertEquals(4, journal.load("103").size());
+        }
+    }
+
+    private static void copySegmentsAndHead(Path from, Path to) throws IOException {
+        try (Stream<Path> files = Files.list(from)) {
+            for (Path file : files.toList()) {
+                Files.copy(file, to.resolve(file.getFileName()));
+            }
+        }
+    }
+
+    private long segmentCount() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(path -> path.toString().endsWith(".seg")).count();
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.sipclient.presence;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PidfTest {
+
+    @Test
+    void roundTripsStatusAndNote() {
+        PresenceUpdate update = new PresenceUpdate("sip:bob@example.com", PresenceStatus.BUSY, null);
+
+        PresenceUpdate parsed = Pidf.parse(Pidf.build(update), "sip:other@example.com").orElseThrow();
+
+        assertEquals("sip:bob@example.com", parsed.entity());
+        assertEquals(PresenceStatus.BUSY, parsed.status());
+        assertEquals("busy", parsed.note());
+    }
+
+    @Test
+    void closedBasicMeansOfflineAndEntityFallsBack() {
+        String xml = "<presence xmlns=\"urn:ietf:params:xml:ns:pidf\"><tuple id=\"a\">"
+                + "<status><basic>closed</basic></status></tuple></presence>";
+
+        PresenceUpdate parsed = Pidf.parse(xml, "sip:bob@example.com").orElseThrow();
+
+        assertEquals(PresenceStatus.OFFLINE, parsed.status());
+        assertEquals("sip:bob@example.com", parsed.entity());
+    }
+
+    @Test
+    void rejectsDoctypeDeclarations() {
+        String xml = "<?xml version=\"1.0\"?><!DOCTYPE x [<!ENTITY e SYSTEM \"file:///etc/passwd\">]>"
+                + "<presence xmlns=\"urn:ietf:params:xml:ns:pidf\"><note>&e;</note></presence>";
+
+        assertTrue(Pidf.parse(xml, "sip:bob@example.com").isEmpty());
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.sipclient.presence;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PresenceHubTest {
+
+    private static final String BOB = "sip:bob@example.com";
+
+    private record Delivery(List<String> watchers, PresenceUpdate update) {
+    }
+
+    @Test
+    void coalescesUpdatesWithinWindow() {
+        List<Delivery> deliveries = Collections.synchronizedList(new ArrayList<>());
+        try (PresenceHub<String> hub = new PresenceHub<>(
+                (watchers, update) -> deliveries.add(new Delivery(watchers, update)), Duration.ofHours(1), 16)) {
+            hub.watch(BOB, "alice");
+            hub.publish(new PresenceUpdate(BOB, PresenceStatus.AWAY, null));
+            hub.publish(new PresenceUpdate(BOB, PresenceStatus.BUSY, null));
+            hub.publish(new PresenceUpdate(BOB, PresenceStatus.ONLINE, "back"));
+
+            hub.flush();
+
+            assertEquals(1, deliveries.size());
+            assertEquals(PresenceStatus.ONLINE, deliveries.get(0).update().status());
+            assertEquals("back", deliveries.get(0).update().note());
+            assertEquals(List.of("alice"), deliveries.get(0).watchers());
+            assertEquals(2, hub.getCoalescedCount());
+            assertEquals(PresenceStatus.ONLINE, hub.current(BOB).orElseThrow().status());
+        }
+    }
+
+    @Test
+    void splitsLargeWatcherSetsIntoBatches() {
+        List<Delivery> deliveries = Collections.synchronizedList(new ArrayList<>());
+        try (PresenceHub<String> hub = new PresenceHub<>(
+                (watchers, update) -> deliveries.add(new Delivery(watchers, update)), Duration.ofHours(1), 256)) {
+            for (int i = 0; i < 600; i++) {
+                hub.watch(BOB, "watcher-" + i);
+            }
+            hub.publish(new PresenceUpdate(BOB, PresenceStatus.BUSY, null));
+            hub.flush();
+
+            assertEquals(3, deliveries.size());
+            assertEquals(600, deliveries.stream().mapToInt(delivery -> delivery.watchers().size()).sum());
+            assertTrue(deliveries.stream().allMatch(delivery -> delivery.watchers().size() <= 256));
+        }
+    }
+
+    @Test
+    void flushesAfterWindowAndStopsNotifyingRemovedWatchers() throws Exception {
+        List<Delivery> deliveries = Collections.synchronizedList(new ArrayList<>());
+        try (PresenceHub<String> hub = new PresenceHub<>(
+                (watchers, update) -> deliveries.add(new Delivery(watchers, update)), Duration.ofMillis(20), 16)) {
+            hub.watch(BOB, "alice");
+            hub.watch(BOB, "carol");
+            hub.unwatchAll("carol");
+            hub.publish(new PresenceUpdate(BOB, PresenceStatus.AWAY, null));
+
+            long deadline = System.nanoTime() + Duration.ofSeconds(2).toNanos();
+            while (deliveries.isEmpty() && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+
+            assertEquals(1, deliveries.size());
+            assertEquals(List.of("alice"), deliveries.get(0).watchers());
+            assertEquals(1, hub.watcherCount(BOB));
+        }
+    }
+}
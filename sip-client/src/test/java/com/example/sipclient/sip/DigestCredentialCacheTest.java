@@ -0,0 +1,101 @@
+package com.example.sipclient.sip;
+
+import org.junit.jupiter.api.Test;
+
+import javax.sip.SipFactory;
+import javax.sip.address.AddressFactory;
+import javax.sip.header.AuthorizationHeader;
+import javax.sip.header.HeaderFactory;
+import javax.sip.header.WWWAuthenticateHeader;
+import javax.sip.message.MessageFactory;
+import javax.sip.message.Request;
+import javax.sip.message.Response;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DigestCredentialCacheTest {
+
+    private final HeaderFactory headerFactory;
+    private final AddressFactory addressFactory;
+    private final MessageFactory messageFactory;
+
+    DigestCredentialCacheTest() throws Exception {
+        SipFactory sipFactory = SipFactory.getInstance();
+        sipFactory.setPathName("gov.nist");
+        headerFactory = sipFactory.createHeaderFactory();
+        addressFactory = sipFactory.createAddressFactory();
+        messageFactory = sipFactory.createMessageFactory();
+    }
+
+    @Test
+    void computesRfc2617Response() {
+        String response = DigestCredentialCache.computeResponse("MD5", "Mufasa", "testrealm@host.com",
+                "Circle Of Life", "dcd98b7102dd2f0e8b11d0f600bfb0c093", "00000001", "0a4f113b", "auth",
+                "GET", "/dir/index.html");
+        assertEquals("6629fae49393a05397450978507c4ef1", response);
+    }
+
+    @Test
+    void attachesCachedCredentialsWithIncreasingNonceCount() throws Exception {
+        DigestCredentialCache cache = new DigestCredentialCache("alice", "secret", headerFactory);
+        Request first = register();
+        assertFalse(cache.authorize(first));
+
+        assertTrue(cache.onChallenge(challenge(first, "n1", false), first));
+        Request second = register();
+        Request third = register();
+        assertTrue(cache.authorize(second));
+        assertTrue(cache.authorize(third));
+
+        AuthorizationHeader secondAuth = (AuthorizationHeader) second.getHeader(AuthorizationHeader.NAME);
+        AuthorizationHeader thirdAuth = (AuthorizationHeader) third.getHeader(AuthorizationHeader.NAME);
+        assertEquals("n1", secondAuth.getNonce());
+        assertEquals(1, secondAuth.getNonceCount());
+        assertEquals(2, thirdAuth.getNonceCount());
+    }
+
+    @Test
+    void retriesOnStaleButNotWhenCredentialsWereRejected() throws Exception {
+        DigestCredentialCache cache = new DigestCredentialCache("alice", "secret", headerFactory);
+        Request initial = register();
+        cache.onChallenge(challenge(initial, "n1", false), initial);
+        Request authorized = register();
+        cache.authorize(authorized);
+
+        assertTrue(cache.onChallenge(challenge(authorized, "n2", true), authorized));
+        assertEquals(1, cache.size());
+
+        Request retried = register();
+        cache.authorize(retried);
+        assertFalse(cache.onChallenge(challenge(retried, "n3", false), retried));
+        assertEquals(0, cache.size());
+    }
+
+    private Request register() throws Exception {
+        var uri = addressFactory.createSipURI(null, "example.com");
+        var address = addressFactory.createAddress(addressFactory.createSipURI("alice", "example.com"));
+        return messageFactory.createRequest(uri, Request.REGISTER,
+                headerFactory.createCallIdHeader("call-1"),
+                headerFactory.createCSeqHeader(1L, Request.REGISTER),
+                headerFactory.createFromHeader(address, "tag"),
+                headerFactory.createToHeader(address, null),
+                List.of(headerFactory.createViaHeader("127.0.0.1", 5070, "UDP", "z9hG4bK-1")),
+                headerFactory.createMaxForwardsHeader(70));
+    }
+
+    private Response challenge(Request request, String nonce, boolean stale) throws Exception {
+        Response response = messageFactory.createResponse(Response.UNAUTHORIZED, request);
+        WWWAuthenticateHeader header = headerFactory.createWWWAuthenticateHeader("Digest");
+        header.setRealm("example.com");
+        header.setNonce(nonce);
+        header.setQop("auth");
+        if (stale) {
+            header.setStale(true);
+        }
+        response.addHeader(header);
+        return response;
+    }
+}
@@ -0,0 +1,416 @@
+package com.example.sipclient.sip;
+
+import javax.sip.DialogTerminatedEvent;
+import javax.sip.IOExceptionEvent;
+import javax.sip.ListeningPoint;
+import javax.sip.RequestEvent;
+import javax.sip.ResponseEvent;
+import javax.sip.ServerTransaction;
+import javax.sip.SipFactory;
+import javax.sip.SipListener;
+import javax.sip.SipProvider;
+import javax.sip.SipStack;
+import javax.sip.TimeoutEvent;
+import javax.sip.TransactionTerminatedEvent;
+import javax.sip.address.AddressFactory;
+import javax.sip.address.SipURI;
+import javax.sip.address.URI;
+import javax.sip.header.AuthorizationHeader;
+import javax.sip.header.ContactHeader;
+import javax.sip.header.ExpiresHeader;
+import javax.sip.header.FromHeader;
+import javax.sip.header.HeaderFactory;
+import javax.sip.header.MaxForwardsHeader;
+import javax.sip.header.ProxyAuthorizationHeader;
+import javax.sip.header.RouteHeader;
+import javax.sip.header.ToHeader;
+import javax.sip.header.ViaHeader;
+import javax.sip.header.WWWAuthenticateHeader;
+import javax.sip.message.MessageFactory;
+import javax.sip.message.Request;
+import javax.sip.message.Response;
+import java.net.DatagramSocket;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 进程内的简易注册服务器 + 无状态代理，替代 Mobicents 用于集成测试和本机信令性能测量。
+ * <p>
+ * 支持的能力：
+ * <ul>
+ *     <li>REGISTER 的 Digest（MD5，qop=auth）认证质询和位置服务，Expires 为 0 时注销；检查 nonce-count 防重放，
+ *     过期 nonce 以 stale=true 重新质询</li>
+ *     <li>可选：发往本域用户的 MESSAGE/INVITE 需要 407 代理认证</li>
+ *     <li>发往本域用户的请求按位置服务改写 Request-URI 后转发，其它请求（ACK、BYE 等对话内请求）按原 Request-URI 转发</li>
+ *     <li>转发 INVITE/SUBSCRIBE 时添加 Record-Route，对话内请求（BYE、NOTIFY 等）同样经过代理</li>
+ *     <li>发给服务器自身的 OPTIONS 直接回 200；发往本域用户的 PUBLISH 由服务器接收并回 200 和 SIP-ETag</li>
+ * </ul>
+ * 转发是无状态的：请求加上自己的 Via，响应去掉顶层 Via 后原路返回。
+ */
+final class LocalSipServer implements SipListener, AutoCloseable {
+
+    private static final AtomicLong STACK_SEQUENCE = new AtomicLong();
+
+    private record Binding(SipURI contact, long expiresAtNanos) {
+    }
+
+    private final String host;
+    private final int port;
+    private final String realm;
+    private final SipStack sipStack;
+    private final SipProvider sipProvider;
+    private final AddressFactory addressFactory;
+    private final HeaderFactory headerFactory;
+    private final MessageFactory messageFactory;
+    private final Map<String, String> passwords = new ConcurrentHashMap<>();
+    private final Map<String, Binding> locations = new ConcurrentHashMap<>();
+    /** nonce -> 最近一次使用的 nonce-count，防止重放 */
+    private final Map<String, AtomicInteger> issuedNonces = new ConcurrentHashMap<>();
+    private final Set<String> staleNonces = ConcurrentHashMap.newKeySet();
+    private final Map<String, AtomicInteger> requestCounts = new ConcurrentHashMap<>();
+    /** 用户 -> 最近一次 PUBLISH 的 PIDF 正文 */
+    private final Map<String, String> publications = new ConcurrentHashMap<>();
+    private volatile boolean challengeEnabled = true;
+    private volatile boolean proxyChallengeEnabled;
+
+    private enum AuthResult {
+        OK, MISSING, STALE, INVALID
+    }
+
+    private LocalSipServer(String host, int port) throws Exception {
+        this.host = host;
+        this.port = port;
+        this.realm = host;
+
+        SipFactory sipFactory = SipFactory.getInstance();
+        sipFactory.setPathName("gov.nist");
+        this.addressFactory = sipFactory.createAddressFactory();
+        this.headerFactory = sipFactory.createHeaderFactory();
+        this.messageFactory = sipFactory.createMessageFactory();
+
+        Properties properties = new Properties();
+        properties.setProperty("javax.sip.STACK_NAME", "LocalSipServer-" + STACK_SEQUENCE.incrementAndGet());
+        properties.setProperty("javax.sip.AUTOMATIC_DIALOG_SUPPORT", "off");
+        properties.setProperty("gov.nist.javax.sip.TRACE_LEVEL", "0");
+        properties.setProperty("gov.nist.javax.sip.REENTRANT_LISTENER", "true");
+        properties.setProperty("gov.nist.javax.sip.THREAD_POOL_SIZE", "4");
+        this.sipStack = sipFactory.createSipStack(properties);
+        ListeningPoint udp = sipStack.createListeningPoint(host, port, ListeningPoint.UDP);
+        this.sipProvider = sipStack.createSipProvider(udp);
+        sipProvider.addListeningPoint(sipStack.createListeningPoint(host, port, ListeningPoint.TCP));
+        sipProvider.addSipListener(this);
+    }
+
+    /**
+     * 在 127.0.0.1 的空闲端口上启动服务器（UDP 与 TCP 同端口）。
+     */
+    static LocalSipServer start() throws Exception {
+        return new LocalSipServer("127.0.0.1", freePort());
+    }
+
+    /**
+     * @return 一个当前 UDP 和 TCP 都空闲的本地端口
+     */
+    static int freePort() throws Exception {
+        for (int attempt = 0; attempt < 20; attempt++) {
+            try (DatagramSocket udp = new DatagramSocket(0)) {
+                int candidate = udp.getLocalPort();
+                try (ServerSocket tcp = new ServerSocket(candidate)) {
+                    return candidate;
+                } catch (java.io.IOException ignored) {
+                    // TCP 端口被占用，换一个
+                }
+            }
+        }
+        throw new IllegalStateException("No free port found");
+    }
+
+    LocalSipServer addUser(String user, String password) {
+        passwords.put(user, password);
+        return this;
+    }
+
+    void setChallengeEnabled(boolean challengeEnabled) {
+        this.challengeEnabled = challengeEnabled;
+    }
+
+    /**
+     * 开启后，发往本域用户的 MESSAGE/INVITE 需要通过 407 Proxy-Authenticate 认证。
+     */
+    void setProxyChallengeEnabled(boolean proxyChallengeEnabled) {
+        this.proxyChallengeEnabled = proxyChallengeEnabled;
+    }
+
+    /**
+     * 让已发出的 nonce 全部过期，之后使用它们的请求会收到 stale=true 的质询。
+     */
+    void expireNonces() {
+        staleNonces.addAll(issuedNonces.keySet());
+        issuedNonces.clear();
+    }
+
+    String host() {
+        return host;
+    }
+
+    int port() {
+        return port;
+    }
+
+    /**
+     * @return 用户在本域的地址，可直接作为 {@link SipUserAgent} 的 userAddress
+     */
+    String uriFor(String user) {
+        return "sip:" + user + "@" + host + ":" + port;
+    }
+
+    Optional<SipURI> lookup(String user) {
+        Binding binding = locations.get(user);
+        if (binding == null || binding.expiresAtNanos - System.nanoTime() <= 0) {
+            return Optional.empty();
+        }
+        return Optional.of(binding.contact);
+    }
+
+    Optional<String> publication(String user) {
+        return Optional.ofNullable(publications.get(user));
+    }
+
+    int requestCount(String method) {
+        AtomicInteger count = requestCounts.get(method);
+        return count == null ? 0 : count.get();
+    }
+
+    @Override
+    public void close() {
+        sipStack.stop();
+    }
+
+    @Override
+    public void processRequest(RequestEvent requestEvent) {
+        Request request = requestEvent.getRequest();
+        String method = request.getMethod();
+        requestCounts.computeIfAbsent(method, key -> new AtomicInteger()).incrementAndGet();
+        try {
+            if (Request.REGISTER.equals(method)) {
+                handleRegister(requestEvent);
+            } else if (Request.OPTIONS.equals(method) && isLocal(request.getRequestURI())) {
+                respond(requestEvent, messageFactory.createResponse(Response.OK, request));
+            } else if (Request.PUBLISH.equals(method) && isLocal(request.getRequestURI())) {
+                handlePublish(requestEvent);
+            } else {
+                forward(requestEvent);
+            }
+        } catch (Exception ex) {
+            System.err.println("[LocalSipServer] 处理 " + method + " 失败: " + ex.getMessage());
+        }
+    }
+
+    private void handleRegister(RequestEvent event) throws Exception {
+        Request request = event.getRequest();
+        SipURI aor = (SipURI) ((ToHeader) request.getHeader(ToHeader.NAME)).getAddress().getURI();
+        String user = aor.getUser();
+        String password = passwords.get(user);
+        if (password == null) {
+            respond(event, messageFactory.createResponse(Response.FORBIDDEN, request));
+            return;
+        }
+        if (challengeEnabled) {
+            AuthResult result = authenticate(request, AuthorizationHeader.NAME, user, password);
+            if (result != AuthResult.OK) {
+                challenge(event, false, result == AuthResult.STALE);
+                return;
+            }
+        }
+
+        ContactHeader contact = (ContactHeader) request.getHeader(ContactHeader.NAME);
+        ExpiresHeader expiresHeader = (ExpiresHeader) request.getHeader(ExpiresHeader.NAME);
+        int expires = expiresHeader != null ? expiresHeader.getExpires() : 3600;
+        Response ok = messageFactory.createResponse(Response.OK, request);
+        if (expires == 0 || contact == null) {
+            locations.remove(user);
+        } else {
+            SipURI contactUri = (SipURI) contact.getAddress().getURI().clone();
+            locations.put(user, new Binding(contactUri, System.nanoTime() + expires * 1_000_000_000L));
+            ok.addHeader(contact);
+        }
+        ok.addHeader(headerFactory.createExpiresHeader(expires));
+        respond(event, ok);
+    }
+
+    private void handlePublish(RequestEvent event) throws Exception {
+        Request request = event.getRequest();
+        String user = ((SipURI) request.getRequestURI()).getUser();
+        byte[] body = request.getRawContent();
+        if (body != null) {
+            publications.put(user, new String(body, StandardCharsets.UTF_8));
+        }
+        Response ok = messageFactory.createResponse(Response.OK, request);
+        ok.addHeader(headerFactory.createSIPETagHeader(UUID.randomUUID().toString()));
+        ExpiresHeader expires = (ExpiresHeader) request.getHeader(ExpiresHeader.NAME);
+        if (expires != null) {
+            ok.addHeader(expires);
+        }
+        respond(event, ok);
+    }
+
+    private AuthResult authenticate(Request request, String headerName, String user, String password) {
+        AuthorizationHeader authorization = (AuthorizationHeader) request.getHeader(headerName);
+        if (authorization == null) {
+            return AuthResult.MISSING;
+        }
+        String nonce = authorization.getNonce();
+        if (staleNonces.contains(nonce)) {
+            return AuthResult.STALE;
+        }
+        AtomicInteger lastNonceCount = issuedNonces.get(nonce);
+        if (lastNonceCount == null || !user.equals(authorization.getUsername())) {
+            return AuthResult.INVALID;
+        }
+        String qop = authorization.getQop();
+        String nc = null;
+        if (qop != null) {
+            nc = authorization.getParameter("nc");
+            int count = Integer.parseInt(nc, 16);
+            if (count <= lastNonceCount.getAndAccumulate(count, Math::max)) {
+                return AuthResult.INVALID;
+            }
+        }
+        String expected = DigestCredentialCache.computeResponse(authorization.getAlgorithm(), user, realm, password,
+                nonce, nc, authorization.getCNonce(), qop, request.getMethod(), authorization.getURI().toString());
+        return expected.equalsIgnoreCase(authorization.getResponse()) ? AuthResult.OK : AuthResult.INVALID;
+    }
+
+    private void challenge(RequestEvent event, boolean proxy, boolean stale) throws Exception {
+        Response challenge = messageFactory.createResponse(
+                proxy ? Response.PROXY_AUTHENTICATION_REQUIRED : Response.UNAUTHORIZED, event.getRequest());
+        WWWAuthenticateHeader authenticate = proxy
+                ? headerFactory.createProxyAuthenticateHeader("Digest")
+                : headerFactory.createWWWAuthenticateHeader("Digest");
+        String nonce = UUID.randomUUID().toString().replace("-", "");
+        issuedNonces.put(nonce, new AtomicInteger());
+        authenticate.setRealm(realm);
+        authenticate.setNonce(nonce);
+        authenticate.setAlgorithm("MD5");
+        authenticate.setQop("auth");
+        if (stale) {
+            authenticate.setStale(true);
+        }
+        challenge.addHeader(authenticate);
+        respond(event, challenge);
+    }
+
+    private void forward(RequestEvent event) throws Exception {
+        Request request = (Request) event.getRequest().clone();
+        RouteHeader route = (RouteHeader) request.getHeader(RouteHeader.NAME);
+        if (route != null && isLocal(route.getAddress().getURI())) {
+            request.removeFirst(RouteHeader.NAME);
+        }
+
+        URI target = request.getRequestURI();
+        if (isLocal(target)) {
+            if (proxyChallengeEnabled && requiresProxyAuth(request.getMethod())) {
+                String caller = ((SipURI) ((FromHeader) request.getHeader(FromHeader.NAME)).getAddress().getURI()).getUser();
+                String callerPassword = passwords.get(caller);
+                AuthResult result = callerPassword == null ? AuthResult.INVALID
+                        : authenticate(request, ProxyAuthorizationHeader.NAME, caller, callerPassword);
+                if (result != AuthResult.OK) {
+                    challenge(event, true, result == AuthResult.STALE);
+                    return;
+                }
+            }
+            String user = ((SipURI) target).getUser();
+            Optional<SipURI> contact = lookup(user);
+            if (contact.isEmpty()) {
+                if (!Request.ACK.equals(request.getMethod())) {
+                    int status = passwords.containsKey(user) ? Response.TEMPORARILY_UNAVAILABLE : Response.NOT_FOUND;
+                    respond(event, messageFactory.createResponse(status, event.getRequest()));
+                }
+                return;
+            }
+            request.setRequestURI((URI) contact.get().clone());
+        }
+
+        if (Request.INVITE.equals(request.getMethod()) || Request.SUBSCRIBE.equals(request.getMethod())) {
+            // 留在对话路径上，BYE、NOTIFY 等对话内请求也经过代理
+            SipURI self = addressFactory.createSipURI(null, host);
+            self.setPort(port);
+            self.setLrParam();
+            request.addFirst(headerFactory.createRecordRouteHeader(addressFactory.createAddress(self)));
+        }
+        MaxForwardsHeader maxForwards = (MaxForwardsHeader) request.getHeader(MaxForwardsHeader.NAME);
+        if (maxForwards != null) {
+            maxForwards.decrementMaxForwards();
+        }
+        // 无状态代理：分支号由上游分支号推导，重传的请求得到相同的分支号
+        ViaHeader upstream = (ViaHeader) request.getHeader(ViaHeader.NAME);
+        String branch = "z9hG4bK-lss-" + Integer.toHexString(upstream.getBranch().hashCode());
+        String transport = ((SipURI) request.getRequestURI()).getTransportParam();
+        ViaHeader via = headerFactory.createViaHeader(host, port,
+                transport == null ? ListeningPoint.UDP : transport.toUpperCase(), branch);
+        request.addFirst(via);
+        sipProvider.sendRequest(request);
+    }
+
+    @Override
+    public void processResponse(ResponseEvent responseEvent) {
+        Response response = (Response) responseEvent.getResponse().clone();
+        response.removeFirst(ViaHeader.NAME);
+        if (response.getHeader(ViaHeader.NAME) == null) {
+            return;
+        }
+        try {
+            sipProvider.sendResponse(response);
+        } catch (Exception ex) {
+            System.err.println("[LocalSipServer] 转发响应失败: " + ex.getMessage());
+        }
+    }
+
+    private static boolean requiresProxyAuth(String method) {
+        return Request.MESSAGE.equals(method) || Request.INVITE.equals(method);
+    }
+
+    private void respond(RequestEvent event, Response response) throws Exception {
+        ServerTransaction transaction = event.getServerTransaction();
+        if (transaction == null) {
+            transaction = sipProvider.getNewServerTransaction(event.getRequest());
+        }
+        transaction.sendResponse(response);
+    }
+
+    private boolean isLocal(URI uri) {
+        if (!(uri instanceof SipURI sipUri)) {
+            return false;
+        }
+        int uriPort = sipUri.getPort() == -1 ? 5060 : sipUri.getPort();
+        return host.equals(sipUri.getHost()) && uriPort == port;
+    }
+
+    @Override
+    public void processTimeout(TimeoutEvent timeoutEvent) {
+        // 无状态转发不会产生客户端事务
+    }
+
+    @Override
+    public void processIOException(IOExceptionEvent exceptionEvent) {
+        System.err.println("[LocalSipServer] 网络异常: " + exceptionEvent.getHost() + ":" + exceptionEvent.getPort());
+    }
+
+    @Override
+    public void processTransactionTerminated(TransactionTerminatedEvent transactionTerminatedEvent) {
+        // No-op
+    }
+
+    @Override
+    public void processDialogTerminated(DialogTerminatedEvent dialogTerminatedEvent) {
+        // No-op
+    }
+}
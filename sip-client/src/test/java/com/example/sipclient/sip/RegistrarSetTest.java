@@ -0,0 +1,53 @@
+package com.example.sipclient.sip;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RegistrarSetTest {
+
+    private final RegistrarSet.Node a = new RegistrarSet.Node("10.0.0.1", 5060, 0, 2);
+    private final RegistrarSet.Node b = new RegistrarSet.Node("10.0.0.2", 5060, 0, 1);
+    private final RegistrarSet.Node backup = new RegistrarSet.Node("10.0.0.9", 5060, 1, 1);
+
+    @Test
+    void distributesByWeightWithinBestPriority() {
+        RegistrarSet set = new RegistrarSet(List.of(backup, a, b));
+        Map<RegistrarSet.Node, Integer> counts = new HashMap<>();
+        for (int i = 0; i < 30; i++) {
+            counts.merge(set.select(), 1, Integer::sum);
+        }
+
+        assertEquals(a, set.primary());
+        assertEquals(20, counts.get(a));
+        assertEquals(10, counts.get(b));
+        assertFalse(counts.containsKey(backup));
+    }
+
+    @Test
+    void failedNodesAreSkippedUntilCooldownEnds() {
+        AtomicLong clock = new AtomicLong();
+        RegistrarSet set = new RegistrarSet(List.of(a, b, backup), Duration.ofSeconds(30), clock::get);
+
+        set.markFailure(a);
+        set.markFailure(b);
+        assertEquals(backup, set.select());
+        assertEquals(List.of(backup, a, b), set.failoverOrder());
+        assertTrue(set.nodesDueForProbe().isEmpty());
+
+        clock.addAndGet(Duration.ofSeconds(31).toNanos());
+        assertEquals(List.of(a, b), set.nodesDueForProbe());
+
+        set.markSuccess(a);
+        assertTrue(set.isHealthy(a));
+        assertEquals(a.priority(), set.select().priority());
+    }
+}
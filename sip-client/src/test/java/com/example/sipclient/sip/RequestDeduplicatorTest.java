@@ -0,0 +1,35 @@
+package com.example.sipclient.sip;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RequestDeduplicatorTest {
+
+    @Test
+    void suppressesRetransmissionsUntilExpiry() {
+        AtomicLong clock = new AtomicLong();
+        RequestDeduplicator dedup = new RequestDeduplicator(Duration.ofSeconds(32), 16, clock::get);
+
+        assertTrue(dedup.firstSeen("call-1|1|MESSAGE|tag-a"));
+        assertFalse(dedup.firstSeen("call-1|1|MESSAGE|tag-a"));
+        assertTrue(dedup.firstSeen("call-1|2|MESSAGE|tag-a"));
+
+        clock.addAndGet(Duration.ofSeconds(33).toNanos());
+        assertTrue(dedup.firstSeen("call-1|1|MESSAGE|tag-a"));
+    }
+
+    @Test
+    void staysWithinEntryBound() {
+        AtomicLong clock = new AtomicLong();
+        RequestDeduplicator dedup = new RequestDeduplicator(Duration.ofSeconds(32), 8, clock::get);
+        for (int i = 0; i < 100; i++) {
+            dedup.firstSeen("call-" + i + "|1|MESSAGE|tag");
+        }
+        assertTrue(dedup.size() <= 8);
+    }
+}
@@ -0,0 +1,261 @@
+package com.example.sipclient.sip;
+
+import com.example.sipclient.call.CallManager;
+import com.example.sipclient.call.CallSession;
+import com.example.sipclient.chat.MessageHandler;
+import com.example.sipclient.presence.PresenceStatus;
+import com.example.sipclient.presence.PresenceUpdate;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sip.message.Request;
+import javax.sip.message.Response;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 用 {@link LocalSipServer} 驱动两个真实的 {@link SipUserAgent}，覆盖注册、续注册、消息、呼叫和挂断流程，
+ * 并对本机上的信令耗时做上限断言。
+ */
+class SipUserAgentIntegrationTest {
+
+    private static final Duration REGISTER_BUDGET = Duration.ofSeconds(2);
+    private static final Duration SIGNALING_BUDGET = Duration.ofSeconds(1);
+
+    private LocalSipServer server;
+    private final List<SipUserAgent> agents = new ArrayList<>();
+
+    @BeforeEach
+    void startServer() throws Exception {
+        server = LocalSipServer.start()
+                .addUser("alice", "alice-secret")
+                .addUser("bob", "bob-secret");
+    }
+
+    @AfterEach
+    void stopAll() {
+        agents.forEach(SipUserAgent::shutdown);
+        server.close();
+    }
+
+    private SipUserAgent agent(String user, String password) throws Exception {
+        SipUserAgent agent = new SipUserAgent(server.uriFor(user), password, "127.0.0.1", LocalSipServer.freePort());
+        agents.add(agent);
+        return agent;
+    }
+
+    private static long timedRegister(SipUserAgent agent) throws Exception {
+        long start = System.nanoTime();
+        assertTrue(agent.register(REGISTER_BUDGET), "registration failed");
+        return System.nanoTime() - start;
+    }
+
+    private static void awaitTrue(BooleanSupplier condition, Duration timeout, String message) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() - deadline > 0) {
+                throw new AssertionError(message + " within " + timeout.toMillis() + " ms");
+            }
+            Thread.sleep(5);
+        }
+    }
+
+    @Test
+    void registersWithDigestChallengeAndBindsContact() throws Exception {
+        SipUserAgent alice = agent("alice", "alice-secret");
+
+        long elapsed = timedRegister(alice);
+
+        assertTrue(alice.isRegistered());
+        assertTrue(server.lookup("alice").isPresent());
+        // 首次 REGISTER 被质询，带凭证重发一次
+        assertEquals(2, server.requestCount(Request.REGISTER));
+        assertTrue(elapsed < REGISTER_BUDGET.toNanos());
+    }
+
+    @Test
+    void rejectsWrongPassword() throws Exception {
+        SipUserAgent alice = agent("alice", "wrong");
+
+        assertFalse(alice.register(REGISTER_BUDGET));
+        assertFalse(server.lookup("alice").isPresent());
+    }
+
+    @Test
+    void reRegisterRefreshesAndUnregisterRemovesBinding() throws Exception {
+        SipUserAgent alice = agent("alice", "alice-secret");
+        timedRegister(alice);
+
+        long elapsed = timedRegister(alice);
+        assertTrue(alice.isRegistered());
+        assertTrue(elapsed < REGISTER_BUDGET.toNanos());
+
+        assertTrue(alice.unregister(REGISTER_BUDGET));
+        assertFalse(alice.isRegistered());
+        assertFalse(server.lookup("alice").isPresent());
+    }
+
+    @Test
+    void renewalReusesCachedCredentialsWithoutChallenge() throws Exception {
+        SipUserAgent alice = agent("alice", "alice-secret");
+        timedRegister(alice);
+        assertEquals(2, server.requestCount(Request.REGISTER));
+
+        timedRegister(alice);
+
+        assertEquals(3, server.requestCount(Request.REGISTER));
+    }
+
+    @Test
+    void staleNonceFallsBackToChallenge() throws Exception {
+        SipUserAgent alice = agent("alice", "alice-secret");
+        timedRegister(alice);
+        server.expireNonces();
+
+        timedRegister(alice);
+
+        assertTrue(alice.isRegistered());
+        assertEquals(4, server.requestCount(Request.REGISTER));
+    }
+
+    @Test
+    void answersProxyChallengeForMessage() throws Exception {
+        server.setProxyChallengeEnabled(true);
+        SipUserAgent alice = agent("alice", "alice-secret");
+        SipUserAgent bob = agent("bob", "bob-secret");
+        BlockingQueue<String> received = new LinkedBlockingQueue<>();
+        bob.setMessageHandler(new MessageHandler() {
+            @Override
+            public void handleIncomingMessage(String fromUri, String body) {
+                received.add(body);
+            }
+        });
+        timedRegister(alice);
+        timedRegister(bob);
+
+        alice.sendMessage(server.uriFor("bob"), "first");
+        assertEquals("first", received.poll(SIGNALING_BUDGET.toMillis(), TimeUnit.MILLISECONDS));
+        alice.sendMessage(server.uriFor("bob"), "second");
+        assertEquals("second", received.poll(SIGNALING_BUDGET.toMillis(), TimeUnit.MILLISECONDS));
+
+        // 第一条被 407 质询后重发，第二条预先带上 Proxy-Authorization
+        assertEquals(3, server.requestCount(Request.MESSAGE));
+    }
+
+    @Test
+    void deliversMessageThroughProxy() throws Exception {
+        SipUserAgent alice = agent("alice", "alice-secret");
+        SipUserAgent bob = agent("bob", "bob-secret");
+        BlockingQueue<String> received = new LinkedBlockingQueue<>();
+        bob.setMessageHandler(new MessageHandler() {
+            @Override
+            public void handleIncomingMessage(String fromUri, String body) {
+                received.add(fromUri + "|" + body);
+            }
+        });
+        timedRegister(alice);
+        timedRegister(bob);
+
+        long start = System.nanoTime();
+        alice.sendMessage(server.uriFor("bob"), "你好, bob");
+        String delivered = received.poll(SIGNALING_BUDGET.toMillis(), TimeUnit.MILLISECONDS);
+        long elapsed = System.nanoTime() - start;
+
+        assertNotNull(delivered, "MESSAGE was not delivered");
+        assertEquals("sip:alice@127.0.0.1|你好, bob", delivered);
+        assertTrue(elapsed < SIGNALING_BUDGET.toNanos());
+    }
+
+    @Test
+    void reportsFinalStatusOfMessages() throws Exception {
+        SipUserAgent alice = agent("alice", "alice-secret");
+        SipUserAgent bob = agent("bob", "bob-secret");
+        timedRegister(alice);
+
+        // bob 尚未注册：代理回 480，调用方据此把消息转入离线队列
+        int offline = alice.sendMessage(server.uriFor("bob"), "are you there?")
+                .get(SIGNALING_BUDGET.toMillis(), TimeUnit.MILLISECONDS);
+        assertEquals(Response.TEMPORARILY_UNAVAILABLE, offline);
+
+        timedRegister(bob);
+        int delivered = alice.sendMessage(server.uriFor("bob"), "hello")
+                .get(SIGNALING_BUDGET.toMillis(), TimeUnit.MILLISECONDS);
+        assertEquals(Response.OK, delivered);
+    }
+
+    @Test
+    void setsUpAndTearsDownCall() throws Exception {
+        server.setProxyChallengeEnabled(true);
+        SipUserAgent alice = agent("alice", "alice-secret");
+        SipUserAgent bob = agent("bob", "bob-secret");
+        CallManager aliceCalls = new CallManager();
+        CallManager bobCalls = new CallManager();
+        CountDownLatch ringing = new CountDownLatch(1);
+        bobCalls.setIncomingCallListener((fromUri, sessionId) -> ringing.countDown());
+        alice.setCallManager(aliceCalls);
+        bob.setCallManager(bobCalls);
+        timedRegister(alice);
+        timedRegister(bob);
+        String bobUri = server.uriFor("bob");
+        String aliceUri = "sip:alice@127.0.0.1";
+
+        long start = System.nanoTime();
+        alice.startCall(bobUri);
+        assertTrue(ringing.await(SIGNALING_BUDGET.toMillis(), TimeUnit.MILLISECONDS), "INVITE did not reach bob");
+        bob.answerCall(aliceUri);
+        awaitTrue(() -> isActive(aliceCalls, bobUri) && isActive(bobCalls, aliceUri),
+                SIGNALING_BUDGET, "call not established");
+        long setup = System.nanoTime() - start;
+        assertTrue(setup < 2 * SIGNALING_BUDGET.toNanos());
+
+        alice.hangup(bobUri);
+        awaitTrue(() -> bobCalls.findByRemote(aliceUri).isEmpty(), SIGNALING_BUDGET, "BYE did not reach bob");
+        assertTrue(aliceCalls.findByRemote(bobUri).isEmpty());
+        assertEquals(1, server.requestCount(Request.BYE));
+        assertEquals(2, server.requestCount(Request.INVITE));
+    }
+
+    @Test
+    void subscribesToPresenceAndReceivesPublishedChanges() throws Exception {
+        SipUserAgent alice = agent("alice", "alice-secret");
+        SipUserAgent bob = agent("bob", "bob-secret");
+        BlockingQueue<PresenceUpdate> updates = new LinkedBlockingQueue<>();
+        alice.setPresenceListener(updates::add);
+        timedRegister(alice);
+        timedRegister(bob);
+
+        alice.subscribePresence(server.uriFor("bob"));
+        PresenceUpdate initial = updates.poll(SIGNALING_BUDGET.toMillis(), TimeUnit.MILLISECONDS);
+        assertNotNull(initial, "initial NOTIFY was not delivered");
+        assertEquals(PresenceStatus.ONLINE, initial.status());
+        assertEquals("sip:bob@127.0.0.1", initial.entity());
+
+        // 合并窗口内的连续变化只推送最后一次
+        bob.publishPresence(PresenceStatus.AWAY, null);
+        bob.publishPresence(PresenceStatus.BUSY, null);
+        PresenceUpdate changed = updates.poll(2 * SIGNALING_BUDGET.toMillis(), TimeUnit.MILLISECONDS);
+        assertNotNull(changed, "presence change was not delivered");
+        assertEquals(PresenceStatus.BUSY, changed.status());
+        assertTrue(updates.isEmpty());
+        awaitTrue(() -> server.publication("bob").filter(pidf -> pidf.contains("busy")).isPresent(),
+                SIGNALING_BUDGET, "PUBLISH did not reach the server");
+    }
+
+    private static boolean isActive(CallManager calls, String remote) {
+        return calls.findByRemote(remote)
+                .map(session -> session.getState() == CallSession.State.ACTIVE)
+                .orElse(false);
+    }
+}
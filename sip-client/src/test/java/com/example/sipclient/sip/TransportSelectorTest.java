@@ -0,0 +1,23 @@
+package com.example.sipclient.sip;
+
+import org.junit.jupiter.api.Test;
+
+import javax.sip.ListeningPoint;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TransportSelectorTest {
+
+    @Test
+    void switchesLargeUdpRequestsToTcp() {
+        TransportSelector selector = new TransportSelector(ListeningPoint.UDP, true, 1300);
+        assertEquals(ListeningPoint.UDP, selector.select(200));
+        assertEquals(ListeningPoint.TCP, selector.select(4000));
+    }
+
+    @Test
+    void keepsPrimaryWhenTcpUnavailableOrAlreadyReliable() {
+        assertEquals(ListeningPoint.UDP, new TransportSelector(ListeningPoint.UDP, false, 1300).select(4000));
+        assertEquals(ListeningPoint.TLS, new TransportSelector(ListeningPoint.TLS, true, 1300).select(4000));
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.sipclient.sip;
+
+import org.junit.jupiter.api.Test;
+
+import javax.sip.SipFactory;
+import javax.sip.address.AddressFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UriNormalizerTest {
+
+    private static AddressFactory addressFactory() throws Exception {
+        SipFactory sipFactory = SipFactory.getInstance();
+        sipFactory.setPathName("gov.nist");
+        return sipFactory.createAddressFactory();
+    }
+
+    @Test
+    void returnsSameInternedKeyForRawAndParsedForms() throws Exception {
+        AddressFactory addressFactory = addressFactory();
+        UriNormalizer normalizer = new UriNormalizer(addressFactory);
+
+        SipUriKey fromRaw = normalizer.normalize("sip:bob@example.com:5060");
+        SipUriKey fromParsed = normalizer.normalize(addressFactory.createURI("sip:bob@example.com:5060"));
+        SipUriKey again = normalizer.normalize("sip:bob@example.com:5060");
+
+        assertSame(fromRaw, fromParsed);
+        assertSame(fromRaw, again);
+        assertEquals("sip:bob@example.com:5060", fromRaw.value());
+    }
+
+    @Test
+    void unparsableInputIsKeptVerbatim() throws Exception {
+        UriNormalizer normalizer = new UriNormalizer(addressFactory());
+        assertEquals("not a uri", normalizer.normalize("not a uri").value());
+    }
+
+    @Test
+    void cacheIsBounded() throws Exception {
+        UriNormalizer normalizer = new UriNormalizer(addressFactory(), 4);
+        for (int i = 0; i < 20; i++) {
+            normalizer.normalize("sip:user" + i + "@example.com");
+        }
+        assertTrue(normalizer.size() <= 4);
+    }
+}